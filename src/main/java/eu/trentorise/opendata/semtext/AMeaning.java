@@ -20,14 +20,15 @@ import static com.google.common.base.Preconditions.checkNotNull;
 import eu.trentorise.opendata.semtext.jackson.SemTextModule.MeaningMetadataDeserializer;
 import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.google.common.base.Optional;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.hash.HashCode;
 
 import eu.trentorise.opendata.commons.BuilderStylePublic;
 import eu.trentorise.opendata.commons.Dict;
 import eu.trentorise.opendata.commons.SimpleStyle;
 import eu.trentorise.opendata.commons.TodUtils;
 import eu.trentorise.opendata.commons.exceptions.TodNotFoundException;
-import eu.trentorise.opendata.semtext.exceptions.SemTextNotFoundException;
 import eu.trentorise.opendata.semtext.jackson.SemTextModule.MeaningMetadataDeserializer;
 
 import static eu.trentorise.opendata.semtext.SemTexts.TOLERANCE;
@@ -69,12 +70,40 @@ abstract class AMeaning implements Comparable<Meaning>, Serializable, HasMetadat
 
     @Override
     public Object getMetadata(String namespace) {
-        Object ret = getMetadata().get(namespace);
-        if (ret == null) {
-            throw new SemTextNotFoundException("There is no metadata under the namespace " + namespace + " in " + this);
-        } else {
-            return ret;
-        }
+        return SemTexts.getMetadata(this, getMetadata(), namespace);
+    }
+
+    /**
+     * Returns the metadata under the given namespace, if any. Never throws
+     * because of a missing namespace, so it is the way to probe for optional
+     * metadata.
+     *
+     * @since 1.1.0
+     */
+    public Optional<Object> findMetadata(String namespace) {
+        return SemTexts.findMetadata(getMetadata(), namespace);
+    }
+
+    /**
+     * Returns the metadata under the given namespace if it is an instance of
+     * the given type, otherwise an absent value.
+     *
+     * @since 1.1.0
+     */
+    public <T> Optional<T> findMetadata(String namespace, Class<T> type) {
+        return SemTexts.findMetadata(getMetadata(), namespace, type);
+    }
+
+    /**
+     * Returns the metadata under the given namespace cast to the given type.
+     *
+     * @throws eu.trentorise.opendata.semtext.exceptions.MetadataNotFoundException
+     * if there is no metadata under the namespace or it is not an instance of
+     * the given type.
+     * @since 1.1.0
+     */
+    public <T> T getMetadata(String namespace, Class<T> type) {
+        return SemTexts.getMetadata(this, getMetadata(), namespace, type);
     }
 
     /**
@@ -109,6 +138,21 @@ abstract class AMeaning implements Comparable<Meaning>, Serializable, HasMetadat
         return true;
     }
 
+    /**
+     * Returns a 128 bit fingerprint of all the fields of this meaning, stable
+     * across JVMs so it can be used as a persistent key. Differently from
+     * equality it also considers probability, name, description and metadata.
+     * Computed at first call and then cached.
+     *
+     * @throws IllegalArgumentException if some metadata value is of a type
+     * not supported by {@link SemText#fingerprint()}.
+     * @since 1.1.0
+     */
+    @Value.Lazy
+    public HashCode fingerprint() {
+        return Fingerprints.meaning(this);
+    }
+
     @Value.Check
     protected void check() {
         checkPositiveScore(getProbability(), "Invalid probability for meaning!");
@@ -0,0 +1,285 @@
+/*
+ * Copyright 2015 TrentoRISE  (trentorise.eu) .
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.trentorise.opendata.semtext;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import eu.trentorise.opendata.commons.Dict;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * Computes the 128 bit murmur3 content fingerprints of semtext objects.
+ * Fingerprints only depend on the content, never on {@code Object.hashCode()}
+ * or on the iteration order of maps, dictionaries and sets, so they are the
+ * same on any JVM. Objects are hashed with the fingerprints of their children,
+ * which are cached by the children themselves, except for terms.
+ *
+ * @author David Leoni
+ * @since 1.1.0
+ */
+@Immutable
+@ParametersAreNonnullByDefault
+final class Fingerprints {
+
+    private static final HashFunction FUNCTION = Hashing.murmur3_128();
+
+    // type tags, so different structures with the same fields never collide
+    private static final byte NULL = 0;
+    private static final byte STRING = 1;
+    private static final byte BOOLEAN = 2;
+    private static final byte INTEGER = 3;
+    private static final byte DECIMAL = 4;
+    private static final byte ENUM = 5;
+    private static final byte LOCALE = 6;
+    private static final byte DICT = 7;
+    private static final byte LIST = 8;
+    private static final byte SET = 9;
+    private static final byte MAP = 10;
+    private static final byte MEANING = 20;
+    private static final byte TERM = 21;
+    private static final byte SENTENCE = 22;
+    private static final byte SEMTEXT = 23;
+
+    private Fingerprints() {
+    }
+
+    /**
+     * Fingerprint of all the fields of a meaning, including probability, name,
+     * description and metadata.
+     */
+    static HashCode meaning(AMeaning meaning) {
+        Hasher hasher = FUNCTION.newHasher();
+        hasher.putByte(MEANING);
+        putString(hasher, meaning.getId());
+        putString(hasher, meaning.getKind().name());
+        hasher.putLong(Double.doubleToLongBits(meaning.getProbability()));
+        putDict(hasher, meaning.getName());
+        putDict(hasher, meaning.getDescription());
+        putValue(hasher, meaning.getMetadata());
+        return hasher.hash();
+    }
+
+    static HashCode term(Term term) {
+        Hasher hasher = FUNCTION.newHasher();
+        hasher.putByte(TERM);
+        hasher.putInt(term.getStart());
+        hasher.putInt(term.getEnd());
+        putString(hasher, term.getMeaningStatus().name());
+        Meaning selectedMeaning = term.getSelectedMeaning();
+        if (selectedMeaning == null) {
+            hasher.putByte(NULL);
+        } else {
+            hasher.putByte(MEANING);
+            hasher.putBytes(selectedMeaning.fingerprint().asBytes());
+        }
+        hasher.putInt(term.getMeanings().size());
+        for (Meaning meaning : term.getMeanings()) {
+            hasher.putBytes(meaning.fingerprint().asBytes());
+        }
+        putValue(hasher, term.getMetadata());
+        return hasher.hash();
+    }
+
+    static HashCode sentence(Sentence sentence) {
+        Hasher hasher = FUNCTION.newHasher();
+        hasher.putByte(SENTENCE);
+        hasher.putInt(sentence.getStart());
+        hasher.putInt(sentence.getEnd());
+        putTerms(hasher, sentence.getTerms());
+        putValue(hasher, sentence.getMetadata());
+        return hasher.hash();
+    }
+
+    static HashCode text(String text) {
+        Hasher hasher = FUNCTION.newHasher();
+        putString(hasher, text);
+        return hasher.hash();
+    }
+
+    /**
+     * @param textFingerprint the fingerprint of the text as given by
+     * {@link #text(java.lang.String)}
+     */
+    static HashCode semText(SemText semText, HashCode textFingerprint) {
+        Hasher hasher = FUNCTION.newHasher();
+        hasher.putByte(SEMTEXT);
+        putLocale(hasher, semText.getLocale());
+        hasher.putBytes(textFingerprint.asBytes());
+        hasher.putInt(semText.getSentences().size());
+        for (Sentence sentence : semText.getSentences()) {
+            hasher.putBytes(sentence.fingerprint().asBytes());
+        }
+        putValue(hasher, semText.getMetadata());
+
+        List<HashCode> layers = new ArrayList();
+        for (Map.Entry<String, ImmutableList<Term>> entry : semText.getLayers().entrySet()) {
+            Hasher layerHasher = FUNCTION.newHasher();
+            putString(layerHasher, entry.getKey());
+            putTerms(layerHasher, entry.getValue());
+            layers.add(layerHasher.hash());
+        }
+        putUnordered(hasher, layers);
+        return hasher.hash();
+    }
+
+    private static void putTerms(Hasher hasher, List<Term> terms) {
+        hasher.putInt(terms.size());
+        for (Term term : terms) {
+            hasher.putBytes(term.fingerprint().asBytes());
+        }
+    }
+
+    private static void putString(Hasher hasher, String string) {
+        hasher.putInt(string.length());
+        hasher.putString(string, Charsets.UTF_8);
+    }
+
+    /**
+     * Hashes the locale as a language tag, with the legacy ISO codes some JVMs
+     * still return mapped to the current ones.
+     */
+    private static void putLocale(Hasher hasher, Locale locale) {
+        String language = locale.getLanguage();
+        if ("iw".equals(language)) {
+            language = "he";
+        } else if ("ji".equals(language)) {
+            language = "yi";
+        } else if ("in".equals(language)) {
+            language = "id";
+        }
+        hasher.putByte(LOCALE);
+        putString(hasher, language + "-" + locale.getScript() + "-" + locale.getCountry() + "-" + locale.getVariant());
+    }
+
+    private static void putDict(Hasher hasher, Dict dict) {
+        List<HashCode> entries = new ArrayList();
+        for (Locale locale : dict.locales()) {
+            Hasher entryHasher = FUNCTION.newHasher();
+            putLocale(entryHasher, locale);
+            List<String> strings = dict.strings(locale);
+            entryHasher.putInt(strings.size());
+            for (String string : strings) {
+                putString(entryHasher, string);
+            }
+            entries.add(entryHasher.hash());
+        }
+        hasher.putByte(DICT);
+        putUnordered(hasher, entries);
+    }
+
+    private static void putUnordered(Hasher hasher, List<HashCode> hashCodes) {
+        hasher.putInt(hashCodes.size());
+        if (!hashCodes.isEmpty()) {
+            hasher.putBytes(Hashing.combineUnordered(hashCodes).asBytes());
+        }
+    }
+
+    private static HashCode value(@Nullable Object value) {
+        Hasher hasher = FUNCTION.newHasher();
+        putValue(hasher, value);
+        return hasher.hash();
+    }
+
+    /**
+     * Hashes a metadata value. Only values with a content stable across JVMs
+     * are supported, see {@link SemText#fingerprint()}.
+     *
+     * @throws IllegalArgumentException if the value is of an unsupported type.
+     */
+    private static void putValue(Hasher hasher, @Nullable Object value) {
+        Object v = value instanceof LazyMetadata ? ((LazyMetadata) value).resolve() : value;
+
+        if (v == null) {
+            hasher.putByte(NULL);
+        } else if (v instanceof String) {
+            hasher.putByte(STRING);
+            putString(hasher, (String) v);
+        } else if (v instanceof Boolean) {
+            hasher.putByte(BOOLEAN);
+            hasher.putBoolean((Boolean) v);
+        } else if (v instanceof Integer || v instanceof Long || v instanceof Short || v instanceof Byte) {
+            hasher.putByte(INTEGER);
+            hasher.putLong(((Number) v).longValue());
+        } else if (v instanceof Double || v instanceof Float) {
+            hasher.putByte(DECIMAL);
+            hasher.putLong(Double.doubleToLongBits(((Number) v).doubleValue()));
+        } else if (v instanceof BigInteger || v instanceof BigDecimal) {
+            hasher.putByte(DECIMAL);
+            putString(hasher, v.toString());
+        } else if (v instanceof Enum) {
+            hasher.putByte(ENUM);
+            putString(hasher, ((Enum) v).getDeclaringClass().getName());
+            putString(hasher, ((Enum) v).name());
+        } else if (v instanceof Locale) {
+            putLocale(hasher, (Locale) v);
+        } else if (v instanceof Dict) {
+            putDict(hasher, (Dict) v);
+        } else if (v instanceof Meaning) {
+            hasher.putByte(MEANING);
+            hasher.putBytes(((Meaning) v).fingerprint().asBytes());
+        } else if (v instanceof Term) {
+            hasher.putByte(TERM);
+            hasher.putBytes(((Term) v).fingerprint().asBytes());
+        } else if (v instanceof Sentence) {
+            hasher.putByte(SENTENCE);
+            hasher.putBytes(((Sentence) v).fingerprint().asBytes());
+        } else if (v instanceof SemText) {
+            hasher.putByte(SEMTEXT);
+            hasher.putBytes(((SemText) v).fingerprint().asBytes());
+        } else if (v instanceof Map) {
+            List<HashCode> entries = new ArrayList();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) v).entrySet()) {
+                Hasher entryHasher = FUNCTION.newHasher();
+                putValue(entryHasher, entry.getKey());
+                putValue(entryHasher, entry.getValue());
+                entries.add(entryHasher.hash());
+            }
+            hasher.putByte(MAP);
+            putUnordered(hasher, entries);
+        } else if (v instanceof Set) {
+            List<HashCode> elements = new ArrayList();
+            for (Object element : (Set<?>) v) {
+                elements.add(value(element));
+            }
+            hasher.putByte(SET);
+            putUnordered(hasher, elements);
+        } else if (v instanceof Iterable) {
+            hasher.putByte(LIST);
+            int size = 0;
+            for (Object element : (Iterable<?>) v) {
+                putValue(hasher, element);
+                size++;
+            }
+            hasher.putInt(size);
+        } else {
+            throw new IllegalArgumentException("Can't fingerprint metadata value of unsupported type "
+                    + v.getClass().getName() + "!");
+        }
+    }
+}
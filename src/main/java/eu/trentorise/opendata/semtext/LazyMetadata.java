@@ -0,0 +1,44 @@
+/*
+ * Copyright 2015 TrentoRISE  (trentorise.eu) .
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.trentorise.opendata.semtext;
+
+/**
+ * A metadata value which is decoded only when first requested through
+ * {@link HasMetadata#getMetadata(java.lang.String)} and then kept. Such values
+ * stay inside {@link SemText}, {@link Sentence} and {@link Term}: accessors
+ * only return decoded values, and {@link HasMetadata#getMetadata()} decodes
+ * all the values still pending at its first call.
+ *
+ * Implementations must be thread safe.
+ *
+ * @author David Leoni
+ * @since 1.1.0
+ */
+public interface LazyMetadata {
+
+    /**
+     * Returns the decoded value, decoding it at first call.
+     *
+     * @throws eu.trentorise.opendata.semtext.exceptions.SemTextException if
+     * the value can't be decoded.
+     */
+    Object resolve();
+
+    /**
+     * Returns true if the value was already decoded.
+     */
+    boolean isResolved();
+}
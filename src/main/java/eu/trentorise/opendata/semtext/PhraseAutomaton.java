@@ -0,0 +1,203 @@
+/*
+ * Copyright 2015 TrentoRISE  (trentorise.eu) .
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.trentorise.opendata.semtext;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static eu.trentorise.opendata.commons.TodUtils.checkNotEmpty;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import javax.annotation.ParametersAreNonnullByDefault;
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * Aho-Corasick automaton to find occurrences of many phrases in a single pass
+ * over a text. Transitions of all the states are stored in flat sorted arrays.
+ *
+ * @author David Leoni
+ */
+@Immutable
+@ParametersAreNonnullByDefault
+final class PhraseAutomaton {
+
+    private static final int ROOT = 0;
+
+    /**
+     * Length of each distinct phrase
+     */
+    private final int[] phraseLengths;
+
+    /**
+     * Transitions of state s are at indexes [transOffsets[s], transOffsets[s +
+     * 1]) of transChars and transTargets, sorted by char.
+     */
+    private final int[] transOffsets;
+    private final char[] transChars;
+    private final int[] transTargets;
+
+    private final int[] failures;
+
+    /**
+     * Phrase ending at each state, -1 if none
+     */
+    private final int[] phrases;
+
+    /**
+     * Nearest state reachable by failure links where a phrase ends, -1 if none
+     */
+    private final int[] dictLinks;
+
+    private PhraseAutomaton(int[] phraseLengths, int[] transOffsets, char[] transChars, int[] transTargets,
+            int[] failures, int[] phrases, int[] dictLinks) {
+        this.phraseLengths = phraseLengths;
+        this.transOffsets = transOffsets;
+        this.transChars = transChars;
+        this.transTargets = transTargets;
+        this.failures = failures;
+        this.phrases = phrases;
+        this.dictLinks = dictLinks;
+    }
+
+    /**
+     * Builds the automaton. Duplicate phrases are considered only once.
+     *
+     * @throws IllegalArgumentException if a phrase is empty
+     */
+    static PhraseAutomaton of(Iterable<String> phrases) {
+        checkNotNull(phrases);
+
+        List<TreeMap<Character, Integer>> gotos = new ArrayList();
+        List<Integer> statePhrases = new ArrayList();
+        List<Integer> lengths = new ArrayList();
+        gotos.add(new TreeMap<Character, Integer>());
+        statePhrases.add(-1);
+
+        for (String phrase : phrases) {
+            checkNotEmpty(phrase, "Invalid phrase!");
+            int state = ROOT;
+            for (int i = 0; i < phrase.length(); i++) {
+                Integer next = gotos.get(state).get(phrase.charAt(i));
+                if (next == null) {
+                    next = gotos.size();
+                    gotos.get(state).put(phrase.charAt(i), next);
+                    gotos.add(new TreeMap<Character, Integer>());
+                    statePhrases.add(-1);
+                }
+                state = next;
+            }
+            if (statePhrases.get(state) < 0) {
+                statePhrases.set(state, lengths.size());
+                lengths.add(phrase.length());
+            }
+        }
+
+        int n = gotos.size();
+        int[] failures = new int[n];
+        int[] dictLinks = new int[n];
+        int[] phraseIds = new int[n];
+        dictLinks[ROOT] = -1;
+
+        // failure links are computed breadth first, so failures of shallower states are already known
+        ArrayDeque<Integer> queue = new ArrayDeque();
+        queue.add(ROOT);
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            phraseIds[state] = statePhrases.get(state);
+            for (Map.Entry<Character, Integer> entry : gotos.get(state).entrySet()) {
+                int child = entry.getValue();
+                int failure = ROOT;
+                if (state != ROOT) {
+                    int f = failures[state];
+                    Integer target = gotos.get(f).get(entry.getKey());
+                    while (target == null && f != ROOT) {
+                        f = failures[f];
+                        target = gotos.get(f).get(entry.getKey());
+                    }
+                    failure = target == null ? ROOT : target;
+                }
+                failures[child] = failure;
+                dictLinks[child] = statePhrases.get(failure) >= 0 ? failure : dictLinks[failure];
+                queue.add(child);
+            }
+        }
+
+        int[] transOffsets = new int[n + 1];
+        char[] transChars = new char[n - 1];
+        int[] transTargets = new int[n - 1];
+        int t = 0;
+        for (int s = 0; s < n; s++) {
+            transOffsets[s] = t;
+            for (Map.Entry<Character, Integer> entry : gotos.get(s).entrySet()) {
+                transChars[t] = entry.getKey();
+                transTargets[t] = entry.getValue();
+                t++;
+            }
+        }
+        transOffsets[n] = t;
+
+        int[] phraseLengths = new int[lengths.size()];
+        for (int i = 0; i < phraseLengths.length; i++) {
+            phraseLengths[i] = lengths.get(i);
+        }
+
+        return new PhraseAutomaton(phraseLengths, transOffsets, transChars, transTargets, failures, phraseIds,
+                dictLinks);
+    }
+
+    /**
+     * Returns the number of distinct phrases.
+     */
+    int size() {
+        return phraseLengths.length;
+    }
+
+    private int next(int state, char c) {
+        int i = Arrays.binarySearch(transChars, transOffsets[state], transOffsets[state + 1], c);
+        return i < 0 ? -1 : transTargets[i];
+    }
+
+    /**
+     * Adds to {@code out} the occurrences of the phrases in {@code text}. Like
+     * consecutive calls to {@link java.util.regex.Matcher#find()}, an
+     * occurrence of a phrase overlapping a previous occurrence of the same
+     * phrase is skipped, while occurrences of different phrases may overlap.
+     */
+    void find(CharSequence text, SpanBuffer out) {
+        int[] lastEnds = new int[phraseLengths.length];
+        int state = ROOT;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            int target = next(state, c);
+            while (target < 0 && state != ROOT) {
+                state = failures[state];
+                target = next(state, c);
+            }
+            state = target < 0 ? ROOT : target;
+
+            for (int s = phrases[state] >= 0 ? state : dictLinks[state]; s >= 0; s = dictLinks[s]) {
+                int phrase = phrases[s];
+                int start = i + 1 - phraseLengths[phrase];
+                if (start >= lastEnds[phrase]) {
+                    lastEnds[phrase] = i + 1;
+                    out.add(start, i + 1);
+                }
+            }
+        }
+    }
+}
@@ -16,29 +16,30 @@
 package eu.trentorise.opendata.semtext;
 
 import static com.google.common.base.Preconditions.checkNotNull;
+import com.google.common.base.Optional;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.hash.HashCode;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Range;
-import com.google.common.collect.RangeMap;
 import com.google.common.collect.RangeSet;
-import com.google.common.collect.TreeRangeMap;
 import com.google.common.collect.TreeRangeSet;
 import eu.trentorise.opendata.commons.Dict;
 import eu.trentorise.opendata.commons.LocalizedString;
 import eu.trentorise.opendata.commons.TodUtils;
-import eu.trentorise.opendata.semtext.exceptions.SemTextNotFoundException;
+import eu.trentorise.opendata.semtext.metrics.Metrics;
+import eu.trentorise.opendata.semtext.metrics.SemTextOperation;
 
 import static eu.trentorise.opendata.commons.TodUtils.checkNotEmpty;
-import static eu.trentorise.opendata.semtext.SemTexts.spanToRange;
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
-import java.util.logging.Level;
-import java.util.logging.Logger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import javax.annotation.Nullable;
@@ -52,14 +53,18 @@ import javax.annotation.concurrent.Immutable;
  * calculated with respects to it. Spans can't overlap. All of semantic text
  * items (sentences, terms, meaning, semtext itself) can hold metadata.
  *
+ * Besides the terms in sentences, a SemText can hold named annotation layers,
+ * each one being a list of terms spanning the whole text (i.e. one layer for
+ * named entities and one for concepts). Terms in different layers may
+ * overlap, while terms within the same layer can't. Text and sentences are
+ * thus stored only once for all the layers.
+ *
  * @author David Leoni <david.leoni@unitn.it>
  */
 @Immutable
 @ParametersAreNonnullByDefault
 public final class SemText implements Serializable, HasMetadata {
 
-    private static final Logger LOG = Logger.getLogger(SemText.class.getName());
-
     private static final long serialVersionUID = 1L;
 
     private static final SemText INSTANCE = new SemText();
@@ -69,6 +74,19 @@ public final class SemText implements Serializable, HasMetadata {
 
     private ImmutableList<Sentence> sentences;
     private ImmutableMap<String, ?> metadata;
+    private ImmutableMap<String, ImmutableList<Term>> layers;
+    // metadata with lazy values resolved
+    @Nullable
+    private transient volatile ImmutableMap<String, ?> resolvedMetadata;
+
+    @Nullable
+    private transient volatile HashCode fingerprint;
+    // kept by copies with the same text
+    @Nullable
+    private transient volatile HashCode textFingerprint;
+    // index in terms() of the first term of each sentence, followed by the number of terms
+    @Nullable
+    private transient volatile int[] termOffsets;
 
     /**
      * Text getLocale is set to {Locale#ROOT}
@@ -78,6 +96,7 @@ public final class SemText implements Serializable, HasMetadata {
         this.locale = Locale.ROOT;
         this.sentences = ImmutableList.of();
         this.metadata = ImmutableMap.of();
+        this.layers = ImmutableMap.of();
     }
 
     /**
@@ -104,7 +123,9 @@ public final class SemText implements Serializable, HasMetadata {
         this.locale = semText.getLocale();
         this.text = semText.getText();
         this.sentences = semText.getSentences();
-        this.metadata = semText.getMetadata();
+        this.metadata = semText.metadata;
+        this.layers = semText.getLayers();
+        this.textFingerprint = semText.textFingerprint;
     }
 
     @Override
@@ -112,19 +133,67 @@ public final class SemText implements Serializable, HasMetadata {
         return metadata.containsKey(namespace);
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * Metadata decoded lazily, see {@link LazyMetadata}, is decoded at the
+     * first call of this method. To decode only a given namespace use
+     * {@link #getMetadata(java.lang.String)} instead.
+     */
     @Override
     public ImmutableMap<String, ?> getMetadata() {
+        ImmutableMap<String, ?> ret = resolvedMetadata;
+        if (ret == null) {
+            ret = SemTexts.resolveAllMetadata(metadata);
+            resolvedMetadata = ret;
+        }
+        return ret;
+    }
+
+    /**
+     * Returns metadata as stored, possibly with {@link LazyMetadata} values.
+     * Only meant for serializers.
+     */
+    ImmutableMap<String, ?> getRawMetadata() {
         return metadata;
     }
 
     @Override
     public Object getMetadata(String namespace) {
-        Object ret = metadata.get(namespace);
-        if (ret == null) {
-            throw new SemTextNotFoundException("There is no metadata under the namespace " + namespace + " in " + this);
-        } else {
-            return ret;
-        }
+        return SemTexts.getMetadata(this, metadata, namespace);
+    }
+
+    /**
+     * Returns the metadata under the given namespace, if any. Never throws
+     * because of a missing namespace, so it is the way to probe for optional
+     * metadata.
+     *
+     * @since 1.1.0
+     */
+    public Optional<Object> findMetadata(String namespace) {
+        return SemTexts.findMetadata(metadata, namespace);
+    }
+
+    /**
+     * Returns the metadata under the given namespace if it is an instance of
+     * the given type, otherwise an absent value.
+     *
+     * @since 1.1.0
+     */
+    public <T> Optional<T> findMetadata(String namespace, Class<T> type) {
+        return SemTexts.findMetadata(metadata, namespace, type);
+    }
+
+    /**
+     * Returns the metadata under the given namespace cast to the given type.
+     *
+     * @throws eu.trentorise.opendata.semtext.exceptions.MetadataNotFoundException
+     * if there is no metadata under the namespace or it is not an instance of
+     * the given type.
+     * @since 1.1.0
+     */
+    public <T> T getMetadata(String namespace, Class<T> type) {
+        return SemTexts.getMetadata(this, metadata, namespace, type);
     }
 
     /**
@@ -136,6 +205,98 @@ public final class SemText implements Serializable, HasMetadata {
         return sentences;
     }
 
+    /**
+     * Returns the annotation layers, as a map from layer name to the terms of
+     * the layer.
+     *
+     * @since 1.1.0
+     */
+    public ImmutableMap<String, ImmutableList<Term>> getLayers() {
+        return layers;
+    }
+
+    /**
+     * Returns true if there is an annotation layer with the given name.
+     *
+     * @since 1.1.0
+     */
+    public boolean hasLayer(String layer) {
+        return layers.containsKey(layer);
+    }
+
+    /**
+     * Returns the terms of the given annotation layer, or an empty list if
+     * there is no such layer.
+     *
+     * @since 1.1.0
+     */
+    public ImmutableList<Term> terms(String layer) {
+        ImmutableList<Term> ret = layers.get(layer);
+        return ret == null ? ImmutableList.<Term>of() : ret;
+    }
+
+    /**
+     * Returns a copy of this object with the provided terms set as the given
+     * annotation layer, replacing existing layer with the same name, if any.
+     *
+     * @param layer a non-empty layer name
+     * @throws IllegalArgumentException if terms are not valid, non-overlapping
+     * spans within the text.
+     * @since 1.1.0
+     */
+    public SemText withLayer(String layer, Iterable<Term> terms) {
+        checkNotEmpty(layer, "Invalid layer name!");
+        SemTexts.checkSpans(terms, 0, text.length(), new LayerErrorMessage(layer));
+        return withLayerTrusted(layer, ImmutableList.copyOf(terms));
+    }
+
+    /**
+     * Error message for invalid terms of a layer, only built when the check
+     * fails.
+     */
+    private static final class LayerErrorMessage {
+
+        private final String layer;
+
+        private LayerErrorMessage(String layer) {
+            this.layer = layer;
+        }
+
+        @Override
+        public String toString() {
+            return "Invalid terms for layer " + layer + "!";
+        }
+    }
+
+    /**
+     * Returns a copy of this object without the given annotation layer.
+     *
+     * @since 1.1.0
+     */
+    public SemText withoutLayer(String layer) {
+        if (!layers.containsKey(layer)) {
+            return this;
+        }
+        ImmutableMap.Builder<String, ImmutableList<Term>> layersB = ImmutableMap.builder();
+        for (Map.Entry<String, ImmutableList<Term>> entry : layers.entrySet()) {
+            if (!entry.getKey().equals(layer)) {
+                layersB.put(entry);
+            }
+        }
+        SemText ret = new SemText(this);
+        ret.layers = layersB.build();
+        return ret;
+    }
+
+    /**
+     * Sets the layer without checking terms.
+     */
+    private SemText withLayerTrusted(String layer, ImmutableList<Term> terms) {
+        SemText ret = new SemText(this);
+        ret.layers = ImmutableMap.copyOf(TodUtils.putKey(layers, layer, terms));
+        return ret;
+    }
+
     /**
      * Gets the language of the whole text
      *
@@ -162,6 +323,79 @@ public final class SemText implements Serializable, HasMetadata {
         return text.substring(span.getStart(), span.getEnd());
     }
 
+    /**
+     * Returns a view of the text corresponding to a given span. Differently
+     * from {@link #getText(Span)}, characters are not copied. To obtain a
+     * string out of the view, call {@code toString()} on it.
+     *
+     * @throws IndexOutOfBoundsException if the span is not within the text.
+     * @since 1.1.0
+     */
+    public CharSequence textView(Span span) {
+        return TextView.of(text, span.getStart(), span.getEnd());
+    }
+
+    /**
+     * Returns whether the text of the given span is the same as
+     * {@code other}, without copying characters.
+     *
+     * @throws IndexOutOfBoundsException if the span is not within the text.
+     * @see SemTexts#regionMatches(java.lang.CharSequence, int, int, boolean,
+     * java.lang.CharSequence)
+     * @since 1.1.0
+     */
+    public boolean regionMatches(Span span, CharSequence other) {
+        return SemTexts.regionMatches(text, span.getStart(), span.getEnd(), false, other);
+    }
+
+    /**
+     * Returns whether the text of the given span is the same as
+     * {@code other}, optionally ignoring case and without copying characters.
+     *
+     * @throws IndexOutOfBoundsException if the span is not within the text.
+     * @see SemTexts#regionMatches(java.lang.CharSequence, int, int, boolean,
+     * java.lang.CharSequence)
+     * @since 1.1.0
+     */
+    public boolean regionMatches(boolean ignoreCase, Span span, CharSequence other) {
+        return SemTexts.regionMatches(text, span.getStart(), span.getEnd(), ignoreCase, other);
+    }
+
+    /**
+     * Returns the hash of the text of the given span, without copying
+     * characters. The result equals {@code getText(span).hashCode()}.
+     *
+     * @throws IndexOutOfBoundsException if the span is not within the text.
+     * @see SemTexts#hashText(java.lang.CharSequence, int, int)
+     * @since 1.1.0
+     */
+    public int textHashCode(Span span) {
+        return SemTexts.hashText(text, span.getStart(), span.getEnd());
+    }
+
+    /**
+     * Returns a view of the region [start, end) of this SemText. Sentences and
+     * terms are found by binary search and shared with this SemText, nothing
+     * is copied until the slice is {@link SemTextSlice#freeze() frozen} or
+     * serialized.
+     *
+     * @throws IndexOutOfBoundsException if the region is not within the text.
+     * @since 1.1.0
+     */
+    public SemTextSlice slice(int start, int end) {
+        return SemTextSlice.of(this, start, end);
+    }
+
+    /**
+     * Returns a view of the given span of this SemText.
+     *
+     * @see #slice(int, int)
+     * @since 1.1.0
+     */
+    public SemTextSlice slice(Span span) {
+        return SemTextSlice.of(this, span.getStart(), span.getEnd());
+    }
+
     /**
      * Returns an terms that walks through all the terms, regardless of the
      * sentences.
@@ -187,6 +421,137 @@ public final class SemText implements Serializable, HasMetadata {
         return deleteTerms(ranges);
     }
 
+    /**
+     * Returns a new SemText with all the terms intersecting an occurrence of
+     * any of the provided phrases deleted. Occurrences are the same that
+     * {@link #deleteTerms(java.util.regex.Pattern)} would find with the
+     * {@link Pattern#quote(java.lang.String) quoted} phrase, but all phrases
+     * are searched in a single pass over the text with an Aho-Corasick
+     * automaton and sentences are rebuilt only once.
+     *
+     * @throws IllegalArgumentException if a phrase is empty
+     * @since 1.1.0
+     */
+    public SemText deleteTermsByPhrases(Collection<String> phrases) {
+        checkNotNull(phrases);
+        SpanBuffer deletions = new SpanBuffer();
+        PhraseAutomaton.of(phrases).find(text, deletions);
+        return deleteTerms(deletions);
+    }
+
+    /**
+     * Returns a new SemText with all the terms matching any of the provided
+     * regexes deleted. The result is the same of calling
+     * {@link #deleteTerms(java.util.regex.Pattern)} with each pattern, but
+     * sentences are rebuilt only once. Literal patterns, that is patterns
+     * {@link Pattern#quote(java.lang.String) quoted}, compiled with
+     * {@link Pattern#LITERAL} or without special characters, are all searched
+     * together in a single pass over the text.
+     *
+     * @throws IllegalArgumentException if a pattern is empty
+     * @since 1.1.0
+     */
+    public SemText deleteTermsByPatterns(Collection<Pattern> patterns) {
+        checkNotNull(patterns);
+        SpanBuffer deletions = new SpanBuffer();
+        List<String> literals = new ArrayList();
+        for (Pattern pattern : patterns) {
+            checkNotNull(pattern);
+            checkNotEmpty(pattern.pattern(), "Pattern can't be empty!!");
+            String literal = literal(pattern);
+            if (literal == null) {
+                Matcher m = pattern.matcher(text);
+                while (m.find()) {
+                    deletions.add(m.start(), m.end());
+                }
+            } else if (!literal.isEmpty()) {
+                literals.add(literal);
+            }
+        }
+        if (!literals.isEmpty()) {
+            PhraseAutomaton.of(literals).find(text, deletions);
+        }
+        return deleteTerms(deletions);
+    }
+
+    /**
+     * Returns the string matched by the pattern if the pattern is a literal,
+     * null otherwise.
+     */
+    @Nullable
+    private static String literal(Pattern pattern) {
+        int flags = pattern.flags();
+        if ((flags & (Pattern.CASE_INSENSITIVE | Pattern.CANON_EQ)) != 0) {
+            return null;
+        }
+        String regex = pattern.pattern();
+        if ((flags & Pattern.LITERAL) != 0) {
+            return regex;
+        }
+        if (regex.startsWith("\\Q") && regex.endsWith("\\E") && regex.indexOf("\\E") == regex.length() - 2) {
+            return regex.substring(2, regex.length() - 2);
+        }
+        if ((flags & Pattern.COMMENTS) != 0) {
+            return null;
+        }
+        for (int i = 0; i < regex.length(); i++) {
+            if ("\\^$.|?*+()[]{}".indexOf(regex.charAt(i)) >= 0) {
+                return null;
+            }
+        }
+        return regex;
+    }
+
+    /**
+     * Deletes terms intersecting the spans of the buffer, rebuilding only the
+     * sentences having deleted terms.
+     */
+    private SemText deleteTerms(SpanBuffer deletions) {
+        long startNanos = Metrics.start(SemTextOperation.DELETE_TERMS);
+        deletions.normalize();
+        int examinedTerms = 0;
+        int deletedMeanings = 0;
+        boolean changed = false;
+        int d = 0;
+
+        ImmutableList.Builder<Sentence> sentencesB = ImmutableList.builder();
+        for (Sentence sentence : sentences) {
+            List<Term> terms = sentence.getTerms();
+            ImmutableList.Builder<Term> termsB = null;
+            for (int i = 0; i < terms.size(); i++) {
+                Term term = terms.get(i);
+                // terms are sorted, so deletions ending before current term can't touch next ones
+                while (d < deletions.size() && deletions.end(d) <= term.getStart()) {
+                    d++;
+                }
+                boolean deleted = d < deletions.size()
+                        && deletions.start(d) < term.getEnd()
+                        && term.getStart() < term.getEnd();
+                if (deleted) {
+                    if (termsB == null) {
+                        termsB = ImmutableList.builder();
+                        termsB.addAll(terms.subList(0, i));
+                    }
+                    deletedMeanings += term.getMeanings().size();
+                } else if (termsB != null) {
+                    termsB.add(term);
+                }
+            }
+            examinedTerms += terms.size();
+            if (termsB == null) {
+                sentencesB.add(sentence);
+            } else {
+                sentencesB.add(sentence.withTermsTrusted(termsB.build()));
+                changed = true;
+            }
+        }
+
+        SemText ret = changed ? withSentencesTrusted(sentencesB.build()) : this;
+        Metrics.record(SemTextOperation.DELETE_TERMS, startNanos, text.length(), sentences.size(), examinedTerms,
+                deletedMeanings, 0);
+        return ret;
+    }
+
     /**
      * Returns a copy of the this SemText without terms intersecting provided
      * ranges.
@@ -195,6 +560,8 @@ public final class SemText implements Serializable, HasMetadata {
     // note: Current version is inefficient, tried RangeMap.remove, but it only removes matching subsegments! 
     public SemText deleteTerms(Iterable<Range<Integer>> deletionRanges) {
         checkNotNull(deletionRanges);
+        long startNanos = Metrics.start(SemTextOperation.DELETE_TERMS);
+        int examinedTerms = 0;
 
         ImmutableList.Builder<Sentence> sentencesB = ImmutableList.builder();
 
@@ -204,45 +571,67 @@ public final class SemText implements Serializable, HasMetadata {
             rangeSet.add(r);
         }
 
+        int[] deletedMeanings = new int[1];
         for (Sentence sentence : sentences) {
-            ImmutableList.Builder<Term> termsB = ImmutableList.builder();
-            for (Term term : sentence.getTerms()) {
-                RangeSet<Integer> intersection = rangeSet.subRangeSet(SemTexts.spanToRange(term));
-                if (intersection.isEmpty()) {
-                    termsB.add(term);
-                }
-
-            }
-            sentencesB.add(sentence.withTerms(termsB.build()));
+            sentencesB.add(sentence.withTermsTrusted(deleteTerms(sentence.getTerms(), rangeSet, deletedMeanings)));
+            examinedTerms += sentence.getTerms().size();
         }
 
-        return this.withSentences(sentencesB.build());
+        SemText ret = this.withSentencesTrusted(sentencesB.build());
+        Metrics.record(SemTextOperation.DELETE_TERMS, startNanos, text.length(), sentences.size(), examinedTerms,
+                deletedMeanings[0], 0);
+        return ret;
     }
 
     /**
-     * @see #merge(java.lang.Iterable)
+     * Returns a copy of the this SemText without terms of the given annotation
+     * layer intersecting provided ranges. Terms in sentences and in other
+     * layers are kept.
+     *
+     * @since 1.1.0
      */
-    public SemText merge(Term... terms) {
-        return merge(Arrays.asList(terms));
+    public SemText deleteTerms(String layer, Iterable<Range<Integer>> deletionRanges) {
+        checkNotNull(deletionRanges);
+        if (!layers.containsKey(layer)) {
+            return this;
+        }
+        long startNanos = Metrics.start(SemTextOperation.DELETE_TERMS);
+
+        RangeSet<Integer> rangeSet = TreeRangeSet.create();
+        for (Range r : deletionRanges) {
+            rangeSet.add(r);
+        }
+
+        ImmutableList<Term> layerTerms = layers.get(layer);
+        int[] deletedMeanings = new int[1];
+        SemText ret = withLayerTrusted(layer, deleteTerms(layerTerms, rangeSet, deletedMeanings));
+        Metrics.record(SemTextOperation.DELETE_TERMS, startNanos, text.length(), sentences.size(), layerTerms.size(),
+                deletedMeanings[0], 0);
+        return ret;
     }
 
     /**
-     * Returns the terms enclosed by enclosingSpan as a new TreeRangeMap.
+     * Returns the terms not intersecting the range set, adding the number of
+     * meanings of deleted terms to {@code deletedMeanings[0]}.
      */
-    private static TreeRangeMap<Integer, Term> enclosingNewTerms(Span enclosingSpan, RangeMap<Integer, Term> termRanges) {
-        TreeRangeMap<Integer, Term> ret = TreeRangeMap.create();
-
-        Range enclosingRange = spanToRange(enclosingSpan);
-
-        RangeMap<Integer, Term> subRangeMap = termRanges.subRangeMap(enclosingRange);
-
-        for (Map.Entry<Range<Integer>, Term> termEntry : subRangeMap.asMapOfRanges().entrySet()) {
-            if (enclosingRange.encloses(spanToRange(termEntry.getValue()))) {
-                ret.put(termEntry.getKey(), termEntry.getValue());
+    private static ImmutableList<Term> deleteTerms(List<Term> terms, RangeSet<Integer> rangeSet, int[] deletedMeanings) {
+        ImmutableList.Builder<Term> termsB = ImmutableList.builder();
+        for (Term term : terms) {
+            RangeSet<Integer> intersection = rangeSet.subRangeSet(SemTexts.spanToRange(term));
+            if (intersection.isEmpty()) {
+                termsB.add(term);
+            } else {
+                deletedMeanings[0] += term.getMeanings().size();
             }
         }
+        return termsB.build();
+    }
 
-        return ret;
+    /**
+     * @see #merge(java.lang.Iterable)
+     */
+    public SemText merge(Term... terms) {
+        return merge(Arrays.asList(terms));
     }
 
     /**
@@ -255,47 +644,102 @@ public final class SemText implements Serializable, HasMetadata {
      *
      * Terms to merge which are outside of existing sentences will be ignored.
      */
-    // note: Current version is based on RangeMaps thus quite inefficient
     public SemText merge(Iterable<Term> termsToMerge) {
+        long startNanos = Metrics.start(SemTextOperation.MERGE);
+        int[] mergedMeanings = new int[1];
 
         SemTexts.checkSpans(termsToMerge, 0, text.length(), "Invalid spans for terms to merge!");
-
-        if (sentences.size() > 1) {
-            LOG.log(Level.WARNING, "Found more than one sentence while mergin terms into SemText {0}, output semtext will have only one sentence covering the whole text.", this.text);
-        }
+        List<Term> newTerms = nonEmptyTerms(termsToMerge, mergedMeanings);
 
         ImmutableList.Builder<Sentence> newSentenceB = ImmutableList.builder();
-
-        RangeMap<Integer, Term> termToMergeRanges = TreeRangeMap.create();
-
-        for (Term termToMerge : termsToMerge) {
-            termToMergeRanges.put(spanToRange(termToMerge), termToMerge);
-        }
-
+        // checked terms are sorted, so sentences and new terms are scanned once
+        int i = 0;
         for (Sentence sentence : sentences) {
+            while (i < newTerms.size() && newTerms.get(i).getStart() < sentence.getStart()) {
+                i++;
+            }
+            int from = i;
+            while (i < newTerms.size() && newTerms.get(i).getEnd() <= sentence.getEnd()) {
+                i++;
+            }
+            // terms crossing the sentence end are skipped by next sentence
+            newSentenceB.add(sentence.withTermsTrusted(
+                    mergeTerms(sentence.getTerms(), newTerms.subList(from, i))));
+        }
+        SemText ret = withSentencesTrusted(newSentenceB.build());
+        Metrics.record(SemTextOperation.MERGE, startNanos, text.length(), sentences.size(), Iterables.size(termsToMerge),
+                mergedMeanings[0], 0);
+        return ret;
+    }
 
-            RangeMap<Integer, Term> mergeRanges = enclosingNewTerms(sentence, termToMergeRanges);
-            Map<Range<Integer>, Term> mergeRangesMap = mergeRanges.asMapOfRanges();
+    /**
+     * Returns a copy of this SemText with the provided terms merged into the
+     * given annotation layer, which is created if missing. Merging follows the
+     * same rules of {@link #merge(java.lang.Iterable)}, with the whole text
+     * acting as the only sentence. Terms in sentences and in other layers are
+     * kept.
+     *
+     * @param layer a non-empty layer name
+     * @since 1.1.0
+     */
+    public SemText merge(String layer, Iterable<Term> termsToMerge) {
+        checkNotEmpty(layer, "Invalid layer name!");
+        long startNanos = Metrics.start(SemTextOperation.MERGE);
+        int[] mergedMeanings = new int[1];
 
-            for (Term origTerm : sentence.getTerms()) {
-                Term newTerm = mergeRangesMap.get(spanToRange(origTerm));
+        SemTexts.checkSpans(termsToMerge, 0, text.length(), "Invalid spans for terms to merge!");
+        List<Term> newTerms = nonEmptyTerms(termsToMerge, mergedMeanings);
 
-                if (newTerm == null) { // orig term doesn't coincide with new term
-                    if (mergeRanges.subRangeMap(spanToRange(origTerm)).asMapOfRanges().isEmpty()) {
-                        // origTerm does not overlap with new terms, add it                                                    
-                        mergeRanges.put(spanToRange(origTerm), origTerm);
-                    }
-                } else { // orig term coincides with new term, merge it
-                    mergeRanges.put(spanToRange(newTerm),
-                            newTerm.with(Iterables.concat(newTerm.getMeanings(), origTerm.getMeanings())));
-                }
+        SemText ret = withLayerTrusted(layer, mergeTerms(terms(layer), newTerms));
+        Metrics.record(SemTextOperation.MERGE, startNanos, text.length(), sentences.size(), Iterables.size(termsToMerge),
+                mergedMeanings[0], 0);
+        return ret;
+    }
 
+    /**
+     * Returns the terms to merge having a non-empty span, adding the number of
+     * meanings of all terms to {@code mergedMeanings[0]}. Empty terms are
+     * never merged.
+     */
+    private static List<Term> nonEmptyTerms(Iterable<Term> termsToMerge, int[] mergedMeanings) {
+        List<Term> ret = new ArrayList();
+        for (Term term : termsToMerge) {
+            if (term.getStart() < term.getEnd()) {
+                ret.add(term);
             }
+            mergedMeanings[0] += term.getMeanings().size();
+        }
+        return ret;
+    }
 
-            newSentenceB.add(sentence.withTerms(mergeRangesMap.values()));
-
+    /**
+     * Merges the sorted non-overlapping new terms with the sorted existing
+     * ones, and returns the resulting sorted terms. Existing terms with an
+     * empty span are dropped.
+     */
+    private static ImmutableList<Term> mergeTerms(List<Term> existingTerms, List<Term> newTerms) {
+        ImmutableList.Builder<Term> ret = ImmutableList.builder();
+        int j = 0;
+        for (Term origTerm : existingTerms) {
+            if (origTerm.getStart() == origTerm.getEnd()) {
+                continue;
+            }
+            while (j < newTerms.size() && newTerms.get(j).getEnd() <= origTerm.getStart()) {
+                ret.add(newTerms.get(j));
+                j++;
+            }
+            if (j == newTerms.size() || newTerms.get(j).getStart() >= origTerm.getEnd()) {
+                // origTerm does not overlap with new terms, add it
+                ret.add(origTerm);
+            } else if (SemTexts.spanEqual(newTerms.get(j), origTerm)) {
+                // orig term coincides with new term, merge it
+                Term newTerm = newTerms.get(j);
+                ret.add(newTerm.with(Iterables.concat(newTerm.getMeanings(), origTerm.getMeanings())));
+                j++;
+            }
         }
-        return withSentences(newSentenceB.build());
+        ret.addAll(newTerms.subList(j, newTerms.size()));
+        return ret.build();
     }
 
     /**
@@ -319,6 +763,7 @@ public final class SemText implements Serializable, HasMetadata {
 
         SemText ret = new SemText(this);
         ret.text = text;
+        ret.textFingerprint = null;
 
         if (!sentences.isEmpty()) {
             int lastSentenceEnd = Iterables.getLast(sentences).getEnd();
@@ -326,7 +771,40 @@ public final class SemText implements Serializable, HasMetadata {
                 throw new IllegalArgumentException("Tried to change text of semantic text, but last sentence end " + lastSentenceEnd + " exceeds provided text length! Semtext is\n:" + this + " \n new text to set is: " + text);
             }
         }
+        for (Map.Entry<String, ImmutableList<Term>> entry : layers.entrySet()) {
+            if (!entry.getValue().isEmpty() && Iterables.getLast(entry.getValue()).getEnd() > text.length()) {
+                throw new IllegalArgumentException("Tried to change text of semantic text, but last term of layer " + entry.getKey() + " exceeds provided text length! New text to set is: " + text);
+            }
+        }
+
+        return ret;
+    }
 
+    /**
+     * Returns a 128 bit fingerprint of the whole content of this SemText,
+     * stable across JVMs so it can be used as a persistent key. Differently
+     * from {@link #hashCode()} it is computed only at first call, from the
+     * cached fingerprints of sentences and terms, so a copy with one changed
+     * sentence only needs to hash that sentence.
+     *
+     * Metadata values may be null, strings, booleans, numbers, enums, locales,
+     * dictionaries, semtext objects, and maps, sets and iterables of them.
+     *
+     * @throws IllegalArgumentException if some metadata value is of another
+     * type.
+     * @since 1.1.0
+     */
+    public HashCode fingerprint() {
+        HashCode ret = fingerprint;
+        if (ret == null) {
+            HashCode textRet = textFingerprint;
+            if (textRet == null) {
+                textRet = Fingerprints.text(text);
+                textFingerprint = textRet;
+            }
+            ret = Fingerprints.semText(this, textRet);
+            fingerprint = ret;
+        }
         return ret;
     }
 
@@ -336,7 +814,8 @@ public final class SemText implements Serializable, HasMetadata {
         hash = 29 * hash + (this.text != null ? this.text.hashCode() : 0);
         hash = 29 * hash + (this.locale != null ? this.locale.hashCode() : 0);
         hash = 29 * hash + (this.sentences != null ? this.sentences.hashCode() : 0);
-        hash = 29 * hash + (this.metadata != null ? this.metadata.hashCode() : 0);
+        hash = 29 * hash + (this.metadata != null ? getMetadata().hashCode() : 0);
+        hash = 29 * hash + (this.layers != null ? this.layers.hashCode() : 0);
         return hash;
     }
 
@@ -358,15 +837,28 @@ public final class SemText implements Serializable, HasMetadata {
         if (this.sentences != other.sentences && (this.sentences == null || !this.sentences.equals(other.sentences))) {
             return false;
         }
-        if (this.metadata != other.metadata && (this.metadata == null || !this.metadata.equals(other.metadata))) {
+        if (!SemTexts.metadataEquals(this.metadata, other.metadata)) {
+            return false;
+        }
+        if (this.layers != other.layers && (this.layers == null || !this.layers.equals(other.layers))) {
             return false;
         }
         return true;
     }
 
+    /**
+     * SemTexts serialized before 1.1.0 have no layers.
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        if (layers == null) {
+            layers = ImmutableMap.of();
+        }
+    }
+
     @Override
     public String toString() {
-        return "SemText{" + "text=" + text + ", locale=" + locale + ", sentences=" + sentences + ", metadata=" + metadata + '}';
+        return "SemText{" + "text=" + text + ", locale=" + locale + ", sentences=" + sentences + ", metadata=" + metadata + ", layers=" + layers + '}';
     }
 
     /**
@@ -386,12 +878,237 @@ public final class SemText implements Serializable, HasMetadata {
      * will be ignored.
      */
     public SemText withSentences(Iterable<Sentence> sentences) {
+        long startNanos = Metrics.start(SemTextOperation.WITH_SENTENCES);
         SemText ret = new SemText(this);
         SemTexts.checkSpans(sentences, 0, text.length(), "Invalid sentences found!");
         ret.sentences = ImmutableList.copyOf(sentences);
+        if (startNanos != Metrics.DISABLED) {
+            int termCount = 0;
+            for (Sentence sentence : ret.sentences) {
+                termCount += sentence.getTerms().size();
+            }
+            Metrics.record(SemTextOperation.WITH_SENTENCES, startNanos, text.length(), ret.sentences.size(),
+                    termCount, 0, 0);
+        }
+        return ret;
+    }
+
+    /**
+     * Returns a copy of this object with the sentence at the given index
+     * replaced by the provided one. Only the new sentence is validated, against
+     * the text bounds and its neighbouring sentences, and all the other
+     * sentences are shared with this SemText, so the cost doesn't depend on
+     * the number of terms.
+     *
+     * @throws IndexOutOfBoundsException if there is no sentence at the given
+     * index
+     * @throws IllegalArgumentException if the new sentence exceeds the text or
+     * overlaps its neighbours
+     * @since 1.1.0
+     */
+    public SemText withSentence(int index, Sentence sentence) {
+        return withSentencesTrusted(
+                SemTexts.replaceSpan(sentences, index, sentence, 0, text.length(), "Invalid sentence!"));
+    }
+
+    /**
+     * Returns a copy of this object with the term at the given index replaced
+     * by the provided one. Terms are indexed as in {@link #terms()}, that is
+     * across all sentences. Only the new term is validated, against its
+     * sentence bounds and neighbouring terms, and all the other terms and
+     * sentences are shared with this SemText. The sentence of the term is found
+     * by binary search on the term counts of the sentences, which are computed
+     * once and kept by the returned copy, so a sequence of edits only copies
+     * the sentence references and the term references of the edited sentence.
+     *
+     * @throws IndexOutOfBoundsException if there is no term at the given index
+     * @throws IllegalArgumentException if the new term exceeds its sentence or
+     * overlaps its neighbours
+     * @since 1.1.0
+     */
+    public SemText withTerm(int termIndex, Term term) {
+        int[] offsets = termOffsets();
+        int i = sentenceOfTerm(termIndex);
+        if (i < 0) {
+            throw new IndexOutOfBoundsException("Tried to set term at index " + termIndex
+                    + ", but semText has only " + offsets[sentences.size()] + " terms");
+        }
+        Sentence sentence = sentences.get(i);
+        SemText ret = withSentencesTrusted(SemTexts.replaceSpan(sentences, i,
+                sentence.withTerm(termIndex - offsets[i], term), 0, text.length(), "Invalid sentence!"));
+        // sentences keep their number of terms
+        ret.termOffsets = offsets;
+        return ret;
+    }
+
+    /**
+     * Returns the index in {@link #terms()} of the first term of each
+     * sentence, followed by the number of terms. Computed at first call and
+     * then cached.
+     */
+    int[] termOffsets() {
+        int[] ret = termOffsets;
+        if (ret == null) {
+            ret = new int[sentences.size() + 1];
+            for (int i = 0; i < sentences.size(); i++) {
+                ret[i + 1] = ret[i] + sentences.get(i).getTerms().size();
+            }
+            termOffsets = ret;
+        }
+        return ret;
+    }
+
+    /**
+     * Returns the index of the sentence holding the term at the given index of
+     * {@link #terms()}, or -1 if there is no such term. The sentence is found
+     * by binary search on {@link #termOffsets()}.
+     */
+    int sentenceOfTerm(int termIndex) {
+        int[] offsets = termOffsets();
+        if (termIndex < 0 || termIndex >= offsets[sentences.size()]) {
+            return -1;
+        }
+        // last sentence whose first term is not after termIndex, skipping empty ones
+        int lo = 0;
+        int hi = sentences.size() - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (offsets[mid] <= termIndex) {
+                lo = mid;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * Returns a copy of this object with the provided sentences set, without
+     * validating them. Only to be used by transformations which are known to
+     * produce sentences already satisfying
+     * {@link SemTexts#checkSpans(java.lang.Iterable, int, int, java.lang.Object) checkSpans}
+     * with respect to the text, i.e. sentences with the same spans of the
+     * existing ones.
+     */
+    SemText withSentencesTrusted(ImmutableList<Sentence> sentences) {
+        SemText ret = new SemText(this);
+        ret.sentences = sentences;
         return ret;
     }
 
+    /**
+     * Creates a SemText with the provided fields set as they are. Only to be
+     * used when sentences and layers are already known to be valid.
+     */
+    static SemText ofTrusted(Locale locale, String text, ImmutableList<Sentence> sentences,
+            ImmutableMap<String, ?> metadata, ImmutableMap<String, ImmutableList<Term>> layers) {
+        SemText ret = new SemText();
+        ret.locale = locale;
+        ret.text = text;
+        ret.sentences = sentences;
+        ret.metadata = metadata;
+        ret.layers = layers;
+        return ret;
+    }
+
+    /**
+     * Splits this SemText at sentence boundaries into consecutive SemTexts,
+     * each with offsets starting from zero. Each piece holds as many
+     * consecutive sentences as fit in {@code maxChars} characters, while a
+     * sentence longer than {@code maxChars} makes a piece on its own. Text
+     * between sentences goes to the piece of the following sentence and text
+     * after the last sentence goes to the last piece. Pieces are never cut
+     * inside a term of an annotation layer, so they may exceed
+     * {@code maxChars} when layer terms cross sentences.
+     *
+     * Every piece gets the locale, the metadata and the layer names of this
+     * SemText, so that {@link SemTexts#concat(java.util.List) concatenating}
+     * the pieces gives back this SemText.
+     *
+     * @param maxChars the maximum number of characters of a piece, must be
+     * positive.
+     * @return this SemText alone if it is not longer than {@code maxChars} or
+     * it has less than two sentences.
+     * @since 1.1.0
+     */
+    public ImmutableList<SemText> split(int maxChars) {
+        if (maxChars <= 0) {
+            throw new IllegalArgumentException("Expected positive max chars, found instead " + maxChars);
+        }
+        if (text.length() <= maxChars || sentences.size() < 2) {
+            return ImmutableList.of(this);
+        }
+
+        List<ImmutableList<Term>> layerTerms = new ArrayList(layers.values());
+        // first layer term not yet put in a piece
+        int[] layerPos = new int[layerTerms.size()];
+        // first layer term ending after the candidate cut
+        int[] layerScan = new int[layerTerms.size()];
+
+        ImmutableList.Builder<SemText> retB = ImmutableList.builder();
+        int pieceStart = 0;
+        int firstSentence = 0;
+        for (int i = 1; i < sentences.size(); i++) {
+            int cut = sentences.get(i - 1).getEnd();
+            if (sentences.get(i).getEnd() - pieceStart <= maxChars
+                    || crossesLayerTerm(layerTerms, layerScan, cut)) {
+                continue;
+            }
+            retB.add(piece(pieceStart, cut, firstSentence, i, layerTerms, layerPos));
+            pieceStart = cut;
+            firstSentence = i;
+        }
+        retB.add(piece(pieceStart, text.length(), firstSentence, sentences.size(), layerTerms, layerPos));
+        return retB.build();
+    }
+
+    /**
+     * Returns true if a layer term starts before the given cut and ends after
+     * it. Cuts must be provided in increasing order.
+     */
+    private static boolean crossesLayerTerm(List<ImmutableList<Term>> layerTerms, int[] layerScan, int cut) {
+        boolean ret = false;
+        for (int k = 0; k < layerScan.length; k++) {
+            List<Term> terms = layerTerms.get(k);
+            while (layerScan[k] < terms.size() && terms.get(layerScan[k]).getEnd() <= cut) {
+                layerScan[k]++;
+            }
+            if (layerScan[k] < terms.size() && terms.get(layerScan[k]).getStart() < cut) {
+                ret = true;
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Cuts out the piece from {@code start} to {@code end}, taking the layer
+     * terms ending within it.
+     */
+    private SemText piece(int start, int end, int fromSentence, int toSentence,
+            List<ImmutableList<Term>> layerTerms, int[] layerPos) {
+
+        Sentence[] pieceSentences = new Sentence[toSentence - fromSentence];
+        for (int i = fromSentence; i < toSentence; i++) {
+            pieceSentences[i - fromSentence] = sentences.get(i).withOffsetTrusted(-start);
+        }
+
+        ImmutableMap.Builder<String, ImmutableList<Term>> layersB = ImmutableMap.builder();
+        int k = 0;
+        for (String layer : layers.keySet()) {
+            List<Term> terms = layerTerms.get(k);
+            ImmutableList.Builder<Term> termsB = ImmutableList.builder();
+            while (layerPos[k] < terms.size() && terms.get(layerPos[k]).getEnd() <= end) {
+                termsB.add(terms.get(layerPos[k]).withOffsetTrusted(-start));
+                layerPos[k]++;
+            }
+            layersB.put(layer, termsB.build());
+            k++;
+        }
+
+        return ofTrusted(locale, text.substring(start, end), ImmutableList.copyOf(pieceSentences), metadata,
+                layersB.build());
+    }
+
     /**
      * Returns a copy of this object with the provided metadata set under the
      * given namespace.
@@ -536,8 +1253,81 @@ public final class SemText implements Serializable, HasMetadata {
         return new SemText(locale, text, sentences, metadata);
     }
 
+    /**
+     * Creates a SemText with provided sentences, metadata and annotation
+     * layers.
+     *
+     * @param locale if unknown use {@link Locale#ROOT}
+     * @param metadata a map of immutable objects.
+     * @param layers a map from layer name to the terms of the layer. If null,
+     * there will be no layers.
+     * @throws IllegalArgumentException if the terms of a layer are not valid,
+     * non-overlapping spans within the text.
+     * @since 1.1.0
+     */
+    public static SemText ofSentences(Locale locale, String text, Iterable<Sentence> sentences, Map<String, ?> metadata,
+            @Nullable Map<String, ? extends Iterable<Term>> layers) {
+        SemText ret = new SemText(locale, text, sentences, metadata);
+        if (layers != null && !layers.isEmpty()) {
+            ImmutableMap.Builder<String, ImmutableList<Term>> layersB = ImmutableMap.builder();
+            for (Map.Entry<String, ? extends Iterable<Term>> entry : layers.entrySet()) {
+                checkNotEmpty(entry.getKey(), "Invalid layer name!");
+                ImmutableList<Term> terms = ImmutableList.copyOf(entry.getValue());
+                SemTexts.checkSpans(terms, 0, text.length(), new LayerErrorMessage(entry.getKey()));
+                layersB.put(entry.getKey(), terms);
+            }
+            ret.layers = layersB.build();
+        }
+        return ret;
+    }
+
     
 
+    /**
+     * Creates a SemText with sentences and terms built from parallel arrays of
+     * offsets, as typically given by tokenizers and sentence splitters. Terms
+     * have no meanings and status {@link MeaningStatus#TO_DISAMBIGUATE}, and
+     * each one goes into the sentence enclosing it. Offsets are validated in a
+     * single pass per array and objects are built without intermediate
+     * collections.
+     *
+     * @param locale if unknown use {@link Locale#ROOT}
+     * @param sentenceStarts start offsets of the sentences, sorted
+     * @param sentenceEnds end offsets of the sentences
+     * @param termStarts start offsets of the terms, sorted
+     * @param termEnds end offsets of the terms
+     * @throws IllegalArgumentException if spans are not valid, overlap, exceed
+     * the text or a term is not enclosed by any sentence.
+     * @since 1.1.0
+     */
+    public static SemText ofSpans(Locale locale, String text, int[] sentenceStarts, int[] sentenceEnds,
+            int[] termStarts, int[] termEnds) {
+        checkNotNull(text);
+        SemTexts.checkSpans(sentenceStarts, sentenceEnds, 0, text.length(), "Invalid sentences found!");
+        SemTexts.checkSpans(termStarts, termEnds, 0, text.length(), "Invalid terms found!");
+
+        Sentence[] sentences = new Sentence[sentenceStarts.length];
+        int termIndex = 0;
+        for (int j = 0; j < sentenceStarts.length; j++) {
+            int from = termIndex;
+            while (termIndex < termStarts.length && termEnds[termIndex] <= sentenceEnds[j]) {
+                if (termStarts[termIndex] < sentenceStarts[j]) {
+                    throw new IllegalArgumentException("Term [" + termStarts[termIndex] + "," + termEnds[termIndex]
+                            + ") is not enclosed by any sentence!");
+                }
+                termIndex++;
+            }
+            sentences[j] = Sentence.ofTrusted(sentenceStarts[j], sentenceEnds[j],
+                    Sentence.termsTrusted(termStarts, termEnds, from, termIndex));
+        }
+        if (termIndex < termStarts.length) {
+            throw new IllegalArgumentException("Term [" + termStarts[termIndex] + "," + termEnds[termIndex]
+                    + ") is not enclosed by any sentence!");
+        }
+
+        return new SemText(locale, text, ImmutableList.copyOf(sentences), SemTexts.EMPTY_METADATA);
+    }
+
     /**
      * Creates a SemText with provided terms, which will be put into a
      * {@link Sentence} spanning the whole text.
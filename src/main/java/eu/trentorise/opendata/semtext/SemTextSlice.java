@@ -0,0 +1,334 @@
+/*
+ * Copyright 2015 TrentoRISE  (trentorise.eu) .
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.trentorise.opendata.semtext;
+
+import static com.google.common.base.Preconditions.checkElementIndex;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkPositionIndexes;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import java.io.Serializable;
+import java.util.List;
+import java.util.Locale;
+import javax.annotation.ParametersAreNonnullByDefault;
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * Immutable view over a region of a {@link SemText}, obtained with
+ * {@link SemText#slice(int, int)}. The view shares text, sentences and terms
+ * with the parent SemText, so creating it costs only a few binary searches.
+ *
+ * The slice holds the sentences intersecting the region and the terms lying
+ * within it. Returned sentences and terms keep their offsets in the parent
+ * text: offsets relative to the slice are given by {@link #getStart(Span)} and
+ * {@link #getEnd(Span)}, which also clip sentences crossing the region bounds.
+ * A proper SemText with offsets starting from zero is built only by
+ * {@link #freeze()}, which is also what gets written when the slice is
+ * serialized.
+ *
+ * @author David Leoni
+ * @since 1.1.0
+ */
+@Immutable
+@ParametersAreNonnullByDefault
+public final class SemTextSlice implements Span, Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Binary search criteria, each one must be false for a prefix of sorted
+     * non-overlapping spans and true for the rest.
+     */
+    private enum Bound {
+        /**
+         * Span ends after the offset, or is empty at the offset.
+         */
+        INTERSECTING_FROM {
+            @Override
+            boolean test(Span span, int offset) {
+                return span.getEnd() > offset || (span.getStart() == offset && span.getEnd() == offset);
+            }
+        },
+        /**
+         * Span starts after the offset, or is not empty and starts at the
+         * offset.
+         */
+        INTERSECTING_TO {
+            @Override
+            boolean test(Span span, int offset) {
+                return span.getStart() > offset || (span.getStart() == offset && span.getEnd() > offset);
+            }
+        },
+        STARTING_FROM {
+            @Override
+            boolean test(Span span, int offset) {
+                return span.getStart() >= offset;
+            }
+        },
+        ENDING_AFTER {
+            @Override
+            boolean test(Span span, int offset) {
+                return span.getEnd() > offset;
+            }
+        };
+
+        abstract boolean test(Span span, int offset);
+
+        /**
+         * Returns the index of the first span satisfying this bound, or the
+         * size of the list if there is none.
+         */
+        int search(List<? extends Span> spans, int offset) {
+            int low = 0;
+            int high = spans.size();
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (test(spans.get(mid), offset)) {
+                    high = mid;
+                } else {
+                    low = mid + 1;
+                }
+            }
+            return low;
+        }
+    }
+
+    private final SemText semText;
+    private final int start;
+    private final int end;
+    private final ImmutableList<Sentence> sentences;
+
+    /**
+     * Index of the first term within the slice in the first sentence
+     */
+    private final int firstTermFrom;
+
+    /**
+     * Index after the last term within the slice in the last sentence
+     */
+    private final int lastTermTo;
+
+    private SemTextSlice(SemText semText, int start, int end) {
+        this.semText = semText;
+        this.start = start;
+        this.end = end;
+
+        ImmutableList<Sentence> parentSentences = semText.getSentences();
+        int fromSentence = Bound.INTERSECTING_FROM.search(parentSentences, start);
+        int toSentence = Math.max(fromSentence, Bound.INTERSECTING_TO.search(parentSentences, end));
+        this.sentences = parentSentences.subList(fromSentence, toSentence);
+
+        if (sentences.isEmpty()) {
+            this.firstTermFrom = 0;
+            this.lastTermTo = 0;
+        } else {
+            this.firstTermFrom = Bound.STARTING_FROM.search(sentences.get(0).getTerms(), start);
+            this.lastTermTo = Bound.ENDING_AFTER.search(sentences.get(sentences.size() - 1).getTerms(), end);
+        }
+    }
+
+    /**
+     * Creates a view of {@code semText} in the region [start, end)
+     *
+     * @throws IndexOutOfBoundsException if the region is not within the text.
+     */
+    static SemTextSlice of(SemText semText, int start, int end) {
+        checkNotNull(semText);
+        checkPositionIndexes(start, end, semText.getText().length());
+        return new SemTextSlice(semText, start, end);
+    }
+
+    /**
+     * Returns the SemText this slice is a view of.
+     */
+    public SemText getSemText() {
+        return semText;
+    }
+
+    /**
+     * Returns the start of the slice in the parent text.
+     */
+    @Override
+    public int getStart() {
+        return start;
+    }
+
+    /**
+     * Returns the end of the slice in the parent text.
+     */
+    @Override
+    public int getEnd() {
+        return end;
+    }
+
+    /**
+     * Returns the locale of the parent SemText.
+     */
+    public Locale getLocale() {
+        return semText.getLocale();
+    }
+
+    /**
+     * Returns the metadata of the parent SemText.
+     */
+    public ImmutableMap<String, ?> getMetadata() {
+        return semText.getMetadata();
+    }
+
+    /**
+     * Returns a view of the text of the slice. To obtain a string out of the
+     * view, call {@code toString()} on it.
+     */
+    public CharSequence getText() {
+        return TextView.of(semText.getText(), start, end);
+    }
+
+    /**
+     * Returns the sentences of the parent intersecting the slice. The first
+     * and the last one may cross the slice bounds.
+     */
+    public ImmutableList<Sentence> getSentences() {
+        return sentences;
+    }
+
+    /**
+     * Returns the terms of the i-th sentence of the slice lying within the
+     * slice.
+     *
+     * @throws IndexOutOfBoundsException if there is no such sentence.
+     */
+    public ImmutableList<Term> sentenceTerms(int i) {
+        checkElementIndex(i, sentences.size());
+        ImmutableList<Term> terms = sentences.get(i).getTerms();
+        int from = i == 0 ? firstTermFrom : 0;
+        int to = i == sentences.size() - 1 ? lastTermTo : terms.size();
+        return terms.subList(from, Math.max(from, to));
+    }
+
+    /**
+     * Returns the terms lying within the slice, regardless of the sentences.
+     * Term objects are the ones of the parent.
+     */
+    public ImmutableList<Term> terms() {
+        if (sentences.size() == 1) {
+            return sentenceTerms(0);
+        }
+        ImmutableList.Builder<Term> retB = ImmutableList.builder();
+        for (int i = 0; i < sentences.size(); i++) {
+            retB.addAll(sentenceTerms(i));
+        }
+        return retB.build();
+    }
+
+    /**
+     * Returns the terms of the given annotation layer lying within the slice,
+     * or an empty list if there is no such layer. Term objects are the ones of
+     * the parent.
+     */
+    public ImmutableList<Term> terms(String layer) {
+        ImmutableList<Term> terms = semText.terms(layer);
+        int from = Bound.STARTING_FROM.search(terms, start);
+        int to = Bound.ENDING_AFTER.search(terms, end);
+        return terms.subList(from, Math.max(from, to));
+    }
+
+    /**
+     * Returns the start of the given span relative to the slice, clipped to
+     * the slice bounds.
+     */
+    public int getStart(Span span) {
+        return Math.min(Math.max(span.getStart(), start), end) - start;
+    }
+
+    /**
+     * Returns the end of the given span relative to the slice, clipped to the
+     * slice bounds.
+     */
+    public int getEnd(Span span) {
+        return Math.max(Math.min(span.getEnd(), end), start) - start;
+    }
+
+    /**
+     * Returns a new SemText holding the text of the slice, with offsets
+     * starting from zero. Sentences crossing the slice bounds are clipped to
+     * the slice, layers and metadata are kept.
+     */
+    public SemText freeze() {
+        Sentence[] frozenSentences = new Sentence[sentences.size()];
+        for (int i = 0; i < frozenSentences.length; i++) {
+            Sentence sentence = sentences.get(i);
+            if (sentence.getStart() >= start && sentence.getEnd() <= end) {
+                frozenSentences[i] = sentence.withOffsetTrusted(-start);
+            } else {
+                ImmutableList<Term> terms = sentenceTerms(i);
+                Term[] frozenTerms = new Term[terms.size()];
+                for (int j = 0; j < frozenTerms.length; j++) {
+                    frozenTerms[j] = terms.get(j).withOffsetTrusted(-start);
+                }
+                frozenSentences[i] = sentence.withSpanTrusted(getStart(sentence), getEnd(sentence),
+                        ImmutableList.copyOf(frozenTerms));
+            }
+        }
+
+        ImmutableMap.Builder<String, ImmutableList<Term>> layersB = ImmutableMap.builder();
+        for (String layer : semText.getLayers().keySet()) {
+            ImmutableList.Builder<Term> termsB = ImmutableList.builder();
+            for (Term term : terms(layer)) {
+                termsB.add(term.withOffsetTrusted(-start));
+            }
+            layersB.put(layer, termsB.build());
+        }
+
+        return SemText.ofTrusted(semText.getLocale(), semText.getText().substring(start, end),
+                ImmutableList.copyOf(frozenSentences), semText.getMetadata(), layersB.build());
+    }
+
+    /**
+     * Slices are serialized as the SemText returned by {@link #freeze()}
+     */
+    private Object writeReplace() {
+        return freeze();
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 7;
+        hash = 29 * hash + this.semText.hashCode();
+        hash = 29 * hash + this.start;
+        hash = 29 * hash + this.end;
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == null) {
+            return false;
+        }
+        if (getClass() != obj.getClass()) {
+            return false;
+        }
+        final SemTextSlice other = (SemTextSlice) obj;
+        return this.start == other.start
+                && this.end == other.end
+                && (this.semText == other.semText || this.semText.equals(other.semText));
+    }
+
+    @Override
+    public String toString() {
+        return "SemTextSlice{" + "start=" + start + ", end=" + end + ", text=" + getText() + ", sentences="
+                + sentences.size() + '}';
+    }
+}
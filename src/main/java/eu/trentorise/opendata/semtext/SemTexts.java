@@ -15,22 +15,31 @@
  */
 package eu.trentorise.opendata.semtext;
 
-import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkElementIndex;
 import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkPositionIndexes;
+import com.google.common.base.Function;
+import com.google.common.base.Optional;
+import com.google.common.collect.AbstractIterator;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Range;
 import eu.trentorise.opendata.commons.Dict;
 import eu.trentorise.opendata.commons.TodUtils;
+import eu.trentorise.opendata.semtext.catalog.MeaningCatalog;
+import eu.trentorise.opendata.semtext.exceptions.MetadataNotFoundException;
 import eu.trentorise.opendata.semtext.exceptions.SemTextNotFoundException;
+import eu.trentorise.opendata.semtext.metrics.Metrics;
+import eu.trentorise.opendata.semtext.metrics.SemTextOperation;
 
-import static eu.trentorise.opendata.commons.validation.Preconditions.checkNotEmpty;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -75,6 +84,16 @@ public final class SemTexts {
 	 */
 	@Nullable
 	public static Meaning disambiguate(Iterable<Meaning> meanings) {
+		long startNanos = Metrics.start(SemTextOperation.DISAMBIGUATE);
+		Meaning ret = disambiguateMeanings(meanings);
+		if (startNanos != Metrics.DISABLED) {
+			Metrics.record(SemTextOperation.DISAMBIGUATE, startNanos, 1, Iterables.size(meanings), 0);
+		}
+		return ret;
+	}
+
+	@Nullable
+	private static Meaning disambiguateMeanings(Iterable<Meaning> meanings) {
 
 		if (Iterables.isEmpty(meanings)) {
 			return null;
@@ -119,12 +138,20 @@ public final class SemTexts {
 	 */
 	public static void checkMeaningStatus(@Nullable MeaningStatus meaningStatus, @Nullable Meaning selectedMeaning,
 			@Nullable Object prependedErrorMessage) {
-		checkArgument(meaningStatus != null, "%s -- meaningStatus is null!", prependedErrorMessage);
+		// messages are only built on failure, as these checks are run for each term
+		if (meaningStatus == null) {
+			throw new IllegalArgumentException(String.valueOf(prependedErrorMessage) + " -- meaningStatus is null!");
+		}
 		if (MeaningStatus.SELECTED.equals(meaningStatus) || MeaningStatus.REVIEWED.equals(meaningStatus)) {
-			checkArgument(selectedMeaning != null, String.valueOf(prependedErrorMessage)
-					+ " -- Reason: Selected meaning can't be null when status is " + meaningStatus);
-			checkNotEmpty(selectedMeaning.getId(), String.valueOf(prependedErrorMessage)
-					+ " -- Reason: Selected meaning must have a valid id when status is " + meaningStatus);
+			if (selectedMeaning == null) {
+				throw new IllegalArgumentException(String.valueOf(prependedErrorMessage)
+						+ " -- Reason: Selected meaning can't be null when status is " + meaningStatus);
+			}
+			String id = selectedMeaning.getId();
+			if (id == null || id.isEmpty()) {
+				throw new IllegalArgumentException(String.valueOf(prependedErrorMessage)
+						+ " -- Reason: Selected meaning must have a valid id when status is " + meaningStatus);
+			}
 		} else {
 			if (selectedMeaning != null) {
 				throw new IllegalArgumentException(String.valueOf(prependedErrorMessage)
@@ -194,8 +221,10 @@ public final class SemTexts {
 	 *             on invalid span.
 	 */
 	public static void checkSpan(int startOffset, int endOffset, @Nullable Object prependedErrorMessage) {
-		checkArgument(startOffset >= 0 && startOffset <= endOffset, "%s -- Reason: invalid bounds [%s , %s)",
-				prependedErrorMessage, startOffset, endOffset);
+		if (startOffset < 0 || startOffset > endOffset) {
+			throw new IllegalArgumentException(String.valueOf(prependedErrorMessage) + " -- Reason: invalid bounds ["
+					+ startOffset + " , " + endOffset + ")");
+		}
 	}
 
 	/**
@@ -217,25 +246,21 @@ public final class SemTexts {
 	public static void checkSpans(Iterable<? extends Span> spans, int leftOffset, int rightOffset,
 			@Nullable Object prependedErrorMessage) {
 
-		checkArgument(spans != null, "%s -- spans are null!", prependedErrorMessage);
-		checkSpan(leftOffset, rightOffset, prependedErrorMessage);
-
-		// check containment
-		if (!Iterables.isEmpty(spans)) {
-			int lowerBound = Iterables.getFirst(spans, null).getStart();
-			int upperBound = Iterables.getLast(spans).getEnd();
-			if (lowerBound < leftOffset || upperBound > rightOffset) {
-				throw new IllegalArgumentException(String.valueOf(prependedErrorMessage)
-						+ " -- Reason: Provided spans exceed container span! Expected: [" + leftOffset + ","
-						+ rightOffset + "] - Found: [" + lowerBound + "," + upperBound + "]");
-			}
+		if (spans == null) {
+			throw new IllegalArgumentException(String.valueOf(prependedErrorMessage) + " -- spans are null!");
 		}
+		checkSpan(leftOffset, rightOffset, prependedErrorMessage);
 
-		// check overlaps
+		// containment and overlaps are checked in one pass, so non-List iterables are traversed only once
 		@Nullable
 		Span lastSpan = null;
 		for (Span span : spans) {
 			checkSpan(span.getStart(), span.getEnd(), prependedErrorMessage);
+			if (span.getStart() < leftOffset || span.getEnd() > rightOffset) {
+				throw new IllegalArgumentException(String.valueOf(prependedErrorMessage)
+						+ " -- Reason: Provided spans exceed container span! Expected: [" + leftOffset + ","
+						+ rightOffset + "] - Found: [" + span.getStart() + "," + span.getEnd() + "]");
+			}
 			if (lastSpan != null && lastSpan.getEnd() > span.getStart()) {
 			    if (lastSpan.getStart() >= span.getEnd()){
 			        throw new IllegalArgumentException(String.valueOf(prependedErrorMessage)
@@ -251,6 +276,95 @@ public final class SemTexts {
 
 	}
 
+	/**
+	 * Returns a copy of the provided valid spans with the span at the given
+	 * index replaced. As the other spans are already valid, only the new span is
+	 * checked, against its neighbours and the container bounds, with the rules
+	 * of {@link #checkSpans(Iterable, int, int, Object)}. Spans are shared with
+	 * the provided list.
+	 *
+	 * @throws IndexOutOfBoundsException
+	 *             if index is not an index of spans
+	 * @throws IllegalArgumentException
+	 *             on invalid span
+	 */
+	static <T extends Span> ImmutableList<T> replaceSpan(ImmutableList<T> spans, int index, T span,
+			int leftOffset, int rightOffset, @Nullable Object prependedErrorMessage) {
+		checkElementIndex(index, spans.size());
+		checkNotNull(span);
+
+		List<Span> neighbourhood = new ArrayList(3);
+		if (index > 0) {
+			neighbourhood.add(spans.get(index - 1));
+		}
+		neighbourhood.add(span);
+		if (index + 1 < spans.size()) {
+			neighbourhood.add(spans.get(index + 1));
+		}
+		checkSpans(neighbourhood, leftOffset, rightOffset, prependedErrorMessage);
+
+		ImmutableList.Builder<T> retB = ImmutableList.builder();
+		retB.addAll(spans.subList(0, index));
+		retB.add(span);
+		retB.addAll(spans.subList(index + 1, spans.size()));
+		return retB.build();
+	}
+
+	/**
+	 * Checks spans given as parallel arrays of start and end offsets, with the
+	 * same rules of {@link #checkSpans(Iterable, int, int, Object)}.
+	 *
+	 * @param prependedErrorMessage
+	 *            the exception message to use if the check fails; will be
+	 *            converted to a string using String.valueOf(Object) and
+	 *            prepended to more specific error messages.
+	 *
+	 * @throws IllegalArgumentException
+	 *             on invalid spans or arrays of different length
+	 * @since 1.1.0
+	 */
+	public static void checkSpans(int[] starts, int[] ends, int leftOffset, int rightOffset,
+			@Nullable Object prependedErrorMessage) {
+		if (starts == null || ends == null) {
+			throw new IllegalArgumentException(String.valueOf(prependedErrorMessage) + " -- span offsets are null!");
+		}
+		if (starts.length != ends.length) {
+			throw new IllegalArgumentException(String.valueOf(prependedErrorMessage)
+					+ " -- Reason: found " + starts.length + " start offsets and " + ends.length + " end offsets");
+		}
+		checkSpan(leftOffset, rightOffset, prependedErrorMessage);
+		if (starts.length == 0) {
+			return;
+		}
+
+		// branch free loop: raw offsets are or-ed in too, because once they are all
+		// non-negative differences can't overflow and a negative one sets the sign bit
+		int violations = starts[0] | ends[0] | (starts[0] - leftOffset) | (ends[0] - starts[0])
+				| (rightOffset - ends[0]);
+		for (int i = 1; i < starts.length; i++) {
+			violations |= starts[i] | ends[i] | (starts[i] - ends[i - 1]) | (ends[i] - starts[i])
+					| (rightOffset - ends[i]);
+		}
+		if (violations >= 0) {
+			return;
+		}
+
+		// slow path, only for building the error message
+		for (int i = 0; i < starts.length; i++) {
+			checkSpan(starts[i], ends[i], prependedErrorMessage);
+			if (starts[i] < leftOffset || ends[i] > rightOffset) {
+				throw new IllegalArgumentException(String.valueOf(prependedErrorMessage)
+						+ " -- Reason: Provided spans exceed container span! Expected: [" + leftOffset + ","
+						+ rightOffset + "] - Found at index " + i + ": [" + starts[i] + "," + ends[i] + "]");
+			}
+			if (i > 0 && ends[i - 1] > starts[i]) {
+				throw new IllegalArgumentException(String.valueOf(prependedErrorMessage)
+						+ " -- Found overlapping or out-of-order span at index " + i + ": [" + starts[i] + ","
+						+ ends[i] + "] comes after [" + starts[i - 1] + "," + ends[i - 1] + "]");
+			}
+		}
+	}
+
 	/**
 	 * Creates a Dict out of the provided semantic texts.
 	 */
@@ -276,6 +390,64 @@ public final class SemTexts {
 		return retb.build();
 	}
 
+	/**
+	 * Concatenates the provided SemTexts into one, moving the spans of
+	 * sentences and layer terms of each SemText after the text of the previous
+	 * ones. Locale and metadata are taken from the first SemText, layers with
+	 * the same name are joined. This is the inverse of
+	 * {@link SemText#split(int)}.
+	 *
+	 * @return the concatenated SemText, or {@link SemText#of()} if no SemText
+	 *         is provided.
+	 * @since 1.1.0
+	 */
+	public static SemText concat(List<SemText> semTexts) {
+		checkNotNull(semTexts);
+		if (semTexts.isEmpty()) {
+			return SemText.of();
+		}
+		if (semTexts.size() == 1) {
+			return checkNotNull(semTexts.get(0));
+		}
+
+		int textLength = 0;
+		int sentenceCount = 0;
+		for (SemText semText : semTexts) {
+			textLength += semText.getText().length();
+			sentenceCount += semText.getSentences().size();
+		}
+
+		StringBuilder textB = new StringBuilder(textLength);
+		Sentence[] sentences = new Sentence[sentenceCount];
+		Map<String, ImmutableList.Builder<Term>> layerBuilders = new LinkedHashMap();
+		int sentenceIndex = 0;
+		for (SemText semText : semTexts) {
+			int offset = textB.length();
+			textB.append(semText.getText());
+			for (Sentence sentence : semText.getSentences()) {
+				sentences[sentenceIndex++] = sentence.withOffsetTrusted(offset);
+			}
+			for (Map.Entry<String, ImmutableList<Term>> entry : semText.getLayers().entrySet()) {
+				ImmutableList.Builder<Term> termsB = layerBuilders.get(entry.getKey());
+				if (termsB == null) {
+					termsB = ImmutableList.builder();
+					layerBuilders.put(entry.getKey(), termsB);
+				}
+				for (Term term : entry.getValue()) {
+					termsB.add(term.withOffsetTrusted(offset));
+				}
+			}
+		}
+
+		ImmutableMap.Builder<String, ImmutableList<Term>> layersB = ImmutableMap.builder();
+		for (Map.Entry<String, ImmutableList.Builder<Term>> entry : layerBuilders.entrySet()) {
+			layersB.put(entry.getKey(), entry.getValue().build());
+		}
+		SemText first = semTexts.get(0);
+		return SemText.ofTrusted(first.getLocale(), textB.toString(), ImmutableList.copyOf(sentences),
+				first.getMetadata(), layersB.build());
+	}
+
 	/**
 	 * A new immutable list of sorted meanings is returned with the provided
 	 * meanings merged to the existing ones. The first one has highest prob and
@@ -283,6 +455,7 @@ public final class SemTexts {
 	 * equals an existing meaning it will replace it.
 	 */
 	public static ImmutableList<Meaning> mergeMeanings(Iterable<Meaning> oldMeanings, Iterable<Meaning> newMeanings) {
+		long startNanos = Metrics.start(SemTextOperation.MERGE_MEANINGS);
 
 		Set<Meaning> dedupMeanings = new HashSet();
 
@@ -311,7 +484,9 @@ public final class SemTexts {
 
 		Collections.sort(mgs, Collections.reverseOrder());
 
-		return ImmutableList.copyOf(mgs);
+		ImmutableList<Meaning> ret = ImmutableList.copyOf(mgs);
+		Metrics.record(SemTextOperation.MERGE_MEANINGS, startNanos, 1, ret.size(), 0);
+		return ret;
 	}
 
 	/**
@@ -334,6 +509,221 @@ public final class SemTexts {
 		return span1.getStart() == span2.getStart() && span1.getEnd() == span2.getEnd();
 	}
 
+	/**
+	 * Returns the pairs (a, b) of spans such that {@code a} encloses {@code b},
+	 * that is {@code a.start <= b.start} and {@code b.end <= a.end}. Note an
+	 * empty span is enclosed also by spans just touching it.
+	 *
+	 * Both lists must be sorted and non-overlapping, like the terms of a
+	 * sentence, of a layer or the ones returned by {@link SemText#terms()}.
+	 * Pairs are found with a single merge-like sweep over the two lists in
+	 * O(n + m + k) time, and are streamed out ordered by {@code a} and then by
+	 * {@code b}. Lists should provide fast random access.
+	 *
+	 * @throws IllegalArgumentException
+	 *             while iterating, if a list is found not sorted or
+	 *             overlapping.
+	 * @since 1.1.0
+	 */
+	public static <A extends Span, B extends Span> Iterable<Map.Entry<A, B>> enclosing(List<? extends A> spansA,
+			List<? extends B> spansB) {
+		return joinSpans(spansA, spansB, SpanJoin.ENCLOSING);
+	}
+
+	/**
+	 * Returns the pairs (a, b) of spans such that {@code a} is enclosed by
+	 * {@code b}. Input and output follow the same rules of
+	 * {@link #enclosing(java.util.List, java.util.List) enclosing}.
+	 *
+	 * @since 1.1.0
+	 */
+	public static <A extends Span, B extends Span> Iterable<Map.Entry<A, B>> enclosedBy(List<? extends A> spansA,
+			List<? extends B> spansB) {
+		return joinSpans(spansA, spansB, SpanJoin.ENCLOSED_BY);
+	}
+
+	/**
+	 * Returns the pairs (a, b) of spans sharing at least one character, so empty
+	 * spans never overlap. Input and output follow the same rules of
+	 * {@link #enclosing(java.util.List, java.util.List) enclosing}.
+	 *
+	 * @since 1.1.0
+	 */
+	public static <A extends Span, B extends Span> Iterable<Map.Entry<A, B>> overlapping(List<? extends A> spansA,
+			List<? extends B> spansB) {
+		return joinSpans(spansA, spansB, SpanJoin.OVERLAPPING);
+	}
+
+	/**
+	 * Returns the pairs (a, b) of spans having equal boundaries. Input and
+	 * output follow the same rules of
+	 * {@link #enclosing(java.util.List, java.util.List) enclosing}.
+	 *
+	 * @since 1.1.0
+	 */
+	public static <A extends Span, B extends Span> Iterable<Map.Entry<A, B>> exactMatch(List<? extends A> spansA,
+			List<? extends B> spansB) {
+		return joinSpans(spansA, spansB, SpanJoin.EXACT_MATCH);
+	}
+
+	private enum SpanJoin {
+		ENCLOSING {
+			@Override
+			boolean matches(Span a, Span b) {
+				return a.getStart() <= b.getStart() && b.getEnd() <= a.getEnd();
+			}
+		},
+		ENCLOSED_BY {
+			@Override
+			boolean matches(Span a, Span b) {
+				return b.getStart() <= a.getStart() && a.getEnd() <= b.getEnd();
+			}
+		},
+		OVERLAPPING {
+			@Override
+			boolean matches(Span a, Span b) {
+				return Math.max(a.getStart(), b.getStart()) < Math.min(a.getEnd(), b.getEnd());
+			}
+		},
+		EXACT_MATCH {
+			@Override
+			boolean matches(Span a, Span b) {
+				return spanEqual(a, b);
+			}
+		};
+
+		/**
+		 * All the relations only hold between spans touching or overlapping
+		 * each other.
+		 */
+		abstract boolean matches(Span a, Span b);
+	}
+
+	private static void checkJoinOrder(Span previous, Span span) {
+		if (previous.getEnd() > span.getStart()) {
+			throw new IllegalArgumentException("Spans to join must be sorted and non-overlapping! Found span:\n "
+					+ previous + " followed by span:\n " + span);
+		}
+	}
+
+	private static <A extends Span, B extends Span> Iterable<Map.Entry<A, B>> joinSpans(
+			final List<? extends A> spansA, final List<? extends B> spansB, final SpanJoin join) {
+		checkNotNull(spansA);
+		checkNotNull(spansB);
+
+		return new Iterable<Map.Entry<A, B>>() {
+			@Override
+			public Iterator<Map.Entry<A, B>> iterator() {
+				return new AbstractIterator<Map.Entry<A, B>>() {
+					/** current span in A */
+					int i = 0;
+					/** first span in B which may touch current span in A */
+					int lo = 0;
+					/** next span in B to compare, -1 if current span in A is not positioned yet */
+					int j = -1;
+					/** number of spans in B already checked for order */
+					int checkedB = 0;
+
+					private B spanB(int k) {
+						B b = spansB.get(k);
+						if (k == checkedB) {
+							if (k > 0) {
+								checkJoinOrder(spansB.get(k - 1), b);
+							}
+							checkedB++;
+						}
+						return b;
+					}
+
+					@Override
+					protected Map.Entry<A, B> computeNext() {
+						while (i < spansA.size()) {
+							A a = spansA.get(i);
+							if (j < 0) {
+								if (i > 0) {
+									checkJoinOrder(spansA.get(i - 1), a);
+								}
+								// ends in B are sorted too, so spans skipped here can't touch next spans in A
+								while (lo < spansB.size() && spanB(lo).getEnd() < a.getStart()) {
+									lo++;
+								}
+								j = lo;
+							}
+							while (j < spansB.size()) {
+								B b = spanB(j);
+								if (b.getStart() > a.getEnd()) {
+									break;
+								}
+								j++;
+								if (join.matches(a, b)) {
+									return Maps.immutableEntry(a, b);
+								}
+							}
+							i++;
+							j = -1;
+						}
+						return endOfData();
+					}
+				};
+			}
+		};
+	}
+
+	/**
+	 * Returns the hash of the characters of {@code text} in the region [start,
+	 * end) without copying them. The result is the same {@link String#hashCode()}
+	 * would give on {@code text.subSequence(start, end).toString()}, so it can be
+	 * compared with the hash codes of dictionary strings.
+	 *
+	 * @throws IndexOutOfBoundsException
+	 *             if the region is not within the text.
+	 * @since 1.1.0
+	 */
+	public static int hashText(CharSequence text, int start, int end) {
+		checkPositionIndexes(start, end, text.length());
+		int hash = 0;
+		for (int i = start; i < end; i++) {
+			hash = 31 * hash + text.charAt(i);
+		}
+		return hash;
+	}
+
+	/**
+	 * Returns whether the characters of {@code text} in the region [start, end)
+	 * are the same as the ones in {@code other}, without copying them.
+	 *
+	 * @param ignoreCase
+	 *            if true, characters are compared like in
+	 *            {@link String#regionMatches(boolean, int, String, int, int)}
+	 *
+	 * @throws IndexOutOfBoundsException
+	 *             if the region is not within the text.
+	 * @since 1.1.0
+	 */
+	public static boolean regionMatches(CharSequence text, int start, int end, boolean ignoreCase,
+			CharSequence other) {
+		checkPositionIndexes(start, end, text.length());
+		if (other.length() != end - start) {
+			return false;
+		}
+		for (int i = start, j = 0; i < end; i++, j++) {
+			char c1 = text.charAt(i);
+			char c2 = other.charAt(j);
+			if (c1 == c2) {
+				continue;
+			}
+			if (ignoreCase) {
+				char u1 = Character.toUpperCase(c1);
+				char u2 = Character.toUpperCase(c2);
+				if (u1 == u2 || Character.toLowerCase(u1) == Character.toLowerCase(u2)) {
+					continue;
+				}
+			}
+			return false;
+		}
+		return true;
+	}
+
 
 	/**
 	 * If the semtext contains only one term, it is returned (the termneeds not
@@ -411,4 +801,250 @@ public final class SemTexts {
 		throw new SemTextNotFoundException("Couldn't find any meaning in semtext " + semText);
 	}
 
+	/**
+	 * Returns the actual value of metadata, decoding it if it is
+	 * {@link LazyMetadata}.
+	 *
+	 * @since 1.1.0
+	 */
+	public static Object resolveMetadata(Object metadata) {
+		checkNotNull(metadata);
+		if (metadata instanceof LazyMetadata) {
+			return ((LazyMetadata) metadata).resolve();
+		} else {
+			return metadata;
+		}
+	}
+
+	/**
+	 * Returns the metadata map with all {@link LazyMetadata} values resolved,
+	 * or the map itself if it has none.
+	 */
+	static ImmutableMap<String, ?> resolveAllMetadata(ImmutableMap<String, ?> metadata) {
+		boolean lazy = false;
+		for (Object value : metadata.values()) {
+			if (value instanceof LazyMetadata) {
+				lazy = true;
+				break;
+			}
+		}
+		if (!lazy) {
+			return metadata;
+		}
+		ImmutableMap.Builder<String, Object> retb = ImmutableMap.builder();
+		for (Map.Entry<String, ?> entry : metadata.entrySet()) {
+			retb.put(entry.getKey(), resolveMetadata(entry.getValue()));
+		}
+		return retb.build();
+	}
+
+	/**
+	 * Returns the metadata under the namespace, resolving it if lazy.
+	 *
+	 * @throws MetadataNotFoundException if there is no such metadata.
+	 */
+	static Object getMetadata(HasMetadata holder, Map<String, ?> metadata, String namespace) {
+		Object ret = metadata.get(namespace);
+		if (ret == null) {
+			throw new MetadataNotFoundException(namespace, holder);
+		}
+		return resolveMetadata(ret);
+	}
+
+	static Optional<Object> findMetadata(Map<String, ?> metadata, String namespace) {
+		Object ret = metadata.get(namespace);
+		if (ret == null) {
+			return Optional.absent();
+		}
+		return Optional.of(resolveMetadata(ret));
+	}
+
+	static <T> Optional<T> findMetadata(Map<String, ?> metadata, String namespace, Class<T> type) {
+		checkNotNull(type);
+		Object ret = metadata.get(namespace);
+		if (ret == null) {
+			return Optional.absent();
+		}
+		ret = resolveMetadata(ret);
+		if (type.isInstance(ret)) {
+			return Optional.of(type.cast(ret));
+		} else {
+			return Optional.absent();
+		}
+	}
+
+	/**
+	 * @throws MetadataNotFoundException if there is no such metadata or it is
+	 * not of the given type.
+	 */
+	static <T> T getMetadata(HasMetadata holder, Map<String, ?> metadata, String namespace, Class<T> type) {
+		checkNotNull(type);
+		Object ret = getMetadata(holder, metadata, namespace);
+		if (type.isInstance(ret)) {
+			return type.cast(ret);
+		} else {
+			throw new MetadataNotFoundException(namespace, holder, type, ret.getClass());
+		}
+	}
+
+	/**
+	 * Compares metadata maps, resolving {@link LazyMetadata} values.
+	 */
+	static boolean metadataEquals(@Nullable Map<String, ?> metadata1, @Nullable Map<String, ?> metadata2) {
+		if (metadata1 == metadata2) {
+			return true;
+		}
+		if (metadata1 == null || metadata2 == null || metadata1.size() != metadata2.size()) {
+			return false;
+		}
+		for (Map.Entry<String, ?> entry : metadata1.entrySet()) {
+			Object value2 = metadata2.get(entry.getKey());
+			if (value2 == null) {
+				return false;
+			}
+			if (!resolveMetadata(entry.getValue()).equals(resolveMetadata(value2))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns a copy of the meaning without name and description, or the
+	 * meaning itself if it has neither.
+	 *
+	 * @see #compactMeanings(SemText)
+	 * @since 1.1.0
+	 */
+	public static Meaning compactMeaning(Meaning meaning) {
+		checkNotNull(meaning);
+		Meaning ret = meaning;
+		if (!ret.getName().isEmpty()) {
+			ret = ret.withName(Dict.of());
+		}
+		if (!ret.getDescription().isEmpty()) {
+			ret = ret.withDescription(Dict.of());
+		}
+		return ret;
+	}
+
+	/**
+	 * Returns a copy of the meaning with name and description taken from the
+	 * catalog entry having the same id. If the meaning already has a name or a
+	 * description, or there is no entry for it, the meaning itself is
+	 * returned.
+	 *
+	 * @see #resolveMeanings(SemText, MeaningCatalog)
+	 * @since 1.1.0
+	 */
+	public static Meaning resolveMeaning(Meaning meaning, MeaningCatalog catalog) {
+		checkNotNull(meaning);
+		checkNotNull(catalog);
+		if (!meaning.getName().isEmpty() || !meaning.getDescription().isEmpty() || meaning.getId().isEmpty()) {
+			return meaning;
+		}
+		Optional<Meaning> entry = catalog.find(meaning.getId());
+		if (entry.isPresent()) {
+			return meaning.withName(entry.get().getName()).withDescription(entry.get().getDescription());
+		} else {
+			return meaning;
+		}
+	}
+
+	/**
+	 * Returns a copy of the semtext in which all meanings of terms lack name
+	 * and description, so terms just reference meanings by id. Static data
+	 * can be stored once in a
+	 * {@link eu.trentorise.opendata.semtext.catalog.MemoryMeaningCatalog#ofSemTexts(Iterable) catalog}
+	 * and put back with {@link #resolveMeanings(SemText, MeaningCatalog)}.
+	 * Terms, sentences and the semtext itself are reused when nothing changes.
+	 *
+	 * @since 1.1.0
+	 */
+	public static SemText compactMeanings(SemText semText) {
+		checkNotNull(semText);
+		return transformMeanings(semText, new Function<Meaning, Meaning>() {
+			@Override
+			public Meaning apply(Meaning meaning) {
+				return compactMeaning(meaning);
+			}
+		});
+	}
+
+	/**
+	 * Returns a copy of the semtext in which meanings of terms without name
+	 * and description get them from the provided catalog. Terms, sentences and
+	 * the semtext itself are reused when nothing changes.
+	 *
+	 * All the terms are resolved at once. To resolve only the terms actually
+	 * read, call {@link Term#resolveMeanings(MeaningCatalog)} on them instead.
+	 *
+	 * @see #compactMeanings(SemText)
+	 * @since 1.1.0
+	 */
+	public static SemText resolveMeanings(SemText semText, final MeaningCatalog catalog) {
+		checkNotNull(semText);
+		checkNotNull(catalog);
+		return transformMeanings(semText, new Function<Meaning, Meaning>() {
+			@Override
+			public Meaning apply(Meaning meaning) {
+				return resolveMeaning(meaning, catalog);
+			}
+		});
+	}
+
+	/**
+	 * Resolves the meanings of a single term, without caching.
+	 */
+	static Term resolveMeanings(Term term, final MeaningCatalog catalog) {
+		return transformMeanings(term, new Function<Meaning, Meaning>() {
+			@Override
+			public Meaning apply(Meaning meaning) {
+				return resolveMeaning(meaning, catalog);
+			}
+		});
+	}
+
+	/**
+	 * Replaces each meaning of the semtext with the one given by the function,
+	 * which must be equal to the original one and have the same probability.
+	 */
+	private static SemText transformMeanings(SemText semText, Function<Meaning, Meaning> function) {
+		boolean semTextChanged = false;
+		ImmutableList.Builder<Sentence> sentencesB = ImmutableList.builder();
+		for (Sentence sentence : semText.getSentences()) {
+			boolean sentenceChanged = false;
+			ImmutableList.Builder<Term> termsB = ImmutableList.builder();
+			for (Term term : sentence.getTerms()) {
+				Term newTerm = transformMeanings(term, function);
+				sentenceChanged |= newTerm != term;
+				termsB.add(newTerm);
+			}
+			if (sentenceChanged) {
+				sentencesB.add(sentence.withTermsTrusted(termsB.build()));
+				semTextChanged = true;
+			} else {
+				sentencesB.add(sentence);
+			}
+		}
+		return semTextChanged ? semText.withSentencesTrusted(sentencesB.build()) : semText;
+	}
+
+	private static Term transformMeanings(Term term, Function<Meaning, Meaning> function) {
+		boolean changed = false;
+		Meaning selected = term.getSelectedMeaning();
+		Meaning newSelected = null;
+		if (selected != null) {
+			newSelected = function.apply(selected);
+			changed = newSelected != selected;
+		}
+		ImmutableList<Meaning> meanings = term.getMeanings();
+		Meaning[] newMeanings = new Meaning[meanings.size()];
+		for (int i = 0; i < newMeanings.length; i++) {
+			newMeanings[i] = function.apply(meanings.get(i));
+			changed |= newMeanings[i] != meanings.get(i);
+		}
+		return changed ? term.withMeaningsTrusted(ImmutableList.copyOf(newMeanings), newSelected) : term;
+	}
+
 }
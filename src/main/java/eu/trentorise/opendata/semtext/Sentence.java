@@ -15,15 +15,17 @@
  */
 package eu.trentorise.opendata.semtext;
 
+import com.google.common.base.Optional;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.hash.HashCode;
 import eu.trentorise.opendata.commons.TodUtils;
-import eu.trentorise.opendata.semtext.exceptions.SemTextNotFoundException;
 
 import static eu.trentorise.opendata.semtext.SemTexts.checkSpan;
 import static eu.trentorise.opendata.semtext.SemTexts.checkSpans;
 import java.io.Serializable;
 import java.util.Map;
+import javax.annotation.Nullable;
 import javax.annotation.ParametersAreNonnullByDefault;
 import javax.annotation.concurrent.Immutable;
 
@@ -43,6 +45,12 @@ public final class Sentence implements Span, Serializable, HasMetadata {
 
     private ImmutableList<Term> terms;
     private ImmutableMap<String, ?> metadata;
+    // metadata with lazy values resolved
+    @Nullable
+    private transient volatile ImmutableMap<String, ?> resolvedMetadata;
+
+    @Nullable
+    private transient volatile HashCode fingerprint;
 
     private Sentence() {
         this.start = 0;
@@ -55,7 +63,7 @@ public final class Sentence implements Span, Serializable, HasMetadata {
         this.start = sentence.getStart();
         this.end = sentence.getEnd();
         this.terms = sentence.getTerms();
-        this.metadata = sentence.getMetadata();
+        this.metadata = sentence.metadata;
     }
 
     /**
@@ -87,19 +95,67 @@ public final class Sentence implements Span, Serializable, HasMetadata {
         return metadata.containsKey(namespace);
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * Metadata decoded lazily, see {@link LazyMetadata}, is decoded at the
+     * first call of this method. To decode only a given namespace use
+     * {@link #getMetadata(java.lang.String)} instead.
+     */
     @Override
     public ImmutableMap<String, ?> getMetadata() {
+        ImmutableMap<String, ?> ret = resolvedMetadata;
+        if (ret == null) {
+            ret = SemTexts.resolveAllMetadata(metadata);
+            resolvedMetadata = ret;
+        }
+        return ret;
+    }
+
+    /**
+     * Returns metadata as stored, possibly with {@link LazyMetadata} values.
+     * Only meant for serializers.
+     */
+    ImmutableMap<String, ?> getRawMetadata() {
         return metadata;
     }
 
     @Override
     public Object getMetadata(String namespace) {
-        Object ret = metadata.get(namespace);
-        if (ret == null) {
-            throw new SemTextNotFoundException("There is no metadata under the namespace " + namespace + " in " + this);
-        } else {
-            return ret;
-        }
+        return SemTexts.getMetadata(this, metadata, namespace);
+    }
+
+    /**
+     * Returns the metadata under the given namespace, if any. Never throws
+     * because of a missing namespace, so it is the way to probe for optional
+     * metadata.
+     *
+     * @since 1.1.0
+     */
+    public Optional<Object> findMetadata(String namespace) {
+        return SemTexts.findMetadata(metadata, namespace);
+    }
+
+    /**
+     * Returns the metadata under the given namespace if it is an instance of
+     * the given type, otherwise an absent value.
+     *
+     * @since 1.1.0
+     */
+    public <T> Optional<T> findMetadata(String namespace, Class<T> type) {
+        return SemTexts.findMetadata(metadata, namespace, type);
+    }
+
+    /**
+     * Returns the metadata under the given namespace cast to the given type.
+     *
+     * @throws eu.trentorise.opendata.semtext.exceptions.MetadataNotFoundException
+     * if there is no metadata under the namespace or it is not an instance of
+     * the given type.
+     * @since 1.1.0
+     */
+    public <T> T getMetadata(String namespace, Class<T> type) {
+        return SemTexts.getMetadata(this, metadata, namespace, type);
     }
 
     /**
@@ -119,13 +175,31 @@ public final class Sentence implements Span, Serializable, HasMetadata {
         return end;
     }
 
+    /**
+     * Returns a 128 bit fingerprint of the whole content of this sentence,
+     * stable across JVMs so it can be used as a persistent key. It is computed
+     * at first call from the fingerprints of the terms and then cached.
+     *
+     * @throws IllegalArgumentException if some metadata value is of a type
+     * not supported by {@link SemText#fingerprint()}.
+     * @since 1.1.0
+     */
+    public HashCode fingerprint() {
+        HashCode ret = fingerprint;
+        if (ret == null) {
+            ret = Fingerprints.sentence(this);
+            fingerprint = ret;
+        }
+        return ret;
+    }
+
     @Override
     public int hashCode() {
         int hash = 7;
         hash = 89 * hash + this.start;
         hash = 89 * hash + this.end;
         hash = 89 * hash + (this.terms != null ? this.terms.hashCode() : 0);
-        hash = 89 * hash + (this.metadata != null ? this.metadata.hashCode() : 0);
+        hash = 89 * hash + (this.metadata != null ? getMetadata().hashCode() : 0);
         return hash;
     }
 
@@ -147,7 +221,7 @@ public final class Sentence implements Span, Serializable, HasMetadata {
         if (this.terms != other.terms && (this.terms == null || !this.terms.equals(other.terms))) {
             return false;
         }
-        if (this.metadata != other.metadata && (this.metadata == null || !this.metadata.equals(other.metadata))) {
+        if (!SemTexts.metadataEquals(this.metadata, other.metadata)) {
             return false;
         }
         return true;
@@ -202,6 +276,91 @@ public final class Sentence implements Span, Serializable, HasMetadata {
         return new Sentence(start, end, terms, metadata);
     }
 
+    /**
+     * Creates a sentence with terms built from parallel arrays of offsets, as
+     * typically given by tokenizers. Terms have no meanings and status
+     * {@link MeaningStatus#TO_DISAMBIGUATE}. Offsets are validated in a single
+     * pass and terms are built without intermediate collections, so this is
+     * much faster than creating each term with {@link Term#of}.
+     *
+     * @param start 0-indexed span offset start. Position is absolute with
+     * respect to the text stored in the {@code SemText} container.
+     * @param end the position of the character immediately *after* the sentence
+     * itself. Position is absolute with respect to the text stored in the
+     * {@code SemText} container.
+     * @param termStarts start offsets of the terms, sorted
+     * @param termEnds end offsets of the terms, same length of
+     * {@code termStarts}
+     * @throws IllegalArgumentException if terms are not valid spans, overlap
+     * or exceed the sentence.
+     * @since 1.1.0
+     */
+    public static Sentence ofSpans(int start, int end, int[] termStarts, int[] termEnds) {
+        checkSpan(start, end, "Sentence bounds are not correct!");
+        SemTexts.checkSpans(termStarts, termEnds, start, end, "Sentence terms are not correct!");
+        return ofTrusted(start, end, termsTrusted(termStarts, termEnds, 0, termStarts.length));
+    }
+
+    /**
+     * Creates terms for the offsets in the index range [from, to) without any
+     * check.
+     */
+    static ImmutableList<Term> termsTrusted(int[] termStarts, int[] termEnds, int from, int to) {
+        if (from == to) {
+            return ImmutableList.of();
+        }
+        Term[] terms = new Term[to - from];
+        for (int i = from; i < to; i++) {
+            terms[i - from] = Term.ofSpanTrusted(termStarts[i], termEnds[i]);
+        }
+        return ImmutableList.copyOf(terms);
+    }
+
+    /**
+     * Creates a sentence without metadata and without any check. Only to be
+     * used when terms were already validated against the sentence span.
+     */
+    static Sentence ofTrusted(int start, int end, ImmutableList<Term> terms) {
+        Sentence ret = new Sentence();
+        ret.start = start;
+        ret.end = end;
+        ret.terms = terms;
+        return ret;
+    }
+
+    /**
+     * Returns a copy of this sentence with its span and the spans of its terms
+     * moved by the given offset, without any check.
+     *
+     * @see Term#withOffsetTrusted(int)
+     */
+    Sentence withOffsetTrusted(int offset) {
+        if (offset == 0) {
+            return this;
+        }
+        Term[] movedTerms = new Term[terms.size()];
+        for (int i = 0; i < movedTerms.length; i++) {
+            movedTerms[i] = terms.get(i).withOffsetTrusted(offset);
+        }
+        Sentence ret = new Sentence(this);
+        ret.start = start + offset;
+        ret.end = end + offset;
+        ret.terms = ImmutableList.copyOf(movedTerms);
+        return ret;
+    }
+
+    /**
+     * Returns a copy of this sentence with the provided span and terms set,
+     * keeping metadata, without any check.
+     */
+    Sentence withSpanTrusted(int start, int end, ImmutableList<Term> terms) {
+        Sentence ret = new Sentence(this);
+        ret.start = start;
+        ret.end = end;
+        ret.terms = terms;
+        return ret;
+    }
+
     /**
      * Creates a sentence of zero terms.
      *
@@ -245,6 +404,36 @@ public final class Sentence implements Span, Serializable, HasMetadata {
     public Sentence withTerms(Term... terms) {
         return this.withTerms(ImmutableList.copyOf(terms));
     }
+
+    /**
+     * Returns a copy of this object with the term at the given index replaced
+     * by the provided one. Only the new term is validated, against the
+     * sentence bounds and its neighbouring terms, and all the other terms are
+     * shared with this sentence.
+     *
+     * @throws IndexOutOfBoundsException if there is no term at the given index
+     * @throws IllegalArgumentException if the new term exceeds the sentence or
+     * overlaps its neighbours
+     * @since 1.1.0
+     */
+    public Sentence withTerm(int index, Term term) {
+        Sentence ret = new Sentence(this);
+        ret.terms = SemTexts.replaceSpan(terms, index, term, start, end, "Invalid term!");
+        return ret;
+    }
+
+    /**
+     * Returns a copy of this object with the provided terms set, without
+     * validating them. Only to be used by transformations which are known to
+     * produce terms already satisfying
+     * {@link SemTexts#checkSpans(java.lang.Iterable, int, int, java.lang.Object) checkSpans}
+     * with respect to this sentence, i.e. subsets of the existing terms.
+     */
+    Sentence withTermsTrusted(ImmutableList<Term> terms) {
+        Sentence ret = new Sentence(this);
+        ret.terms = terms;
+        return ret;
+    }
     
 
 }
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2015 TrentoRISE  (trentorise.eu) .
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.trentorise.opendata.semtext;
+
+import java.util.Arrays;
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * Growable buffer of non-empty spans, packed as longs to avoid creating an
+ * object per span. Once all spans are added, {@link #normalize()} turns them
+ * into a sorted sequence of disjoint spans.
+ *
+ * @author David Leoni
+ */
+@NotThreadSafe
+final class SpanBuffer {
+
+    private long[] spans;
+    private int size;
+
+    SpanBuffer() {
+        this.spans = new long[16];
+        this.size = 0;
+    }
+
+    /**
+     * Adds span [start, end). Empty spans are ignored.
+     */
+    void add(int start, int end) {
+        if (start >= end) {
+            return;
+        }
+        if (size == spans.length) {
+            spans = Arrays.copyOf(spans, size * 2);
+        }
+        spans[size++] = ((long) start << 32) | end;
+    }
+
+    int size() {
+        return size;
+    }
+
+    int start(int i) {
+        return (int) (spans[i] >>> 32);
+    }
+
+    int end(int i) {
+        return (int) spans[i];
+    }
+
+    /**
+     * Sorts the spans and merges the ones overlapping or touching each other.
+     */
+    void normalize() {
+        if (size < 2) {
+            return;
+        }
+        // offsets are non-negative, so packed longs sort by start and then by end
+        Arrays.sort(spans, 0, size);
+        int last = 0;
+        for (int i = 1; i < size; i++) {
+            if (start(i) <= end(last)) {
+                if (end(i) > end(last)) {
+                    spans[last] = ((long) start(last) << 32) | end(i);
+                }
+            } else {
+                spans[++last] = spans[i];
+            }
+        }
+        size = last + 1;
+    }
+}
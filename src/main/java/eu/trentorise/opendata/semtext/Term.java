@@ -16,11 +16,16 @@
 package eu.trentorise.opendata.semtext;
 
 import static com.google.common.base.Preconditions.checkNotNull;
+import com.google.common.base.Optional;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Iterables;
 import com.google.common.collect.Sets;
+import com.google.common.hash.HashCode;
 import eu.trentorise.opendata.commons.TodUtils;
-import eu.trentorise.opendata.semtext.exceptions.SemTextNotFoundException;
+import eu.trentorise.opendata.semtext.catalog.MeaningCatalog;
+import eu.trentorise.opendata.semtext.metrics.Metrics;
+import eu.trentorise.opendata.semtext.metrics.SemTextOperation;
 
 import static eu.trentorise.opendata.semtext.SemTexts.checkMeaningStatus;
 import static eu.trentorise.opendata.semtext.SemTexts.checkSpan;
@@ -52,6 +57,9 @@ public final class Term implements Span, Serializable, HasMetadata {
     private MeaningStatus meaningStatus;
     private Meaning selectedMeaning;
     private ImmutableMap<String, ?> metadata;
+    // metadata with lazy values resolved
+    @Nullable
+    private transient volatile ImmutableMap<String, ?> resolvedMetadata;
 
     /**
      * so serialization libraries don't complain
@@ -140,19 +148,67 @@ public final class Term implements Span, Serializable, HasMetadata {
         return metadata.containsKey(namespace);
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * Metadata decoded lazily, see {@link LazyMetadata}, is decoded at the
+     * first call of this method. To decode only a given namespace use
+     * {@link #getMetadata(java.lang.String)} instead.
+     */
     @Override
     public ImmutableMap<String, ?> getMetadata() {
+        ImmutableMap<String, ?> ret = resolvedMetadata;
+        if (ret == null) {
+            ret = SemTexts.resolveAllMetadata(metadata);
+            resolvedMetadata = ret;
+        }
+        return ret;
+    }
+
+    /**
+     * Returns metadata as stored, possibly with {@link LazyMetadata} values.
+     * Only meant for serializers.
+     */
+    ImmutableMap<String, ?> getRawMetadata() {
         return metadata;
     }
 
     @Override
     public Object getMetadata(String namespace) {
-        Object ret = metadata.get(namespace);
-        if (ret == null) {
-            throw new SemTextNotFoundException("There is no metadata under the namespace " + namespace + " in " + this);
-        } else {
-            return ret;
-        }
+        return SemTexts.getMetadata(this, metadata, namespace);
+    }
+
+    /**
+     * Returns the metadata under the given namespace, if any. Never throws
+     * because of a missing namespace, so it is the way to probe for optional
+     * metadata.
+     *
+     * @since 1.1.0
+     */
+    public Optional<Object> findMetadata(String namespace) {
+        return SemTexts.findMetadata(metadata, namespace);
+    }
+
+    /**
+     * Returns the metadata under the given namespace if it is an instance of
+     * the given type, otherwise an absent value.
+     *
+     * @since 1.1.0
+     */
+    public <T> Optional<T> findMetadata(String namespace, Class<T> type) {
+        return SemTexts.findMetadata(metadata, namespace, type);
+    }
+
+    /**
+     * Returns the metadata under the given namespace cast to the given type.
+     *
+     * @throws eu.trentorise.opendata.semtext.exceptions.MetadataNotFoundException
+     * if there is no metadata under the namespace or it is not an instance of
+     * the given type.
+     * @since 1.1.0
+     */
+    public <T> T getMetadata(String namespace, Class<T> type) {
+        return SemTexts.getMetadata(this, metadata, namespace, type);
     }
 
     /**
@@ -173,6 +229,38 @@ public final class Term implements Span, Serializable, HasMetadata {
         return selectedMeaning;
     }
 
+    /**
+     * Returns this term with names and descriptions of meanings taken from the
+     * catalog, as by
+     * {@link SemTexts#resolveMeaning(eu.trentorise.opendata.semtext.Meaning, eu.trentorise.opendata.semtext.catalog.MeaningCatalog) SemTexts.resolveMeaning}.
+     * Calling it only on the terms actually read avoids resolving all the
+     * terms of a compact SemText. The result is not cached, so meanings are
+     * looked up at each call: catalogs like
+     * {@link eu.trentorise.opendata.semtext.catalog.FileMeaningCatalog} keep
+     * recently found meanings by id.
+     *
+     * @return the resolved term, or this term if there is nothing to resolve.
+     * @since 1.1.0
+     */
+    public Term resolveMeanings(MeaningCatalog catalog) {
+        checkNotNull(catalog);
+        return SemTexts.resolveMeanings(this, catalog);
+    }
+
+    /**
+     * Returns a 128 bit fingerprint of the whole content of this term, meanings
+     * and metadata included, stable across JVMs so it can be used as a
+     * persistent key. Not cached, to keep terms small: sentences cache the
+     * fingerprint computed from their terms.
+     *
+     * @throws IllegalArgumentException if some metadata value is of a type
+     * not supported by {@link SemText#fingerprint()}.
+     * @since 1.1.0
+     */
+    public HashCode fingerprint() {
+        return Fingerprints.term(this);
+    }
+
     @Override
     public int hashCode() {
         int hash = 5;
@@ -181,7 +269,7 @@ public final class Term implements Span, Serializable, HasMetadata {
         hash = 97 * hash + (this.meanings != null ? this.meanings.hashCode() : 0);
         hash = 97 * hash + (this.meaningStatus != null ? this.meaningStatus.hashCode() : 0);
         hash = 97 * hash + (this.selectedMeaning != null ? this.selectedMeaning.hashCode() : 0);
-        hash = 97 * hash + (this.metadata != null ? this.metadata.hashCode() : 0);
+        hash = 97 * hash + (this.metadata != null ? getMetadata().hashCode() : 0);
         return hash;
     }
 
@@ -210,7 +298,7 @@ public final class Term implements Span, Serializable, HasMetadata {
                 && (this.selectedMeaning == null || !this.selectedMeaning.equals(other.selectedMeaning))) {
             return false;
         }
-        if (this.metadata != other.metadata && (this.metadata == null || !this.metadata.equals(other.metadata))) {
+        if (!SemTexts.metadataEquals(this.metadata, other.metadata)) {
             return false;
         }
         return true;
@@ -231,7 +319,7 @@ public final class Term implements Span, Serializable, HasMetadata {
         this.meanings = term.getMeanings();
         this.meaningStatus = term.getMeaningStatus();
         this.selectedMeaning = term.getSelectedMeaning();
-        this.metadata = term.getMetadata();
+        this.metadata = term.metadata;
     }
 
     /**
@@ -248,6 +336,16 @@ public final class Term implements Span, Serializable, HasMetadata {
     private void normalizeMeanings(Iterable<Meaning> meanings, @Nullable Meaning selectedMeaning) {
         checkNotNull(meanings);
 
+        this.selectedMeaning = selectedMeaning;
+
+        // common case of freshly tagged terms, avoids allocating temporary collections
+        if (Iterables.isEmpty(meanings)) {
+            this.meanings = ImmutableList.of();
+            return;
+        }
+
+        long startNanos = Metrics.start(SemTextOperation.NORMALIZE_MEANINGS);
+
         Set<Meaning> dedupMeanings = Sets.newHashSet(meanings);
 
         float total = 0;
@@ -269,8 +367,7 @@ public final class Term implements Span, Serializable, HasMetadata {
 
         this.meanings = ImmutableList.copyOf(mgs);
 
-        this.selectedMeaning = selectedMeaning;
-
+        Metrics.record(SemTextOperation.NORMALIZE_MEANINGS, startNanos, 1, this.meanings.size(), 0);
     }
 
     /**
@@ -287,6 +384,60 @@ public final class Term implements Span, Serializable, HasMetadata {
         return ret;
     }
 
+    /**
+     * Returns a copy of this term with the provided span. Meanings are shared
+     * with this term, so they are not normalized again.
+     *
+     * @since 1.1.0
+     */
+    public Term withSpan(int start, int end) {
+        checkSpan(start, end, "Term span is invalid!");
+        Term ret = new Term(this);
+        ret.start = start;
+        ret.end = end;
+        return ret;
+    }
+
+    /**
+     * Creates a term with no meanings and status
+     * {@link MeaningStatus#TO_DISAMBIGUATE} without any check. Only to be used
+     * on spans which were already validated.
+     */
+    static Term ofSpanTrusted(int start, int end) {
+        Term ret = new Term();
+        ret.start = start;
+        ret.end = end;
+        return ret;
+    }
+
+    /**
+     * Returns a copy of this term moved by the given offset, without any
+     * check. Only to be used when the moved span is known to be valid, i.e.
+     * when rebasing terms of a text cut out of or pasted into another one.
+     */
+    Term withOffsetTrusted(int offset) {
+        if (offset == 0) {
+            return this;
+        }
+        Term ret = new Term(this);
+        ret.start = start + offset;
+        ret.end = end + offset;
+        return ret;
+    }
+
+    /**
+     * Returns a copy of this term with the provided meanings set as they are.
+     * Only to be used when meanings are already known to be normalized and
+     * deduplicated, i.e. when replacing each existing meaning with an equal
+     * one.
+     */
+    Term withMeaningsTrusted(ImmutableList<Meaning> meanings, @Nullable Meaning selectedMeaning) {
+        Term ret = new Term(this);
+        ret.meanings = meanings;
+        ret.selectedMeaning = selectedMeaning;
+        return ret;
+    }
+
     /**
      * A new term is returned with the provided pair meaning status and selected
      * meaning set.
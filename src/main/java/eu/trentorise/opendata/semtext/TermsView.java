@@ -55,11 +55,8 @@ final class TermsView implements List<Term> {
 
     @Override
     public int size() {
-        int ret = 0;
-        for (Sentence sen : semText.getSentences()) {
-            ret += sen.getTerms().size();
-        }
-        return ret;
+        int[] offsets = semText.termOffsets();
+        return offsets[offsets.length - 1];
     }
 
     public static TermsView of(SemText semText) {
@@ -99,16 +96,11 @@ final class TermsView implements List<Term> {
         if (i < 0) {
             throw new IndexOutOfBoundsException("Tried to get term at negative index " + i + "!");
         }
-        int count = 0;
-        for (Sentence sen : semText.getSentences()) {
-            int termsInSentence = sen.getTerms().size();
-            if (i < count + sen.getTerms().size()) {
-                return sen.getTerms().get(i - count);
-            } else {
-                count += termsInSentence;
-            }
+        int sentence = semText.sentenceOfTerm(i);
+        if (sentence < 0) {
+            throw new IndexOutOfBoundsException("Tried to get term at index " + i + " , but semText has only " + size() + " terms");
         }
-        throw new IndexOutOfBoundsException("Tried to get term at index " + i + " , but semText has only " + semText.terms().size() + " terms");
+        return semText.getSentences().get(sentence).getTerms().get(i - semText.termOffsets()[sentence]);
     }
 
    @Override
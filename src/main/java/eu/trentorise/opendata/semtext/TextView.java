@@ -0,0 +1,101 @@
+/*
+ * Copyright 2015 TrentoRISE  (trentorise.eu) .
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.trentorise.opendata.semtext;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkPositionIndexes;
+import javax.annotation.ParametersAreNonnullByDefault;
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * Immutable view over a region of a text. Characters are never copied, the
+ * view just keeps a reference to the whole text and the offsets of the region.
+ *
+ * Two views are equal if they hold the same characters, and the hash code is
+ * the same that {@link String#hashCode()} would give on the region.
+ *
+ * @author David Leoni
+ */
+@Immutable
+@ParametersAreNonnullByDefault
+final class TextView implements CharSequence {
+
+    private final String text;
+    private final int start;
+    private final int end;
+
+    private TextView(String text, int start, int end) {
+        this.text = text;
+        this.start = start;
+        this.end = end;
+    }
+
+    /**
+     * Creates a view of {@code text} in the region [start, end)
+     *
+     * @throws IndexOutOfBoundsException if the region is not within the text.
+     */
+    static TextView of(String text, int start, int end) {
+        checkNotNull(text);
+        checkPositionIndexes(start, end, text.length());
+        return new TextView(text, start, end);
+    }
+
+    @Override
+    public int length() {
+        return end - start;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= end - start) {
+            throw new IndexOutOfBoundsException("Tried to get char at index " + index + " in a view of length " + (end - start));
+        }
+        return text.charAt(start + index);
+    }
+
+    @Override
+    public CharSequence subSequence(int subStart, int subEnd) {
+        checkPositionIndexes(subStart, subEnd, end - start);
+        return new TextView(text, start + subStart, start + subEnd);
+    }
+
+    @Override
+    public int hashCode() {
+        return SemTexts.hashText(text, start, end);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == null) {
+            return false;
+        }
+        if (getClass() != obj.getClass()) {
+            return false;
+        }
+        final TextView other = (TextView) obj;
+        return SemTexts.regionMatches(text, start, end, false, other);
+    }
+
+    /**
+     * Returns a copy of the characters in the view.
+     */
+    @Override
+    public String toString() {
+        return text.substring(start, end);
+    }
+
+}
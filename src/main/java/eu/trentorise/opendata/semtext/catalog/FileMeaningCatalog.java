@@ -0,0 +1,325 @@
+/* 
+ * Copyright 2015 TrentoRISE  (trentorise.eu) .
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.trentorise.opendata.semtext.catalog;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Optional;
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import eu.trentorise.opendata.commons.Dict;
+import eu.trentorise.opendata.semtext.Meaning;
+import eu.trentorise.opendata.semtext.MeaningKind;
+import eu.trentorise.opendata.semtext.exceptions.SemTextException;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import javax.annotation.ParametersAreNonnullByDefault;
+
+/**
+ * Meaning catalog backed by a binary file written with
+ * {@link #write(MeaningCatalog, File)}. When opened only the index of ids is
+ * loaded in memory, entries are read on first access with positional reads
+ * and kept in a bounded cache. Remember to {@link #close()} the catalog when
+ * done.
+ *
+ * <p>
+ * File format is a magic number, the number of entries and then for each
+ * entry its id, the length of the entry payload and the payload itself, made
+ * of kind, name and description. Strings are stored as their UTF-8 length
+ * followed by UTF-8 bytes.
+ * </p>
+ *
+ * @author David Leoni
+ * @since 1.1.0
+ */
+@ParametersAreNonnullByDefault
+public final class FileMeaningCatalog implements MeaningCatalog, Closeable {
+
+    /**
+     * Number of entries kept in memory by default.
+     */
+    public static final int DEFAULT_CACHE_SIZE = 10000;
+
+    private static final int MAGIC = 0x534D4331; // "SMC1"
+
+    /**
+     * Position and length of an entry payload in the file.
+     */
+    private static final class Slot {
+
+        final long offset;
+        final int length;
+
+        Slot(long offset, int length) {
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    private final File file;
+    private final RandomAccessFile raf;
+    private final FileChannel channel;
+    private final ImmutableMap<String, Slot> index;
+    private final LoadingCache<String, Meaning> cache;
+
+    private FileMeaningCatalog(File file, RandomAccessFile raf, ImmutableMap<String, Slot> index, int cacheSize) {
+        this.file = file;
+        this.raf = raf;
+        this.channel = raf.getChannel();
+        this.index = index;
+        this.cache = CacheBuilder.newBuilder()
+                .maximumSize(cacheSize)
+                .build(new CacheLoader<String, Meaning>() {
+                    @Override
+                    public Meaning load(String id) throws IOException {
+                        return read(id);
+                    }
+                });
+    }
+
+    /**
+     * Opens the catalog stored in the given file, caching at most
+     * {@link #DEFAULT_CACHE_SIZE} entries.
+     *
+     * @throws IOException if the file can't be read or is not a catalog.
+     */
+    public static FileMeaningCatalog open(File file) throws IOException {
+        return open(file, DEFAULT_CACHE_SIZE);
+    }
+
+    /**
+     * Opens the catalog stored in the given file, caching at most
+     * {@code cacheSize} entries.
+     *
+     * @throws IOException if the file can't be read or is not a catalog.
+     */
+    public static FileMeaningCatalog open(File file, int cacheSize) throws IOException {
+        checkNotNull(file);
+        checkArgument(cacheSize >= 0, "Cache size must be non negative, found instead %s", cacheSize);
+
+        ImmutableMap.Builder<String, Slot> indexB = ImmutableMap.builder();
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("File " + file.getAbsolutePath() + " is not a meaning catalog!");
+            }
+            int count = in.readInt();
+            long position = 8;
+            for (int i = 0; i < count; i++) {
+                int idLength = in.readInt();
+                String id = readString(in, idLength);
+                int length = in.readInt();
+                position += 4 + idLength + 4;
+                indexB.put(id, new Slot(position, length));
+                skipFully(in, length);
+                position += length;
+            }
+        }
+        finally {
+            in.close();
+        }
+
+        return new FileMeaningCatalog(file, new RandomAccessFile(file, "r"), indexB.build(), cacheSize);
+    }
+
+    /**
+     * Writes all the entries of the provided catalog into the given file,
+     * overwriting it.
+     */
+    public static void write(MeaningCatalog catalog, File file) throws IOException {
+        checkNotNull(catalog);
+        checkNotNull(file);
+
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(catalog.size());
+            ByteArrayOutputStream payload = new ByteArrayOutputStream();
+            DataOutputStream payloadOut = new DataOutputStream(payload);
+            int count = 0;
+            for (String id : catalog.ids()) {
+                Optional<Meaning> entry = catalog.find(id);
+                if (!entry.isPresent()) {
+                    throw new IOException("Catalog " + catalog + " lists id " + id + " but has no entry for it!");
+                }
+                payload.reset();
+                writeString(payloadOut, entry.get().getKind().name());
+                writeDict(payloadOut, entry.get().getName());
+                writeDict(payloadOut, entry.get().getDescription());
+                payloadOut.flush();
+
+                writeString(out, id);
+                out.writeInt(payload.size());
+                payload.writeTo(out);
+                count += 1;
+            }
+            if (count != catalog.size()) {
+                throw new IOException("Catalog " + catalog + " has size " + catalog.size() + " but lists " + count + " ids!");
+            }
+        }
+        finally {
+            out.close();
+        }
+    }
+
+    private Meaning read(String id) throws IOException {
+        Slot slot = index.get(id);
+        ByteBuffer buf = ByteBuffer.allocate(slot.length);
+        while (buf.hasRemaining()) {
+            if (channel.read(buf, slot.offset + buf.position()) < 0) {
+                throw new EOFException("Reached end of catalog file " + file.getAbsolutePath() + " while reading meaning " + id);
+            }
+        }
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(buf.array()));
+        MeaningKind kind = MeaningKind.valueOf(readString(in, in.readInt()));
+        Dict name = readDict(in);
+        Dict description = readDict(in);
+        return Meaning.builder()
+                .setId(id)
+                .setKind(kind)
+                .setName(name)
+                .setDescription(description)
+                .build();
+    }
+
+    private static void skipFully(DataInputStream in, int length) throws IOException {
+        int skipped = 0;
+        while (skipped < length) {
+            int n = in.skipBytes(length - skipped);
+            if (n <= 0) {
+                throw new EOFException("Reached end of catalog file while skipping entry!");
+            }
+            skipped += n;
+        }
+    }
+
+    private static void writeString(DataOutput out, String s) throws IOException {
+        byte[] bytes = s.getBytes(Charsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInput in, int length) throws IOException {
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, Charsets.UTF_8);
+    }
+
+    private static void writeDict(DataOutput out, Dict dict) throws IOException {
+        out.writeInt(dict.locales().size());
+        for (Locale locale : dict.locales()) {
+            writeString(out, locale.toLanguageTag());
+            out.writeInt(dict.strings(locale).size());
+            for (String s : dict.strings(locale)) {
+                writeString(out, s);
+            }
+        }
+    }
+
+    private static Dict readDict(DataInput in) throws IOException {
+        int locales = in.readInt();
+        if (locales == 0) {
+            return Dict.of();
+        }
+        Dict.Builder builder = Dict.builder();
+        for (int i = 0; i < locales; i++) {
+            Locale locale = Locale.forLanguageTag(readString(in, in.readInt()));
+            int strings = in.readInt();
+            for (int j = 0; j < strings; j++) {
+                builder.put(locale, readString(in, in.readInt()));
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws SemTextException if the entry couldn't be read from the file.
+     */
+    @Override
+    public Optional<Meaning> find(String id) {
+        checkNotNull(id);
+        if (!index.containsKey(id)) {
+            return Optional.absent();
+        }
+        try {
+            return Optional.of(cache.get(id));
+        }
+        catch (ExecutionException ex) {
+            throw new SemTextException("Couldn't read meaning " + id + " from catalog file " + file.getAbsolutePath(), ex.getCause());
+        }
+        catch (UncheckedExecutionException ex) {
+            throw new SemTextException("Couldn't read meaning " + id + " from catalog file " + file.getAbsolutePath(), ex.getCause());
+        }
+    }
+
+    @Override
+    public boolean contains(String id) {
+        checkNotNull(id);
+        return index.containsKey(id);
+    }
+
+    @Override
+    public ImmutableSet<String> ids() {
+        return index.keySet();
+    }
+
+    @Override
+    public int size() {
+        return index.size();
+    }
+
+    /**
+     * Returns the file backing the catalog.
+     */
+    public File getFile() {
+        return file;
+    }
+
+    @Override
+    public void close() throws IOException {
+        cache.invalidateAll();
+        raf.close();
+    }
+
+    @Override
+    public String toString() {
+        return "FileMeaningCatalog{file=" + file.getAbsolutePath() + ", size=" + index.size() + "}";
+    }
+}
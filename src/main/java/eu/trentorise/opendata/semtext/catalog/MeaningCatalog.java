@@ -0,0 +1,60 @@
+/* 
+ * Copyright 2015 TrentoRISE  (trentorise.eu) .
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.trentorise.opendata.semtext.catalog;
+
+import com.google.common.base.Optional;
+import eu.trentorise.opendata.semtext.Meaning;
+import java.util.Set;
+
+/**
+ * Stores once the static data of meanings, that is name and description,
+ * indexed by meaning id. Terms can then hold compact meanings with just id,
+ * kind and probability, see
+ * {@link eu.trentorise.opendata.semtext.SemTexts#compactMeanings(eu.trentorise.opendata.semtext.SemText) SemTexts.compactMeanings},
+ * and get names and descriptions back when needed, one term at a time with
+ * {@link eu.trentorise.opendata.semtext.Term#resolveMeanings(MeaningCatalog) Term.resolveMeanings}
+ * or for a whole SemText with
+ * {@link eu.trentorise.opendata.semtext.SemTexts#resolveMeanings(eu.trentorise.opendata.semtext.SemText, MeaningCatalog) SemTexts.resolveMeanings}.
+ *
+ * Implementations must be thread safe.
+ *
+ * @author David Leoni
+ * @since 1.1.0
+ */
+public interface MeaningCatalog {
+
+    /**
+     * Returns the entry of the meaning with the given id. An entry holds the
+     * id, kind, name and description of the meaning, while probability is
+     * zero and metadata is empty.
+     */
+    Optional<Meaning> find(String id);
+
+    /**
+     * Returns true if there is an entry for the given id.
+     */
+    boolean contains(String id);
+
+    /**
+     * Returns the ids of all the entries.
+     */
+    Set<String> ids();
+
+    /**
+     * Returns the number of entries.
+     */
+    int size();
+}
@@ -0,0 +1,164 @@
+/* 
+ * Copyright 2015 TrentoRISE  (trentorise.eu) .
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.trentorise.opendata.semtext.catalog;
+
+import com.google.common.base.Optional;
+import static com.google.common.base.Preconditions.checkNotNull;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import eu.trentorise.opendata.semtext.Meaning;
+import eu.trentorise.opendata.semtext.SemText;
+import eu.trentorise.opendata.semtext.Sentence;
+import eu.trentorise.opendata.semtext.Term;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javax.annotation.ParametersAreNonnullByDefault;
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * Immutable meaning catalog holding all entries in memory.
+ *
+ * @author David Leoni
+ * @since 1.1.0
+ */
+@Immutable
+@ParametersAreNonnullByDefault
+public final class MemoryMeaningCatalog implements MeaningCatalog {
+
+    private static final MemoryMeaningCatalog EMPTY = new MemoryMeaningCatalog(ImmutableMap.<String, Meaning>of());
+
+    private final ImmutableMap<String, Meaning> entries;
+
+    private MemoryMeaningCatalog(ImmutableMap<String, Meaning> entries) {
+        this.entries = entries;
+    }
+
+    /**
+     * Returns an empty catalog.
+     */
+    public static MemoryMeaningCatalog of() {
+        return EMPTY;
+    }
+
+    /**
+     * Creates a catalog with the static data of the provided meanings.
+     * Meanings with empty id are skipped. When the same id occurs more than
+     * once, the first meaning having a name or a description is used.
+     */
+    public static MemoryMeaningCatalog of(Iterable<Meaning> meanings) {
+        checkNotNull(meanings);
+        Map<String, Meaning> map = new LinkedHashMap();
+        for (Meaning meaning : meanings) {
+            put(map, meaning);
+        }
+        return new MemoryMeaningCatalog(ImmutableMap.copyOf(map));
+    }
+
+    /**
+     * Creates a catalog with the static data of all the meanings found in the
+     * provided semtexts, including selected meanings.
+     *
+     * @see #of(java.lang.Iterable)
+     */
+    public static MemoryMeaningCatalog ofSemTexts(Iterable<SemText> semTexts) {
+        checkNotNull(semTexts);
+        Map<String, Meaning> map = new LinkedHashMap();
+        for (SemText semText : semTexts) {
+            for (Sentence sentence : semText.getSentences()) {
+                for (Term term : sentence.getTerms()) {
+                    if (term.getSelectedMeaning() != null) {
+                        put(map, term.getSelectedMeaning());
+                    }
+                    for (Meaning meaning : term.getMeanings()) {
+                        put(map, meaning);
+                    }
+                }
+            }
+        }
+        return new MemoryMeaningCatalog(ImmutableMap.copyOf(map));
+    }
+
+    /**
+     * Returns a catalog with the entries of both this and the provided
+     * catalog. Entries of this catalog take precedence.
+     */
+    public MemoryMeaningCatalog with(MeaningCatalog catalog) {
+        checkNotNull(catalog);
+        Map<String, Meaning> map = new LinkedHashMap(entries);
+        for (String id : catalog.ids()) {
+            if (!map.containsKey(id)) {
+                Optional<Meaning> entry = catalog.find(id);
+                if (entry.isPresent()) {
+                    map.put(id, entry.get());
+                }
+            }
+        }
+        return new MemoryMeaningCatalog(ImmutableMap.copyOf(map));
+    }
+
+    private static void put(Map<String, Meaning> map, Meaning meaning) {
+        if (meaning.getId().isEmpty()) {
+            return;
+        }
+        Meaning existing = map.get(meaning.getId());
+        if (existing == null || (!hasStaticData(existing) && hasStaticData(meaning))) {
+            map.put(meaning.getId(), entry(meaning));
+        }
+    }
+
+    private static boolean hasStaticData(Meaning meaning) {
+        return !meaning.getName().isEmpty() || !meaning.getDescription().isEmpty();
+    }
+
+    /**
+     * Returns a meaning with only the data to be stored in a catalog.
+     */
+    static Meaning entry(Meaning meaning) {
+        return Meaning.builder()
+                .setId(meaning.getId())
+                .setKind(meaning.getKind())
+                .setName(meaning.getName())
+                .setDescription(meaning.getDescription())
+                .build();
+    }
+
+    @Override
+    public Optional<Meaning> find(String id) {
+        checkNotNull(id);
+        return Optional.fromNullable(entries.get(id));
+    }
+
+    @Override
+    public boolean contains(String id) {
+        checkNotNull(id);
+        return entries.containsKey(id);
+    }
+
+    @Override
+    public ImmutableSet<String> ids() {
+        return entries.keySet();
+    }
+
+    @Override
+    public int size() {
+        return entries.size();
+    }
+
+    @Override
+    public String toString() {
+        return "MemoryMeaningCatalog{size=" + entries.size() + "}";
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2015 TrentoRISE  (trentorise.eu) .
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.trentorise.opendata.semtext.exceptions;
+
+import eu.trentorise.opendata.semtext.HasMetadata;
+import eu.trentorise.opendata.semtext.Meaning;
+import eu.trentorise.opendata.semtext.SemText;
+import eu.trentorise.opendata.semtext.Span;
+import javax.annotation.Nullable;
+
+/**
+ * Thrown when there is no metadata under a namespace, or it is not of the
+ * requested type. The message is only built when requested and only
+ * describes the metadata holder in a few words, so the holder
+ * {@code toString()} is never called.
+ *
+ * @author David Leoni
+ * @since 1.1.0
+ */
+public class MetadataNotFoundException extends SemTextNotFoundException {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Maximum number of characters of semtext text shown in messages.
+     */
+    public static final int MAX_TEXT_CHARS = 40;
+
+    private final String namespace;
+    private final String holderDescription;
+    @Nullable
+    private final Class<?> expectedType;
+    @Nullable
+    private final Class<?> foundType;
+
+    /**
+     * Creates the exception for missing metadata.
+     */
+    public MetadataNotFoundException(String namespace, HasMetadata holder) {
+        this(namespace, holder, null, null);
+    }
+
+    /**
+     * Creates the exception for metadata which is not of the expected type.
+     *
+     * @param expectedType if null, metadata is considered missing.
+     * @param foundType the type of the existing metadata, if any.
+     */
+    public MetadataNotFoundException(String namespace, HasMetadata holder, @Nullable Class<?> expectedType,
+            @Nullable Class<?> foundType) {
+        super();
+        this.namespace = String.valueOf(namespace);
+        this.holderDescription = describe(holder);
+        this.expectedType = expectedType;
+        this.foundType = foundType;
+    }
+
+    /**
+     * Returns a short description of the holder, which doesn't grow with its
+     * size.
+     */
+    private static String describe(HasMetadata holder) {
+        if (holder == null) {
+            return "null";
+        }
+        String className = holder.getClass().getSimpleName();
+        if (holder instanceof SemText) {
+            String text = ((SemText) holder).getText();
+            String shownText = text.length() > MAX_TEXT_CHARS ? text.substring(0, MAX_TEXT_CHARS) + "..." : text;
+            return className + " with text \"" + shownText + "\" (" + text.length() + " chars)";
+        }
+        if (holder instanceof Span) {
+            Span span = (Span) holder;
+            return className + " at [" + span.getStart() + "," + span.getEnd() + ")";
+        }
+        if (holder instanceof Meaning) {
+            Meaning meaning = (Meaning) holder;
+            return className + " with id \"" + meaning.getId() + "\" and kind " + meaning.getKind();
+        }
+        return className;
+    }
+
+    /**
+     * Returns the namespace which was requested.
+     */
+    public String getNamespace() {
+        return namespace;
+    }
+
+    @Override
+    public String getMessage() {
+        if (expectedType == null || foundType == null) {
+            return "There is no metadata under the namespace " + namespace + " in " + holderDescription;
+        } else {
+            return "Metadata under the namespace " + namespace + " in " + holderDescription + " is of type "
+                    + foundType.getName() + " instead of " + expectedType.getName();
+        }
+    }
+}
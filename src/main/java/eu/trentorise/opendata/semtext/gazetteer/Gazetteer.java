@@ -0,0 +1,396 @@
+/*
+ * Copyright 2015 TrentoRISE  (trentorise.eu) .
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.trentorise.opendata.semtext.gazetteer;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkPositionIndexes;
+import com.google.common.collect.ImmutableList;
+import static eu.trentorise.opendata.commons.TodUtils.checkNotEmpty;
+import eu.trentorise.opendata.semtext.Meaning;
+import eu.trentorise.opendata.semtext.MeaningStatus;
+import eu.trentorise.opendata.semtext.SemText;
+import eu.trentorise.opendata.semtext.SemTexts;
+import eu.trentorise.opendata.semtext.Sentence;
+import eu.trentorise.opendata.semtext.Term;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import javax.annotation.ParametersAreNonnullByDefault;
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * Dictionary annotator which finds known surface forms in texts and emits
+ * terms with the candidate meanings of each form.
+ *
+ * Surface forms are stored in a compact trie laid out breadth first in flat
+ * arrays, so each state costs a few bytes and the transition leading to state
+ * {@code s} is found at index {@code s - 1}. Texts are scanned left to right
+ * taking at each word start the longest known form, so emitted terms never
+ * overlap. Instances are immutable and can be shared among threads without
+ * locking.
+ *
+ * Emitted terms have status {@link MeaningStatus#SELECTED} when
+ * {@link SemTexts#disambiguate(java.lang.Iterable) SemTexts.disambiguate}
+ * finds a clear winner among the candidates, and
+ * {@link MeaningStatus#TO_DISAMBIGUATE} otherwise.
+ *
+ * @author David Leoni
+ * @since 1.1.0
+ */
+@Immutable
+@ParametersAreNonnullByDefault
+public final class Gazetteer {
+
+    private static final int ROOT = 0;
+
+    private static final Gazetteer EMPTY = builder().build();
+
+    /**
+     * Transitions of state s are at indexes [transOffsets[s],
+     * transOffsets[s + 1]) of transChars, sorted by char. Transition at index
+     * i leads to state i + 1.
+     */
+    private final int[] transOffsets;
+    private final char[] transChars;
+
+    /**
+     * Index in entries of the surface form ending at each state, -1 if none
+     */
+    private final int[] entryIds;
+
+    private final ImmutableList<Entry> entries;
+
+    private final boolean caseSensitive;
+    private final boolean wordBoundaries;
+
+    /**
+     * Candidate meanings of a surface form, along with the term emitted for
+     * it.
+     */
+    private static final class Entry {
+
+        final ImmutableList<Meaning> meanings;
+        /**
+         * Term with normalized meanings and the selected one, moved to the
+         * span of each match
+         */
+        final Term term;
+
+        Entry(ImmutableList<Meaning> meanings) {
+            this.meanings = meanings;
+            Meaning selectedMeaning = SemTexts.disambiguate(meanings);
+            this.term = Term.of(0, 0,
+                    selectedMeaning == null ? MeaningStatus.TO_DISAMBIGUATE : MeaningStatus.SELECTED,
+                    selectedMeaning,
+                    meanings);
+        }
+    }
+
+    private Gazetteer(int[] transOffsets, char[] transChars, int[] entryIds, ImmutableList<Entry> entries,
+            boolean caseSensitive, boolean wordBoundaries) {
+        this.transOffsets = transOffsets;
+        this.transChars = transChars;
+        this.entryIds = entryIds;
+        this.entries = entries;
+        this.caseSensitive = caseSensitive;
+        this.wordBoundaries = wordBoundaries;
+    }
+
+    /**
+     * Returns an empty gazetteer.
+     */
+    public static Gazetteer of() {
+        return EMPTY;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Builder of gazetteers, not thread safe. By default matching is case
+     * sensitive and surface forms must start and end at word boundaries.
+     */
+    public static final class Builder {
+
+        private final Map<String, LinkedHashSet<Meaning>> forms = new HashMap();
+        private final Map<Meaning, Meaning> interned = new HashMap();
+        private boolean caseSensitive = true;
+        private boolean wordBoundaries = true;
+
+        private Builder() {
+        }
+
+        /**
+         * Adds a candidate meaning for the given surface form. Adding the same
+         * meaning twice for a form has no effect.
+         */
+        public Builder put(String surfaceForm, Meaning meaning) {
+            checkNotEmpty(surfaceForm, "Invalid surface form!");
+            checkNotNull(meaning);
+            LinkedHashSet<Meaning> meanings = forms.get(surfaceForm);
+            if (meanings == null) {
+                meanings = new LinkedHashSet();
+                forms.put(surfaceForm, meanings);
+            }
+            // equal meanings of different forms end up sharing the same instance
+            Meaning m = interned.get(meaning);
+            if (m == null) {
+                interned.put(meaning, meaning);
+                m = meaning;
+            }
+            meanings.add(m);
+            return this;
+        }
+
+        /**
+         * Adds candidate meanings for the given surface form.
+         *
+         * @see #put(java.lang.String, eu.trentorise.opendata.semtext.Meaning)
+         */
+        public Builder putAll(String surfaceForm, Iterable<Meaning> meanings) {
+            checkNotNull(meanings);
+            for (Meaning meaning : meanings) {
+                put(surfaceForm, meaning);
+            }
+            return this;
+        }
+
+        /**
+         * If false, surface forms are matched ignoring case. Default is true.
+         */
+        public Builder caseSensitive(boolean caseSensitive) {
+            this.caseSensitive = caseSensitive;
+            return this;
+        }
+
+        /**
+         * If true, a surface form is matched only if it starts and ends at
+         * word boundaries, so for example 'cat' is not found in 'concatenate'.
+         * Default is true.
+         */
+        public Builder wordBoundaries(boolean wordBoundaries) {
+            this.wordBoundaries = wordBoundaries;
+            return this;
+        }
+
+        public Gazetteer build() {
+            // folded forms are sorted so states can be created breadth first in a single pass
+            TreeMap<String, LinkedHashSet<Meaning>> sorted = new TreeMap();
+            for (Map.Entry<String, LinkedHashSet<Meaning>> form : forms.entrySet()) {
+                String key = fold(form.getKey(), caseSensitive);
+                LinkedHashSet<Meaning> meanings = sorted.get(key);
+                if (meanings == null) {
+                    sorted.put(key, new LinkedHashSet(form.getValue()));
+                } else {
+                    meanings.addAll(form.getValue());
+                }
+            }
+
+            String[] keys = sorted.keySet().toArray(new String[sorted.size()]);
+            int maxStates = 1;
+            for (String key : keys) {
+                maxStates += key.length();
+            }
+
+            int[] transOffsets = new int[maxStates + 1];
+            char[] transChars = new char[maxStates];
+            int[] entryIds = new int[maxStates];
+            ImmutableList.Builder<Entry> entriesB = ImmutableList.builder();
+
+            // each queued item holds the range of keys sharing the prefix of the state and its length
+            ArrayDeque<int[]> queue = new ArrayDeque();
+            queue.add(new int[]{0, keys.length, 0});
+            int state = 0;
+            int t = 0;
+            int entryCount = 0;
+            while (!queue.isEmpty()) {
+                int[] item = queue.poll();
+                int lo = item[0];
+                int hi = item[1];
+                int depth = item[2];
+
+                transOffsets[state] = t;
+                if (lo < hi && keys[lo].length() == depth) {
+                    entriesB.add(new Entry(ImmutableList.copyOf(sorted.get(keys[lo]))));
+                    entryIds[state] = entryCount++;
+                    lo++;
+                } else {
+                    entryIds[state] = -1;
+                }
+
+                int i = lo;
+                while (i < hi) {
+                    char c = keys[i].charAt(depth);
+                    int j = i + 1;
+                    while (j < hi && keys[j].charAt(depth) == c) {
+                        j++;
+                    }
+                    transChars[t++] = c;
+                    queue.add(new int[]{i, j, depth + 1});
+                    i = j;
+                }
+                state++;
+            }
+            transOffsets[state] = t;
+
+            return new Gazetteer(Arrays.copyOf(transOffsets, state + 1), Arrays.copyOf(transChars, t),
+                    Arrays.copyOf(entryIds, state), entriesB.build(), caseSensitive, wordBoundaries);
+        }
+    }
+
+    private static char fold(char c, boolean caseSensitive) {
+        return caseSensitive ? c : Character.toLowerCase(Character.toUpperCase(c));
+    }
+
+    private static String fold(String s, boolean caseSensitive) {
+        if (caseSensitive) {
+            return s;
+        }
+        char[] chars = s.toCharArray();
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = fold(chars[i], false);
+        }
+        return new String(chars);
+    }
+
+    private static boolean isWordChar(char c) {
+        return Character.isLetterOrDigit(c);
+    }
+
+    private int next(int state, char c) {
+        int i = Arrays.binarySearch(transChars, transOffsets[state], transOffsets[state + 1], fold(c, caseSensitive));
+        return i < 0 ? -1 : i + 1;
+    }
+
+    /**
+     * Returns the number of distinct surface forms.
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Returns the candidate meanings of the given surface form, or an empty
+     * list if the form is unknown.
+     */
+    public ImmutableList<Meaning> lookup(CharSequence surfaceForm) {
+        checkNotNull(surfaceForm);
+        int state = ROOT;
+        for (int i = 0; i < surfaceForm.length() && state >= 0; i++) {
+            state = next(state, surfaceForm.charAt(i));
+        }
+        if (state < 0 || entryIds[state] < 0) {
+            return ImmutableList.of();
+        }
+        return entries.get(entryIds[state]).meanings;
+    }
+
+    /**
+     * Finds the surface forms in the region [start, end) of the text. Region
+     * bounds are considered word boundaries.
+     *
+     * @return the non-overlapping terms found, sorted by position.
+     * @throws IndexOutOfBoundsException if the region is not within the text.
+     */
+    public ImmutableList<Term> find(CharSequence text, int start, int end) {
+        checkNotNull(text);
+        checkPositionIndexes(start, end, text.length());
+
+        ImmutableList.Builder<Term> ret = ImmutableList.builder();
+        int i = start;
+        while (i < end) {
+            if (wordBoundaries && i > start && isWordChar(text.charAt(i - 1)) && isWordChar(text.charAt(i))) {
+                i++;
+                continue;
+            }
+            int state = ROOT;
+            int matchEnd = -1;
+            int matchEntry = -1;
+            for (int j = i; j < end; j++) {
+                state = next(state, text.charAt(j));
+                if (state < 0) {
+                    break;
+                }
+                if (entryIds[state] >= 0
+                        && (!wordBoundaries || j + 1 == end || !isWordChar(text.charAt(j)) || !isWordChar(text.charAt(j + 1)))) {
+                    matchEnd = j + 1;
+                    matchEntry = entryIds[state];
+                }
+            }
+            if (matchEnd < 0) {
+                i++;
+            } else {
+                ret.add(entries.get(matchEntry).term.withSpan(i, matchEnd));
+                i = matchEnd;
+            }
+        }
+        return ret.build();
+    }
+
+    /**
+     * Returns the surface forms found within the sentences of the given
+     * semantic text, or within the whole text if there are no sentences.
+     */
+    private List<Term> findInSentences(SemText semText) {
+        if (semText.getSentences().isEmpty()) {
+            return find(semText.getText(), 0, semText.getText().length());
+        }
+        List<Term> ret = new ArrayList();
+        for (Sentence sentence : semText.getSentences()) {
+            ret.addAll(find(semText.getText(), sentence.getStart(), sentence.getEnd()));
+        }
+        return ret;
+    }
+
+    /**
+     * Returns a copy of the given semantic text with the surface forms found
+     * in each sentence merged into it, according to
+     * {@link SemText#merge(java.lang.Iterable)}. Surface forms never cross
+     * sentence boundaries, and as they are found sorted the merge takes a
+     * single pass over the terms of the text.
+     */
+    public SemText annotate(SemText semText) {
+        checkNotNull(semText);
+        if (semText.getSentences().isEmpty()) {
+            return semText;
+        }
+        return semText.merge(findInSentences(semText));
+    }
+
+    /**
+     * Returns a copy of the given semantic text with the surface forms found
+     * merged into the given annotation layer, according to
+     * {@link SemText#merge(java.lang.String, java.lang.Iterable)}. Surface forms
+     * never cross sentence boundaries. If the text has no sentences, it is
+     * scanned as a whole.
+     */
+    public SemText annotate(SemText semText, String layer) {
+        checkNotNull(semText);
+        return semText.merge(layer, findInSentences(semText));
+    }
+
+    @Override
+    public String toString() {
+        return "Gazetteer{surfaceForms=" + entries.size() + ", states=" + entryIds.length
+                + ", caseSensitive=" + caseSensitive + ", wordBoundaries=" + wordBoundaries + '}';
+    }
+}
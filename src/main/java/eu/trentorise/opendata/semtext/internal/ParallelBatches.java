@@ -0,0 +1,170 @@
+/*
+ * Copyright 2015 TrentoRISE  (trentorise.eu) .
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.trentorise.opendata.semtext.internal;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import eu.trentorise.opendata.semtext.exceptions.SemTextException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Processes the items of an iterable, like the documents of a
+ * {@link eu.trentorise.opendata.semtext.store.SemTextStore SemTextStore}, with
+ * tasks submitted to an executor. Each task takes batches of items from a
+ * shared iterator, so the iterable is only iterated once and can be a lazy
+ * one. Used by the parallel term query and statistics collectors.
+ *
+ * The first failure of a task, including one thrown by the shared iterator,
+ * stops all the tasks after their current batch and is rethrown by
+ * {@link #run(Iterable, ExecutorService, int, String) run}.
+ *
+ * Internal class, not part of the public API: it may change or be removed
+ * without notice.
+ *
+ * @param <T> the type of the items
+ * @param <R> the type of the state of each task, like a partial result
+ *
+ * @author David Leoni
+ */
+public abstract class ParallelBatches<T, R> {
+
+    /**
+     * Number of items a task takes from the shared iterator at once.
+     */
+    private static final int BATCH_SIZE = 64;
+
+    protected ParallelBatches() {
+    }
+
+    /**
+     * Returns the state of a new task, called in the task thread.
+     */
+    protected abstract R newTask();
+
+    /**
+     * Processes a batch of items in the task with the given state. Batches are
+     * numbered from zero in iteration order.
+     */
+    protected abstract void process(R task, List<T> batch, int batchIndex);
+
+    /**
+     * Processes the given items with the given number of tasks submitted to
+     * the executor, and returns the states of the tasks.
+     *
+     * @param errorMessage message of the exception thrown when a task fails
+     * with a checked exception.
+     *
+     * @throws InterruptedException if interrupted while waiting for the tasks,
+     * which are then cancelled.
+     * @throws SemTextException if a task fails with a checked exception, runtime
+     * exceptions and errors are propagated as they are. Only the first failure
+     * is thrown.
+     */
+    public final List<R> run(Iterable<? extends T> items, ExecutorService executor, int parallelism,
+            String errorMessage) throws InterruptedException {
+        checkNotNull(items);
+        checkNotNull(executor);
+        checkArgument(parallelism > 0, "Parallelism must be positive, found instead %s", parallelism);
+
+        final Iterator<? extends T> iterator = items.iterator();
+        final int[] batchCount = new int[1];
+        // once set, the iterator might be in a failed state and tasks stop
+        final AtomicReference<Throwable> failure = new AtomicReference();
+        List<Future<R>> futures = new ArrayList();
+        try {
+            for (int i = 0; i < parallelism; i++) {
+                futures.add(executor.submit(new Callable<R>() {
+                    @Override
+                    public R call() {
+                        try {
+                            R task = newTask();
+                            List<T> batch = new ArrayList(BATCH_SIZE);
+                            while (true) {
+                                int batchIndex;
+                                synchronized (iterator) {
+                                    if (failure.get() != null) {
+                                        return null;
+                                    }
+                                    try {
+                                        while (batch.size() < BATCH_SIZE && iterator.hasNext()) {
+                                            batch.add(iterator.next());
+                                        }
+                                    }
+                                    catch (Throwable ex) {
+                                        // recorded before releasing the lock, so no other task
+                                        // finds the iterator broken
+                                        failure.compareAndSet(null, ex);
+                                        return null;
+                                    }
+                                    batchIndex = batchCount[0]++;
+                                }
+                                if (batch.isEmpty()) {
+                                    return task;
+                                }
+                                process(task, batch, batchIndex);
+                                batch.clear();
+                            }
+                        }
+                        catch (Throwable ex) {
+                            failure.compareAndSet(null, ex);
+                            return null;
+                        }
+                    }
+                }));
+            }
+
+            List<R> ret = new ArrayList(futures.size());
+            for (Future<R> future : futures) {
+                ret.add(future.get());
+            }
+
+            Throwable cause = failure.get();
+            if (cause != null) {
+                throw propagate(cause, errorMessage);
+            }
+            return ret;
+        }
+        catch (ExecutionException ex) {
+            throw propagate(ex.getCause(), errorMessage);
+        }
+        finally {
+            for (Future<R> future : futures) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * Throws the given failure if it is a runtime exception or an error,
+     * otherwise returns it wrapped in a SemTextException.
+     */
+    private static SemTextException propagate(Throwable cause, String errorMessage) {
+        if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+        }
+        if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        return new SemTextException(errorMessage, cause);
+    }
+}
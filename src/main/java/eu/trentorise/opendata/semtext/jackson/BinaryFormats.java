@@ -0,0 +1,86 @@
+/*
+ * Copyright 2015 TrentoRISE  (trentorise.eu) .
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.trentorise.opendata.semtext.jackson;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.cbor.CBORGenerator;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+
+/**
+ * Object mappers reading and writing SemTexts in the binary Jackson formats
+ * <a href="https://github.com/FasterXML/smile-format-specification">Smile</a>
+ * and <a href="http://cbor.io">CBOR</a>, with {@link SemTextModule} and the
+ * required modules already registered. Mappers can be used as they are, or
+ * with {@link JsonSemTextCodec}, {@link SemTextReader} and
+ * {@link SemTextWriter}.
+ *
+ * Smile and CBOR Jackson dataformats are optional dependencies of SemText, so
+ * to use this class add {@code jackson-dataformat-smile} or
+ * {@code jackson-dataformat-cbor} to your project.
+ *
+ * @author David Leoni
+ * @since 1.1.0
+ */
+public final class BinaryFormats {
+
+    private BinaryFormats() {
+    }
+
+    /**
+     * Returns a new Smile factory writing property names and short string
+     * values (up to 64 bytes, which covers most meaning ids) only once per
+     * document, later occurrences being written as back references.
+     */
+    public static SmileFactory smileFactory() {
+        SmileFactory ret = new SmileFactory();
+        ret.configure(SmileGenerator.Feature.CHECK_SHARED_NAMES, true);
+        ret.configure(SmileGenerator.Feature.CHECK_SHARED_STRING_VALUES, true);
+        return ret;
+    }
+
+    /**
+     * Returns a new object mapper using {@link #smileFactory()}.
+     */
+    public static ObjectMapper smileMapper() {
+        ObjectMapper ret = new ObjectMapper(smileFactory());
+        SemTextModule.registerModulesInto(ret);
+        return ret;
+    }
+
+    /**
+     * Returns a new CBOR factory writing repeated property names and string
+     * values only once per document, later occurrences being written as
+     * <a href="http://cbor.schmorp.de/stringref">string references</a>.
+     * Jackson reads them since 2.15, other CBOR decoders need to support the
+     * stringref tags.
+     */
+    public static CBORFactory cborFactory() {
+        CBORFactory ret = new CBORFactory();
+        ret.configure(CBORGenerator.Feature.STRINGREF, true);
+        return ret;
+    }
+
+    /**
+     * Returns a new object mapper using {@link #cborFactory()}.
+     */
+    public static ObjectMapper cborMapper() {
+        ObjectMapper ret = new ObjectMapper(cborFactory());
+        SemTextModule.registerModulesInto(ret);
+        return ret;
+    }
+}
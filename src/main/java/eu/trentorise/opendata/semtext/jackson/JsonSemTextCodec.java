@@ -0,0 +1,67 @@
+/*
+ * Copyright 2015 TrentoRISE  (trentorise.eu) .
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.trentorise.opendata.semtext.jackson;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import static com.google.common.base.Preconditions.checkNotNull;
+import eu.trentorise.opendata.semtext.SemText;
+import eu.trentorise.opendata.semtext.store.SemTextCodec;
+import java.io.IOException;
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * Encodes SemTexts as UTF-8 JSON with {@link SemTextModule}, or as Smile or
+ * CBOR when given a mapper of {@link BinaryFormats}.
+ *
+ * @author David Leoni
+ * @since 1.1.0
+ */
+@Immutable
+public final class JsonSemTextCodec implements SemTextCodec {
+
+    private final ObjectMapper objectMapper;
+
+    private JsonSemTextCodec(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Creates a codec using the given object mapper, which must have
+     * {@link SemTextModule} registered and must not be reconfigured
+     * afterwards.
+     */
+    public static JsonSemTextCodec of(ObjectMapper objectMapper) {
+        checkNotNull(objectMapper);
+        return new JsonSemTextCodec(objectMapper);
+    }
+
+    @Override
+    public byte[] encode(SemText semText) throws IOException {
+        checkNotNull(semText);
+        return objectMapper.writeValueAsBytes(semText);
+    }
+
+    @Override
+    public SemText decode(byte[] bytes) throws IOException {
+        checkNotNull(bytes);
+        return objectMapper.readValue(bytes, SemText.class);
+    }
+
+    @Override
+    public String toString() {
+        return "JsonSemTextCodec{}";
+    }
+}
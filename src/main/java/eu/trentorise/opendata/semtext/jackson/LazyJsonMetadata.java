@@ -0,0 +1,135 @@
+/*
+ * Copyright 2015 Trento Rise.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.trentorise.opendata.semtext.jackson;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.ObjectCodec;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonSerializable;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.jsontype.TypeSerializer;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import eu.trentorise.opendata.semtext.HasMetadata;
+import eu.trentorise.opendata.semtext.LazyMetadata;
+import eu.trentorise.opendata.semtext.exceptions.SemTextException;
+import java.io.IOException;
+import java.io.ObjectStreamException;
+import java.io.Serializable;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Metadata value kept as the Jackson tokens read from the input until first
+ * access. Serializing it replays the original tokens, so values never
+ * accessed are written back without a decode and encode round trip.
+ *
+ * Holders are only kept inside metadata holders, which compare and hash the
+ * decoded values. Java serialization writes the decoded value.
+ *
+ * @author David Leoni
+ * @see SemTextModule#SemTextModule(boolean, boolean)
+ */
+@ThreadSafe
+final class LazyJsonMetadata implements LazyMetadata, JsonSerializable, Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Class<? extends HasMetadata> hasMetadataClass;
+    private final String namespace;
+    private final TypeReference typeRef;
+    private final transient ObjectCodec codec;
+    private final transient TokenBuffer tokens;
+
+    @Nullable
+    private transient volatile Object value;
+
+    LazyJsonMetadata(Class<? extends HasMetadata> hasMetadataClass, String namespace, TypeReference typeRef,
+            ObjectCodec codec, TokenBuffer tokens) {
+        this.hasMetadataClass = hasMetadataClass;
+        this.namespace = namespace;
+        this.typeRef = typeRef;
+        this.codec = codec;
+        this.tokens = tokens;
+    }
+
+    @Override
+    public Object resolve() {
+        Object ret = value;
+        if (ret == null) {
+            synchronized (this) {
+                ret = value;
+                if (ret == null) {
+                    ret = decode();
+                    value = ret;
+                }
+            }
+        }
+        return ret;
+    }
+
+    private Object decode() {
+        try {
+            JsonParser parser = tokens.asParser(codec);
+            Object ret;
+            try {
+                ret = codec.readValue(parser, typeRef);
+            }
+            finally {
+                parser.close();
+            }
+            if (ret == null) {
+                throw new SemTextMetadataException("Found null metadata while deserializing!", hasMetadataClass, namespace, typeRef);
+            }
+            return ret;
+        }
+        catch (SemTextMetadataException ex) {
+            throw new SemTextException("Couldn't decode lazy metadata!", ex);
+        }
+        catch (Exception ex) {
+            throw new SemTextException("Couldn't decode lazy metadata!",
+                    new SemTextMetadataException("Jackson error while deserializing metadata - ", hasMetadataClass, namespace, typeRef, ex));
+        }
+    }
+
+    @Override
+    public boolean isResolved() {
+        return value != null;
+    }
+
+    @Override
+    public void serialize(JsonGenerator jgen, SerializerProvider provider) throws IOException {
+        tokens.serialize(jgen);
+    }
+
+    @Override
+    public void serializeWithType(JsonGenerator jgen, SerializerProvider provider, TypeSerializer typeSer) throws IOException {
+        tokens.serialize(jgen);
+    }
+
+    private Object writeReplace() throws ObjectStreamException {
+        return resolve();
+    }
+
+    /**
+     * Doesn't trigger decoding.
+     */
+    @Override
+    public String toString() {
+        Object v = value;
+        return v == null ? "LazyJsonMetadata{namespace=" + namespace + "}" : v.toString();
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2015 Trento Rise.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.trentorise.opendata.semtext.jackson;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.deser.std.DelegatingDeserializer;
+import java.io.IOException;
+
+/**
+ * Wraps the Jackson deserializers of metadata holders of a
+ * {@link SemTextModule} with lazy metadata, marking the deserialization
+ * context so that {@link MetadataDeserializer} keeps values as tokens.
+ *
+ * @author David Leoni
+ * @see SemTextModule#SemTextModule(boolean, boolean)
+ */
+class LazyMetadataDeserializer extends DelegatingDeserializer {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Deserialization context attribute set when metadata is to be decoded
+     * lazily.
+     */
+    static final Object LAZY_METADATA = new Object();
+
+    LazyMetadataDeserializer(JsonDeserializer<?> delegatee) {
+        super(delegatee);
+    }
+
+    @Override
+    protected JsonDeserializer<?> newDelegatingInstance(JsonDeserializer<?> newDelegatee) {
+        return new LazyMetadataDeserializer(newDelegatee);
+    }
+
+    @Override
+    public Object deserialize(JsonParser jp, DeserializationContext ctxt) throws IOException {
+        if (ctxt.getAttribute(LAZY_METADATA) == null) {
+            ctxt.setAttribute(LAZY_METADATA, Boolean.TRUE);
+        }
+        return _delegatee.deserialize(jp, ctxt);
+    }
+
+    /**
+     * Returns true if metadata read within the given context is to be decoded
+     * lazily.
+     */
+    static boolean isLazy(DeserializationContext ctxt) {
+        return ctxt.getAttribute(LAZY_METADATA) != null;
+    }
+}
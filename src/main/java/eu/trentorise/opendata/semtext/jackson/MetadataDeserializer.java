@@ -15,14 +15,19 @@
  */
 package eu.trentorise.opendata.semtext.jackson;
 
+import com.fasterxml.jackson.core.JsonLocation;
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.DeserializationContext;
 import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import eu.trentorise.opendata.semtext.HasMetadata;
+import eu.trentorise.opendata.semtext.Meaning;
+import eu.trentorise.opendata.semtext.metrics.Metrics;
+import eu.trentorise.opendata.semtext.metrics.SemTextOperation;
 import java.io.IOException;
 import java.util.Map;
 
@@ -41,8 +46,13 @@ class MetadataDeserializer extends StdDeserializer<Map<String, Object>> {
 
     @Override
     public Map<String, Object> deserialize(JsonParser jp, DeserializationContext ctxt) throws IOException {
+        long startNanos = Metrics.start(SemTextOperation.DESERIALIZE_METADATA);
+        long startOffset = startNanos == Metrics.DISABLED ? 0 : startOffset(jp);
 
         ImmutableMap.Builder<String, Object> retb = ImmutableMap.builder();
+        ImmutableSet<String> namespaces = SemTextModule.getMetadataNamespaces(hasMetadataClass);
+        // meanings are generated value classes, which can't hide lazy values
+        boolean lazy = !Meaning.class.equals(hasMetadataClass) && LazyMetadataDeserializer.isLazy(ctxt);
 
         while (jp.nextToken() != JsonToken.END_OBJECT) {
 
@@ -51,10 +61,19 @@ class MetadataDeserializer extends StdDeserializer<Map<String, Object>> {
             // move to next, which is "name"'s value
             jp.nextToken();
 
-            ImmutableSet<String> namespaces = SemTextModule.getMetadataNamespaces(hasMetadataClass);
             if (namespaces.contains(namespace)) {
                 TypeReference typeRef = SemTextModule.getMetadataTypeReference(hasMetadataClass, namespace);
 
+                if (lazy) {
+                    if (jp.getCurrentToken() == JsonToken.VALUE_NULL) {
+                        throw new SemTextMetadataException("Found null metadata while deserializing!", hasMetadataClass, namespace, typeRef);
+                    }
+                    TokenBuffer tokens = new TokenBuffer(jp.getCodec(), false);
+                    tokens.copyCurrentStructure(jp);
+                    retb.put(namespace, new LazyJsonMetadata(hasMetadataClass, namespace, typeRef, jp.getCodec(), tokens));
+                    continue;
+                }
+
                 Object metadata;
                 
                 try {
@@ -74,7 +93,34 @@ class MetadataDeserializer extends StdDeserializer<Map<String, Object>> {
             }
         }
 
-        return retb.build();
+        ImmutableMap<String, Object> ret = retb.build();
+        if (startNanos != Metrics.DISABLED) {
+            Metrics.record(SemTextOperation.DESERIALIZE_METADATA, startNanos, 0, 0, offset(jp) - startOffset);
+        }
+        return ret;
+    }
+
+    /**
+     * Returns the byte offset where the current token of the parser starts,
+     * or the char offset for character based inputs. Deserializers are called
+     * with the opening token already consumed, so this must be used instead
+     * of {@link #offset(com.fasterxml.jackson.core.JsonParser)} to count it.
+     */
+    static long startOffset(JsonParser jp) {
+        return offset(jp.getTokenLocation());
+    }
+
+    /**
+     * Returns the byte offset of the parser, or the char offset for character
+     * based inputs.
+     */
+    static long offset(JsonParser jp) {
+        return offset(jp.getCurrentLocation());
+    }
+
+    private static long offset(JsonLocation location) {
+        long byteOffset = location.getByteOffset();
+        return byteOffset >= 0 ? byteOffset : location.getCharOffset();
     }
 
 }
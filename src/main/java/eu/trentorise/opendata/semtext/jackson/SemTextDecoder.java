@@ -0,0 +1,411 @@
+/*
+ * Copyright 2015 TrentoRISE  (trentorise.eu) .
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.trentorise.opendata.semtext.jackson;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteBufferFeeder;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import com.google.common.base.Optional;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkPositionIndexes;
+import com.google.common.collect.ImmutableList;
+import eu.trentorise.opendata.semtext.SemText;
+import eu.trentorise.opendata.semtext.SemTexts;
+import eu.trentorise.opendata.semtext.Sentence;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * Incremental decoder of a JSON SemText, to be fed with chunks of bytes as
+ * they arrive, for example from an event loop thread. Feeding never blocks:
+ * chunks go to a Jackson non-blocking parser, and tokens are buffered until
+ * a whole top-level field or a whole sentence is available, which is then
+ * decoded with the provided object mapper. The mapper must have
+ * {@link SemTextModule} registered, and its factory must be a JSON one.
+ *
+ * Fields other than sentences are kept until the header, that is a SemText
+ * without sentences, can be built. This happens as soon as the sentences
+ * array starts, provided the text came before. Sentences are decoded one at a
+ * time and either accumulated into the final SemText or, for very large
+ * documents, handed out with {@link #pollSentence()}, so that only the
+ * largest sentence needs to be buffered. If sentences come before the text,
+ * they can't be validated, so they are all kept and handed out only once the
+ * whole SemText is decoded.
+ *
+ * {@link SemTextModule} writes metadata and layers after sentences: for such
+ * documents the header has empty metadata and no layers, while the final
+ * SemText has the actual ones.
+ *
+ * As with any Jackson non-blocking parser, bytes must be UTF-8. Chunks may
+ * split characters and tokens anywhere.
+ *
+ * @author David Leoni
+ * @since 1.1.0
+ */
+@NotThreadSafe
+public final class SemTextDecoder {
+
+    private static final String SENTENCES = "sentences";
+
+    private enum State {
+        BEFORE_OBJECT,
+        BEFORE_FIELD,
+        BEFORE_VALUE,
+        IN_VALUE,
+        BEFORE_SENTENCE,
+        IN_SENTENCE,
+        DONE
+    }
+
+    private final ObjectMapper objectMapper;
+    private final boolean keepSentences;
+    private final JsonParser parser;
+    private final ByteBufferFeeder feeder;
+
+    private State state = State.BEFORE_OBJECT;
+
+    /**
+     * Start of the object followed by the fields other than sentences read so
+     * far
+     */
+    private final TokenBuffer fields;
+    private String fieldName;
+    /**
+     * Tokens of the sentence being read
+     */
+    @Nullable
+    private TokenBuffer sentenceTokens;
+    /**
+     * Nesting of the value being buffered
+     */
+    private int depth;
+
+    private boolean textSeen = false;
+    private boolean metadataSeen = false;
+    private boolean sentencesSeen = false;
+    private boolean rawSentences = false;
+    private boolean fieldsAfterSentences = false;
+
+    @Nullable
+    private SemText header;
+    private int lastSentenceEnd = 0;
+    private final List<Sentence> sentences = new ArrayList();
+    /**
+     * Sentences found before the text, to be validated at the end
+     */
+    private final List<Sentence> uncheckedSentences = new ArrayList();
+    private final ArrayDeque<Sentence> pendingSentences = new ArrayDeque();
+    @Nullable
+    private SemText semText;
+
+    private SemTextDecoder(ObjectMapper objectMapper, boolean keepSentences) throws IOException {
+        checkNotNull(objectMapper);
+        this.objectMapper = objectMapper;
+        this.keepSentences = keepSentences;
+        this.parser = objectMapper.getFactory().createNonBlockingByteBufferParser();
+        this.feeder = (ByteBufferFeeder) parser.getNonBlockingInputFeeder();
+        this.fields = new TokenBuffer(objectMapper, false);
+        this.fields.writeStartObject();
+    }
+
+    /**
+     * Creates a decoder which puts all the sentences in the decoded SemText.
+     *
+     * @param objectMapper an object mapper with {@link SemTextModule}
+     * registered.
+     */
+    public static SemTextDecoder of(ObjectMapper objectMapper) throws IOException {
+        return new SemTextDecoder(objectMapper, true);
+    }
+
+    /**
+     * Creates a decoder.
+     *
+     * @param objectMapper an object mapper with {@link SemTextModule}
+     * registered.
+     * @param keepSentences if true decoded sentences are put in the decoded
+     * SemText, otherwise they are only handed out by {@link #pollSentence()}
+     * and the decoded SemText will have no sentences.
+     */
+    public static SemTextDecoder of(ObjectMapper objectMapper, boolean keepSentences) throws IOException {
+        return new SemTextDecoder(objectMapper, keepSentences);
+    }
+
+    /**
+     * Consumes all the remaining bytes of the buffer. The buffer can be reused
+     * once the method returns.
+     *
+     * @throws IOException on malformed input or if the SemText is not valid.
+     */
+    public void feed(ByteBuffer chunk) throws IOException {
+        checkNotNull(chunk);
+        feeder.feedInput(chunk);
+        consume();
+        chunk.position(chunk.limit());
+    }
+
+    /**
+     * Consumes {@code length} bytes of the array starting from
+     * {@code offset}.
+     *
+     * @throws IOException on malformed input or if the SemText is not valid.
+     */
+    public void feed(byte[] bytes, int offset, int length) throws IOException {
+        checkNotNull(bytes);
+        checkPositionIndexes(offset, offset + length, bytes.length);
+        feed(ByteBuffer.wrap(bytes, offset, length));
+    }
+
+    /**
+     * Signals no more bytes will be fed.
+     *
+     * @throws IOException if the SemText is not complete.
+     */
+    public void endOfInput() throws IOException {
+        feeder.endOfInput();
+        consume();
+        if (state != State.DONE) {
+            throw new JsonParseException(parser, "Unexpected end of input while decoding SemText!");
+        }
+        parser.close();
+    }
+
+    /**
+     * Returns whether the whole SemText has been decoded.
+     */
+    public boolean isDone() {
+        return state == State.DONE;
+    }
+
+    /**
+     * Returns the SemText without sentences, as soon as all fields preceding
+     * sentences have been decoded. Fields coming after sentences, like
+     * metadata and layers written by {@link SemTextModule}, are not in the
+     * header.
+     */
+    public Optional<SemText> getHeader() {
+        return Optional.fromNullable(header);
+    }
+
+    /**
+     * Returns next decoded sentence not yet handed out, or null if there is
+     * none. If the decoder keeps sentences, it always returns null.
+     */
+    @Nullable
+    public Sentence pollSentence() {
+        return pendingSentences.poll();
+    }
+
+    /**
+     * Returns the decoded SemText, once all of it has been fed.
+     */
+    public Optional<SemText> getSemText() {
+        return Optional.fromNullable(semText);
+    }
+
+    /**
+     * Processes the tokens available so far.
+     */
+    private void consume() throws IOException {
+        JsonToken token;
+        while ((token = parser.nextToken()) != JsonToken.NOT_AVAILABLE && token != null) {
+            switch (state) {
+                case BEFORE_OBJECT:
+                    if (token != JsonToken.START_OBJECT) {
+                        throw new JsonParseException(parser, "Expected start of SemText object, found " + token);
+                    }
+                    state = State.BEFORE_FIELD;
+                    break;
+                case BEFORE_FIELD:
+                    if (token == JsonToken.END_OBJECT) {
+                        finish();
+                    } else {
+                        fieldName = parser.getCurrentName();
+                        state = State.BEFORE_VALUE;
+                    }
+                    break;
+                case BEFORE_VALUE:
+                    value(token);
+                    break;
+                case IN_VALUE:
+                    fields.copyCurrentEvent(parser);
+                    if (nest(token) == 0) {
+                        state = State.BEFORE_FIELD;
+                    }
+                    break;
+                case BEFORE_SENTENCE:
+                    if (token == JsonToken.END_ARRAY) {
+                        state = State.BEFORE_FIELD;
+                        break;
+                    }
+                    sentenceTokens = new TokenBuffer(objectMapper, false);
+                    depth = 0;
+                    state = State.IN_SENTENCE;
+                // fall through
+                case IN_SENTENCE:
+                    sentenceTokens.copyCurrentEvent(parser);
+                    if (nest(token) == 0) {
+                        sentence(readSentence());
+                        state = State.BEFORE_SENTENCE;
+                    }
+                    break;
+                case DONE:
+                    throw new JsonParseException(parser, "Found content after the end of SemText!");
+                default:
+                    throw new IllegalStateException("Unknown state " + state);
+            }
+        }
+    }
+
+    /**
+     * Updates the nesting of the value being buffered with the given token.
+     *
+     * @return the new nesting
+     */
+    private int nest(JsonToken token) {
+        if (token.isStructStart()) {
+            depth++;
+        } else if (token.isStructEnd()) {
+            depth--;
+        }
+        return depth;
+    }
+
+    private void value(JsonToken token) throws IOException {
+        if (SENTENCES.equals(fieldName) && token == JsonToken.START_ARRAY) {
+            if (sentencesSeen) {
+                throw new JsonParseException(parser, "Found SemText sentences twice!");
+            }
+            sentencesSeen = true;
+            if (textSeen) {
+                header = parseFields();
+            }
+            state = State.BEFORE_SENTENCE;
+            return;
+        }
+        if (SENTENCES.equals(fieldName)) {
+            rawSentences = true;
+        } else if (sentencesSeen) {
+            fieldsAfterSentences = true;
+        }
+        if ("text".equals(fieldName)) {
+            textSeen = true;
+        } else if ("metadata".equals(fieldName)) {
+            metadataSeen = true;
+        }
+        fields.writeFieldName(fieldName);
+        fields.copyCurrentEvent(parser);
+        depth = 0;
+        state = nest(token) == 0 ? State.BEFORE_FIELD : State.IN_VALUE;
+    }
+
+    private Sentence readSentence() throws IOException {
+        JsonParser sentenceParser = sentenceTokens.asParser();
+        try {
+            return objectMapper.readValue(sentenceParser, Sentence.class);
+        }
+        finally {
+            sentenceParser.close();
+            sentenceTokens = null;
+        }
+    }
+
+    private void checkSentence(Sentence sentence) throws IOException {
+        try {
+            SemTexts.checkSpans(ImmutableList.of(sentence), lastSentenceEnd, header.getText().length(),
+                    "Invalid sentence found!");
+        }
+        catch (IllegalArgumentException ex) {
+            throw new JsonParseException(parser, ex.getMessage(), ex);
+        }
+        lastSentenceEnd = sentence.getEnd();
+    }
+
+    private void sentence(Sentence sentence) throws IOException {
+        if (header == null) {
+            uncheckedSentences.add(sentence);
+            return;
+        }
+        checkSentence(sentence);
+        add(sentence);
+    }
+
+    private void add(Sentence sentence) {
+        if (keepSentences) {
+            sentences.add(sentence);
+        } else {
+            pendingSentences.add(sentence);
+        }
+    }
+
+    /**
+     * Parses the fields read so far as a SemText without sentences.
+     */
+    private SemText parseFields() throws IOException {
+        TokenBuffer object = new TokenBuffer(objectMapper, false);
+        fields.serialize(object);
+        // metadata may still have to come after sentences
+        if (!metadataSeen) {
+            object.writeFieldName("metadata");
+            object.writeStartObject();
+            object.writeEndObject();
+        }
+        if (!rawSentences) {
+            object.writeFieldName(SENTENCES);
+            object.writeStartArray();
+            object.writeEndArray();
+        }
+        object.writeEndObject();
+        JsonParser objectParser = object.asParser();
+        try {
+            return objectMapper.readValue(objectParser, SemText.class);
+        }
+        finally {
+            objectParser.close();
+        }
+    }
+
+    private void finish() throws IOException {
+        SemText ret = header == null || fieldsAfterSentences ? parseFields() : header;
+        if (header == null) {
+            header = ret;
+        }
+        for (Sentence sentence : uncheckedSentences) {
+            checkSentence(sentence);
+            add(sentence);
+        }
+        uncheckedSentences.clear();
+        if (keepSentences && !sentences.isEmpty()) {
+            try {
+                ret = ret.withSentences(sentences);
+            }
+            catch (IllegalArgumentException ex) {
+                throw new JsonParseException(parser, ex.getMessage(), ex);
+            }
+            sentences.clear();
+        }
+        semText = ret;
+        state = State.DONE;
+    }
+}
@@ -16,12 +16,20 @@
 package eu.trentorise.opendata.semtext.jackson;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonValue;
 import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.BeanDescription;
+import com.fasterxml.jackson.databind.DeserializationConfig;
+import com.fasterxml.jackson.databind.JsonDeserializer;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.deser.BeanDeserializerModifier;
 import com.fasterxml.jackson.databind.module.SimpleModule;
 import static com.google.common.base.Preconditions.checkNotNull;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import eu.trentorise.opendata.commons.Dict;
 import static eu.trentorise.opendata.commons.TodUtils.checkNotEmpty;
@@ -31,6 +39,7 @@ import eu.trentorise.opendata.semtext.Meaning;
 import eu.trentorise.opendata.semtext.MeaningKind;
 import eu.trentorise.opendata.semtext.MeaningStatus;
 import eu.trentorise.opendata.semtext.SemText;
+import eu.trentorise.opendata.semtext.SemTextSlice;
 import eu.trentorise.opendata.semtext.Sentence;
 import eu.trentorise.opendata.semtext.Term;
 import eu.trentorise.opendata.semtext.exceptions.SemTextNotFoundException;
@@ -59,6 +68,8 @@ public final class SemTextModule extends SimpleModule {
      */
     private static final Map<String, Map<String, TypeReference>> METADATA_NAMESPACES = new HashMap();
 
+    private final boolean lazyMetadata;
+
     public static final class MeaningMetadataDeserializer extends MetadataDeserializer {
 
         private MeaningMetadataDeserializer() {
@@ -89,6 +100,9 @@ public final class SemTextModule extends SimpleModule {
             return null;
 
         }
+
+        @JsonProperty("metadata")
+        abstract ImmutableMap<String, ?> getRawMetadata();
     }
 
     private static final class SentenceMetadataDeserializer extends MetadataDeserializer {
@@ -109,6 +123,9 @@ public final class SemTextModule extends SimpleModule {
                 @JsonProperty("metadata") Map<String, ?> metadata) {
             return null;
         }
+
+        @JsonProperty("metadata")
+        abstract ImmutableMap<String, ?> getRawMetadata();
     }
 
     private static final class SemTextMetadataDeserializer extends MetadataDeserializer {
@@ -126,22 +143,93 @@ public final class SemTextModule extends SimpleModule {
                 @JsonProperty("text") String text,
                 @JsonProperty("sentences") Iterable<Sentence> sentences,
                 @JsonDeserialize(using = SemTextMetadataDeserializer.class)
-                @JsonProperty("metadata") Map<String, ?> metadata) {
+                @JsonProperty("metadata") Map<String, ?> metadata,
+                @JsonProperty("layers") @Nullable Map<String, Iterable<Term>> layers) {
             return null;
         }
+
+        @JsonInclude(JsonInclude.Include.NON_EMPTY)
+        abstract ImmutableMap<String, ImmutableList<Term>> getLayers();
+
+        @JsonProperty("metadata")
+        abstract ImmutableMap<String, ?> getRawMetadata();
+    }
+
+    private abstract static class JacksonSemTextSlice {
+
+        @JsonValue
+        abstract SemText freeze();
     }
 
     /**
      * Creates the module and registers all the needed serializaers and
-     * deserializers
+     * deserializers. SemText serializer and deserializer are wrapped to
+     * record {@link eu.trentorise.opendata.semtext.metrics.Metrics metrics}.
      */
     public SemTextModule() {
+        this(false, false);
+    }
+
+    /**
+     * Creates the module and registers all the needed serializaers and
+     * deserializers.
+     *
+     * @param meaningIdsOnly if true, meanings are serialized without name and
+     * description, which can be later restored from a
+     * {@link eu.trentorise.opendata.semtext.catalog.MeaningCatalog MeaningCatalog}
+     * with
+     * {@link eu.trentorise.opendata.semtext.SemTexts#resolveMeanings(eu.trentorise.opendata.semtext.SemText, eu.trentorise.opendata.semtext.catalog.MeaningCatalog) SemTexts.resolveMeanings}
+     * @since 1.1.0
+     */
+    public SemTextModule(boolean meaningIdsOnly) {
+        this(meaningIdsOnly, false);
+    }
+
+    /**
+     * Creates the module and registers all the needed serializaers and
+     * deserializers.
+     *
+     * @param meaningIdsOnly see {@link #SemTextModule(boolean)}
+     * @param lazyMetadata if true, metadata of registered namespaces of
+     * SemTexts, sentences and terms is decoded only when first requested with
+     * {@link HasMetadata#getMetadata(java.lang.String)}. In lazy mode each
+     * value is kept as the tokens read from the input, and values never
+     * requested are serialized again by replaying those tokens. Decoding
+     * errors are then reported as
+     * {@link eu.trentorise.opendata.semtext.exceptions.SemTextException} at
+     * first access, with a {@link SemTextMetadataException} as cause. Meaning
+     * metadata is always decoded while deserializing.
+     * @see eu.trentorise.opendata.semtext.LazyMetadata
+     * @since 1.1.0
+     */
+    public SemTextModule(boolean meaningIdsOnly, final boolean lazyMetadata) {
         super("tod-commons-jackson", TodCommonsModule.readJacksonVersion(SemTextModule.class));
        
         setMixInAnnotation(Term.class, JacksonTerm.class);
         setMixInAnnotation(Sentence.class, JacksonSentence.class);
         setMixInAnnotation(SemText.class, JacksonSemText.class);
+        setMixInAnnotation(SemTextSlice.class, JacksonSemTextSlice.class);
 
+        this.lazyMetadata = lazyMetadata;
+
+        setSerializerModifier(new SemTextSerializerModifier(meaningIdsOnly));
+
+        setDeserializerModifier(new BeanDeserializerModifier() {
+            @Override
+            public JsonDeserializer<?> modifyDeserializer(DeserializationConfig config, BeanDescription beanDesc,
+                    JsonDeserializer<?> deserializer) {
+                Class<?> beanClass = beanDesc.getBeanClass();
+                JsonDeserializer<?> ret = deserializer;
+                if (lazyMetadata && (SemText.class.equals(beanClass) || Sentence.class.equals(beanClass)
+                        || Term.class.equals(beanClass))) {
+                    ret = new LazyMetadataDeserializer(ret);
+                }
+                if (SemText.class.equals(beanClass)) {
+                    ret = new TimedSemTextDeserializer(ret);
+                }
+                return ret;
+            }
+        });
     }
 
     @Override
@@ -163,6 +251,30 @@ public final class SemTextModule extends SimpleModule {
         om.registerModule(new SemTextModule());
     }
 
+    /**
+     * Registers in the provided object mapper the jackson semtext module and
+     * also the required tod commons and guava modules.
+     *
+     * @param meaningIdsOnly see {@link #SemTextModule(boolean)}
+     * @since 1.1.0
+     */
+    public static void registerModulesInto(ObjectMapper om, boolean meaningIdsOnly) {
+        TodCommonsModule.registerModulesInto(om);
+        om.registerModule(new SemTextModule(meaningIdsOnly));
+    }
+
+    /**
+     * Registers in the provided object mapper the jackson semtext module and
+     * also the required tod commons and guava modules.
+     *
+     * @see #SemTextModule(boolean, boolean)
+     * @since 1.1.0
+     */
+    public static void registerModulesInto(ObjectMapper om, boolean meaningIdsOnly, boolean lazyMetadata) {
+        TodCommonsModule.registerModulesInto(om);
+        om.registerModule(new SemTextModule(meaningIdsOnly, lazyMetadata));
+    }
+
     /**
      * Registers the provided namespace to the corresponding metadata class, so
      * Jackson will know how to deserialize objects under that namespace. The
@@ -219,6 +331,16 @@ public final class SemTextModule extends SimpleModule {
         METADATA_NAMESPACES.put(hasMetadataClass.getName(), namespaceMapping);
     }
 
+    /**
+     * Returns true if this module decodes metadata on first access, see
+     * {@link #SemTextModule(boolean, boolean)}
+     *
+     * @since 1.1.0
+     */
+    public boolean isLazyMetadata() {
+        return lazyMetadata;
+    }
+
     /**
      * Unregisters all the previously registered metadata namespaces.
      */
@@ -0,0 +1,297 @@
+/*
+ * Copyright 2015 TrentoRISE  (trentorise.eu) .
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.trentorise.opendata.semtext.jackson;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import static com.google.common.base.Preconditions.checkNotNull;
+import com.google.common.collect.ImmutableList;
+import eu.trentorise.opendata.semtext.SemText;
+import eu.trentorise.opendata.semtext.SemTexts;
+import eu.trentorise.opendata.semtext.Sentence;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * Reads a JSON SemText one sentence at a time, so that arbitrarily long
+ * documents can be processed with memory bounded by the largest sentence.
+ *
+ * First the header, that is a SemText with locale, text, metadata and layers
+ * but without sentences, is read with {@link #readHeader()}, then sentences
+ * are read in order with {@link #readSentence()}. Sentences are written last
+ * by {@link SemTextWriter}, while {@link SemTextModule} writes metadata and
+ * layers after sentences: in this case the header holds only locale and text,
+ * and full data is returned by {@link #finish()} once sentences are read. If
+ * sentences come before the text, they are all kept in memory until the text
+ * is found.
+ *
+ * Example:
+ * <pre>
+ * SemTextReader reader = SemTextReader.of(objectMapper, inputStream);
+ * SemText header = reader.readHeader();
+ * Sentence sentence;
+ * while ((sentence = reader.readSentence()) != null) {
+ *     // process sentence
+ * }
+ * reader.close();
+ * </pre>
+ *
+ * @author David Leoni
+ * @since 1.1.0
+ */
+@NotThreadSafe
+public final class SemTextReader implements Closeable {
+
+    private static final String SENTENCES = "sentences";
+
+    private final ObjectMapper objectMapper;
+    private final JsonParser parser;
+
+    /**
+     * Start of the object followed by the fields other than sentences read so
+     * far
+     */
+    private final TokenBuffer fields;
+
+    private boolean started = false;
+    private boolean textSeen = false;
+    private boolean metadataSeen = false;
+    private boolean rawSentences = false;
+    private boolean sentencesSeen = false;
+    private boolean inSentences = false;
+    private boolean done = false;
+
+    @Nullable
+    private SemText header;
+    @Nullable
+    private Iterator<Sentence> bufferedSentences;
+    private int lastSentenceEnd = 0;
+
+    private SemTextReader(ObjectMapper objectMapper, JsonParser parser) throws IOException {
+        this.objectMapper = objectMapper;
+        this.parser = parser;
+        this.fields = new TokenBuffer(objectMapper, false);
+        this.fields.writeStartObject();
+    }
+
+    /**
+     * Creates a reader of UTF-8 JSON bytes.
+     *
+     * @param objectMapper an object mapper with {@link SemTextModule}
+     * registered.
+     */
+    public static SemTextReader of(ObjectMapper objectMapper, InputStream in) throws IOException {
+        checkNotNull(objectMapper);
+        checkNotNull(in);
+        return new SemTextReader(objectMapper, objectMapper.getFactory().createParser(in));
+    }
+
+    /**
+     * Creates a reader of JSON characters.
+     *
+     * @param objectMapper an object mapper with {@link SemTextModule}
+     * registered.
+     */
+    public static SemTextReader of(ObjectMapper objectMapper, Reader in) throws IOException {
+        checkNotNull(objectMapper);
+        checkNotNull(in);
+        return new SemTextReader(objectMapper, objectMapper.getFactory().createParser(in));
+    }
+
+    /**
+     * Reads fields other than sentences, until the sentences array starts or
+     * the object ends.
+     *
+     * @return true if the parser is positioned at the start of the sentences
+     * array.
+     */
+    private boolean readFields() throws IOException {
+        if (!started) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new JsonParseException("Expected start of SemText object, found " + parser.getCurrentToken(),
+                        parser.getCurrentLocation());
+            }
+            started = true;
+        }
+        JsonToken token;
+        while ((token = parser.nextToken()) == JsonToken.FIELD_NAME) {
+            String name = parser.getCurrentName();
+            JsonToken valueToken = parser.nextToken();
+            if (SENTENCES.equals(name) && valueToken == JsonToken.START_ARRAY) {
+                if (sentencesSeen) {
+                    throw new JsonParseException("Found SemText sentences twice!", parser.getCurrentLocation());
+                }
+                sentencesSeen = true;
+                inSentences = true;
+                return true;
+            }
+            if (SENTENCES.equals(name)) {
+                rawSentences = true;
+            } else if ("text".equals(name)) {
+                textSeen = true;
+            } else if ("metadata".equals(name)) {
+                metadataSeen = true;
+            }
+            fields.writeFieldName(name);
+            fields.copyCurrentStructure(parser);
+        }
+        if (token != JsonToken.END_OBJECT) {
+            throw new JsonParseException("Expected end of SemText object, found " + token,
+                    parser.getCurrentLocation());
+        }
+        done = true;
+        return false;
+    }
+
+    /**
+     * Parses the fields read so far as a SemText without sentences.
+     */
+    private SemText parseFields() throws IOException {
+        TokenBuffer object = new TokenBuffer(objectMapper, false);
+        fields.serialize(object);
+        // metadata may still have to come after sentences
+        if (!metadataSeen) {
+            object.writeFieldName("metadata");
+            object.writeStartObject();
+            object.writeEndObject();
+        }
+        if (!rawSentences) {
+            object.writeFieldName(SENTENCES);
+            object.writeStartArray();
+            object.writeEndArray();
+        }
+        object.writeEndObject();
+        JsonParser objectParser = object.asParser();
+        try {
+            return objectMapper.readValue(objectParser, SemText.class);
+        }
+        finally {
+            objectParser.close();
+        }
+    }
+
+    @Nullable
+    private Sentence parseSentence() throws IOException {
+        if (parser.nextToken() == JsonToken.END_ARRAY) {
+            inSentences = false;
+            return null;
+        }
+        return objectMapper.readValue(parser, Sentence.class);
+    }
+
+    private void checkSentence(Sentence sentence) throws IOException {
+        try {
+            SemTexts.checkSpans(ImmutableList.of(sentence), lastSentenceEnd, header.getText().length(),
+                    "Invalid sentence found!");
+        }
+        catch (IllegalArgumentException ex) {
+            throw new JsonParseException(ex.getMessage(), parser.getCurrentLocation(), ex);
+        }
+        lastSentenceEnd = sentence.getEnd();
+    }
+
+    /**
+     * Returns the SemText without sentences, reading it if needed.
+     *
+     * @throws IOException on malformed input or if the SemText is not valid.
+     */
+    public SemText readHeader() throws IOException {
+        if (header != null) {
+            return header;
+        }
+        if (readFields() && !textSeen) {
+            // can't validate sentences without the text, so they must be kept
+            List<Sentence> sentences = new ArrayList();
+            Sentence sentence;
+            while ((sentence = parseSentence()) != null) {
+                sentences.add(sentence);
+            }
+            readFields();
+            header = parseFields();
+            for (Sentence s : sentences) {
+                checkSentence(s);
+            }
+            bufferedSentences = sentences.iterator();
+        } else {
+            header = parseFields();
+        }
+        return header;
+    }
+
+    /**
+     * Returns the next sentence, or null if there are no more sentences.
+     *
+     * @throws IOException on malformed input or if the sentence is not valid.
+     */
+    @Nullable
+    public Sentence readSentence() throws IOException {
+        readHeader();
+        if (bufferedSentences != null) {
+            return bufferedSentences.hasNext() ? bufferedSentences.next() : null;
+        }
+        if (!inSentences) {
+            return null;
+        }
+        Sentence ret = parseSentence();
+        if (ret == null) {
+            readFields();
+        } else {
+            checkSentence(ret);
+        }
+        return ret;
+    }
+
+    /**
+     * Skips sentences not read yet and returns the SemText without sentences,
+     * including fields found after sentences.
+     *
+     * @throws IOException on malformed input or if the SemText is not valid.
+     */
+    public SemText finish() throws IOException {
+        readHeader();
+        if (inSentences) {
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                parser.skipChildren();
+            }
+            inSentences = false;
+        }
+        if (!done) {
+            readFields();
+        }
+        if (bufferedSentences != null) {
+            bufferedSentences = ImmutableList.<Sentence>of().iterator();
+        }
+        return parseFields();
+    }
+
+    /**
+     * Closes the reader and the underlying source.
+     */
+    @Override
+    public void close() throws IOException {
+        parser.close();
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2015 Trento Rise.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.trentorise.opendata.semtext.jackson;
+
+import com.fasterxml.jackson.databind.BeanDescription;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializationConfig;
+import com.fasterxml.jackson.databind.ser.BeanPropertyWriter;
+import com.fasterxml.jackson.databind.ser.BeanSerializerModifier;
+import eu.trentorise.opendata.semtext.Meaning;
+import eu.trentorise.opendata.semtext.SemText;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Wraps the {@link SemText} serializer for metrics and optionally drops
+ * meaning names and descriptions.
+ *
+ * @author David Leoni
+ */
+class SemTextSerializerModifier extends BeanSerializerModifier {
+
+    private final boolean meaningIdsOnly;
+
+    SemTextSerializerModifier(boolean meaningIdsOnly) {
+        this.meaningIdsOnly = meaningIdsOnly;
+    }
+
+    @Override
+    public List<BeanPropertyWriter> changeProperties(SerializationConfig config, BeanDescription beanDesc,
+            List<BeanPropertyWriter> beanProperties) {
+        if (!meaningIdsOnly || !Meaning.class.isAssignableFrom(beanDesc.getBeanClass())) {
+            return beanProperties;
+        }
+        List<BeanPropertyWriter> ret = new ArrayList();
+        for (BeanPropertyWriter writer : beanProperties) {
+            if (!"name".equals(writer.getName()) && !"description".equals(writer.getName())) {
+                ret.add(writer);
+            }
+        }
+        return ret;
+    }
+
+    @Override
+    public JsonSerializer<?> modifySerializer(SerializationConfig config, BeanDescription beanDesc,
+            JsonSerializer<?> serializer) {
+        if (SemText.class.equals(beanDesc.getBeanClass())) {
+            return new TimedSemTextSerializer((JsonSerializer<Object>) serializer);
+        }
+        return serializer;
+    }
+}
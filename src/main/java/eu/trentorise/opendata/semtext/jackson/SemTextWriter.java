@@ -0,0 +1,161 @@
+/*
+ * Copyright 2015 TrentoRISE  (trentorise.eu) .
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.trentorise.opendata.semtext.jackson;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+import com.google.common.collect.ImmutableList;
+import eu.trentorise.opendata.semtext.SemText;
+import eu.trentorise.opendata.semtext.SemTexts;
+import eu.trentorise.opendata.semtext.Sentence;
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * Writes a JSON SemText one sentence at a time, to be read back with
+ * {@link SemTextReader} or any reader of {@link SemTextModule} JSON.
+ *
+ * The header, that is locale, text, metadata, layers and possibly some
+ * sentences, is written on creation, further sentences are written by
+ * {@link #write(eu.trentorise.opendata.semtext.Sentence)} and the SemText is
+ * completed by {@link #close()}. Writing a SemText as header and closing the
+ * writer gives the same fields of {@link SemTextModule} output, with
+ * sentences moved last so that readers get the whole header first.
+ *
+ * @author David Leoni
+ * @since 1.1.0
+ */
+@NotThreadSafe
+public final class SemTextWriter implements Closeable, Flushable {
+
+    private static final String SENTENCES = "sentences";
+
+    private final JsonGenerator generator;
+    private final ObjectWriter sentenceWriter;
+    private final int textLength;
+    private int lastSentenceEnd = 0;
+    private boolean closed = false;
+
+    private SemTextWriter(ObjectMapper objectMapper, JsonGenerator generator, SemText header) throws IOException {
+        this.generator = generator;
+        this.sentenceWriter = objectMapper.writer()
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        this.textLength = header.getText().length();
+
+        TokenBuffer headerTokens = new TokenBuffer(objectMapper, false);
+        objectMapper.writeValue(headerTokens, header.withSentences(ImmutableList.<Sentence>of()));
+        JsonParser headerParser = headerTokens.asParser();
+        try {
+            headerParser.nextToken();
+            generator.writeStartObject();
+            while (headerParser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = headerParser.getCurrentName();
+                headerParser.nextToken();
+                if (SENTENCES.equals(name)) {
+                    headerParser.skipChildren();
+                } else {
+                    generator.writeFieldName(name);
+                    generator.copyCurrentStructure(headerParser);
+                }
+            }
+        }
+        finally {
+            headerParser.close();
+        }
+        generator.writeFieldName(SENTENCES);
+        generator.writeStartArray();
+
+        for (Sentence sentence : header.getSentences()) {
+            write(sentence);
+        }
+    }
+
+    /**
+     * Creates a writer of UTF-8 JSON bytes and writes the header.
+     *
+     * @param objectMapper an object mapper with {@link SemTextModule}
+     * registered.
+     * @param header the SemText to write, further sentences will be appended
+     * to its ones.
+     */
+    public static SemTextWriter of(ObjectMapper objectMapper, OutputStream out, SemText header) throws IOException {
+        checkNotNull(objectMapper);
+        checkNotNull(out);
+        checkNotNull(header);
+        return new SemTextWriter(objectMapper, objectMapper.getFactory().createGenerator(out, JsonEncoding.UTF8),
+                header);
+    }
+
+    /**
+     * Creates a writer of JSON characters and writes the header.
+     *
+     * @param objectMapper an object mapper with {@link SemTextModule}
+     * registered.
+     * @param header the SemText to write, further sentences will be appended
+     * to its ones.
+     */
+    public static SemTextWriter of(ObjectMapper objectMapper, Writer out, SemText header) throws IOException {
+        checkNotNull(objectMapper);
+        checkNotNull(out);
+        checkNotNull(header);
+        return new SemTextWriter(objectMapper, objectMapper.getFactory().createGenerator(out), header);
+    }
+
+    /**
+     * Writes a sentence.
+     *
+     * @throws IllegalArgumentException if the sentence is not within the text
+     * or doesn't follow previously written sentences.
+     */
+    public void write(Sentence sentence) throws IOException {
+        checkNotNull(sentence);
+        checkState(!closed, "Tried to write a sentence into a closed SemText writer!");
+        SemTexts.checkSpans(ImmutableList.of(sentence), lastSentenceEnd, textLength, "Invalid sentence to write!");
+        sentenceWriter.writeValue(generator, sentence);
+        lastSentenceEnd = sentence.getEnd();
+    }
+
+    @Override
+    public void flush() throws IOException {
+        generator.flush();
+    }
+
+    /**
+     * Completes the SemText and closes the writer and the underlying target.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        generator.writeEndArray();
+        generator.writeEndObject();
+        generator.close();
+    }
+}
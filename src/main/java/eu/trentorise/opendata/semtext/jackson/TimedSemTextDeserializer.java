@@ -0,0 +1,59 @@
+/*
+ * Copyright 2015 Trento Rise.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.trentorise.opendata.semtext.jackson;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.deser.std.DelegatingDeserializer;
+import eu.trentorise.opendata.semtext.SemText;
+import eu.trentorise.opendata.semtext.metrics.Metrics;
+import eu.trentorise.opendata.semtext.metrics.SemTextOperation;
+import java.io.IOException;
+
+/**
+ * Wraps the Jackson deserializer of {@link SemText} to record
+ * {@link SemTextOperation#DESERIALIZE} measurements.
+ *
+ * @author David Leoni
+ */
+class TimedSemTextDeserializer extends DelegatingDeserializer {
+
+    private static final long serialVersionUID = 1L;
+
+    TimedSemTextDeserializer(JsonDeserializer<?> delegatee) {
+        super(delegatee);
+    }
+
+    @Override
+    protected JsonDeserializer<?> newDelegatingInstance(JsonDeserializer<?> newDelegatee) {
+        return new TimedSemTextDeserializer(newDelegatee);
+    }
+
+    @Override
+    public Object deserialize(JsonParser jp, DeserializationContext ctxt) throws IOException {
+        long startNanos = Metrics.start(SemTextOperation.DESERIALIZE);
+        if (startNanos == Metrics.DISABLED) {
+            return _delegatee.deserialize(jp, ctxt);
+        }
+        long startOffset = MetadataDeserializer.startOffset(jp);
+        Object ret = _delegatee.deserialize(jp, ctxt);
+        TimedSemTextSerializer.record(SemTextOperation.DESERIALIZE, startNanos, ret,
+                MetadataDeserializer.offset(jp) - startOffset);
+        return ret;
+    }
+
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2015 Trento Rise.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.trentorise.opendata.semtext.jackson;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.BeanProperty;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.jsontype.TypeSerializer;
+import com.fasterxml.jackson.databind.ser.ContextualSerializer;
+import com.fasterxml.jackson.databind.ser.ResolvableSerializer;
+import eu.trentorise.opendata.semtext.SemText;
+import eu.trentorise.opendata.semtext.Sentence;
+import eu.trentorise.opendata.semtext.Term;
+import eu.trentorise.opendata.semtext.metrics.Metrics;
+import eu.trentorise.opendata.semtext.metrics.SemTextOperation;
+import java.io.IOException;
+
+/**
+ * Wraps the Jackson serializer of {@link SemText} to record
+ * {@link SemTextOperation#SERIALIZE} measurements. Resolution and
+ * contextualization are forwarded to the wrapped serializer.
+ *
+ * @author David Leoni
+ */
+class TimedSemTextSerializer extends JsonSerializer<Object> implements ResolvableSerializer, ContextualSerializer {
+
+    private final JsonSerializer<Object> delegate;
+
+    TimedSemTextSerializer(JsonSerializer<Object> delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public void serialize(Object value, JsonGenerator jgen, SerializerProvider provider) throws IOException {
+        long startNanos = Metrics.start(SemTextOperation.SERIALIZE);
+        delegate.serialize(value, jgen, provider);
+        record(SemTextOperation.SERIALIZE, startNanos, value, 0);
+    }
+
+    @Override
+    public void serializeWithType(Object value, JsonGenerator jgen, SerializerProvider provider,
+            TypeSerializer typeSer) throws IOException {
+        long startNanos = Metrics.start(SemTextOperation.SERIALIZE);
+        delegate.serializeWithType(value, jgen, provider, typeSer);
+        record(SemTextOperation.SERIALIZE, startNanos, value, 0);
+    }
+
+    @Override
+    public boolean usesObjectId() {
+        return delegate.usesObjectId();
+    }
+
+    @Override
+    public Class<Object> handledType() {
+        return delegate.handledType();
+    }
+
+    @Override
+    public void resolve(SerializerProvider provider) throws JsonMappingException {
+        if (delegate instanceof ResolvableSerializer) {
+            ((ResolvableSerializer) delegate).resolve(provider);
+        }
+    }
+
+    @Override
+    public JsonSerializer<?> createContextual(SerializerProvider prov, BeanProperty property) throws JsonMappingException {
+        if (delegate instanceof ContextualSerializer) {
+            JsonSerializer<?> contextual = ((ContextualSerializer) delegate).createContextual(prov, property);
+            if (contextual != delegate) {
+                return new TimedSemTextSerializer((JsonSerializer<Object>) contextual);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Records a (de)serialization of {@code value}, counting its terms and
+     * meanings. Does nothing if {@code startNanos} is {@link Metrics#DISABLED}.
+     */
+    static void record(SemTextOperation operation, long startNanos, Object value, long bytes) {
+        if (startNanos == Metrics.DISABLED || !(value instanceof SemText)) {
+            return;
+        }
+        SemText semText = (SemText) value;
+        int terms = 0;
+        int meanings = 0;
+        for (Sentence sentence : semText.getSentences()) {
+            for (Term term : sentence.getTerms()) {
+                terms += 1;
+                meanings += term.getMeanings().size();
+            }
+        }
+        Metrics.record(operation, startNanos, semText.getText().length(), semText.getSentences().size(), terms,
+                meanings, bytes);
+    }
+}
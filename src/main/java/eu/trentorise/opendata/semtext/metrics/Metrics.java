@@ -0,0 +1,315 @@
+/* 
+ * Copyright 2015 TrentoRISE  (trentorise.eu) .
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.trentorise.opendata.semtext.metrics;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.annotation.Nullable;
+
+/**
+ * Records measurements of semtext operations and delivers them to the
+ * registered {@link SemTextMetrics} listener. By default the listener is
+ * {@link #NOOP} and recording costs a volatile read per operation.
+ *
+ * <p>
+ * When a listener is registered, each thread accumulates counters in a
+ * thread local and flushes them to the listener every
+ * {@link #FLUSH_EVENTS} operations or when {@link #FLUSH_NANOS} have passed
+ * since last flush, whichever comes first. Call {@link #flush()} to flush
+ * the counters of the current thread, i.e. before a worker thread ends.
+ * </p>
+ *
+ * <p>
+ * Independently of the listener a {@link SemTextTracer} may be registered to
+ * receive every single operation. When the library runs on a JVM with Java
+ * Flight Recorder and was built with the {@code jfr} sources, a tracer
+ * emitting JFR events is installed automatically and registers itself only
+ * while a recording is running.
+ * </p>
+ *
+ * Methods {@link #start(SemTextOperation)} and
+ * {@link #record(SemTextOperation, long, long, long, long, long, long)} are
+ * meant to be called by the library itself.
+ *
+ * @author David Leoni
+ * @since 1.1.0
+ */
+public final class Metrics {
+
+    private static final Logger LOG = Logger.getLogger(Metrics.class.getName());
+
+    /**
+     * Start time returned by {@link #start(SemTextOperation)} when no listener is registered.
+     */
+    public static final long DISABLED = Long.MIN_VALUE;
+
+    /**
+     * Class of the Java Flight Recorder tracer, which is only compiled when
+     * building on JDK 11 or later.
+     */
+    static final String JFR_TRACER_CLASS = "eu.trentorise.opendata.semtext.jfr.JfrSemTextTracer";
+
+    /**
+     * Number of recorded operations after which a thread flushes its
+     * counters.
+     */
+    public static final int FLUSH_EVENTS = 1000;
+
+    /**
+     * Nanoseconds after which a thread flushes its counters at next recorded
+     * operation.
+     */
+    public static final long FLUSH_NANOS = 1000L * 1000L * 1000L;
+
+    /**
+     * Listener that discards everything.
+     */
+    public static final SemTextMetrics NOOP = new SemTextMetrics() {
+        @Override
+        public void onFlush(SemTextOperation operation, long calls, long nanos, long terms, long meanings, long bytes) {
+        }
+
+        @Override
+        public String toString() {
+            return "Metrics.NOOP";
+        }
+    };
+
+    private static final int OPERATIONS = SemTextOperation.values().length;
+
+    private static volatile SemTextMetrics listener = NOOP;
+
+    @Nullable
+    private static volatile SemTextTracer tracer;
+
+    /**
+     * True when there is a listener or a tracer, so {@link #start(SemTextOperation)} needs a
+     * single volatile read.
+     */
+    private static volatile boolean active;
+
+    private static final ThreadLocal<Counters> COUNTERS = new ThreadLocal<Counters>() {
+        @Override
+        protected Counters initialValue() {
+            return new Counters();
+        }
+    };
+
+    /**
+     * Per-thread counters, indexed by operation ordinal.
+     */
+    private static final class Counters {
+
+        final long[] calls = new long[OPERATIONS];
+        final long[] nanos = new long[OPERATIONS];
+        final long[] terms = new long[OPERATIONS];
+        final long[] meanings = new long[OPERATIONS];
+        final long[] bytes = new long[OPERATIONS];
+        int events;
+        long lastFlush = System.nanoTime();
+    }
+
+    static {
+        installJfrTracer();
+    }
+
+    private Metrics() {
+    }
+
+    /**
+     * Installs the Java Flight Recorder tracer if it was compiled and the JVM
+     * supports it, otherwise does nothing.
+     */
+    private static void installJfrTracer() {
+        try {
+            Class.forName(JFR_TRACER_CLASS).getMethod("install").invoke(null);
+        }
+        catch (ClassNotFoundException ex) {
+            LOG.log(Level.FINE, "Java Flight Recorder tracer not available, skipping it.");
+        }
+        catch (LinkageError ex) {
+            LOG.log(Level.FINE, "Java Flight Recorder not supported by this JVM, skipping its tracer.", ex);
+        }
+        catch (Exception ex) {
+            LOG.log(Level.WARNING, "Couldn't install Java Flight Recorder tracer, skipping it.", ex);
+        }
+    }
+
+    private static void updateActive() {
+        active = listener != NOOP || tracer != null;
+    }
+
+    /**
+     * Registers the listener which will receive measurements, replacing the
+     * previous one.
+     */
+    public static void register(SemTextMetrics metrics) {
+        checkNotNull(metrics);
+        listener = metrics;
+        updateActive();
+    }
+
+    /**
+     * Restores the {@link #NOOP} listener. Counters not yet flushed are
+     * discarded at next flush.
+     */
+    public static void clear() {
+        listener = NOOP;
+        updateActive();
+    }
+
+    /**
+     * Returns the registered listener, which is {@link #NOOP} if none was
+     * registered.
+     */
+    public static SemTextMetrics getListener() {
+        return listener;
+    }
+
+    /**
+     * Returns true if a listener other than {@link #NOOP} is registered.
+     */
+    public static boolean isEnabled() {
+        return listener != NOOP;
+    }
+
+    /**
+     * Registers the tracer which will receive every single operation,
+     * replacing the previous one. Passing null removes the tracer.
+     */
+    public static void registerTracer(@Nullable SemTextTracer semTextTracer) {
+        tracer = semTextTracer;
+        updateActive();
+    }
+
+    /**
+     * Returns the registered tracer, or null if there is none.
+     */
+    @Nullable
+    public static SemTextTracer getTracer() {
+        return tracer;
+    }
+
+    /**
+     * Returns the current time to pass to
+     * {@link #record(SemTextOperation, long, long, long, long, long, long) record}
+     * when the given operation is over, or {@link #DISABLED} if there is
+     * neither a listener nor a tracer. The tracer, if any, is told the
+     * operation began.
+     */
+    public static long start(SemTextOperation operation) {
+        if (!active) {
+            return DISABLED;
+        }
+        long ret = System.nanoTime();
+        SemTextTracer currentTracer = tracer;
+        if (currentTracer != null) {
+            try {
+                currentTracer.begin(operation, ret);
+            }
+            catch (RuntimeException ex) {
+                LOG.log(Level.WARNING, "Tracer " + currentTracer + " failed while beginning " + operation + "!", ex);
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Same as
+     * {@link #record(SemTextOperation, long, long, long, long, long, long) record}
+     * for operations which don't involve a whole semtext.
+     */
+    public static void record(SemTextOperation operation, long startNanos, long terms, long meanings, long bytes) {
+        record(operation, startNanos, 0, 0, terms, meanings, bytes);
+    }
+
+    /**
+     * Accumulates a measurement of an operation started at
+     * {@code startNanos} and passes it to the tracer, if any. Does nothing if
+     * {@code startNanos} is {@link #DISABLED}.
+     *
+     * @param startNanos the value returned by {@link #start(SemTextOperation)} when the
+     * operation began.
+     * @param textLength length of the text of the semtext involved, only
+     * passed to the tracer.
+     * @param sentences number of sentences of the semtext involved, only
+     * passed to the tracer.
+     */
+    public static void record(SemTextOperation operation, long startNanos, long textLength, long sentences,
+            long terms, long meanings, long bytes) {
+        if (startNanos == DISABLED) {
+            return;
+        }
+        long now = System.nanoTime();
+        SemTextTracer currentTracer = tracer;
+        if (currentTracer != null) {
+            try {
+                currentTracer.trace(operation, startNanos, now - startNanos, textLength, sentences, terms,
+                        meanings, bytes);
+            }
+            catch (RuntimeException ex) {
+                LOG.log(Level.WARNING, "Tracer " + currentTracer + " failed while tracing " + operation + "!", ex);
+            }
+        }
+        if (listener == NOOP) {
+            return;
+        }
+        Counters counters = COUNTERS.get();
+        int i = operation.ordinal();
+        counters.calls[i] += 1;
+        counters.nanos[i] += now - startNanos;
+        counters.terms[i] += terms;
+        counters.meanings[i] += meanings;
+        counters.bytes[i] += bytes;
+        counters.events += 1;
+        if (counters.events >= FLUSH_EVENTS || now - counters.lastFlush >= FLUSH_NANOS) {
+            flush(counters, now);
+        }
+    }
+
+    /**
+     * Flushes to the listener the counters accumulated by the current thread.
+     */
+    public static void flush() {
+        flush(COUNTERS.get(), System.nanoTime());
+    }
+
+    private static void flush(Counters counters, long now) {
+        SemTextMetrics target = listener;
+        for (SemTextOperation operation : SemTextOperation.values()) {
+            int i = operation.ordinal();
+            if (counters.calls[i] == 0) {
+                continue;
+            }
+            try {
+                target.onFlush(operation, counters.calls[i], counters.nanos[i], counters.terms[i],
+                        counters.meanings[i], counters.bytes[i]);
+            }
+            catch (RuntimeException ex) {
+                LOG.log(Level.WARNING, "Metrics listener " + target + " failed while flushing " + operation + " counters!", ex);
+            }
+            counters.calls[i] = 0;
+            counters.nanos[i] = 0;
+            counters.terms[i] = 0;
+            counters.meanings[i] = 0;
+            counters.bytes[i] = 0;
+        }
+        counters.events = 0;
+        counters.lastFlush = now;
+    }
+
+}
@@ -0,0 +1,45 @@
+/* 
+ * Copyright 2015 TrentoRISE  (trentorise.eu) .
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.trentorise.opendata.semtext.metrics;
+
+/**
+ * Listener receiving measurements of semtext operations. Measurements are
+ * accumulated per thread and periodically flushed to the listener registered
+ * with {@link Metrics#register(SemTextMetrics)}, so implementations are
+ * called rarely but possibly from many threads at once and must be thread
+ * safe.
+ *
+ * @author David Leoni
+ * @since 1.1.0
+ */
+public interface SemTextMetrics {
+
+    /**
+     * Receives the counters a thread accumulated for an operation since its
+     * last flush. Counters are never all zero.
+     *
+     * @param operation the measured operation
+     * @param calls number of times the operation was invoked
+     * @param nanos total time spent in the operation, in nanoseconds
+     * @param terms total terms handled, see {@link SemTextOperation} for the
+     * meaning of each operation.
+     * @param meanings total meanings handled, see {@link SemTextOperation} for
+     * the meaning of each operation.
+     * @param bytes total bytes processed, see {@link SemTextOperation} for the
+     * meaning of each operation.
+     */
+    void onFlush(SemTextOperation operation, long calls, long nanos, long terms, long meanings, long bytes);
+}
@@ -0,0 +1,82 @@
+/* 
+ * Copyright 2015 TrentoRISE  (trentorise.eu) .
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.trentorise.opendata.semtext.metrics;
+
+/**
+ * The operations measured by {@link Metrics}. For each operation it is
+ * indicated what term, meaning and byte counts refer to.
+ *
+ * @author David Leoni
+ * @since 1.1.0
+ */
+public enum SemTextOperation {
+
+    /**
+     * {@link eu.trentorise.opendata.semtext.SemText#merge(java.lang.Iterable) SemText.merge}.
+     * Terms are the terms to merge, meanings are their meanings.
+     */
+    MERGE,
+    /**
+     * {@link eu.trentorise.opendata.semtext.SemText#deleteTerms(java.lang.Iterable) SemText.deleteTerms}.
+     * Terms are the terms examined, meanings are the meanings of deleted
+     * terms.
+     */
+    DELETE_TERMS,
+    /**
+     * {@link eu.trentorise.opendata.semtext.SemText#withSentences(java.lang.Iterable) SemText.withSentences}.
+     * Terms are the terms in the new sentences, meanings are not counted.
+     */
+    WITH_SENTENCES,
+    /**
+     * {@link eu.trentorise.opendata.semtext.SemTexts#disambiguate(java.lang.Iterable) SemTexts.disambiguate}.
+     * Each call counts as one term, meanings are the candidate meanings.
+     */
+    DISAMBIGUATE,
+    /**
+     * {@link eu.trentorise.opendata.semtext.SemTexts#mergeMeanings(java.lang.Iterable, java.lang.Iterable) SemTexts.mergeMeanings}.
+     * Each call counts as one term, meanings are the deduplicated merged
+     * meanings.
+     */
+    MERGE_MEANINGS,
+    /**
+     * Jackson deserialization of the metadata of a semtext item. Bytes are
+     * the bytes (or chars, for character based inputs) read by the parser.
+     */
+    DESERIALIZE_METADATA,
+    /**
+     * Jackson serialization of a
+     * {@link eu.trentorise.opendata.semtext.SemText SemText} through
+     * {@link eu.trentorise.opendata.semtext.jackson.SemTextModule SemTextModule}.
+     * Terms and meanings are the ones of the whole semtext, bytes are not
+     * counted.
+     */
+    SERIALIZE,
+    /**
+     * Jackson deserialization of a
+     * {@link eu.trentorise.opendata.semtext.SemText SemText} through
+     * {@link eu.trentorise.opendata.semtext.jackson.SemTextModule SemTextModule}.
+     * Terms and meanings are the ones of the whole semtext, bytes are the
+     * bytes (or chars, for character based inputs) read by the parser.
+     */
+    DESERIALIZE,
+    /**
+     * Normalization of the meanings of a
+     * {@link eu.trentorise.opendata.semtext.Term Term} having at least one
+     * meaning. Each call counts as one term, meanings are the deduplicated
+     * meanings.
+     */
+    NORMALIZE_MEANINGS;
+}
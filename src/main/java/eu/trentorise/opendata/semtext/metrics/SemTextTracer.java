@@ -0,0 +1,64 @@
+/* 
+ * Copyright 2015 TrentoRISE  (trentorise.eu) .
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.trentorise.opendata.semtext.metrics;
+
+/**
+ * Receives every single semtext operation when it begins and right after it
+ * completes, on the thread which performed it. Differently from {@link SemTextMetrics}
+ * nothing is aggregated, so a tracer should be registered only while it is
+ * actually recording, i.e. the Java Flight Recorder tracer registers itself
+ * when a recording starts and unregisters when all recordings stop.
+ *
+ * @author David Leoni
+ * @see Metrics#registerTracer(SemTextTracer)
+ * @since 1.1.0
+ */
+public interface SemTextTracer {
+
+    /**
+     * Called when an operation begins, on the thread performing it. Unless
+     * the operation fails, it is followed on the same thread by a call to
+     * {@link #trace(SemTextOperation, long, long, long, long, long, long, long) trace}
+     * with the same operation and start time, possibly after the begin and
+     * trace of operations nested into it.
+     *
+     * @param operation the operation which begins
+     * @param startNanos the {@link System#nanoTime()} when the operation
+     * began
+     */
+    void begin(SemTextOperation operation, long startNanos);
+
+    /**
+     * Receives the measurement of a single operation.
+     *
+     * @param operation the measured operation
+     * @param startNanos the {@link System#nanoTime()} when the operation
+     * began
+     * @param nanos time spent in the operation, in nanoseconds
+     * @param textLength length of the text of the semtext involved, or zero
+     * if there is none.
+     * @param sentences number of sentences of the semtext involved, or zero if
+     * there is none.
+     * @param terms terms handled, see {@link SemTextOperation} for the meaning
+     * of each operation.
+     * @param meanings meanings handled, see {@link SemTextOperation} for the
+     * meaning of each operation.
+     * @param bytes bytes processed, see {@link SemTextOperation} for the
+     * meaning of each operation.
+     */
+    void trace(SemTextOperation operation, long startNanos, long nanos, long textLength, long sentences, long terms,
+            long meanings, long bytes);
+}
@@ -0,0 +1,301 @@
+/*
+ * Copyright 2015 TrentoRISE  (trentorise.eu) .
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.trentorise.opendata.semtext.stats;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import static com.google.common.base.Preconditions.checkNotNull;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSortedMap;
+import com.google.common.primitives.Longs;
+import eu.trentorise.opendata.semtext.MeaningKind;
+import eu.trentorise.opendata.semtext.MeaningStatus;
+import eu.trentorise.opendata.semtext.SemTexts;
+import eu.trentorise.opendata.semtext.exceptions.SemTextException;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.Map;
+import javax.annotation.ParametersAreNonnullByDefault;
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * Statistics of a corpus of SemTexts, computed over sentence terms by a
+ * {@link CorpusStatsCollector}. Statistics can be exported as JSON with
+ * {@link #writeJson(Writer)}.
+ *
+ * @author David Leoni
+ * @since 1.1.0
+ */
+@Immutable
+@ParametersAreNonnullByDefault
+public final class CorpusStats {
+
+    /**
+     * Last bucket of the candidates per term histogram, which also counts terms
+     * with more candidates.
+     */
+    public static final int MAX_CANDIDATES_PER_TERM = 16;
+
+    /**
+     * Last bucket of the terms per sentence histogram, which also counts
+     * sentences with more terms.
+     */
+    public static final int MAX_TERMS_PER_SENTENCE = 64;
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private final long semTexts;
+    private final long sentences;
+    private final long terms;
+    private final long meanings;
+    private final long termsWithCandidates;
+    private final long disambiguableTerms;
+    private final ImmutableMap<MeaningStatus, Long> termsByStatus;
+    private final ImmutableList<Long> candidatesPerTerm;
+    private final ImmutableList<Long> termsPerSentence;
+    private final ImmutableMap<MeaningKind, ImmutableMap<String, ImmutableMap<MeaningStatus, Long>>> meaningFrequencies;
+    private final ImmutableMap<MeaningKind, ImmutableMap<String, Long>> selectedMeaningFrequencies;
+
+    CorpusStats(CorpusStatsCollector collector) {
+        this.semTexts = collector.semTexts;
+        this.sentences = collector.sentences;
+        this.terms = collector.terms;
+        this.meanings = collector.meanings;
+        this.termsWithCandidates = collector.termsWithCandidates;
+        this.disambiguableTerms = collector.disambiguableTerms;
+
+        MeaningStatus[] statuses = MeaningStatus.values();
+        ImmutableMap.Builder<MeaningStatus, Long> termsByStatusB = ImmutableMap.builder();
+        for (MeaningStatus status : statuses) {
+            termsByStatusB.put(status, collector.termsByStatus[status.ordinal()]);
+        }
+        this.termsByStatus = termsByStatusB.build();
+        this.candidatesPerTerm = ImmutableList.copyOf(Longs.asList(collector.candidatesPerTerm));
+        this.termsPerSentence = ImmutableList.copyOf(Longs.asList(collector.termsPerSentence));
+
+        ImmutableMap.Builder<MeaningKind, ImmutableMap<String, ImmutableMap<MeaningStatus, Long>>> frequenciesB
+                = ImmutableMap.builder();
+        ImmutableMap.Builder<MeaningKind, ImmutableMap<String, Long>> selectedB = ImmutableMap.builder();
+        for (MeaningKind kind : MeaningKind.values()) {
+            LongCounterMap counts = collector.meaningCounts[kind.ordinal()];
+            ImmutableSortedMap.Builder<String, ImmutableMap<MeaningStatus, Long>> idsB
+                    = ImmutableSortedMap.naturalOrder();
+            ImmutableSortedMap.Builder<String, Long> selectedIdsB = ImmutableSortedMap.naturalOrder();
+            for (int slot = 0; slot < counts.capacity(); slot++) {
+                String id = counts.keyAt(slot);
+                if (id != null) {
+                    ImmutableMap.Builder<MeaningStatus, Long> byStatusB = ImmutableMap.builder();
+                    for (MeaningStatus status : statuses) {
+                        long count = counts.countAt(slot, status.ordinal());
+                        if (count > 0) {
+                            byStatusB.put(status, count);
+                        }
+                    }
+                    idsB.put(id, byStatusB.build());
+                    long selected = counts.countAt(slot, statuses.length);
+                    if (selected > 0) {
+                        selectedIdsB.put(id, selected);
+                    }
+                }
+            }
+            frequenciesB.put(kind, idsB.build());
+            selectedB.put(kind, selectedIdsB.build());
+        }
+        this.meaningFrequencies = frequenciesB.build();
+        this.selectedMeaningFrequencies = selectedB.build();
+    }
+
+    /**
+     * Returns the number of counted SemTexts.
+     */
+    public long getSemTexts() {
+        return semTexts;
+    }
+
+    /**
+     * Returns the number of counted sentences.
+     */
+    public long getSentences() {
+        return sentences;
+    }
+
+    /**
+     * Returns the number of counted sentence terms.
+     */
+    public long getTerms() {
+        return terms;
+    }
+
+    /**
+     * Returns the number of meaning occurrences in terms, that is candidate
+     * meanings plus selected meanings which are not among candidates. Meanings
+     * without id are not counted.
+     */
+    public long getMeanings() {
+        return meanings;
+    }
+
+    /**
+     * Returns the number of terms with at least one candidate meaning.
+     */
+    public long getTermsWithCandidates() {
+        return termsWithCandidates;
+    }
+
+    /**
+     * Returns the number of terms whose candidate meanings can be
+     * disambiguated by {@link SemTexts#disambiguate(java.lang.Iterable)}
+     */
+    public long getDisambiguableTerms() {
+        return disambiguableTerms;
+    }
+
+    /**
+     * Returns the fraction of terms with candidates which can be disambiguated,
+     * or 0 if there are no such terms.
+     */
+    public double getDisambiguationRate() {
+        return termsWithCandidates == 0 ? 0 : (double) disambiguableTerms / termsWithCandidates;
+    }
+
+    /**
+     * Returns the number of terms for each meaning status, including statuses
+     * with no terms.
+     */
+    public ImmutableMap<MeaningStatus, Long> getTermsByStatus() {
+        return termsByStatus;
+    }
+
+    /**
+     * Returns the histogram of candidate meanings per term: element i is the
+     * number of terms with i candidates, the last one also counts terms with
+     * more than {@link #MAX_CANDIDATES_PER_TERM} candidates.
+     */
+    public ImmutableList<Long> getCandidatesPerTerm() {
+        return candidatesPerTerm;
+    }
+
+    /**
+     * Returns the histogram of terms per sentence: element i is the number of
+     * sentences with i terms, the last one also counts sentences with more
+     * than {@link #MAX_TERMS_PER_SENTENCE} terms.
+     */
+    public ImmutableList<Long> getTermsPerSentence() {
+        return termsPerSentence;
+    }
+
+    /**
+     * Returns for each meaning kind and meaning id the number of terms
+     * referring to the meaning, grouped by the status of the term. Ids are
+     * sorted and statuses without terms are omitted.
+     */
+    public ImmutableMap<MeaningKind, ImmutableMap<String, ImmutableMap<MeaningStatus, Long>>> getMeaningFrequencies() {
+        return meaningFrequencies;
+    }
+
+    /**
+     * Returns for each meaning kind and meaning id the number of terms having
+     * the meaning as selected one. Ids are sorted and meanings never selected
+     * are omitted.
+     */
+    public ImmutableMap<MeaningKind, ImmutableMap<String, Long>> getSelectedMeaningFrequencies() {
+        return selectedMeaningFrequencies;
+    }
+
+    /**
+     * Writes the statistics as a JSON object to the given writer, which is not
+     * closed.
+     */
+    public void writeJson(Writer writer) throws IOException {
+        checkNotNull(writer);
+        JsonGenerator gen = JSON_FACTORY.createGenerator(writer);
+        gen.writeStartObject();
+        gen.writeNumberField("semTexts", semTexts);
+        gen.writeNumberField("sentences", sentences);
+        gen.writeNumberField("terms", terms);
+        gen.writeNumberField("meanings", meanings);
+        gen.writeNumberField("termsWithCandidates", termsWithCandidates);
+        gen.writeNumberField("disambiguableTerms", disambiguableTerms);
+        gen.writeNumberField("disambiguationRate", getDisambiguationRate());
+
+        gen.writeObjectFieldStart("termsByStatus");
+        for (Map.Entry<MeaningStatus, Long> entry : termsByStatus.entrySet()) {
+            gen.writeNumberField(entry.getKey().name(), entry.getValue());
+        }
+        gen.writeEndObject();
+
+        writeArray(gen, "candidatesPerTerm", candidatesPerTerm);
+        writeArray(gen, "termsPerSentence", termsPerSentence);
+
+        gen.writeObjectFieldStart("meaningFrequencies");
+        for (Map.Entry<MeaningKind, ImmutableMap<String, ImmutableMap<MeaningStatus, Long>>> kindEntry
+                : meaningFrequencies.entrySet()) {
+            gen.writeObjectFieldStart(kindEntry.getKey().name());
+            for (Map.Entry<String, ImmutableMap<MeaningStatus, Long>> idEntry : kindEntry.getValue().entrySet()) {
+                gen.writeObjectFieldStart(idEntry.getKey());
+                for (Map.Entry<MeaningStatus, Long> statusEntry : idEntry.getValue().entrySet()) {
+                    gen.writeNumberField(statusEntry.getKey().name(), statusEntry.getValue());
+                }
+                gen.writeEndObject();
+            }
+            gen.writeEndObject();
+        }
+        gen.writeEndObject();
+
+        gen.writeObjectFieldStart("selectedMeaningFrequencies");
+        for (Map.Entry<MeaningKind, ImmutableMap<String, Long>> kindEntry : selectedMeaningFrequencies.entrySet()) {
+            gen.writeObjectFieldStart(kindEntry.getKey().name());
+            for (Map.Entry<String, Long> idEntry : kindEntry.getValue().entrySet()) {
+                gen.writeNumberField(idEntry.getKey(), idEntry.getValue());
+            }
+            gen.writeEndObject();
+        }
+        gen.writeEndObject();
+
+        gen.writeEndObject();
+        gen.flush();
+    }
+
+    private static void writeArray(JsonGenerator gen, String fieldName, ImmutableList<Long> values) throws IOException {
+        gen.writeArrayFieldStart(fieldName);
+        for (Long value : values) {
+            gen.writeNumber(value);
+        }
+        gen.writeEndArray();
+    }
+
+    /**
+     * Returns the statistics as a JSON string.
+     */
+    public String toJson() {
+        StringWriter writer = new StringWriter();
+        try {
+            writeJson(writer);
+        }
+        catch (IOException ex) {
+            throw new SemTextException("Error while writing corpus statistics as JSON!", ex);
+        }
+        return writer.toString();
+    }
+
+    @Override
+    public String toString() {
+        return "CorpusStats{semTexts=" + semTexts + ", sentences=" + sentences + ", terms=" + terms
+                + ", disambiguationRate=" + getDisambiguationRate() + '}';
+    }
+}
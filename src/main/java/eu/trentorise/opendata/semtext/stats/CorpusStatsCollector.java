@@ -0,0 +1,218 @@
+/*
+ * Copyright 2015 TrentoRISE  (trentorise.eu) .
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.trentorise.opendata.semtext.stats;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import eu.trentorise.opendata.semtext.Meaning;
+import eu.trentorise.opendata.semtext.MeaningKind;
+import eu.trentorise.opendata.semtext.MeaningStatus;
+import eu.trentorise.opendata.semtext.SemText;
+import eu.trentorise.opendata.semtext.SemTexts;
+import eu.trentorise.opendata.semtext.Sentence;
+import eu.trentorise.opendata.semtext.Term;
+import eu.trentorise.opendata.semtext.exceptions.SemTextException;
+import eu.trentorise.opendata.semtext.internal.ParallelBatches;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import javax.annotation.ParametersAreNonnullByDefault;
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * Accumulates {@link CorpusStats} over the sentence terms of SemTexts. Counters
+ * are primitive arrays and open addressing maps, so counting a term doesn't
+ * box anything. A collector is meant to be used by a single thread: to count
+ * in parallel give each thread its own collector and
+ * {@link #merge(CorpusStatsCollector) merge} them at the end, as
+ * {@link #collect(Iterable, ExecutorService, int)} does.
+ *
+ * @author David Leoni
+ * @since 1.1.0
+ */
+@NotThreadSafe
+@ParametersAreNonnullByDefault
+public final class CorpusStatsCollector {
+
+    private static final int STATUSES = MeaningStatus.values().length;
+
+    /**
+     * Column of the meaning counters holding how many times the meaning was
+     * selected, the other columns are indexed by term status.
+     */
+    private static final int SELECTED_COLUMN = STATUSES;
+
+    long semTexts;
+    long sentences;
+    long terms;
+    long meanings;
+    long termsWithCandidates;
+    long disambiguableTerms;
+    final long[] termsByStatus = new long[STATUSES];
+    final long[] candidatesPerTerm = new long[CorpusStats.MAX_CANDIDATES_PER_TERM + 1];
+    final long[] termsPerSentence = new long[CorpusStats.MAX_TERMS_PER_SENTENCE + 1];
+    final LongCounterMap[] meaningCounts;
+
+    private CorpusStatsCollector() {
+        meaningCounts = new LongCounterMap[MeaningKind.values().length];
+        for (int i = 0; i < meaningCounts.length; i++) {
+            meaningCounts[i] = new LongCounterMap(STATUSES + 1);
+        }
+    }
+
+    /**
+     * Returns a new empty collector.
+     */
+    public static CorpusStatsCollector of() {
+        return new CorpusStatsCollector();
+    }
+
+    /**
+     * Counts the sentences and sentence terms of the given SemText. Layer
+     * terms are not counted.
+     */
+    public CorpusStatsCollector add(SemText semText) {
+        checkNotNull(semText);
+        semTexts++;
+        for (Sentence sentence : semText.getSentences()) {
+            sentences++;
+            termsPerSentence[Math.min(sentence.getTerms().size(), CorpusStats.MAX_TERMS_PER_SENTENCE)]++;
+            for (Term term : sentence.getTerms()) {
+                addTerm(term);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Counts all the given SemTexts in the calling thread.
+     */
+    public CorpusStatsCollector addAll(Iterable<SemText> semTexts) {
+        for (SemText semText : semTexts) {
+            add(semText);
+        }
+        return this;
+    }
+
+    private void addTerm(Term term) {
+        terms++;
+        int status = term.getMeaningStatus().ordinal();
+        termsByStatus[status]++;
+
+        List<Meaning> candidates = term.getMeanings();
+        candidatesPerTerm[Math.min(candidates.size(), CorpusStats.MAX_CANDIDATES_PER_TERM)]++;
+        if (!candidates.isEmpty()) {
+            termsWithCandidates++;
+            if (SemTexts.disambiguate(candidates) != null) {
+                disambiguableTerms++;
+            }
+        }
+
+        Meaning selected = term.getSelectedMeaning();
+        boolean selectedIsCandidate = false;
+        for (Meaning meaning : candidates) {
+            if (meaning.getId() != null) {
+                LongCounterMap counts = meaningCounts[meaning.getKind().ordinal()];
+                counts.add(meaning.getId(), status, 1);
+                meanings++;
+                if (meaning.equals(selected)) {
+                    counts.add(meaning.getId(), SELECTED_COLUMN, 1);
+                    selectedIsCandidate = true;
+                }
+            }
+        }
+        if (selected != null && selected.getId() != null && !selectedIsCandidate) {
+            LongCounterMap counts = meaningCounts[selected.getKind().ordinal()];
+            counts.add(selected.getId(), status, 1);
+            counts.add(selected.getId(), SELECTED_COLUMN, 1);
+            meanings++;
+        }
+    }
+
+    /**
+     * Adds the counts of the other collector to this one.
+     */
+    public CorpusStatsCollector merge(CorpusStatsCollector other) {
+        checkNotNull(other);
+        semTexts += other.semTexts;
+        sentences += other.sentences;
+        terms += other.terms;
+        meanings += other.meanings;
+        termsWithCandidates += other.termsWithCandidates;
+        disambiguableTerms += other.disambiguableTerms;
+        addAll(termsByStatus, other.termsByStatus);
+        addAll(candidatesPerTerm, other.candidatesPerTerm);
+        addAll(termsPerSentence, other.termsPerSentence);
+        for (int i = 0; i < meaningCounts.length; i++) {
+            meaningCounts[i].addAll(other.meaningCounts[i]);
+        }
+        return this;
+    }
+
+    private static void addAll(long[] target, long[] source) {
+        for (int i = 0; i < target.length; i++) {
+            target[i] += source[i];
+        }
+    }
+
+    /**
+     * Returns the statistics counted so far. The collector can still be used
+     * afterwards.
+     */
+    public CorpusStats build() {
+        return new CorpusStats(this);
+    }
+
+    /**
+     * Collects the statistics of the given SemTexts in the calling thread.
+     */
+    public static CorpusStats collect(Iterable<SemText> semTexts) {
+        return of().addAll(semTexts).build();
+    }
+
+    /**
+     * Collects the statistics of the given SemTexts with the given number of
+     * tasks submitted to the executor. Each task counts batches of SemTexts
+     * taken from a shared iterator into its own collector, collectors are then
+     * merged. The iterable is only iterated once, so it can be a lazy one like
+     * {@link eu.trentorise.opendata.semtext.store.SemTextStore#scan()}.
+     *
+     * @throws InterruptedException if interrupted while waiting for the tasks,
+     * which are then cancelled.
+     * @throws SemTextException if a task fails with a checked exception, runtime
+     * exceptions and errors are propagated as they are.
+     */
+    public static CorpusStats collect(Iterable<SemText> semTexts, ExecutorService executor, int parallelism)
+            throws InterruptedException {
+        List<CorpusStatsCollector> collectors = new ParallelBatches<SemText, CorpusStatsCollector>() {
+            @Override
+            protected CorpusStatsCollector newTask() {
+                return of();
+            }
+
+            @Override
+            protected void process(CorpusStatsCollector collector, List<SemText> batch, int batchIndex) {
+                for (SemText semText : batch) {
+                    collector.add(semText);
+                }
+            }
+        }.run(semTexts, executor, parallelism, "Error while collecting corpus statistics!");
+
+        CorpusStatsCollector ret = of();
+        for (CorpusStatsCollector collector : collectors) {
+            ret.merge(collector);
+        }
+        return ret.build();
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2015 TrentoRISE  (trentorise.eu) .
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.trentorise.opendata.semtext.stats;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * Open addressing map from strings to a fixed number of long counters, so
+ * that counting doesn't allocate anything but the key slots.
+ *
+ * @author David Leoni
+ */
+@NotThreadSafe
+final class LongCounterMap {
+
+    private final int columns;
+    private String[] keys;
+    private long[] counts;
+    private int size;
+
+    /**
+     * @param columns number of counters for each key
+     */
+    LongCounterMap(int columns) {
+        this.columns = columns;
+        this.keys = new String[16];
+        this.counts = new long[16 * columns];
+    }
+
+    private static int mix(int hash) {
+        int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Returns the slot of the key, adding it if missing.
+     */
+    private int slot(String key) {
+        int mask = keys.length - 1;
+        int i = mix(key.hashCode()) & mask;
+        while (true) {
+            String k = keys[i];
+            if (k == null) {
+                if (4 * (size + 1) > 3 * keys.length) {
+                    grow();
+                    return slot(key);
+                }
+                keys[i] = key;
+                size++;
+                return i;
+            }
+            if (k.equals(key)) {
+                return i;
+            }
+            i = (i + 1) & mask;
+        }
+    }
+
+    private void grow() {
+        String[] oldKeys = keys;
+        long[] oldCounts = counts;
+        keys = new String[oldKeys.length * 2];
+        counts = new long[keys.length * columns];
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != null) {
+                System.arraycopy(oldCounts, i * columns, counts, slot(oldKeys[i]) * columns, columns);
+            }
+        }
+    }
+
+    /**
+     * Adds delta to the given counter of the key.
+     */
+    void add(String key, int column, long delta) {
+        counts[slot(key) * columns + column] += delta;
+    }
+
+    /**
+     * Adds all the counters of the other map to this one.
+     */
+    void addAll(LongCounterMap other) {
+        for (int i = 0; i < other.keys.length; i++) {
+            if (other.keys[i] != null) {
+                int offset = slot(other.keys[i]) * columns;
+                for (int c = 0; c < columns; c++) {
+                    counts[offset + c] += other.counts[i * columns + c];
+                }
+            }
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns the number of slots, to iterate with {@link #keyAt(int)}
+     */
+    int capacity() {
+        return keys.length;
+    }
+
+    /**
+     * Returns the key in the given slot, or null if the slot is empty.
+     */
+    @Nullable
+    String keyAt(int slot) {
+        return keys[slot];
+    }
+
+    long countAt(int slot, int column) {
+        return counts[slot * columns + column];
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2015 TrentoRISE  (trentorise.eu) .
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.trentorise.opendata.semtext.stats;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import eu.trentorise.opendata.semtext.SemTexts;
+import eu.trentorise.opendata.semtext.Span;
+import java.io.Serializable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * Reference to a term to review, made of the id of its document, its span and
+ * its uncertainty score.
+ *
+ * @author David Leoni
+ * @see ReviewQueue
+ * @since 1.1.0
+ */
+@Immutable
+@ParametersAreNonnullByDefault
+public final class ReviewItem implements Span, Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String id;
+    private final int start;
+    private final int end;
+    private final double score;
+
+    private ReviewItem(String id, int start, int end, double score) {
+        checkNotNull(id);
+        SemTexts.checkSpan(start, end, "Invalid review item span!");
+        this.id = id;
+        this.start = start;
+        this.end = end;
+        this.score = score;
+    }
+
+    /**
+     * Creates a reference to the term spanning [start, end) in document
+     * {@code id}.
+     */
+    public static ReviewItem of(String id, int start, int end, double score) {
+        return new ReviewItem(id, start, end, score);
+    }
+
+    /**
+     * Returns the id of the document containing the term.
+     */
+    public String getId() {
+        return id;
+    }
+
+    @Override
+    public int getStart() {
+        return start;
+    }
+
+    @Override
+    public int getEnd() {
+        return end;
+    }
+
+    /**
+     * Returns the uncertainty score of the term, the greater the more
+     * uncertain.
+     *
+     * @see ReviewQueue#score(eu.trentorise.opendata.semtext.Term)
+     */
+    public double getScore() {
+        return score;
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 5;
+        hash = 59 * hash + id.hashCode();
+        hash = 59 * hash + start;
+        hash = 59 * hash + end;
+        long bits = Double.doubleToLongBits(score);
+        hash = 59 * hash + (int) (bits ^ (bits >>> 32));
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == null) {
+            return false;
+        }
+        if (getClass() != obj.getClass()) {
+            return false;
+        }
+        final ReviewItem other = (ReviewItem) obj;
+        return this.id.equals(other.id)
+                && this.start == other.start
+                && this.end == other.end
+                && Double.compare(this.score, other.score) == 0;
+    }
+
+    @Override
+    public String toString() {
+        return "ReviewItem{id=" + id + ", start=" + start + ", end=" + end + ", score=" + score + '}';
+    }
+}
@@ -0,0 +1,262 @@
+/*
+ * Copyright 2015 TrentoRISE  (trentorise.eu) .
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.trentorise.opendata.semtext.stats;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import com.google.common.collect.ImmutableList;
+import eu.trentorise.opendata.semtext.Meaning;
+import eu.trentorise.opendata.semtext.MeaningStatus;
+import eu.trentorise.opendata.semtext.SemText;
+import eu.trentorise.opendata.semtext.SemTexts;
+import eu.trentorise.opendata.semtext.Sentence;
+import eu.trentorise.opendata.semtext.Term;
+import eu.trentorise.opendata.semtext.exceptions.SemTextException;
+import eu.trentorise.opendata.semtext.internal.ParallelBatches;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutorService;
+import javax.annotation.ParametersAreNonnullByDefault;
+import javax.annotation.concurrent.Immutable;
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * The most uncertain terms of a corpus, to be shown to human reviewers. Only
+ * sentence terms with status {@link MeaningStatus#TO_DISAMBIGUATE} or
+ * {@link MeaningStatus#NOT_SURE} are considered, ranked by
+ * {@link #score(Term) uncertainty score}. Items only reference terms by
+ * document id and span, so a queue over millions of documents takes memory
+ * proportional to its capacity.
+ *
+ * Queues are built with a {@link Builder}, which keeps the best items found
+ * so far in a min-heap bounded by the queue capacity, or with the
+ * {@code collect} methods, which can run in parallel.
+ *
+ * @author David Leoni
+ * @since 1.1.0
+ */
+@Immutable
+@ParametersAreNonnullByDefault
+public final class ReviewQueue {
+
+    /**
+     * Orders items most uncertain first, then by id and start offset so
+     * rankings don't depend on the order documents are counted.
+     */
+    private static final Comparator<ReviewItem> MOST_UNCERTAIN_FIRST = new Comparator<ReviewItem>() {
+        @Override
+        public int compare(ReviewItem item1, ReviewItem item2) {
+            return ReviewQueue.compare(item1.getScore(), item1.getId(), item1.getStart(), item2);
+        }
+    };
+
+    private final ImmutableList<ReviewItem> items;
+
+    private ReviewQueue(ImmutableList<ReviewItem> items) {
+        this.items = items;
+    }
+
+    /**
+     * Returns a builder of a queue holding at most {@code capacity} items.
+     */
+    public static Builder builder(int capacity) {
+        return new Builder(capacity);
+    }
+
+    /**
+     * Collects the most uncertain terms, keeping a bounded min-heap of the best
+     * ones found so far.
+     */
+    @NotThreadSafe
+    public static final class Builder {
+
+        private final int capacity;
+        private final PriorityQueue<ReviewItem> heap;
+
+        private Builder(int capacity) {
+            checkArgument(capacity > 0, "Capacity must be positive, found instead %s", capacity);
+            this.capacity = capacity;
+            this.heap = new PriorityQueue(Math.min(capacity, 1024), Collections.reverseOrder(MOST_UNCERTAIN_FIRST));
+        }
+
+        /**
+         * Considers the sentence terms of the document with the given id.
+         */
+        public Builder add(String id, SemText semText) {
+            checkNotNull(id);
+            checkNotNull(semText);
+            for (Sentence sentence : semText.getSentences()) {
+                for (Term term : sentence.getTerms()) {
+                    MeaningStatus status = term.getMeaningStatus();
+                    if (status == MeaningStatus.TO_DISAMBIGUATE || status == MeaningStatus.NOT_SURE) {
+                        offer(id, term.getStart(), term.getEnd(), score(term));
+                    }
+                }
+            }
+            return this;
+        }
+
+        /**
+         * Considers all the given documents, each an id with its SemText.
+         */
+        public Builder addAll(Iterable<? extends Map.Entry<String, SemText>> documents) {
+            for (Map.Entry<String, SemText> document : documents) {
+                add(document.getKey(), document.getValue());
+            }
+            return this;
+        }
+
+        /**
+         * Considers the items of the other builder.
+         */
+        public Builder merge(Builder other) {
+            checkNotNull(other);
+            for (ReviewItem item : other.heap) {
+                offer(item.getId(), item.getStart(), item.getEnd(), item.getScore());
+            }
+            return this;
+        }
+
+        private void offer(String id, int start, int end, double score) {
+            if (heap.size() < capacity) {
+                heap.add(ReviewItem.of(id, start, end, score));
+            } else if (compare(score, id, start, heap.peek()) < 0) {
+                heap.poll();
+                heap.add(ReviewItem.of(id, start, end, score));
+            }
+        }
+
+        /**
+         * Returns the queue of the items found so far. The builder can still
+         * be used afterwards.
+         */
+        public ReviewQueue build() {
+            List<ReviewItem> ret = new ArrayList(heap);
+            Collections.sort(ret, MOST_UNCERTAIN_FIRST);
+            return new ReviewQueue(ImmutableList.copyOf(ret));
+        }
+    }
+
+    /**
+     * Compares an item given by its fields with another one, returning a
+     * negative number if the first one is more uncertain.
+     */
+    private static int compare(double score, String id, int start, ReviewItem item) {
+        int ret = Double.compare(item.getScore(), score);
+        if (ret != 0) {
+            return ret;
+        }
+        ret = id.compareTo(item.getId());
+        if (ret != 0) {
+            return ret;
+        }
+        return start < item.getStart() ? -1 : (start == item.getStart() ? 0 : 1);
+    }
+
+    /**
+     * Returns the uncertainty score of a term, between 0 and 2. The score is
+     * one minus the difference between the probabilities of the two most
+     * probable candidate meanings, plus one if
+     * {@link SemTexts#disambiguate(java.lang.Iterable) disambiguate} can't pick
+     * a meaning among the candidates. Terms with a single candidate count the
+     * second probability as zero.
+     */
+    public static double score(Term term) {
+        double first = 0;
+        double second = 0;
+        for (Meaning meaning : term.getMeanings()) {
+            double probability = meaning.getProbability();
+            if (probability > first) {
+                second = first;
+                first = probability;
+            } else if (probability > second) {
+                second = probability;
+            }
+        }
+        double ret = 1 - Math.min(1, first - second);
+        if (SemTexts.disambiguate(term.getMeanings()) == null) {
+            ret += 1;
+        }
+        return ret;
+    }
+
+    /**
+     * Returns the items, most uncertain first.
+     */
+    public ImmutableList<ReviewItem> getItems() {
+        return items;
+    }
+
+    /**
+     * Returns the number of items.
+     */
+    public int size() {
+        return items.size();
+    }
+
+    /**
+     * Builds a queue with at most {@code capacity} items from the given
+     * documents in the calling thread. Documents are ids with their SemText,
+     * like the ones of {@link eu.trentorise.opendata.semtext.store.SemTextStore#scan()}.
+     */
+    public static ReviewQueue collect(Iterable<? extends Map.Entry<String, SemText>> documents, int capacity) {
+        return builder(capacity).addAll(documents).build();
+    }
+
+    /**
+     * Builds a queue with at most {@code capacity} items from the given
+     * documents, with the given number of tasks submitted to the executor.
+     * Each task takes batches of documents from a shared iterator into its own
+     * bounded heap, and heaps are merged at the end. The iterable is only
+     * iterated once.
+     *
+     * @throws InterruptedException if interrupted while waiting for the tasks,
+     * which are then cancelled.
+     * @throws SemTextException if a task fails with a checked exception, runtime
+     * exceptions and errors are propagated as they are.
+     */
+    public static ReviewQueue collect(Iterable<? extends Map.Entry<String, SemText>> documents, final int capacity,
+            ExecutorService executor, int parallelism) throws InterruptedException {
+        checkArgument(capacity > 0, "Capacity must be positive, found instead %s", capacity);
+
+        List<Builder> builders = new ParallelBatches<Map.Entry<String, SemText>, Builder>() {
+            @Override
+            protected Builder newTask() {
+                return builder(capacity);
+            }
+
+            @Override
+            protected void process(Builder builder, List<Map.Entry<String, SemText>> batch, int batchIndex) {
+                builder.addAll(batch);
+            }
+        }.run(documents, executor, parallelism, "Error while building review queue!");
+
+        Builder ret = builder(capacity);
+        for (Builder builder : builders) {
+            ret.merge(builder);
+        }
+        return ret.build();
+    }
+
+    @Override
+    public String toString() {
+        return "ReviewQueue{items=" + items + '}';
+    }
+}
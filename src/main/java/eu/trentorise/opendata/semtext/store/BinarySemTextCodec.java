@@ -0,0 +1,855 @@
+/*
+ * Copyright 2015 TrentoRISE  (trentorise.eu) .
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.trentorise.opendata.semtext.store;
+
+import com.google.common.base.Charsets;
+import static com.google.common.base.Preconditions.checkNotNull;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import eu.trentorise.opendata.commons.Dict;
+import eu.trentorise.opendata.semtext.Meaning;
+import eu.trentorise.opendata.semtext.MeaningKind;
+import eu.trentorise.opendata.semtext.MeaningStatus;
+import eu.trentorise.opendata.semtext.SemText;
+import eu.trentorise.opendata.semtext.SemTexts;
+import eu.trentorise.opendata.semtext.Sentence;
+import eu.trentorise.opendata.semtext.Term;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * Compact binary encoding of SemTexts. Offsets are written as variable length
+ * deltas from the previous span, and strings found in the
+ * {@link CorpusDictionary} are written as their code, other strings inline.
+ *
+ * Metadata values can be strings, integers, longs, doubles, booleans, and
+ * lists and string keyed maps of them. Other values are rejected, as decoding
+ * never instantiates classes named by the payload.
+ *
+ * Encoded documents can be searched for terms with a {@link TermQuery}
+ * without decoding them.
+ *
+ * @author David Leoni
+ * @since 1.1.0
+ */
+@Immutable
+public final class BinarySemTextCodec implements SemTextCodec {
+
+    private static final int FORMAT = 1;
+
+    private static final int SELECTED_NONE = 0;
+    private static final int SELECTED_INLINE = 1;
+
+    private static final byte VALUE_STRING = 0;
+    private static final byte VALUE_INTEGER = 1;
+    private static final byte VALUE_LONG = 2;
+    private static final byte VALUE_DOUBLE = 3;
+    private static final byte VALUE_BOOLEAN = 4;
+    private static final byte VALUE_LIST = 5;
+    private static final byte VALUE_MAP = 6;
+
+    /**
+     * Max nesting of metadata lists and maps.
+     */
+    private static final int MAX_VALUE_DEPTH = 64;
+
+    /**
+     * Meaning statuses by code. Codes are part of the format, so they don't
+     * follow enum ordinals and new constants must be appended.
+     */
+    private static final MeaningStatus[] MEANING_STATUSES = {
+        MeaningStatus.SELECTED,
+        MeaningStatus.TO_DISAMBIGUATE,
+        MeaningStatus.REVIEWED,
+        MeaningStatus.NOT_SURE
+    };
+
+    /**
+     * Meaning kinds by code, see {@link #MEANING_STATUSES}.
+     */
+    private static final MeaningKind[] MEANING_KINDS = {
+        MeaningKind.ENTITY,
+        MeaningKind.CONCEPT,
+        MeaningKind.UNKNOWN
+    };
+
+    private static final Map<MeaningStatus, Integer> MEANING_STATUS_CODES = codes(MeaningStatus.class, MEANING_STATUSES);
+    private static final Map<MeaningKind, Integer> MEANING_KIND_CODES = codes(MeaningKind.class, MEANING_KINDS);
+
+    private static final BinarySemTextCodec INSTANCE = new BinarySemTextCodec(CorpusDictionary.of());
+
+    private final CorpusDictionary dictionary;
+
+    private BinarySemTextCodec(CorpusDictionary dictionary) {
+        this.dictionary = dictionary;
+    }
+
+    private static <E extends Enum<E>> Map<E, Integer> codes(Class<E> enumClass, E[] byCode) {
+        Map<E, Integer> ret = new EnumMap(enumClass);
+        for (int i = 0; i < byCode.length; i++) {
+            ret.put(byCode[i], i);
+        }
+        if (ret.size() != enumClass.getEnumConstants().length) {
+            throw new IllegalStateException("Missing binary codes for some " + enumClass.getSimpleName()
+                    + " constants, found only " + ret.keySet());
+        }
+        return ret;
+    }
+
+    /**
+     * Returns a codec writing all strings inline.
+     */
+    public static BinarySemTextCodec of() {
+        return INSTANCE;
+    }
+
+    /**
+     * Returns a codec writing the strings of the given dictionary as codes.
+     * Documents can only be decoded with a codec using the same dictionary
+     * version.
+     */
+    public static BinarySemTextCodec of(CorpusDictionary dictionary) {
+        checkNotNull(dictionary);
+        return new BinarySemTextCodec(dictionary);
+    }
+
+    /**
+     * Returns the dictionary of the codec.
+     */
+    public CorpusDictionary getDictionary() {
+        return dictionary;
+    }
+
+    @Override
+    public byte[] encode(SemText semText) throws IOException {
+        checkNotNull(semText);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + 2 * semText.getText().length());
+        DataOutputStream out = new DataOutputStream(bytes);
+
+        writeVarInt(out, FORMAT);
+        writeVarInt(out, dictionary.getVersion());
+        writeRef(out, semText.getLocale().toLanguageTag());
+        writeString(out, semText.getText());
+        writeMetadata(out, semText.getMetadata());
+
+        writeVarInt(out, semText.getSentences().size());
+        int previousEnd = 0;
+        for (Sentence sentence : semText.getSentences()) {
+            writeVarInt(out, sentence.getStart() - previousEnd);
+            writeVarInt(out, sentence.getEnd() - sentence.getStart());
+            writeMetadata(out, sentence.getMetadata());
+            writeTerms(out, sentence.getTerms(), sentence.getStart());
+            previousEnd = sentence.getEnd();
+        }
+
+        writeVarInt(out, semText.getLayers().size());
+        for (Map.Entry<String, ImmutableList<Term>> entry : semText.getLayers().entrySet()) {
+            writeRef(out, entry.getKey());
+            writeTerms(out, entry.getValue(), 0);
+        }
+
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    @Override
+    public SemText decode(byte[] bytes) throws IOException {
+        checkNotNull(bytes);
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        readHeader(in);
+        try {
+            Locale locale = Locale.forLanguageTag(readRef(in));
+            String text = readString(in);
+            Map<String, ?> metadata = readMetadata(in);
+
+            Sentence[] sentences = new Sentence[readVarInt(in)];
+            int previousEnd = 0;
+            for (int i = 0; i < sentences.length; i++) {
+                int start = previousEnd + readVarInt(in);
+                int end = start + readVarInt(in);
+                Map<String, ?> sentenceMetadata = readMetadata(in);
+                sentences[i] = Sentence.of(start, end, readTerms(in, start), sentenceMetadata);
+                previousEnd = end;
+            }
+
+            int layerCount = readVarInt(in);
+            Map<String, List<Term>> layers = new LinkedHashMap();
+            for (int i = 0; i < layerCount; i++) {
+                String layer = readRef(in);
+                layers.put(layer, readTerms(in, 0));
+            }
+
+            return SemText.ofSentences(locale, text, ImmutableList.copyOf(sentences), metadata, layers);
+        }
+        catch (IllegalArgumentException ex) {
+            throw new IOException("Found invalid binary SemText!", ex);
+        }
+    }
+
+    private void readHeader(DataInputStream in) throws IOException {
+        int format = readVarInt(in);
+        if (format != FORMAT) {
+            throw new IOException("Unsupported binary SemText format " + format);
+        }
+        int version = readVarInt(in);
+        if (version != dictionary.getVersion()) {
+            throw new IOException("SemText was encoded with corpus dictionary version " + version
+                    + ", while codec has dictionary version " + dictionary.getVersion());
+        }
+    }
+
+    private void writeTerms(DataOutputStream out, List<Term> terms, int offset) throws IOException {
+        writeVarInt(out, terms.size());
+        int previousEnd = offset;
+        for (Term term : terms) {
+            writeVarInt(out, term.getStart() - previousEnd);
+            writeVarInt(out, term.getEnd() - term.getStart());
+            out.writeByte(MEANING_STATUS_CODES.get(term.getMeaningStatus()));
+
+            writeVarInt(out, term.getMeanings().size());
+            for (Meaning meaning : term.getMeanings()) {
+                writeMeaning(out, meaning);
+            }
+
+            Meaning selected = term.getSelectedMeaning();
+            int selectedIndex = selected == null ? -1 : indexOfSame(term.getMeanings(), selected);
+            if (selected == null) {
+                writeVarInt(out, SELECTED_NONE);
+            } else if (selectedIndex >= 0) {
+                writeVarInt(out, SELECTED_INLINE + 1 + selectedIndex);
+            } else {
+                writeVarInt(out, SELECTED_INLINE);
+                writeMeaning(out, selected);
+            }
+
+            writeMetadata(out, term.getMetadata());
+            previousEnd = term.getEnd();
+        }
+    }
+
+    /**
+     * Returns the index of the meaning with all fields equal to the given one,
+     * as {@link Meaning#equals(Object)} only checks id and kind.
+     */
+    private static int indexOfSame(List<Meaning> meanings, Meaning meaning) {
+        for (int i = 0; i < meanings.size(); i++) {
+            Meaning m = meanings.get(i);
+            if (m == meaning || (m.equals(meaning)
+                    && Double.compare(m.getProbability(), meaning.getProbability()) == 0
+                    && m.getName().equals(meaning.getName())
+                    && m.getDescription().equals(meaning.getDescription())
+                    && m.getMetadata().equals(meaning.getMetadata()))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private ImmutableList<Term> readTerms(DataInputStream in, int offset) throws IOException {
+        Term[] terms = new Term[readVarInt(in)];
+        int previousEnd = offset;
+        for (int i = 0; i < terms.length; i++) {
+            terms[i] = readTerm(in, previousEnd);
+            previousEnd = terms[i].getEnd();
+        }
+        return ImmutableList.copyOf(terms);
+    }
+
+    private Term readTerm(DataInputStream in, int previousEnd) throws IOException {
+        int start = previousEnd + readVarInt(in);
+        int end = start + readVarInt(in);
+        int status = readStatus(in);
+
+        Meaning[] meanings = new Meaning[readVarInt(in)];
+        for (int j = 0; j < meanings.length; j++) {
+            meanings[j] = readMeaning(in);
+        }
+
+        int selectedCode = readVarInt(in);
+        Meaning selected;
+        if (selectedCode == SELECTED_NONE) {
+            selected = null;
+        } else if (selectedCode == SELECTED_INLINE) {
+            selected = readMeaning(in);
+        } else {
+            selected = meanings[selectedIndex(selectedCode, meanings.length)];
+        }
+
+        return Term.of(start, end, MEANING_STATUSES[status], selected, ImmutableList.copyOf(meanings),
+                readMetadata(in));
+    }
+
+    private static int readStatus(DataInputStream in) throws IOException {
+        int status = in.readUnsignedByte();
+        if (status >= MEANING_STATUSES.length) {
+            throw new IOException("Found invalid meaning status " + status);
+        }
+        return status;
+    }
+
+    private static int readKind(DataInputStream in) throws IOException {
+        int kind = in.readUnsignedByte();
+        if (kind >= MEANING_KINDS.length) {
+            throw new IOException("Found invalid meaning kind " + kind);
+        }
+        return kind;
+    }
+
+    private static int selectedIndex(int selectedCode, int meaningCount) throws IOException {
+        int ret = selectedCode - SELECTED_INLINE - 1;
+        if (ret >= meaningCount) {
+            throw new IOException("Found invalid selected meaning index " + ret);
+        }
+        return ret;
+    }
+
+    private void writeMeaning(DataOutputStream out, Meaning meaning) throws IOException {
+        writeRef(out, meaning.getId());
+        out.writeByte(MEANING_KIND_CODES.get(meaning.getKind()));
+        out.writeDouble(meaning.getProbability());
+        writeDict(out, meaning.getName());
+        writeDict(out, meaning.getDescription());
+        writeMetadata(out, meaning.getMetadata());
+    }
+
+    private Meaning readMeaning(DataInputStream in) throws IOException {
+        String id = readRef(in);
+        int kind = readKind(in);
+        return Meaning.builder()
+                .setId(id)
+                .setKind(MEANING_KINDS[kind])
+                .setProbability(in.readDouble())
+                .setName(readDict(in))
+                .setDescription(readDict(in))
+                .setMetadata(readMetadata(in))
+                .build();
+    }
+
+    private void writeDict(DataOutputStream out, Dict dict) throws IOException {
+        writeVarInt(out, dict.locales().size());
+        for (Locale locale : dict.locales()) {
+            writeRef(out, locale.toLanguageTag());
+            List<String> strings = dict.strings(locale);
+            writeVarInt(out, strings.size());
+            for (String s : strings) {
+                writeString(out, s);
+            }
+        }
+    }
+
+    private Dict readDict(DataInputStream in) throws IOException {
+        int locales = readVarInt(in);
+        if (locales == 0) {
+            return Dict.of();
+        }
+        Dict.Builder builder = Dict.builder();
+        for (int i = 0; i < locales; i++) {
+            Locale locale = Locale.forLanguageTag(readRef(in));
+            int strings = readVarInt(in);
+            for (int j = 0; j < strings; j++) {
+                builder.put(locale, readString(in));
+            }
+        }
+        return builder.build();
+    }
+
+    private void writeMetadata(DataOutputStream out, Map<String, ?> metadata) throws IOException {
+        writeVarInt(out, metadata.size());
+        for (Map.Entry<String, ?> entry : metadata.entrySet()) {
+            writeRef(out, entry.getKey());
+            writeValue(out, entry.getKey(), SemTexts.resolveMetadata(entry.getValue()), 0);
+        }
+    }
+
+    private void writeValue(DataOutputStream out, String namespace, @Nullable Object value, int depth)
+            throws IOException {
+        if (value instanceof String) {
+            out.writeByte(VALUE_STRING);
+            writeString(out, (String) value);
+        } else if (value instanceof Integer) {
+            out.writeByte(VALUE_INTEGER);
+            out.writeInt((Integer) value);
+        } else if (value instanceof Long) {
+            out.writeByte(VALUE_LONG);
+            out.writeLong((Long) value);
+        } else if (value instanceof Double) {
+            out.writeByte(VALUE_DOUBLE);
+            out.writeDouble((Double) value);
+        } else if (value instanceof Boolean) {
+            out.writeByte(VALUE_BOOLEAN);
+            out.writeBoolean((Boolean) value);
+        } else if (value instanceof List && depth < MAX_VALUE_DEPTH) {
+            List<?> list = (List) value;
+            out.writeByte(VALUE_LIST);
+            writeVarInt(out, list.size());
+            for (Object element : list) {
+                writeValue(out, namespace, element, depth + 1);
+            }
+        } else if (value instanceof Map && depth < MAX_VALUE_DEPTH) {
+            Map<?, ?> map = (Map) value;
+            out.writeByte(VALUE_MAP);
+            writeVarInt(out, map.size());
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                if (!(entry.getKey() instanceof String)) {
+                    throw new IOException("Can't encode metadata map key " + entry.getKey()
+                            + " under namespace " + namespace + ", only string keys are supported!");
+                }
+                writeRef(out, (String) entry.getKey());
+                writeValue(out, namespace, entry.getValue(), depth + 1);
+            }
+        } else {
+            throw new IOException("Can't encode metadata "
+                    + (value == null ? "null" : "of class " + value.getClass().getName())
+                    + " under namespace " + namespace + ", supported values are strings, integers, longs,"
+                    + " doubles, booleans and lists and maps of them nested at most " + MAX_VALUE_DEPTH + " levels!");
+        }
+    }
+
+    private ImmutableMap<String, ?> readMetadata(DataInputStream in) throws IOException {
+        int size = readVarInt(in);
+        if (size == 0) {
+            return SemTexts.EMPTY_METADATA;
+        }
+        ImmutableMap.Builder<String, Object> metadataB = ImmutableMap.builder();
+        for (int i = 0; i < size; i++) {
+            String namespace = readRef(in);
+            metadataB.put(namespace, readValue(in, namespace, 0));
+        }
+        return metadataB.build();
+    }
+
+    private Object readValue(DataInputStream in, String namespace, int depth) throws IOException {
+        byte type = in.readByte();
+        switch (type) {
+            case VALUE_STRING:
+                return readString(in);
+            case VALUE_INTEGER:
+                return in.readInt();
+            case VALUE_LONG:
+                return in.readLong();
+            case VALUE_DOUBLE:
+                return in.readDouble();
+            case VALUE_BOOLEAN:
+                return in.readBoolean();
+            case VALUE_LIST: {
+                checkDepth(depth);
+                Object[] elements = new Object[readVarInt(in)];
+                for (int i = 0; i < elements.length; i++) {
+                    elements[i] = readValue(in, namespace, depth + 1);
+                }
+                return ImmutableList.copyOf(elements);
+            }
+            case VALUE_MAP: {
+                checkDepth(depth);
+                int size = readVarInt(in);
+                Map<String, Object> map = new LinkedHashMap();
+                for (int i = 0; i < size; i++) {
+                    String key = readRef(in);
+                    map.put(key, readValue(in, namespace, depth + 1));
+                }
+                return ImmutableMap.copyOf(map);
+            }
+            default:
+                throw new IOException("Found invalid metadata type " + type + " under namespace " + namespace);
+        }
+    }
+
+    private static void checkDepth(int depth) throws IOException {
+        if (depth >= MAX_VALUE_DEPTH) {
+            throw new IOException("Found metadata nested more than " + MAX_VALUE_DEPTH + " levels");
+        }
+    }
+
+    /**
+     * Writes the dictionary code plus one, or zero followed by the string if
+     * it is not in the dictionary.
+     */
+    private void writeRef(DataOutputStream out, String s) throws IOException {
+        int code = dictionary.code(s);
+        if (code < 0) {
+            writeVarInt(out, 0);
+            writeString(out, s);
+        } else {
+            writeVarInt(out, code + 1);
+        }
+    }
+
+    private String readRef(DataInputStream in) throws IOException {
+        int ref = readVarInt(in);
+        if (ref == 0) {
+            return readString(in);
+        }
+        if (ref > dictionary.size()) {
+            throw new IOException("Found code " + (ref - 1) + " not in corpus dictionary " + dictionary);
+        }
+        return dictionary.string(ref - 1);
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes(Charsets.UTF_8);
+        writeVarInt(out, bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[readVarInt(in)];
+        in.readFully(bytes);
+        return new String(bytes, Charsets.UTF_8);
+    }
+
+    /**
+     * Writes a non-negative int in 7 bit groups, least significant first.
+     */
+    private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readVarInt(DataInputStream in) throws IOException {
+        int ret = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.readUnsignedByte();
+            ret |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                if (ret < 0) {
+                    throw new IOException("Found negative variable length int " + ret);
+                }
+                return ret;
+            }
+        }
+        throw new IOException("Found malformed variable length int!");
+    }
+
+    /**
+     * Returns a scanner evaluating the given query on documents encoded by
+     * this codec.
+     */
+    QueryScanner scanner(TermQuery query) {
+        return new QueryScanner(query);
+    }
+
+    /**
+     * A string to look for among encoded refs, without decoding them.
+     */
+    private final class RefMatcher {
+
+        private final int ref;
+        private final byte[] bytes;
+
+        RefMatcher(String s) {
+            this.ref = dictionary.code(s) + 1;
+            this.bytes = s.getBytes(Charsets.UTF_8);
+        }
+
+        /**
+         * Returns true if the ref read from the document equals the string of
+         * this matcher. Inline strings are in {@code document} from
+         * {@code inlineStart} for {@code inlineLength} bytes.
+         */
+        boolean matches(int ref, byte[] document, int inlineStart, int inlineLength) {
+            if (ref != 0 || this.ref != 0) {
+                return ref == this.ref;
+            }
+            if (inlineLength != bytes.length) {
+                return false;
+            }
+            for (int i = 0; i < inlineLength; i++) {
+                if (document[inlineStart + i] != bytes[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Evaluates a {@link TermQuery} directly on encoded documents. Fields not
+     * needed by the query are skipped and only matching terms are decoded.
+     */
+    @NotThreadSafe
+    final class QueryScanner {
+
+        private final TermQuery query;
+        private final boolean filtersMeanings;
+        private final RefMatcher[] locales;
+        private final RefMatcher[] namespaces;
+        private final boolean[] foundNamespaces;
+        private int[] kinds = new int[8];
+        private double[] probabilities = new double[8];
+
+        private QueryScanner(TermQuery query) {
+            this.query = query;
+            this.filtersMeanings = query.filtersMeanings();
+            this.locales = new RefMatcher[query.getLocales().size()];
+            int i = 0;
+            for (Locale locale : query.getLocales()) {
+                locales[i++] = new RefMatcher(locale.toLanguageTag());
+            }
+            this.namespaces = new RefMatcher[query.getNamespaces().size()];
+            for (i = 0; i < namespaces.length; i++) {
+                namespaces[i] = new RefMatcher(query.getNamespaces().get(i));
+            }
+            this.foundNamespaces = new boolean[namespaces.length];
+        }
+
+        /**
+         * Adds to matches the terms of the given document accepted by the
+         * query.
+         */
+        void scan(String id, byte[] bytes, List<TermMatch> matches) throws IOException {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+            readHeader(in);
+            try {
+                int localePosition = position(in, bytes);
+                if (!acceptsLocale(in, bytes)) {
+                    return;
+                }
+                int textLength = readVarInt(in);
+                int textPosition = position(in, bytes);
+                skip(in, textLength);
+                skipMetadata(in);
+
+                Locale locale = null;
+                String text = null;
+                int sentenceCount = readVarInt(in);
+                int previousEnd = 0;
+                for (int i = 0; i < sentenceCount; i++) {
+                    int start = previousEnd + readVarInt(in);
+                    int end = start + readVarInt(in);
+                    skipMetadata(in);
+                    int termCount = readVarInt(in);
+                    int previousTermEnd = start;
+                    for (int j = 0; j < termCount; j++) {
+                        in.mark(0);
+                        int termStart = previousTermEnd + readVarInt(in);
+                        int termEnd = termStart + readVarInt(in);
+                        if (acceptsTerm(in, bytes, termEnd - termStart)) {
+                            in.reset();
+                            if (text == null) {
+                                locale = Locale.forLanguageTag(readRef(new DataInputStream(
+                                        new ByteArrayInputStream(bytes, localePosition, bytes.length - localePosition))));
+                                text = new String(bytes, textPosition, textLength, Charsets.UTF_8);
+                            }
+                            Term term = readTerm(in, previousTermEnd);
+                            matches.add(TermMatch.of(id, locale, i, term, text.substring(termStart, termEnd)));
+                        }
+                        previousTermEnd = termEnd;
+                    }
+                    previousEnd = end;
+                }
+            }
+            catch (IllegalArgumentException ex) {
+                throw new IOException("Found invalid binary SemText!", ex);
+            }
+            catch (IndexOutOfBoundsException ex) {
+                throw new IOException("Found invalid binary SemText!", ex);
+            }
+        }
+
+        private boolean acceptsLocale(DataInputStream in, byte[] bytes) throws IOException {
+            int ref = readVarInt(in);
+            int inlineLength = 0;
+            int inlineStart = 0;
+            if (ref == 0) {
+                inlineLength = readVarInt(in);
+                inlineStart = position(in, bytes);
+                skip(in, inlineLength);
+            }
+            if (locales.length == 0) {
+                return true;
+            }
+            for (RefMatcher locale : locales) {
+                if (locale.matches(ref, bytes, inlineStart, inlineLength)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Reads the rest of a term whose offsets were already read, and returns
+         * true if the term is accepted by the query.
+         */
+        private boolean acceptsTerm(DataInputStream in, byte[] bytes, int length) throws IOException {
+            boolean ret = query.acceptsSpan(MEANING_STATUSES[readStatus(in)], length);
+
+            int meaningCount = readVarInt(in);
+            if (meaningCount > kinds.length) {
+                kinds = new int[Math.max(meaningCount, 2 * kinds.length)];
+                probabilities = new double[kinds.length];
+            }
+            int top = -1;
+            for (int i = 0; i < meaningCount; i++) {
+                skipRef(in);
+                kinds[i] = readKind(in);
+                probabilities[i] = in.readDouble();
+                skipDict(in);
+                skipDict(in);
+                skipMetadata(in);
+                if (top < 0 || probabilities[i] > probabilities[top]) {
+                    top = i;
+                }
+            }
+            int topKind = top < 0 ? -1 : kinds[top];
+            double topProbability = top < 0 ? 0 : probabilities[top];
+
+            int selectedCode = readVarInt(in);
+            if (selectedCode == SELECTED_INLINE) {
+                skipRef(in);
+                topKind = readKind(in);
+                topProbability = in.readDouble();
+                skipDict(in);
+                skipDict(in);
+                skipMetadata(in);
+            } else if (selectedCode != SELECTED_NONE) {
+                int selected = selectedIndex(selectedCode, meaningCount);
+                topKind = kinds[selected];
+                topProbability = probabilities[selected];
+            }
+            if (ret && filtersMeanings) {
+                ret = topKind >= 0 && query.acceptsTopMeaning(MEANING_KINDS[topKind], topProbability);
+            }
+
+            int metadataSize = readVarInt(in);
+            if (namespaces.length == 0) {
+                for (int i = 0; i < metadataSize; i++) {
+                    skipRef(in);
+                    skipMetadataValue(in);
+                }
+                return ret;
+            }
+            Arrays.fill(foundNamespaces, false);
+            for (int i = 0; i < metadataSize; i++) {
+                int ref = readVarInt(in);
+                int inlineLength = 0;
+                int inlineStart = 0;
+                if (ref == 0) {
+                    inlineLength = readVarInt(in);
+                    inlineStart = position(in, bytes);
+                    skip(in, inlineLength);
+                }
+                for (int k = 0; k < namespaces.length; k++) {
+                    if (namespaces[k].matches(ref, bytes, inlineStart, inlineLength)) {
+                        foundNamespaces[k] = true;
+                    }
+                }
+                skipMetadataValue(in);
+            }
+            for (boolean found : foundNamespaces) {
+                ret = ret && found;
+            }
+            return ret;
+        }
+    }
+
+    private static int position(DataInputStream in, byte[] bytes) throws IOException {
+        return bytes.length - in.available();
+    }
+
+    private static void skip(DataInputStream in, int length) throws IOException {
+        if (in.skipBytes(length) < length) {
+            throw new EOFException("Reached end of binary SemText while skipping " + length + " bytes");
+        }
+    }
+
+    private static void skipRef(DataInputStream in) throws IOException {
+        if (readVarInt(in) == 0) {
+            skip(in, readVarInt(in));
+        }
+    }
+
+    private static void skipDict(DataInputStream in) throws IOException {
+        int locales = readVarInt(in);
+        for (int i = 0; i < locales; i++) {
+            skipRef(in);
+            int strings = readVarInt(in);
+            for (int j = 0; j < strings; j++) {
+                skip(in, readVarInt(in));
+            }
+        }
+    }
+
+    private static void skipMetadata(DataInputStream in) throws IOException {
+        int size = readVarInt(in);
+        for (int i = 0; i < size; i++) {
+            skipRef(in);
+            skipMetadataValue(in);
+        }
+    }
+
+    private static void skipMetadataValue(DataInputStream in) throws IOException {
+        skipMetadataValue(in, 0);
+    }
+
+    private static void skipMetadataValue(DataInputStream in, int depth) throws IOException {
+        byte type = in.readByte();
+        switch (type) {
+            case VALUE_STRING:
+                skip(in, readVarInt(in));
+                break;
+            case VALUE_INTEGER:
+                skip(in, 4);
+                break;
+            case VALUE_LONG:
+            case VALUE_DOUBLE:
+                skip(in, 8);
+                break;
+            case VALUE_BOOLEAN:
+                skip(in, 1);
+                break;
+            case VALUE_LIST: {
+                checkDepth(depth);
+                int size = readVarInt(in);
+                for (int i = 0; i < size; i++) {
+                    skipMetadataValue(in, depth + 1);
+                }
+                break;
+            }
+            case VALUE_MAP: {
+                checkDepth(depth);
+                int size = readVarInt(in);
+                for (int i = 0; i < size; i++) {
+                    skipRef(in);
+                    skipMetadataValue(in, depth + 1);
+                }
+                break;
+            }
+            default:
+                throw new IOException("Found invalid metadata type " + type);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "BinarySemTextCodec{dictionary=" + dictionary + '}';
+    }
+}
@@ -0,0 +1,374 @@
+/*
+ * Copyright 2015 TrentoRISE  (trentorise.eu) .
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.trentorise.opendata.semtext.store;
+
+import com.google.common.base.Charsets;
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkElementIndex;
+import static com.google.common.base.Preconditions.checkNotNull;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import eu.trentorise.opendata.commons.Dict;
+import eu.trentorise.opendata.semtext.Meaning;
+import eu.trentorise.opendata.semtext.SemText;
+import eu.trentorise.opendata.semtext.Sentence;
+import eu.trentorise.opendata.semtext.Term;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import javax.annotation.ParametersAreNonnullByDefault;
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * Corpus-wide table assigning dense integer codes to frequent strings, that
+ * is meaning ids, metadata namespaces, layer names and locale tags, so that
+ * binary encodings like {@link BinarySemTextCodec} can write a small code in
+ * place of each occurrence. Strings not in the dictionary are written inline.
+ *
+ * Dictionaries are built by counting strings over a sample of the corpus with
+ * {@link #builder()}, more frequent strings get smaller codes. Each dictionary
+ * has a version which is written in encoded documents, so documents can only
+ * be decoded with the dictionary they were encoded with. When a new
+ * dictionary is built for a corpus, give it a new version.
+ *
+ * File format is a magic number, the version, the number of strings and then
+ * each string as its UTF-8 length followed by UTF-8 bytes, in code order.
+ *
+ * @author David Leoni
+ * @since 1.1.0
+ */
+@Immutable
+@ParametersAreNonnullByDefault
+public final class CorpusDictionary {
+
+    private static final int MAGIC = 0x53434431; // "SCD1"
+
+    private static final CorpusDictionary EMPTY = new CorpusDictionary(0, ImmutableList.<String>of());
+
+    private final int version;
+    private final ImmutableList<String> strings;
+    private final ImmutableMap<String, Integer> codes;
+
+    private CorpusDictionary(int version, ImmutableList<String> strings) {
+        this.version = version;
+        this.strings = strings;
+        ImmutableMap.Builder<String, Integer> codesB = ImmutableMap.builder();
+        for (int i = 0; i < strings.size(); i++) {
+            codesB.put(strings.get(i), i);
+        }
+        this.codes = codesB.build();
+    }
+
+    /**
+     * Returns the empty dictionary, with version zero.
+     */
+    public static CorpusDictionary of() {
+        return EMPTY;
+    }
+
+    /**
+     * Creates a dictionary with the given strings, in code order.
+     *
+     * @throws IllegalArgumentException if version is negative or strings are
+     * repeated.
+     */
+    public static CorpusDictionary of(int version, Iterable<String> strings) {
+        checkVersion(version);
+        return new CorpusDictionary(version, ImmutableList.copyOf(strings));
+    }
+
+    private static void checkVersion(int version) {
+        checkArgument(version >= 0, "Version must be non negative, found instead %s", version);
+    }
+
+    /**
+     * Returns a builder counting strings of sample SemTexts.
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Counts strings occurrences and builds a dictionary with the most frequent
+     * ones.
+     */
+    public static final class Builder {
+
+        private final Map<String, int[]> counts = new HashMap();
+        private int version = 1;
+        private int maxSize = 1 << 16;
+        private int minCount = 2;
+
+        private Builder() {
+        }
+
+        /**
+         * Sets the version of the dictionary. Defaults to 1.
+         *
+         * @throws IllegalArgumentException if version is negative.
+         */
+        public Builder version(int version) {
+            checkVersion(version);
+            this.version = version;
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of strings in the dictionary. Defaults to
+         * 65536.
+         */
+        public Builder maxSize(int maxSize) {
+            checkArgument(maxSize >= 0, "Max size must be non negative, found instead %s", maxSize);
+            this.maxSize = maxSize;
+            return this;
+        }
+
+        /**
+         * Sets the number of occurrences a string must have to be put in the
+         * dictionary. Defaults to 2.
+         */
+        public Builder minCount(int minCount) {
+            this.minCount = minCount;
+            return this;
+        }
+
+        /**
+         * Counts an occurrence of the given string.
+         */
+        public Builder add(String string) {
+            checkNotNull(string);
+            int[] count = counts.get(string);
+            if (count == null) {
+                counts.put(string, new int[]{1});
+            } else {
+                count[0]++;
+            }
+            return this;
+        }
+
+        /**
+         * Counts the strings occurring in the given SemText.
+         */
+        public Builder add(SemText semText) {
+            add(semText.getLocale().toLanguageTag());
+            addNamespaces(semText.getMetadata());
+            for (Sentence sentence : semText.getSentences()) {
+                addNamespaces(sentence.getMetadata());
+                for (Term term : sentence.getTerms()) {
+                    addTerm(term);
+                }
+            }
+            for (Map.Entry<String, ImmutableList<Term>> entry : semText.getLayers().entrySet()) {
+                add(entry.getKey());
+                for (Term term : entry.getValue()) {
+                    addTerm(term);
+                }
+            }
+            return this;
+        }
+
+        private void addTerm(Term term) {
+            addNamespaces(term.getMetadata());
+            for (Meaning meaning : term.getMeanings()) {
+                addMeaning(meaning);
+            }
+            if (term.getSelectedMeaning() != null && !term.getMeanings().contains(term.getSelectedMeaning())) {
+                addMeaning(term.getSelectedMeaning());
+            }
+        }
+
+        private void addMeaning(Meaning meaning) {
+            add(meaning.getId());
+            addNamespaces(meaning.getMetadata());
+            addLocales(meaning.getName());
+            addLocales(meaning.getDescription());
+        }
+
+        private void addNamespaces(Map<String, ?> metadata) {
+            for (String namespace : metadata.keySet()) {
+                add(namespace);
+            }
+        }
+
+        private void addLocales(Dict dict) {
+            for (Locale locale : dict.locales()) {
+                add(locale.toLanguageTag());
+            }
+        }
+
+        /**
+         * Builds a dictionary with at most max size strings occurring at least
+         * min count times, the most frequent first.
+         */
+        public CorpusDictionary build() {
+            List<Map.Entry<String, int[]>> entries = new ArrayList();
+            for (Map.Entry<String, int[]> entry : counts.entrySet()) {
+                if (entry.getValue()[0] >= minCount) {
+                    entries.add(entry);
+                }
+            }
+            Collections.sort(entries, new Comparator<Map.Entry<String, int[]>>() {
+                @Override
+                public int compare(Map.Entry<String, int[]> e1, Map.Entry<String, int[]> e2) {
+                    int c1 = e1.getValue()[0];
+                    int c2 = e2.getValue()[0];
+                    if (c1 != c2) {
+                        return c1 > c2 ? -1 : 1;
+                    }
+                    return e1.getKey().compareTo(e2.getKey());
+                }
+            });
+            ImmutableList.Builder<String> stringsB = ImmutableList.builder();
+            for (int i = 0; i < Math.min(maxSize, entries.size()); i++) {
+                stringsB.add(entries.get(i).getKey());
+            }
+            return new CorpusDictionary(version, stringsB.build());
+        }
+    }
+
+    /**
+     * Returns the version of the dictionary.
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * Returns the number of strings in the dictionary.
+     */
+    public int size() {
+        return strings.size();
+    }
+
+    /**
+     * Returns the code of the given string, or -1 if it is not in the
+     * dictionary.
+     */
+    public int code(String string) {
+        Integer ret = codes.get(string);
+        return ret == null ? -1 : ret;
+    }
+
+    /**
+     * Returns the string with the given code.
+     *
+     * @throws IndexOutOfBoundsException if there is no such code.
+     */
+    public String string(int code) {
+        checkElementIndex(code, strings.size());
+        return strings.get(code);
+    }
+
+    /**
+     * Reads a dictionary written by {@link #write(CorpusDictionary, File)}.
+     *
+     * @throws IOException if the file can't be read or is not a dictionary.
+     */
+    public static CorpusDictionary read(File file) throws IOException {
+        checkNotNull(file);
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("File " + file.getAbsolutePath() + " is not a corpus dictionary!");
+            }
+            int version = in.readInt();
+            if (version < 0) {
+                throw new IOException("Found negative version " + version + " in corpus dictionary "
+                        + file.getAbsolutePath());
+            }
+            // bytes after magic, version and count, which bound the sizes read
+            long remaining = file.length() - 12;
+            int count = in.readInt();
+            if (count < 0 || 4L * count > remaining) {
+                throw new IOException("Found invalid string count " + count + " in corpus dictionary "
+                        + file.getAbsolutePath());
+            }
+            String[] strings = new String[count];
+            for (int i = 0; i < count; i++) {
+                int length = in.readInt();
+                remaining -= 4;
+                if (length < 0 || length > remaining) {
+                    throw new IOException("Found invalid length " + length + " of string " + i
+                            + " in corpus dictionary " + file.getAbsolutePath());
+                }
+                byte[] bytes = new byte[length];
+                in.readFully(bytes);
+                remaining -= length;
+                strings[i] = new String(bytes, Charsets.UTF_8);
+            }
+            return new CorpusDictionary(version, ImmutableList.copyOf(strings));
+        }
+        finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Writes the provided dictionary into the given file, overwriting it.
+     */
+    public static void write(CorpusDictionary dictionary, File file) throws IOException {
+        checkNotNull(dictionary);
+        checkNotNull(file);
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(dictionary.version);
+            out.writeInt(dictionary.strings.size());
+            for (String s : dictionary.strings) {
+                byte[] bytes = s.getBytes(Charsets.UTF_8);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+        }
+        finally {
+            out.close();
+        }
+    }
+
+    @Override
+    public int hashCode() {
+        return 29 * version + strings.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == null) {
+            return false;
+        }
+        if (getClass() != obj.getClass()) {
+            return false;
+        }
+        final CorpusDictionary other = (CorpusDictionary) obj;
+        return this.version == other.version && this.strings.equals(other.strings);
+    }
+
+    @Override
+    public String toString() {
+        return "CorpusDictionary{version=" + version + ", size=" + strings.size() + '}';
+    }
+}
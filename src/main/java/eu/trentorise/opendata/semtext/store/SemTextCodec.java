@@ -0,0 +1,45 @@
+/*
+ * Copyright 2015 TrentoRISE  (trentorise.eu) .
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.trentorise.opendata.semtext.store;
+
+import eu.trentorise.opendata.semtext.SemText;
+import java.io.IOException;
+
+/**
+ * Converts SemTexts to bytes and back, i.e. for storing them in a
+ * {@link SemTextStore}. See
+ * {@link eu.trentorise.opendata.semtext.jackson.JsonSemTextCodec JsonSemTextCodec}
+ * for a JSON implementation.
+ *
+ * Implementations must be thread safe.
+ *
+ * @author David Leoni
+ * @since 1.1.0
+ */
+public interface SemTextCodec {
+
+    /**
+     * Encodes the provided SemText.
+     */
+    byte[] encode(SemText semText) throws IOException;
+
+    /**
+     * Decodes a SemText out of bytes produced by {@link #encode(SemText)}.
+     *
+     * @throws IOException if the bytes are not a valid encoded SemText.
+     */
+    SemText decode(byte[] bytes) throws IOException;
+}
@@ -0,0 +1,936 @@
+/*
+ * Copyright 2015 TrentoRISE  (trentorise.eu) .
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.trentorise.opendata.semtext.store;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Optional;
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import static eu.trentorise.opendata.commons.TodUtils.checkNotEmpty;
+import eu.trentorise.opendata.semtext.SemText;
+import eu.trentorise.opendata.semtext.Sentence;
+import eu.trentorise.opendata.semtext.Term;
+import eu.trentorise.opendata.semtext.exceptions.SemTextException;
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Embedded store of SemTexts keyed by document id, kept in a single
+ * directory. Remember to {@link #close()} the store when done.
+ *
+ * <p>
+ * Documents are encoded with a {@link SemTextCodec} and appended to segment
+ * files, which are never modified once written except for being deleted by
+ * compaction. Deletions are appended as tombstones. When the current segment
+ * exceeds the segment size a new one is started. The position of the last
+ * version of each document is kept in an in-memory index, which is rebuilt on
+ * open by replaying the segments in order. Each record has a CRC32 checksum:
+ * a record torn by a crash at the end of the last segment is discarded, while
+ * a corrupted record anywhere else makes opening fail.
+ * </p>
+ *
+ * <p>
+ * Segments other than the current one where the fraction of bytes belonging
+ * to overwritten or deleted documents reaches the compaction ratio are
+ * compacted, by default in a background thread: their live records are
+ * copied to the current segment and then the segment file is deleted.
+ * </p>
+ *
+ * <p>
+ * Decoded SemTexts are kept in a read-through cache bounded by the estimated
+ * memory they retain.
+ * </p>
+ *
+ * Record format is the payload length, the CRC32 of the payload and the
+ * payload itself, made of record type, UTF-8 id length, UTF-8 id and encoded
+ * SemText (absent in tombstones).
+ *
+ * @author David Leoni
+ * @since 1.1.0
+ */
+@ThreadSafe
+@ParametersAreNonnullByDefault
+public final class SemTextStore implements Closeable {
+
+    private static final Logger LOG = Logger.getLogger(SemTextStore.class.getName());
+
+    /**
+     * Default size in bytes after which a new segment is started.
+     */
+    public static final long DEFAULT_SEGMENT_SIZE = 64L * 1024 * 1024;
+
+    /**
+     * Default maximum estimated size in bytes of the cached SemTexts.
+     */
+    public static final long DEFAULT_CACHE_WEIGHT = 64L * 1024 * 1024;
+
+    /**
+     * Default fraction of garbage bytes at which a segment is compacted.
+     */
+    public static final double DEFAULT_COMPACTION_RATIO = 0.5;
+
+    private static final String LOCK_FILE = "store.lock";
+    private static final Pattern SEGMENT_NAME = Pattern.compile("segment-(\\d{16})\\.log");
+
+    private static final int HEADER_SIZE = 8;
+    private static final int PAYLOAD_HEADER_SIZE = 5;
+    private static final byte PUT = 1;
+    private static final byte DELETE = 2;
+
+    /**
+     * An append-only file of records.
+     */
+    private static final class Segment {
+
+        final long id;
+        final File file;
+        final RandomAccessFile raf;
+        final FileChannel channel;
+        long size;
+        /**
+         * Bytes of the records holding the last version of a document
+         */
+        long liveBytes;
+
+        Segment(long id, File file) throws IOException {
+            this.id = id;
+            this.file = file;
+            this.raf = new RandomAccessFile(file, "rw");
+            this.channel = raf.getChannel();
+        }
+
+        long garbageBytes() {
+            return size - liveBytes;
+        }
+    }
+
+    /**
+     * Position of a record in a segment.
+     */
+    private static final class Location {
+
+        final Segment segment;
+        final long position;
+        final int recordLength;
+        final int valueOffset;
+
+        Location(Segment segment, long position, int recordLength, int idLength) {
+            this.segment = segment;
+            this.position = position;
+            this.recordLength = recordLength;
+            this.valueOffset = HEADER_SIZE + PAYLOAD_HEADER_SIZE + idLength;
+        }
+    }
+
+    /**
+     * Estimates the memory retained by a SemText, counting text chars and
+     * a rough size for each item.
+     */
+    private static final Weigher<String, SemText> WEIGHER = new Weigher<String, SemText>() {
+        @Override
+        public int weigh(String id, SemText semText) {
+            long ret = 64 + 2L * (id.length() + semText.getText().length()) + 48L * semText.getMetadata().size();
+            for (Sentence sentence : semText.getSentences()) {
+                ret += 48 + 48L * sentence.getMetadata().size();
+                for (Term term : sentence.getTerms()) {
+                    ret += 64 + 64L * term.getMeanings().size() + 48L * term.getMetadata().size();
+                }
+            }
+            for (List<Term> terms : semText.getLayers().values()) {
+                ret += 48;
+                for (Term term : terms) {
+                    ret += 64 + 64L * term.getMeanings().size() + 48L * term.getMetadata().size();
+                }
+            }
+            return (int) Math.min(Integer.MAX_VALUE, ret);
+        }
+    };
+
+    /**
+     * Configures and opens a {@link SemTextStore}.
+     */
+    public static final class Builder {
+
+        private final File directory;
+        private final SemTextCodec codec;
+        private long segmentSize = DEFAULT_SEGMENT_SIZE;
+        private long cacheWeight = DEFAULT_CACHE_WEIGHT;
+        private double compactionRatio = DEFAULT_COMPACTION_RATIO;
+        private boolean backgroundCompaction = true;
+
+        private Builder(File directory, SemTextCodec codec) {
+            this.directory = directory;
+            this.codec = codec;
+        }
+
+        /**
+         * Sets the size in bytes after which a new segment is started.
+         * Defaults to {@link #DEFAULT_SEGMENT_SIZE}.
+         */
+        public Builder segmentSize(long segmentSize) {
+            checkArgument(segmentSize > 0, "Segment size must be positive, found instead %s", segmentSize);
+            this.segmentSize = segmentSize;
+            return this;
+        }
+
+        /**
+         * Sets the maximum estimated size in bytes of the cached SemTexts, zero
+         * disables the cache. Defaults to {@link #DEFAULT_CACHE_WEIGHT}.
+         */
+        public Builder cacheWeight(long cacheWeight) {
+            checkArgument(cacheWeight >= 0, "Cache weight must be non negative, found instead %s", cacheWeight);
+            this.cacheWeight = cacheWeight;
+            return this;
+        }
+
+        /**
+         * Sets the fraction of garbage bytes at which a segment is compacted.
+         * Defaults to {@link #DEFAULT_COMPACTION_RATIO}.
+         */
+        public Builder compactionRatio(double compactionRatio) {
+            checkArgument(compactionRatio > 0 && compactionRatio <= 1,
+                    "Compaction ratio must be in (0, 1], found instead %s", compactionRatio);
+            this.compactionRatio = compactionRatio;
+            return this;
+        }
+
+        /**
+         * If false segments are compacted only by calling
+         * {@link SemTextStore#compact()}. Defaults to true.
+         */
+        public Builder backgroundCompaction(boolean backgroundCompaction) {
+            this.backgroundCompaction = backgroundCompaction;
+            return this;
+        }
+
+        /**
+         * Opens the store, creating the directory if needed and replaying
+         * existing segments.
+         *
+         * @throws IOException if the store can't be read, is corrupted or is
+         * already open.
+         */
+        public SemTextStore open() throws IOException {
+            return new SemTextStore(this);
+        }
+    }
+
+    private final File directory;
+    private final SemTextCodec codec;
+    private final long segmentSize;
+    private final double compactionRatio;
+
+    private final RandomAccessFile lockRaf;
+    private final FileLock fileLock;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final TreeMap<String, Location> index = new TreeMap();
+    private final List<Segment> segments = new ArrayList();
+    private Segment active;
+    private boolean closed = false;
+
+    private final Cache<String, SemText> cache;
+
+    @Nullable
+    private final ExecutorService compactor;
+    private final AtomicBoolean compactionPending = new AtomicBoolean(false);
+
+    private SemTextStore(Builder builder) throws IOException {
+        this.directory = builder.directory;
+        this.codec = builder.codec;
+        this.segmentSize = builder.segmentSize;
+        this.compactionRatio = builder.compactionRatio;
+        this.cache = CacheBuilder.newBuilder()
+                .maximumWeight(builder.cacheWeight)
+                .weigher(WEIGHER)
+                .build();
+
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Couldn't create store directory " + directory.getAbsolutePath());
+        }
+        this.lockRaf = new RandomAccessFile(new File(directory, LOCK_FILE), "rw");
+        FileLock acquired;
+        try {
+            acquired = lockRaf.getChannel().tryLock();
+        }
+        catch (OverlappingFileLockException ex) {
+            acquired = null;
+        }
+        if (acquired == null) {
+            lockRaf.close();
+            throw new IOException("Store " + directory.getAbsolutePath() + " is already open!");
+        }
+        this.fileLock = acquired;
+
+        try {
+            recover();
+        }
+        catch (IOException ex) {
+            closeFiles();
+            throw ex;
+        }
+
+        if (builder.backgroundCompaction) {
+            this.compactor = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
+                    .setDaemon(true)
+                    .setNameFormat("semtext-store-compactor-%d")
+                    .build());
+        } else {
+            this.compactor = null;
+        }
+    }
+
+    /**
+     * Returns a builder for a store in the given directory, using the given
+     * codec to encode SemTexts. The same codec must be used every time the
+     * store is opened.
+     */
+    public static Builder builder(File directory, SemTextCodec codec) {
+        checkNotNull(directory);
+        checkNotNull(codec);
+        return new Builder(directory, codec);
+    }
+
+    /**
+     * Opens the store in the given directory with default settings.
+     *
+     * @see #builder(java.io.File, SemTextCodec)
+     */
+    public static SemTextStore open(File directory, SemTextCodec codec) throws IOException {
+        return builder(directory, codec).open();
+    }
+
+    private static File segmentFile(File directory, long id) {
+        return new File(directory, String.format("segment-%016d.log", id));
+    }
+
+    /**
+     * Replays existing segments and sets the active one.
+     */
+    private void recover() throws IOException {
+        List<Long> ids = new ArrayList();
+        File[] files = directory.listFiles();
+        if (files == null) {
+            throw new IOException("Couldn't list store directory " + directory.getAbsolutePath());
+        }
+        for (File file : files) {
+            Matcher matcher = SEGMENT_NAME.matcher(file.getName());
+            if (matcher.matches()) {
+                ids.add(Long.parseLong(matcher.group(1)));
+            }
+        }
+        Collections.sort(ids);
+
+        for (int i = 0; i < ids.size(); i++) {
+            Segment segment = new Segment(ids.get(i), segmentFile(directory, ids.get(i)));
+            segments.add(segment);
+            replay(segment, i == ids.size() - 1);
+        }
+
+        if (segments.isEmpty() || segments.get(segments.size() - 1).size >= segmentSize) {
+            long id = segments.isEmpty() ? 0 : segments.get(segments.size() - 1).id + 1;
+            active = new Segment(id, segmentFile(directory, id));
+            segments.add(active);
+        } else {
+            active = segments.get(segments.size() - 1);
+        }
+    }
+
+    private void replay(Segment segment, boolean last) throws IOException {
+        long length = segment.channel.size();
+        long position = 0;
+        CRC32 crc = new CRC32();
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(segment.file)));
+        try {
+            while (length - position >= HEADER_SIZE) {
+                int payloadLength = in.readInt();
+                int checksum = in.readInt();
+                if (payloadLength < PAYLOAD_HEADER_SIZE || payloadLength > length - position - HEADER_SIZE) {
+                    break;
+                }
+                byte[] payload = new byte[payloadLength];
+                in.readFully(payload);
+                crc.reset();
+                crc.update(payload);
+                if ((int) crc.getValue() != checksum) {
+                    break;
+                }
+                ByteBuffer buf = ByteBuffer.wrap(payload);
+                byte type = buf.get();
+                int idLength = buf.getInt();
+                if ((type != PUT && type != DELETE) || idLength < 0 || idLength > payloadLength - PAYLOAD_HEADER_SIZE) {
+                    break;
+                }
+                String id = new String(payload, PAYLOAD_HEADER_SIZE, idLength, Charsets.UTF_8);
+                if (type == PUT) {
+                    applyPut(id, new Location(segment, position, HEADER_SIZE + payloadLength, idLength));
+                } else {
+                    applyDelete(id);
+                }
+                position += HEADER_SIZE + payloadLength;
+            }
+        }
+        finally {
+            in.close();
+        }
+
+        if (position < length) {
+            if (!last) {
+                throw new IOException("Found corrupted record at position " + position + " of segment "
+                        + segment.file.getAbsolutePath());
+            }
+            LOG.log(Level.WARNING, "Discarding {0} bytes of torn record at the end of segment {1}",
+                    new Object[]{length - position, segment.file.getAbsolutePath()});
+            segment.raf.setLength(position);
+        }
+        segment.size = position;
+    }
+
+    private void applyPut(String id, Location location) {
+        Location old = index.put(id, location);
+        if (old != null) {
+            old.segment.liveBytes -= old.recordLength;
+        }
+        location.segment.liveBytes += location.recordLength;
+    }
+
+    private void applyDelete(String id) {
+        Location old = index.remove(id);
+        if (old != null) {
+            old.segment.liveBytes -= old.recordLength;
+        }
+    }
+
+    private static byte[] record(byte type, byte[] idBytes, @Nullable byte[] value) {
+        int payloadLength = PAYLOAD_HEADER_SIZE + idBytes.length + (value == null ? 0 : value.length);
+        ByteBuffer buf = ByteBuffer.allocate(HEADER_SIZE + payloadLength);
+        buf.putInt(payloadLength);
+        buf.putInt(0);
+        buf.put(type);
+        buf.putInt(idBytes.length);
+        buf.put(idBytes);
+        if (value != null) {
+            buf.put(value);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(buf.array(), HEADER_SIZE, payloadLength);
+        buf.putInt(4, (int) crc.getValue());
+        return buf.array();
+    }
+
+    /**
+     * Appends a record to the active segment, starting a new one if needed.
+     * Must be called holding the write lock.
+     */
+    private Location append(byte[] record, int idLength) throws IOException {
+        if (active.size > 0 && active.size + record.length > segmentSize) {
+            active.channel.force(false);
+            long id = active.id + 1;
+            active = new Segment(id, segmentFile(directory, id));
+            segments.add(active);
+        }
+        ByteBuffer buf = ByteBuffer.wrap(record);
+        while (buf.hasRemaining()) {
+            active.channel.write(buf, active.size + buf.position());
+        }
+        Location ret = new Location(active, active.size, record.length, idLength);
+        active.size += record.length;
+        return ret;
+    }
+
+    private static byte[] read(Segment segment, long position, int length) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(length);
+        while (buf.hasRemaining()) {
+            if (segment.channel.read(buf, position + buf.position()) < 0) {
+                throw new EOFException("Reached end of segment " + segment.file.getAbsolutePath()
+                        + " while reading at position " + position);
+            }
+        }
+        return buf.array();
+    }
+
+    private void checkOpen() {
+        checkState(!closed, "Tried to use closed SemText store %s", directory.getAbsolutePath());
+    }
+
+    /**
+     * Stores the provided SemText under the given id, replacing the existing
+     * one, if any. The record is written but not synced to disk, see
+     * {@link #sync()}.
+     *
+     * @param id a non-empty document id
+     */
+    public void put(String id, SemText semText) throws IOException {
+        checkNotEmpty(id, "Invalid document id!");
+        checkNotNull(semText);
+        byte[] idBytes = id.getBytes(Charsets.UTF_8);
+        byte[] record = record(PUT, idBytes, codec.encode(semText));
+        boolean compact;
+        lock.writeLock().lock();
+        try {
+            checkOpen();
+            applyPut(id, append(record, idBytes.length));
+            cache.put(id, semText);
+            compact = needsCompaction();
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+        if (compact) {
+            scheduleCompaction();
+        }
+    }
+
+    /**
+     * Removes the SemText with the given id, if any.
+     *
+     * @return true if there was a SemText with the given id.
+     */
+    public boolean delete(String id) throws IOException {
+        checkNotNull(id);
+        byte[] idBytes = id.getBytes(Charsets.UTF_8);
+        boolean compact;
+        lock.writeLock().lock();
+        try {
+            checkOpen();
+            if (!index.containsKey(id)) {
+                return false;
+            }
+            append(record(DELETE, idBytes, null), idBytes.length);
+            applyDelete(id);
+            cache.invalidate(id);
+            compact = needsCompaction();
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+        if (compact) {
+            scheduleCompaction();
+        }
+        return true;
+    }
+
+    /**
+     * Returns the SemText with the given id, reading it from disk if it is not
+     * cached.
+     */
+    public Optional<SemText> get(String id) throws IOException {
+        checkNotNull(id);
+        SemText cached = cache.getIfPresent(id);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        lock.readLock().lock();
+        try {
+            checkOpen();
+            Location location = index.get(id);
+            if (location == null) {
+                return Optional.absent();
+            }
+            SemText ret = codec.decode(read(location.segment, location.position + location.valueOffset,
+                    location.recordLength - location.valueOffset));
+            // under the lock, so a concurrent put can't be overwritten by a stale value
+            cache.put(id, ret);
+            return Optional.of(ret);
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the SemText with the given id as encoded by the store codec,
+     * always reading it from disk.
+     */
+    public Optional<byte[]> getEncoded(String id) throws IOException {
+        checkNotNull(id);
+        lock.readLock().lock();
+        try {
+            checkOpen();
+            Location location = index.get(id);
+            if (location == null) {
+                return Optional.absent();
+            }
+            return Optional.of(read(location.segment, location.position + location.valueOffset,
+                    location.recordLength - location.valueOffset));
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns true if there is a SemText with the given id.
+     */
+    public boolean contains(String id) {
+        checkNotNull(id);
+        lock.readLock().lock();
+        try {
+            checkOpen();
+            return index.containsKey(id);
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the number of stored SemTexts.
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            checkOpen();
+            return index.size();
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the stored SemTexts in id order. Ids are taken when the iterator
+     * is created, SemTexts are read while iterating and the ones deleted in the
+     * meanwhile are skipped.
+     *
+     * @throws SemTextException from the iterator if a SemText can't be read.
+     */
+    public Iterable<Map.Entry<String, SemText>> scan() {
+        return new Iterable<Map.Entry<String, SemText>>() {
+            @Override
+            public Iterator<Map.Entry<String, SemText>> iterator() {
+                final ImmutableList<String> ids = ids();
+                return new AbstractIterator<Map.Entry<String, SemText>>() {
+                    private int i = 0;
+
+                    @Override
+                    protected Map.Entry<String, SemText> computeNext() {
+                        while (i < ids.size()) {
+                            String id = ids.get(i++);
+                            Optional<SemText> semText;
+                            try {
+                                semText = get(id);
+                            }
+                            catch (IOException ex) {
+                                throw new SemTextException("Couldn't read document " + id + " from store "
+                                        + directory.getAbsolutePath(), ex);
+                            }
+                            if (semText.isPresent()) {
+                                return Maps.immutableEntry(id, semText.get());
+                            }
+                        }
+                        return endOfData();
+                    }
+                };
+            }
+        };
+    }
+
+    /**
+     * Returns the stored SemTexts in id order as encoded by the store codec,
+     * without decoding nor caching them. Ids are taken when the iterator is
+     * created, SemTexts are read while iterating and the ones deleted in the
+     * meanwhile are skipped.
+     *
+     * @throws SemTextException from the iterator if a SemText can't be read.
+     */
+    public Iterable<Map.Entry<String, byte[]>> scanEncoded() {
+        return new Iterable<Map.Entry<String, byte[]>>() {
+            @Override
+            public Iterator<Map.Entry<String, byte[]>> iterator() {
+                final ImmutableList<String> ids = ids();
+                return new AbstractIterator<Map.Entry<String, byte[]>>() {
+                    private int i = 0;
+
+                    @Override
+                    protected Map.Entry<String, byte[]> computeNext() {
+                        while (i < ids.size()) {
+                            String id = ids.get(i++);
+                            Optional<byte[]> encoded;
+                            try {
+                                encoded = getEncoded(id);
+                            }
+                            catch (IOException ex) {
+                                throw new SemTextException("Couldn't read document " + id + " from store "
+                                        + directory.getAbsolutePath(), ex);
+                            }
+                            if (encoded.isPresent()) {
+                                return Maps.immutableEntry(id, encoded.get());
+                            }
+                        }
+                        return endOfData();
+                    }
+                };
+            }
+        };
+    }
+
+    private ImmutableList<String> ids() {
+        lock.readLock().lock();
+        try {
+            checkOpen();
+            return ImmutableList.copyOf(index.keySet());
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Forces records written so far to disk.
+     */
+    public void sync() throws IOException {
+        lock.writeLock().lock();
+        try {
+            checkOpen();
+            active.channel.force(false);
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Must be called holding the lock.
+     */
+    private boolean isCompactable(Segment segment) {
+        return segment != active && segment.garbageBytes() > 0
+                && segment.garbageBytes() >= segment.size * compactionRatio;
+    }
+
+    /**
+     * Must be called holding the lock.
+     */
+    private boolean needsCompaction() {
+        if (compactor == null) {
+            return false;
+        }
+        for (Segment segment : segments) {
+            if (isCompactable(segment)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void scheduleCompaction() {
+        if (!compactionPending.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            compactor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        compact();
+                    }
+                    catch (IOException ex) {
+                        LOG.log(Level.WARNING, "Couldn't compact store " + directory.getAbsolutePath(), ex);
+                    }
+                    finally {
+                        compactionPending.set(false);
+                    }
+                }
+            });
+        }
+        catch (RejectedExecutionException ex) {
+            // store is being closed
+            compactionPending.set(false);
+        }
+    }
+
+    /**
+     * Compacts the segments having enough garbage, other than the current one.
+     * Other operations are blocked while each segment is compacted.
+     */
+    public void compact() throws IOException {
+        List<Long> candidates = new ArrayList();
+        lock.readLock().lock();
+        try {
+            checkOpen();
+            for (Segment segment : segments) {
+                if (isCompactable(segment)) {
+                    candidates.add(segment.id);
+                }
+            }
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+
+        for (Long id : candidates) {
+            lock.writeLock().lock();
+            try {
+                if (closed) {
+                    return;
+                }
+                for (Segment segment : segments) {
+                    if (segment.id == id && isCompactable(segment)) {
+                        compact(segment);
+                        break;
+                    }
+                }
+            }
+            finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Copies live records of the segment to the active one and deletes it.
+     * Tombstones are kept only if older segments may hold a previous version
+     * of the document. Must be called holding the write lock.
+     */
+    private void compact(Segment segment) throws IOException {
+        boolean oldest = segments.get(0) == segment;
+        long position = 0;
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(segment.file)));
+        try {
+            while (position < segment.size) {
+                int payloadLength = in.readInt();
+                byte[] record = new byte[HEADER_SIZE + payloadLength];
+                ByteBuffer buf = ByteBuffer.wrap(record);
+                buf.putInt(payloadLength);
+                in.readFully(record, 4, record.length - 4);
+                byte type = buf.get(HEADER_SIZE);
+                int idLength = buf.getInt(HEADER_SIZE + 1);
+                String id = new String(record, HEADER_SIZE + PAYLOAD_HEADER_SIZE, idLength, Charsets.UTF_8);
+
+                if (type == PUT) {
+                    Location location = index.get(id);
+                    if (location != null && location.segment == segment && location.position == position) {
+                        applyPut(id, append(record, idLength));
+                    }
+                } else if (!oldest && !index.containsKey(id)) {
+                    append(record, idLength);
+                }
+                position += record.length;
+            }
+        }
+        finally {
+            in.close();
+        }
+
+        // copies must be durable before the originals go away
+        active.channel.force(false);
+        segments.remove(segment);
+        segment.raf.close();
+        if (!segment.file.delete()) {
+            throw new IOException("Couldn't delete compacted segment " + segment.file.getAbsolutePath());
+        }
+        LOG.log(Level.FINE, "Compacted segment {0}", segment.file.getAbsolutePath());
+    }
+
+    private void closeFiles() throws IOException {
+        try {
+            for (Segment segment : segments) {
+                segment.raf.close();
+            }
+        }
+        finally {
+            fileLock.release();
+            lockRaf.close();
+        }
+    }
+
+    /**
+     * Waits for running compaction, syncs records to disk and closes the
+     * store.
+     */
+    @Override
+    public void close() throws IOException {
+        if (compactor != null) {
+            compactor.shutdown();
+            try {
+                compactor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            }
+            catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        lock.writeLock().lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            cache.invalidateAll();
+            active.channel.force(false);
+            closeFiles();
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the codec used to encode SemTexts.
+     */
+    public SemTextCodec getCodec() {
+        return codec;
+    }
+
+    /**
+     * Returns the directory of the store.
+     */
+    public File getDirectory() {
+        return directory;
+    }
+
+    @Override
+    public String toString() {
+        return "SemTextStore{directory=" + directory.getAbsolutePath() + '}';
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2015 TrentoRISE  (trentorise.eu) .
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.trentorise.opendata.semtext.store;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import eu.trentorise.opendata.semtext.Term;
+import java.util.Locale;
+import javax.annotation.ParametersAreNonnullByDefault;
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * A term found by a {@link TermQuery}, together with the id and locale of its
+ * document and the text it covers.
+ *
+ * @author David Leoni
+ * @since 1.1.0
+ */
+@Immutable
+@ParametersAreNonnullByDefault
+public final class TermMatch {
+
+    private final String id;
+    private final Locale locale;
+    private final int sentenceIndex;
+    private final Term term;
+    private final String text;
+
+    private TermMatch(String id, Locale locale, int sentenceIndex, Term term, String text) {
+        checkNotNull(id);
+        checkNotNull(locale);
+        checkNotNull(term);
+        checkNotNull(text);
+        this.id = id;
+        this.locale = locale;
+        this.sentenceIndex = sentenceIndex;
+        this.term = term;
+        this.text = text;
+    }
+
+    /**
+     * Creates a match of the given term in sentence {@code sentenceIndex} of
+     * document {@code id}.
+     */
+    public static TermMatch of(String id, Locale locale, int sentenceIndex, Term term, String text) {
+        return new TermMatch(id, locale, sentenceIndex, term, text);
+    }
+
+    /**
+     * Returns the id of the document containing the term.
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Returns the locale of the document containing the term.
+     */
+    public Locale getLocale() {
+        return locale;
+    }
+
+    /**
+     * Returns the index of the sentence containing the term.
+     */
+    public int getSentenceIndex() {
+        return sentenceIndex;
+    }
+
+    /**
+     * Returns the term, with offsets relative to the document text.
+     */
+    public Term getTerm() {
+        return term;
+    }
+
+    /**
+     * Returns the text spanned by the term.
+     */
+    public String getText() {
+        return text;
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 7;
+        hash = 37 * hash + id.hashCode();
+        hash = 37 * hash + sentenceIndex;
+        hash = 37 * hash + term.hashCode();
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == null) {
+            return false;
+        }
+        if (getClass() != obj.getClass()) {
+            return false;
+        }
+        final TermMatch other = (TermMatch) obj;
+        return this.id.equals(other.id)
+                && this.locale.equals(other.locale)
+                && this.sentenceIndex == other.sentenceIndex
+                && this.term.equals(other.term)
+                && this.text.equals(other.text);
+    }
+
+    @Override
+    public String toString() {
+        return "TermMatch{id=" + id + ", locale=" + locale + ", sentenceIndex=" + sentenceIndex + ", term=" + term
+                + ", text=" + text + '}';
+    }
+}
@@ -0,0 +1,374 @@
+/*
+ * Copyright 2015 TrentoRISE  (trentorise.eu) .
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.trentorise.opendata.semtext.store;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Sets;
+import static eu.trentorise.opendata.commons.TodUtils.checkNotEmpty;
+import eu.trentorise.opendata.semtext.MeaningKind;
+import eu.trentorise.opendata.semtext.MeaningStatus;
+import eu.trentorise.opendata.semtext.exceptions.SemTextException;
+import eu.trentorise.opendata.semtext.internal.ParallelBatches;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import javax.annotation.ParametersAreNonnullByDefault;
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * Query selecting sentence terms of documents encoded with
+ * {@link BinarySemTextCodec}. Filters are evaluated directly on the encoded
+ * bytes: documents in other locales are rejected after reading their locale,
+ * and {@link eu.trentorise.opendata.semtext.Term Term} objects are only built
+ * for matching terms. Filters left unset accept everything, set filters must
+ * all be satisfied.
+ *
+ * Kind and probability filters look at the top meaning of a term, that is
+ * the selected meaning if present, otherwise the candidate meaning with
+ * highest probability. Terms without meanings don't satisfy these filters.
+ *
+ * For example, Italian entity terms not sure and with top probability below
+ * 0.4 are found with
+ *
+ * <pre>
+ * TermQuery.builder()
+ *         .locales(Locale.ITALIAN)
+ *         .statuses(MeaningStatus.NOT_SURE)
+ *         .kinds(MeaningKind.ENTITY)
+ *         .maxProbability(0.4)
+ *         .build()
+ *         .run(store, executor, 4);
+ * </pre>
+ *
+ * @author David Leoni
+ * @since 1.1.0
+ */
+@Immutable
+@ParametersAreNonnullByDefault
+public final class TermQuery {
+
+    private final ImmutableSet<Locale> locales;
+    private final ImmutableSet<MeaningStatus> statuses;
+    private final ImmutableSet<MeaningKind> kinds;
+    private final double minProbability;
+    private final double maxProbability;
+    private final ImmutableList<String> namespaces;
+    private final int minLength;
+    private final int maxLength;
+
+    private TermQuery(Builder builder) {
+        this.locales = ImmutableSet.copyOf(builder.locales);
+        this.statuses = ImmutableSet.copyOf(builder.statuses);
+        this.kinds = ImmutableSet.copyOf(builder.kinds);
+        this.minProbability = builder.minProbability;
+        this.maxProbability = builder.maxProbability;
+        this.namespaces = ImmutableList.copyOf(builder.namespaces);
+        this.minLength = builder.minLength;
+        this.maxLength = builder.maxLength;
+    }
+
+    /**
+     * Returns a builder of a query accepting all terms.
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Builder of {@link TermQuery}
+     */
+    public static final class Builder {
+
+        private final Set<Locale> locales = Sets.newLinkedHashSet();
+        private final Set<MeaningStatus> statuses = EnumSet.noneOf(MeaningStatus.class);
+        private final Set<MeaningKind> kinds = EnumSet.noneOf(MeaningKind.class);
+        private double minProbability = Double.NEGATIVE_INFINITY;
+        private double maxProbability = Double.POSITIVE_INFINITY;
+        private final Set<String> namespaces = Sets.newLinkedHashSet();
+        private int minLength = 0;
+        private int maxLength = Integer.MAX_VALUE;
+
+        private Builder() {
+        }
+
+        /**
+         * Accepts only documents in one of the given locales.
+         */
+        public Builder locales(Locale... locales) {
+            for (Locale locale : locales) {
+                this.locales.add(checkNotNull(locale));
+            }
+            return this;
+        }
+
+        /**
+         * Accepts only terms with one of the given statuses.
+         */
+        public Builder statuses(MeaningStatus... statuses) {
+            for (MeaningStatus status : statuses) {
+                this.statuses.add(checkNotNull(status));
+            }
+            return this;
+        }
+
+        /**
+         * Accepts only terms whose top meaning has one of the given kinds.
+         */
+        public Builder kinds(MeaningKind... kinds) {
+            for (MeaningKind kind : kinds) {
+                this.kinds.add(checkNotNull(kind));
+            }
+            return this;
+        }
+
+        /**
+         * Accepts only terms whose top meaning has probability greater or
+         * equal than the given one.
+         */
+        public Builder minProbability(double minProbability) {
+            this.minProbability = minProbability;
+            return this;
+        }
+
+        /**
+         * Accepts only terms whose top meaning has probability less than the
+         * given one.
+         */
+        public Builder maxProbability(double maxProbability) {
+            this.maxProbability = maxProbability;
+            return this;
+        }
+
+        /**
+         * Accepts only terms having metadata under all the given namespaces.
+         */
+        public Builder metadata(String... namespaces) {
+            for (String namespace : namespaces) {
+                this.namespaces.add(checkNotEmpty(namespace, "Invalid metadata namespace!"));
+            }
+            return this;
+        }
+
+        /**
+         * Accepts only terms spanning at least the given number of characters.
+         */
+        public Builder minLength(int minLength) {
+            checkArgument(minLength >= 0, "Min length must be non negative, found instead %s", minLength);
+            this.minLength = minLength;
+            return this;
+        }
+
+        /**
+         * Accepts only terms spanning at most the given number of characters.
+         */
+        public Builder maxLength(int maxLength) {
+            checkArgument(maxLength >= 0, "Max length must be non negative, found instead %s", maxLength);
+            this.maxLength = maxLength;
+            return this;
+        }
+
+        public TermQuery build() {
+            return new TermQuery(this);
+        }
+    }
+
+    /**
+     * Returns the accepted document locales, empty if any locale is accepted.
+     */
+    public ImmutableSet<Locale> getLocales() {
+        return locales;
+    }
+
+    /**
+     * Returns the accepted term statuses, empty if any status is accepted.
+     */
+    public ImmutableSet<MeaningStatus> getStatuses() {
+        return statuses;
+    }
+
+    /**
+     * Returns the accepted top meaning kinds, empty if any kind is accepted.
+     */
+    public ImmutableSet<MeaningKind> getKinds() {
+        return kinds;
+    }
+
+    /**
+     * Returns the minimum probability of the top meaning, inclusive.
+     */
+    public double getMinProbability() {
+        return minProbability;
+    }
+
+    /**
+     * Returns the maximum probability of the top meaning, exclusive.
+     */
+    public double getMaxProbability() {
+        return maxProbability;
+    }
+
+    /**
+     * Returns the metadata namespaces terms must have.
+     */
+    public ImmutableList<String> getNamespaces() {
+        return namespaces;
+    }
+
+    /**
+     * Returns the minimum term length, inclusive.
+     */
+    public int getMinLength() {
+        return minLength;
+    }
+
+    /**
+     * Returns the maximum term length, inclusive.
+     */
+    public int getMaxLength() {
+        return maxLength;
+    }
+
+    /**
+     * Returns true if the query filters terms on their top meaning.
+     */
+    boolean filtersMeanings() {
+        return !kinds.isEmpty() || minProbability != Double.NEGATIVE_INFINITY
+                || maxProbability != Double.POSITIVE_INFINITY;
+    }
+
+    boolean acceptsSpan(MeaningStatus status, int length) {
+        return (statuses.isEmpty() || statuses.contains(status)) && length >= minLength && length <= maxLength;
+    }
+
+    boolean acceptsTopMeaning(MeaningKind kind, double probability) {
+        return (kinds.isEmpty() || kinds.contains(kind))
+                && probability >= minProbability && probability < maxProbability;
+    }
+
+    /**
+     * Runs the query in the calling thread over the documents of a store
+     * using a {@link BinarySemTextCodec}.
+     *
+     * @throws IllegalArgumentException if the store doesn't use a
+     * {@link BinarySemTextCodec}
+     * @throws SemTextException if a document can't be read.
+     */
+    public ImmutableList<TermMatch> run(SemTextStore store) {
+        return run(store.scanEncoded(), binaryCodec(store));
+    }
+
+    /**
+     * Runs the query in the calling thread over the given documents, each an
+     * id with a SemText encoded by the given codec. Matches are returned in
+     * document order.
+     *
+     * @throws SemTextException if a document can't be decoded.
+     */
+    public ImmutableList<TermMatch> run(Iterable<? extends Map.Entry<String, byte[]>> documents,
+            BinarySemTextCodec codec) {
+        BinarySemTextCodec.QueryScanner scanner = codec.scanner(this);
+        List<TermMatch> ret = new ArrayList();
+        for (Map.Entry<String, byte[]> document : documents) {
+            scan(scanner, document, ret);
+        }
+        return ImmutableList.copyOf(ret);
+    }
+
+    /**
+     * Runs the query over the documents of a store using a
+     * {@link BinarySemTextCodec}, with the given number of tasks submitted to
+     * the executor.
+     *
+     * @see #run(Iterable, BinarySemTextCodec, ExecutorService, int)
+     */
+    public ImmutableList<TermMatch> run(SemTextStore store, ExecutorService executor, int parallelism)
+            throws InterruptedException {
+        return run(store.scanEncoded(), binaryCodec(store), executor, parallelism);
+    }
+
+    /**
+     * Runs the query over the given documents, each an id with a SemText
+     * encoded by the given codec, with the given number of tasks submitted to
+     * the executor. Each task takes batches of documents from a shared
+     * iterator, so the iterable is only iterated once. Matches are returned in
+     * document order.
+     *
+     * @throws InterruptedException if interrupted while waiting for the tasks,
+     * which are then cancelled.
+     * @throws SemTextException if a document can't be decoded.
+     */
+    public ImmutableList<TermMatch> run(Iterable<? extends Map.Entry<String, byte[]>> documents,
+            final BinarySemTextCodec codec, ExecutorService executor, int parallelism) throws InterruptedException {
+        checkNotNull(codec);
+
+        final Map<Integer, List<TermMatch>> batchMatches = new ConcurrentHashMap();
+        new ParallelBatches<Map.Entry<String, byte[]>, BinarySemTextCodec.QueryScanner>() {
+            @Override
+            protected BinarySemTextCodec.QueryScanner newTask() {
+                return codec.scanner(TermQuery.this);
+            }
+
+            @Override
+            protected void process(BinarySemTextCodec.QueryScanner scanner, List<Map.Entry<String, byte[]>> batch,
+                    int batchIndex) {
+                List<TermMatch> matches = new ArrayList();
+                for (Map.Entry<String, byte[]> document : batch) {
+                    scan(scanner, document, matches);
+                }
+                batchMatches.put(batchIndex, matches);
+            }
+        }.run(documents, executor, parallelism, "Error while running term query!");
+
+        // batches are numbered consecutively until the documents end
+        ImmutableList.Builder<TermMatch> retB = ImmutableList.builder();
+        for (int i = 0; i < batchMatches.size(); i++) {
+            retB.addAll(batchMatches.get(i));
+        }
+        return retB.build();
+    }
+
+    private static void scan(BinarySemTextCodec.QueryScanner scanner, Map.Entry<String, byte[]> document,
+            List<TermMatch> matches) {
+        try {
+            scanner.scan(document.getKey(), document.getValue(), matches);
+        }
+        catch (IOException ex) {
+            throw new SemTextException("Couldn't decode document " + document.getKey(), ex);
+        }
+    }
+
+    private static BinarySemTextCodec binaryCodec(SemTextStore store) {
+        checkArgument(store.getCodec() instanceof BinarySemTextCodec,
+                "Term queries need a store using BinarySemTextCodec, found instead %s", store.getCodec());
+        return (BinarySemTextCodec) store.getCodec();
+    }
+
+    @Override
+    public String toString() {
+        return "TermQuery{locales=" + locales + ", statuses=" + statuses + ", kinds=" + kinds
+                + ", minProbability=" + minProbability + ", maxProbability=" + maxProbability
+                + ", namespaces=" + namespaces + ", minLength=" + minLength + ", maxLength=" + maxLength + '}';
+    }
+}
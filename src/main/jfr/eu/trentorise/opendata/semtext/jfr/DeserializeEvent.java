@@ -0,0 +1,32 @@
+/* 
+ * Copyright 2015 TrentoRISE  (trentorise.eu) .
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.trentorise.opendata.semtext.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Emitted when a semtext is deserialized by the Jackson SemTextModule.
+ *
+ * @author David Leoni
+ * @since 1.1.0
+ */
+@Name("eu.trentorise.opendata.semtext.Deserialize")
+@Label("SemText Deserialize")
+@Description("Jackson deserialization of a semtext, bytes are the ones read by the parser")
+final class DeserializeEvent extends SemTextEvent {
+}
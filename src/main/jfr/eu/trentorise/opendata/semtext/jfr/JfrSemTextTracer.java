@@ -0,0 +1,213 @@
+/* 
+ * Copyright 2015 TrentoRISE  (trentorise.eu) .
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.trentorise.opendata.semtext.jfr;
+
+import eu.trentorise.opendata.semtext.metrics.Metrics;
+import eu.trentorise.opendata.semtext.metrics.SemTextOperation;
+import eu.trentorise.opendata.semtext.metrics.SemTextTracer;
+import java.util.ArrayDeque;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.FlightRecorderListener;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import javax.annotation.Nullable;
+
+/**
+ * Tracer emitting Java Flight Recorder events for semtext operations. It is
+ * installed by {@link Metrics} when the class is available and registers
+ * itself as tracer only while there is a running recording, so when nothing
+ * is recorded semtext operations pay no timing cost.
+ *
+ * Events begin when the operation begins, so their start time and duration
+ * are the ones of the operation. Operations already running when a
+ * recording starts are not emitted.
+ *
+ * Events are enabled by default and can be disabled in JFR settings by their
+ * name, i.e. {@code eu.trentorise.opendata.semtext.Merge}.
+ *
+ * @author David Leoni
+ * @since 1.1.0
+ */
+public final class JfrSemTextTracer implements SemTextTracer {
+
+    private static final Logger LOG = Logger.getLogger(JfrSemTextTracer.class.getName());
+
+    /**
+     * Minimum number of meanings a term normalization must have to emit a
+     * {@link NormalizeMeaningsEvent}. Can be changed with system property
+     * {@code semtext.jfr.largeNormalization}
+     */
+    public static final int LARGE_NORMALIZATION = Integer.getInteger("semtext.jfr.largeNormalization", 32);
+
+    private static final JfrSemTextTracer INSTANCE = new JfrSemTextTracer();
+
+    /**
+     * Maximum number of operations begun and not yet traced kept per thread.
+     * Operations failing before being traced are dropped when the enclosing
+     * operation is traced, this limit only bounds failures of outermost ones.
+     */
+    private static final int MAX_PENDING = 64;
+
+    /**
+     * Operations begun and not yet traced by the current thread, the innermost
+     * first.
+     */
+    private static final ThreadLocal<ArrayDeque<Pending>> PENDING = new ThreadLocal<ArrayDeque<Pending>>() {
+        @Override
+        protected ArrayDeque<Pending> initialValue() {
+            return new ArrayDeque();
+        }
+    };
+
+    /**
+     * An operation which began, with its event if enabled.
+     */
+    private static final class Pending {
+
+        final SemTextOperation operation;
+        final long startNanos;
+        @Nullable
+        final SemTextEvent event;
+
+        Pending(SemTextOperation operation, long startNanos, @Nullable SemTextEvent event) {
+            this.operation = operation;
+            this.startNanos = startNanos;
+            this.event = event;
+        }
+    }
+
+    private JfrSemTextTracer() {
+    }
+
+    /**
+     * Installs the tracer if Flight Recorder is available, registering it in
+     * {@link Metrics} whenever a recording is running.
+     */
+    public static void install() {
+        if (!FlightRecorder.isAvailable()) {
+            LOG.log(Level.FINE, "Java Flight Recorder is not available, skipping semtext events.");
+            return;
+        }
+        FlightRecorder.addListener(new FlightRecorderListener() {
+            @Override
+            public void recorderInitialized(FlightRecorder recorder) {
+                update(recorder);
+            }
+
+            @Override
+            public void recordingStateChanged(Recording recording) {
+                update(FlightRecorder.getFlightRecorder());
+            }
+        });
+    }
+
+    /**
+     * Registers the tracer if some recording is running, otherwise
+     * unregisters it. A tracer registered by someone else is never touched.
+     */
+    private static synchronized void update(FlightRecorder recorder) {
+        boolean running = false;
+        for (Recording recording : recorder.getRecordings()) {
+            if (recording.getState() == RecordingState.RUNNING) {
+                running = true;
+                break;
+            }
+        }
+        SemTextTracer current = Metrics.getTracer();
+        if (running && current == null) {
+            Metrics.registerTracer(INSTANCE);
+        } else if (!running && current == INSTANCE) {
+            Metrics.registerTracer(null);
+        }
+    }
+
+    /**
+     * Creates the event of the given operation, or returns null if the
+     * operation has no event.
+     */
+    @Nullable
+    private static SemTextEvent newEvent(SemTextOperation operation) {
+        switch (operation) {
+            case MERGE:
+                return new MergeEvent();
+            case DELETE_TERMS:
+                return new DeleteTermsEvent();
+            case SERIALIZE:
+                return new SerializeEvent();
+            case DESERIALIZE:
+                return new DeserializeEvent();
+            case NORMALIZE_MEANINGS:
+                // the number of meanings is only known at the end
+                return new NormalizeMeaningsEvent();
+            default:
+                return null;
+        }
+    }
+
+    @Override
+    public void begin(SemTextOperation operation, long startNanos) {
+        ArrayDeque<Pending> pending = PENDING.get();
+        if (pending.size() == MAX_PENDING) {
+            pending.removeLast();
+        }
+        SemTextEvent event = newEvent(operation);
+        if (event != null && event.isEnabled()) {
+            event.begin();
+        } else {
+            event = null;
+        }
+        // pushed even without event, so nested operations are matched
+        pending.push(new Pending(operation, startNanos, event));
+    }
+
+    @Override
+    public void trace(SemTextOperation operation, long startNanos, long nanos, long textLength, long sentences,
+            long terms, long meanings, long bytes) {
+        ArrayDeque<Pending> pending = PENDING.get();
+        Pending found = null;
+        for (Pending p : pending) {
+            if (p.operation == operation && p.startNanos == startNanos) {
+                found = p;
+                break;
+            }
+        }
+        if (found == null) {
+            // began before the tracer was registered
+            return;
+        }
+        // drops operations nested into this one which failed before being traced
+        while (pending.pop() != found) {
+        }
+        SemTextEvent event = found.event;
+        if (event == null
+                || (operation == SemTextOperation.NORMALIZE_MEANINGS && meanings < LARGE_NORMALIZATION)) {
+            return;
+        }
+        event.textLength = textLength;
+        event.sentences = sentences;
+        event.terms = terms;
+        event.meanings = meanings;
+        event.bytes = bytes;
+        event.commit();
+    }
+
+    @Override
+    public String toString() {
+        return "JfrSemTextTracer";
+    }
+}
@@ -0,0 +1,50 @@
+/* 
+ * Copyright 2015 TrentoRISE  (trentorise.eu) .
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.trentorise.opendata.semtext.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+
+/**
+ * Common fields of semtext Flight Recorder events. Events begin with the
+ * operation and are committed when it is over, so the standard start time
+ * and duration of the event are the ones of the operation.
+ *
+ * @author David Leoni
+ * @since 1.1.0
+ */
+@Category({"SemText"})
+abstract class SemTextEvent extends jdk.jfr.Event {
+
+    @Label("Text Length")
+    @Description("Length in chars of the text of the semtext, zero if there is no semtext")
+    long textLength;
+
+    @Label("Sentences")
+    long sentences;
+
+    @Label("Terms")
+    long terms;
+
+    @Label("Meanings")
+    long meanings;
+
+    @Label("Bytes")
+    @DataAmount(DataAmount.BYTES)
+    long bytes;
+}
@@ -0,0 +1,207 @@
+/*
+ * Copyright 2015 TrentoRISE  (trentorise.eu) .
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.trentorise.opendata.semtext.test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+import com.google.common.io.BaseEncoding;
+import eu.trentorise.opendata.commons.Dict;
+import eu.trentorise.opendata.commons.TodConfig;
+import eu.trentorise.opendata.semtext.Meaning;
+import eu.trentorise.opendata.semtext.MeaningKind;
+import eu.trentorise.opendata.semtext.MeaningStatus;
+import eu.trentorise.opendata.semtext.SemText;
+import eu.trentorise.opendata.semtext.Sentence;
+import eu.trentorise.opendata.semtext.Term;
+import eu.trentorise.opendata.semtext.store.BinarySemTextCodec;
+import eu.trentorise.opendata.semtext.store.CorpusDictionary;
+import eu.trentorise.opendata.semtext.store.TermQuery;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Date;
+import java.util.Locale;
+import java.util.logging.Logger;
+import org.junit.Assert;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ *
+ * @author David Leoni
+ */
+public class BinarySemTextCodecTest {
+
+    private static final Logger LOG = Logger.getLogger(BinarySemTextCodecTest.class.getName());
+
+    @BeforeClass
+    public static void beforeClass() {
+        TodConfig.init(BinarySemTextCodecTest.class);
+    }
+
+    private static SemText semText(String entityId) {
+        Meaning entity = Meaning.builder()
+                .setId(entityId)
+                .setKind(MeaningKind.ENTITY)
+                .setProbability(0.7)
+                .setName(Dict.of(Locale.ITALIAN, "Trento"))
+                .build();
+        Meaning concept = Meaning.of("http://kb.org/concepts/city", MeaningKind.CONCEPT, 0.3);
+        return SemText.of(Locale.ITALIAN, "Trento è una città. Ciao",
+                Sentence.of(0, 19, ImmutableList.of(
+                                Term.of(0, 6, MeaningStatus.SELECTED, entity, ImmutableList.of(entity, concept),
+                                        ImmutableMap.of("source", "gazetteer", "rank", 3)),
+                                Term.of(13, 18, MeaningStatus.SELECTED, concept)),
+                        ImmutableMap.of("confidence", 0.5)),
+                Sentence.of(20, 24))
+                .withLayer("ner", ImmutableList.of(Term.of(0, 6, MeaningStatus.NOT_SURE, null)))
+                .withMetadata("tags", ImmutableList.of("a", "b"));
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        SemText st = semText("http://kb.org/entities/trento");
+        BinarySemTextCodec codec = BinarySemTextCodec.of();
+        SemText decoded = codec.decode(codec.encode(st));
+        assertEquals(st, decoded);
+
+        Term term = decoded.getSentences().get(0).getTerms().get(0);
+        Term expected = st.getSentences().get(0).getTerms().get(0);
+        assertEquals(expected.getSelectedMeaning().getProbability(), term.getSelectedMeaning().getProbability(), 0);
+        assertEquals(expected.getSelectedMeaning().getName(), term.getSelectedMeaning().getName());
+        assertEquals(3, term.getMetadata("rank"));
+
+        assertEquals(SemText.of(), codec.decode(codec.encode(SemText.of())));
+    }
+
+    @Test
+    public void testMetadataValues() throws IOException {
+        BinarySemTextCodec codec = BinarySemTextCodec.of();
+        ImmutableMap<String, ?> nested = ImmutableMap.of("k", ImmutableList.of(1, 2L, 0.5, true),
+                "m", ImmutableMap.of("x", ImmutableList.of()));
+        SemText st = SemText.of(Locale.ITALIAN, "ab",
+                Sentence.of(0, 2, Term.of(0, 1, MeaningStatus.NOT_SURE, null).withMetadata("nested", nested)))
+                .withMetadata("nested", nested);
+        SemText decoded = codec.decode(codec.encode(st));
+        assertEquals(st, decoded);
+        assertEquals(nested, decoded.getMetadata("nested"));
+
+        // skipped by queries without decoding
+        assertEquals(1, TermQuery.builder().metadata("nested").build()
+                .run(ImmutableList.of(Maps.immutableEntry("doc", codec.encode(st))), codec).size());
+
+        Object[] unsupported = {
+            Locale.ITALIAN,
+            ImmutableList.of(new Date(0)),
+            ImmutableMap.of(1, "a")
+        };
+        for (Object value : unsupported) {
+            try {
+                codec.encode(SemText.of(Locale.ITALIAN, "ab").withMetadata("a", value));
+                Assert.fail("Shouldn't encode metadata " + value);
+            }
+            catch (IOException ex) {
+                LOG.fine(ex.getMessage());
+            }
+        }
+    }
+
+    @Test
+    public void testStableFormat() throws IOException {
+        // encoded documents are persisted, statuses and kinds must keep their codes
+        Meaning meaning = Meaning.of("c", MeaningKind.CONCEPT, 1.0);
+        SemText st = SemText.of(Locale.ITALIAN, "ab", Sentence.of(0, 2, ImmutableList.of(
+                Term.of(0, 1, MeaningStatus.NOT_SURE, null, ImmutableList.of(meaning)),
+                Term.of(1, 2, MeaningStatus.REVIEWED, meaning))));
+        assertEquals("01000002697402616200010002000200010301000163013ff000000000000000000000000001020001000163013ff00000000000000000000000",
+                BaseEncoding.base16().lowerCase().encode(BinarySemTextCodec.of().encode(st)));
+    }
+
+    @Test
+    public void testDictionary() throws IOException {
+        CorpusDictionary.Builder builder = CorpusDictionary.builder().version(3);
+        for (int i = 0; i < 3; i++) {
+            builder.add(semText("http://kb.org/entities/trento"));
+        }
+        CorpusDictionary dict = builder.build();
+        assertTrue(dict.code("http://kb.org/entities/trento") >= 0);
+        assertTrue(dict.code("source") >= 0);
+        assertTrue(dict.code(Locale.ITALIAN.toLanguageTag()) >= 0);
+        assertEquals(-1, dict.code("never seen"));
+
+        SemText st = semText("http://kb.org/entities/trento");
+        BinarySemTextCodec codec = BinarySemTextCodec.of(dict);
+        byte[] bytes = codec.encode(st);
+        assertTrue(bytes.length < BinarySemTextCodec.of().encode(st).length);
+        assertEquals(st, codec.decode(bytes));
+
+        // strings not in the dictionary are written inline
+        SemText other = semText("http://kb.org/entities/rovereto");
+        assertEquals(other, codec.decode(codec.encode(other)));
+
+        try {
+            BinarySemTextCodec.of().decode(bytes);
+            Assert.fail("Shouldn't decode with a different dictionary version!");
+        }
+        catch (IOException ex) {
+            LOG.fine(ex.getMessage());
+        }
+
+        File file = File.createTempFile("semtext-dictionary", ".bin");
+        file.deleteOnExit();
+        CorpusDictionary.write(dict, file);
+        assertEquals(dict, CorpusDictionary.read(file));
+        // corrupt string count, then corrupt length of first string
+        for (int offset : new int[]{8, 12}) {
+            File corrupt = File.createTempFile("semtext-dictionary", ".bin");
+            corrupt.deleteOnExit();
+            CorpusDictionary.write(dict, corrupt);
+            RandomAccessFile raf = new RandomAccessFile(corrupt, "rw");
+            try {
+                raf.seek(offset);
+                raf.writeInt(Integer.MAX_VALUE);
+            }
+            finally {
+                raf.close();
+            }
+            try {
+                CorpusDictionary.read(corrupt);
+                Assert.fail("Shouldn't read a corrupt dictionary!");
+            }
+            catch (IOException ex) {
+                LOG.fine(ex.getMessage());
+            }
+        }
+        // versions are written as variable length ints, which can't be negative
+        try {
+            CorpusDictionary.builder().version(-1);
+            Assert.fail("Shouldn't accept negative versions!");
+        }
+        catch (IllegalArgumentException ex) {
+
+        }
+        try {
+            CorpusDictionary.of(-1, ImmutableList.of("a"));
+            Assert.fail("Shouldn't accept negative versions!");
+        }
+        catch (IllegalArgumentException ex) {
+
+        }
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2015 TrentoRISE  (trentorise.eu) .
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.trentorise.opendata.semtext.test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import eu.trentorise.opendata.commons.TodConfig;
+import eu.trentorise.opendata.semtext.Meaning;
+import eu.trentorise.opendata.semtext.MeaningKind;
+import eu.trentorise.opendata.semtext.MeaningStatus;
+import eu.trentorise.opendata.semtext.SemText;
+import eu.trentorise.opendata.semtext.Sentence;
+import eu.trentorise.opendata.semtext.Term;
+import eu.trentorise.opendata.semtext.stats.CorpusStats;
+import eu.trentorise.opendata.semtext.stats.CorpusStatsCollector;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import static org.junit.Assert.assertEquals;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ *
+ * @author David Leoni
+ */
+public class CorpusStatsTest {
+
+    @BeforeClass
+    public static void beforeClass() {
+        TodConfig.init(CorpusStatsTest.class);
+    }
+
+    private static SemText semText(int i) {
+        Meaning trento = Meaning.of("http://kb.org/entities/trento", MeaningKind.ENTITY, 0.9);
+        Meaning city = Meaning.of("http://kb.org/concepts/city", MeaningKind.CONCEPT, 0.5);
+        Meaning town = Meaning.of("http://kb.org/concepts/town", MeaningKind.CONCEPT, 0.5);
+        return SemText.of(Locale.ITALIAN, "Trento è una città " + i,
+                Sentence.of(0, 18, ImmutableList.of(
+                                Term.of(0, 6, MeaningStatus.SELECTED, trento, ImmutableList.of(trento)),
+                                Term.of(13, 18, MeaningStatus.TO_DISAMBIGUATE, null, ImmutableList.of(city, town)))),
+                Sentence.of(19, 19 + String.valueOf(i).length()));
+    }
+
+    @Test
+    public void testCollect() throws IOException {
+        CorpusStats stats = CorpusStatsCollector.of().add(semText(1)).add(semText(2)).build();
+        assertEquals(2, stats.getSemTexts());
+        assertEquals(4, stats.getSentences());
+        assertEquals(4, stats.getTerms());
+        assertEquals(6, stats.getMeanings());
+        assertEquals(4, stats.getTermsWithCandidates());
+        assertEquals(2, stats.getDisambiguableTerms());
+        assertEquals(0.5, stats.getDisambiguationRate(), 0);
+        assertEquals(Long.valueOf(2), stats.getTermsByStatus().get(MeaningStatus.SELECTED));
+        assertEquals(Long.valueOf(0), stats.getTermsByStatus().get(MeaningStatus.REVIEWED));
+        assertEquals(Long.valueOf(2), stats.getCandidatesPerTerm().get(1));
+        assertEquals(Long.valueOf(2), stats.getCandidatesPerTerm().get(2));
+        assertEquals(Long.valueOf(2), stats.getTermsPerSentence().get(0));
+        assertEquals(Long.valueOf(2), stats.getTermsPerSentence().get(2));
+        assertEquals(ImmutableMap.of(MeaningStatus.TO_DISAMBIGUATE, 2L),
+                stats.getMeaningFrequencies().get(MeaningKind.CONCEPT).get("http://kb.org/concepts/city"));
+        assertEquals(ImmutableMap.of("http://kb.org/entities/trento", 2L),
+                stats.getSelectedMeaningFrequencies().get(MeaningKind.ENTITY));
+
+        JsonNode json = new ObjectMapper().readTree(stats.toJson());
+        assertEquals(4, json.get("terms").asLong());
+        assertEquals(2, json.get("meaningFrequencies").get("ENTITY").get("http://kb.org/entities/trento")
+                .get("SELECTED").asLong());
+        assertEquals(CorpusStats.MAX_CANDIDATES_PER_TERM + 1, json.get("candidatesPerTerm").size());
+    }
+
+    @Test
+    public void testCollectParallel() throws InterruptedException {
+        List<SemText> semTexts = new ArrayList();
+        for (int i = 0; i < 1000; i++) {
+            semTexts.add(semText(i));
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            CorpusStats parallel = CorpusStatsCollector.collect(semTexts, executor, 4);
+            CorpusStats sequential = CorpusStatsCollector.collect(semTexts);
+            assertEquals(1000, parallel.getSemTexts());
+            assertEquals(sequential.toJson(), parallel.toJson());
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * The failure of the shared iterator is thrown as it is, not the
+     * IllegalStateException of the other tasks finding it broken.
+     */
+    @Test
+    public void testCollectParallelIteratorFailure() throws InterruptedException {
+        Iterable<SemText> broken = new Iterable<SemText>() {
+            @Override
+            public Iterator<SemText> iterator() {
+                return new AbstractIterator<SemText>() {
+                    private int i = 0;
+
+                    @Override
+                    protected SemText computeNext() {
+                        if (i == 300) {
+                            throw new IllegalArgumentException("broken corpus");
+                        }
+                        return semText(i++);
+                    }
+                };
+            }
+        };
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            CorpusStatsCollector.collect(broken, executor, 4);
+            Assert.fail("Shouldn't collect stats of a broken corpus!");
+        }
+        catch (IllegalArgumentException ex) {
+            assertEquals("broken corpus", ex.getMessage());
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+}
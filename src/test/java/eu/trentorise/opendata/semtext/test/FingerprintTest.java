@@ -0,0 +1,167 @@
+/*
+ * Copyright 2015 TrentoRISE  (trentorise.eu) .
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.trentorise.opendata.semtext.test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import eu.trentorise.opendata.commons.Dict;
+import eu.trentorise.opendata.commons.TodConfig;
+import eu.trentorise.opendata.semtext.Meaning;
+import eu.trentorise.opendata.semtext.MeaningKind;
+import eu.trentorise.opendata.semtext.MeaningStatus;
+import eu.trentorise.opendata.semtext.SemText;
+import eu.trentorise.opendata.semtext.Sentence;
+import eu.trentorise.opendata.semtext.Term;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.lang.reflect.Field;
+import java.util.Locale;
+import java.util.Map;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ *
+ * @author David Leoni
+ */
+public class FingerprintTest {
+
+    @BeforeClass
+    public static void beforeClass() {
+        TodConfig.init(FingerprintTest.class);
+    }
+
+    private static Meaning meaning(String id, double probability) {
+        return Meaning.builder()
+                .setId(id)
+                .setKind(MeaningKind.ENTITY)
+                .setProbability(probability)
+                .setName(Dict.of(Locale.ITALIAN, "nome " + id).with(Locale.ENGLISH, "name " + id))
+                .build();
+    }
+
+    private static SemText semText(Map<String, ?> metadata) {
+        Meaning a = meaning("a", 0.7);
+        Meaning b = meaning("b", 0.3);
+        return SemText.ofSentences(Locale.ITALIAN, "ciao mondo. bel tempo", ImmutableList.of(
+                Sentence.of(0, 11, ImmutableList.of(
+                                Term.of(0, 4, MeaningStatus.SELECTED, a, ImmutableList.of(a, b)),
+                                Term.of(5, 10, MeaningStatus.TO_DISAMBIGUATE, null, ImmutableList.of(b)))),
+                Sentence.of(12, 21, Term.of(12, 15, MeaningStatus.NOT_SURE, null))),
+                metadata);
+    }
+
+    private static SemText semText() {
+        return semText(ImmutableMap.of("x", ImmutableMap.of("k1", "v1", "k2", ImmutableList.of(1, 2)), "y", "z"));
+    }
+
+    private static <T> T javaRoundTrip(T obj) throws IOException, ClassNotFoundException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(obj);
+        out.close();
+        return (T) new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())).readObject();
+    }
+
+    @Test
+    public void testEqualContent() throws IOException, ClassNotFoundException {
+        SemText semText = semText();
+        assertEquals(semText.fingerprint(), semText().fingerprint());
+        assertSame(semText.fingerprint(), semText.fingerprint());
+        assertEquals(128, semText.fingerprint().bits());
+
+        // map iteration order doesn't count
+        assertEquals(semText.fingerprint(),
+                semText(ImmutableMap.of("y", "z", "x", ImmutableMap.of("k2", ImmutableList.of(1, 2), "k1", "v1")))
+                .fingerprint());
+        assertEquals(Meaning.of("a", MeaningKind.ENTITY, 1.0).withName(Dict.of(Locale.ITALIAN, "i").with(Locale.ENGLISH, "e")).fingerprint(),
+                Meaning.of("a", MeaningKind.ENTITY, 1.0).withName(Dict.of(Locale.ENGLISH, "e").with(Locale.ITALIAN, "i")).fingerprint());
+
+        SemText deserialized = javaRoundTrip(semText);
+        assertEquals(semText.fingerprint(), deserialized.fingerprint());
+    }
+
+    @Test
+    public void testSerializedWithoutLayers() throws Exception {
+        // SemTexts serialized before 1.1.0 have no layers, read back like a null field
+        SemText semText = semText();
+        Field layers = SemText.class.getDeclaredField("layers");
+        layers.setAccessible(true);
+        layers.set(semText, null);
+
+        SemText deserialized = javaRoundTrip(semText);
+        assertEquals(ImmutableMap.of(), deserialized.getLayers());
+        assertEquals(semText(), deserialized);
+        assertEquals(semText().fingerprint(), deserialized.fingerprint());
+    }
+
+    @Test
+    public void testDifferentContent() {
+        SemText semText = semText();
+        assertNotEquals(semText.fingerprint(), semText.withMetadata("y", "w").fingerprint());
+        assertNotEquals(semText.fingerprint(), semText.with("ciao mondo. bel tempi").fingerprint());
+        assertNotEquals(semText.fingerprint(), semText.with(Locale.ENGLISH).fingerprint());
+        assertNotEquals(semText.fingerprint(), semText.withLayer("concepts", semText.terms()).fingerprint());
+
+        // unlike equals, meaning fingerprints consider probabilities and names
+        assertEquals(meaning("a", 0.7), meaning("a", 0.5));
+        assertNotEquals(meaning("a", 0.7).fingerprint(), meaning("a", 0.5).fingerprint());
+        assertNotEquals(meaning("a", 0.7).fingerprint(), meaning("a", 0.7).withName(Dict.of("x")).fingerprint());
+
+        Term term = Term.of(0, 1, MeaningStatus.NOT_SURE, null);
+        assertNotEquals(term.fingerprint(), Term.of(0, 2, MeaningStatus.NOT_SURE, null).fingerprint());
+        assertNotEquals(term.fingerprint(), term.withMetadata("x", 1).fingerprint());
+        assertNotEquals(term.withMetadata("x", 1).fingerprint(), term.withMetadata("x", "1").fingerprint());
+        assertNotEquals(Sentence.of(0, 1).fingerprint(), Sentence.of(0, 1, term).fingerprint());
+    }
+
+    @Test
+    public void testStable() {
+        // fingerprints are persistent keys, they must never change between versions or JVMs
+        assertEquals("88dd51a0e33fd08602e651d1150d9fb3", Term.of(0, 1, MeaningStatus.NOT_SURE, null).fingerprint().toString());
+    }
+
+    @Test
+    public void testUnsupportedMetadata() {
+        Term term = Term.of(0, 1, MeaningStatus.NOT_SURE, null).withMetadata("x", ImmutableList.of(new Object()));
+        try {
+            term.fingerprint();
+            Assert.fail("Shouldn't fingerprint metadata without stable content!");
+        }
+        catch (IllegalArgumentException ex) {
+
+        }
+    }
+
+    @Test
+    public void testReusesChildren() {
+        SemText semText = semText();
+        semText.fingerprint();
+        Sentence sentence = semText.getSentences().get(1);
+        SemText changed = semText.withSentence(1, sentence.withMetadata("x", "y"));
+
+        assertNotEquals(semText.fingerprint(), changed.fingerprint());
+        assertSame(semText.getSentences().get(0).fingerprint(), changed.getSentences().get(0).fingerprint());
+        assertEquals(semText.fingerprint(), changed.withSentence(1, sentence).fingerprint());
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2015 TrentoRISE  (trentorise.eu) .
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.trentorise.opendata.semtext.test;
+
+import com.google.common.collect.ImmutableList;
+import eu.trentorise.opendata.commons.TodConfig;
+import eu.trentorise.opendata.semtext.Meaning;
+import eu.trentorise.opendata.semtext.MeaningKind;
+import eu.trentorise.opendata.semtext.MeaningStatus;
+import eu.trentorise.opendata.semtext.SemText;
+import eu.trentorise.opendata.semtext.Sentence;
+import eu.trentorise.opendata.semtext.Term;
+import eu.trentorise.opendata.semtext.gazetteer.Gazetteer;
+import java.util.List;
+import java.util.Locale;
+import java.util.logging.Logger;
+import org.junit.Assert;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ *
+ * @author David Leoni
+ */
+public class GazetteerTest {
+
+    private static final Logger LOG = Logger.getLogger(GazetteerTest.class.getName());
+
+    private static final Meaning TRENTO = Meaning.of("trento", MeaningKind.ENTITY, 1.0);
+    private static final Meaning TRENTO_CITY = Meaning.of("trento-city", MeaningKind.ENTITY, 0.5);
+    private static final Meaning TRENTO_PROVINCE = Meaning.of("trento-province", MeaningKind.ENTITY, 0.5);
+    private static final Meaning UNIVERSITY = Meaning.of("unitn", MeaningKind.ENTITY, 1.0);
+
+    @BeforeClass
+    public static void beforeClass() {
+        TodConfig.init(GazetteerTest.class);
+    }
+
+    private static Gazetteer gazetteer() {
+        return Gazetteer.builder()
+                .put("Trento", TRENTO_CITY)
+                .put("Trento", TRENTO_PROVINCE)
+                .put("Università di Trento", UNIVERSITY)
+                .put("Università", UNIVERSITY)
+                .build();
+    }
+
+    @Test
+    public void testEmpty() {
+        assertEquals(0, Gazetteer.of().size());
+        assertTrue(Gazetteer.of().find("abc", 0, 3).isEmpty());
+        assertTrue(Gazetteer.of().lookup("").isEmpty());
+    }
+
+    @Test
+    public void testLookup() {
+        Gazetteer gaz = gazetteer();
+        assertEquals(3, gaz.size());
+        assertEquals(ImmutableList.of(TRENTO_CITY, TRENTO_PROVINCE), gaz.lookup("Trento"));
+        assertTrue(gaz.lookup("Trent").isEmpty());
+        assertTrue(gaz.lookup("trento").isEmpty());
+    }
+
+    @Test
+    public void testLongestMatch() {
+        Gazetteer gaz = gazetteer();
+        String text = "Università di Trento, Trentino e Trento";
+        List<Term> terms = gaz.find(text, 0, text.length());
+
+        assertEquals(2, terms.size());
+        assertEquals(Term.of(0, 20, MeaningStatus.SELECTED, UNIVERSITY, ImmutableList.of(UNIVERSITY)), terms.get(0));
+
+        Term trento = terms.get(1);
+        assertEquals(33, trento.getStart());
+        assertEquals(39, trento.getEnd());
+        assertEquals(MeaningStatus.TO_DISAMBIGUATE, trento.getMeaningStatus());
+        assertEquals(2, trento.getMeanings().size());
+    }
+
+    @Test
+    public void testWordBoundaries() {
+        Gazetteer gaz = Gazetteer.builder().put("cat", TRENTO).build();
+        assertTrue(gaz.find("concatenate", 0, 11).isEmpty());
+        assertEquals(1, gaz.find("a cat.", 0, 6).size());
+
+        // region bounds act as boundaries
+        assertEquals(1, gaz.find("concatenate", 3, 6).size());
+
+        Gazetteer noBoundaries = Gazetteer.builder().put("cat", TRENTO).wordBoundaries(false).build();
+        assertEquals(1, noBoundaries.find("concatenate", 0, 11).size());
+    }
+
+    @Test
+    public void testCaseInsensitive() {
+        Gazetteer gaz = Gazetteer.builder()
+                .put("Trento", TRENTO_CITY)
+                .put("TRENTO", TRENTO_PROVINCE)
+                .caseSensitive(false)
+                .build();
+        assertEquals(1, gaz.size());
+        assertEquals(2, gaz.lookup("trento").size());
+        assertEquals(1, gaz.find("in trEnTo", 0, 9).size());
+    }
+
+    @Test
+    public void testAnnotate() {
+        Gazetteer gaz = gazetteer();
+        // 'di Trento' crosses sentences, so only 'Università' is found in first one
+        SemText st = SemText.of(Locale.ITALIAN, "Università di Trento",
+                Sentence.of(0, 13),
+                Sentence.of(14, 20));
+
+        SemText annotated = gaz.annotate(st);
+        assertEquals(2, annotated.terms().size());
+        assertEquals(0, annotated.terms().get(0).getStart());
+        assertEquals(10, annotated.terms().get(0).getEnd());
+        assertEquals(14, annotated.terms().get(1).getStart());
+
+        SemText layered = gaz.annotate(SemText.of(Locale.ITALIAN, "Università di Trento"), "gazetteer");
+        assertEquals(1, layered.terms("gazetteer").size());
+        assertTrue(layered.terms().isEmpty());
+
+        try {
+            Gazetteer.builder().put("", TRENTO);
+            Assert.fail("Should have rejected empty surface form!");
+        }
+        catch (IllegalArgumentException ex) {
+
+        }
+    }
+}
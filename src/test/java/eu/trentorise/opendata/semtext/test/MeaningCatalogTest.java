@@ -0,0 +1,237 @@
+/* 
+ * Copyright 2015 TrentoRISE  (trentorise.eu) .
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.trentorise.opendata.semtext.test;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
+import eu.trentorise.opendata.commons.Dict;
+import eu.trentorise.opendata.commons.TodConfig;
+import eu.trentorise.opendata.semtext.Meaning;
+import eu.trentorise.opendata.semtext.MeaningKind;
+import eu.trentorise.opendata.semtext.MeaningStatus;
+import eu.trentorise.opendata.semtext.SemText;
+import eu.trentorise.opendata.semtext.SemTexts;
+import eu.trentorise.opendata.semtext.Sentence;
+import eu.trentorise.opendata.semtext.Term;
+import eu.trentorise.opendata.semtext.catalog.FileMeaningCatalog;
+import eu.trentorise.opendata.semtext.catalog.MeaningCatalog;
+import eu.trentorise.opendata.semtext.catalog.MemoryMeaningCatalog;
+import java.io.File;
+import java.io.IOException;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+import org.junit.Assert;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ *
+ * @author David Leoni
+ */
+public class MeaningCatalogTest {
+
+    private static final Logger LOG = Logger.getLogger(MeaningCatalogTest.class.getName());
+
+    @BeforeClass
+    public static void beforeClass() {
+        TodConfig.init(MeaningCatalogTest.class);
+    }
+
+    private static Meaning fullMeaning(String id, double probability) {
+        return Meaning.builder()
+                .setId(id)
+                .setKind(MeaningKind.ENTITY)
+                .setProbability(probability)
+                .setName(Dict.of(Locale.ITALIAN, "nome " + id).with(Locale.ENGLISH, "name " + id))
+                .setDescription(Dict.of(Locale.ENGLISH, "description " + id))
+                .build();
+    }
+
+    private static SemText semText() {
+        Meaning ma = fullMeaning("a", 0.4);
+        Meaning mb = fullMeaning("b", 0.6);
+        return SemText.of(Locale.ITALIAN, "abcd",
+                Sentence.of(0, 4,
+                        Term.of(0, 1, MeaningStatus.SELECTED, mb, ImmutableList.of(ma, mb)),
+                        Term.of(2, 3, MeaningStatus.NOT_SURE, null)));
+    }
+
+    private static void checkCatalog(MeaningCatalog catalog) {
+        assertEquals(2, catalog.size());
+        assertTrue(catalog.contains("a"));
+        assertFalse(catalog.contains("c"));
+        assertFalse(catalog.find("c").isPresent());
+
+        Meaning entry = catalog.find("a").get();
+        assertEquals(Dict.of(Locale.ITALIAN, "nome a").with(Locale.ENGLISH, "name a"), entry.getName());
+        assertEquals(Dict.of(Locale.ENGLISH, "description a"), entry.getDescription());
+        assertEquals(MeaningKind.ENTITY, entry.getKind());
+        assertEquals(0.0, entry.getProbability(), SemTexts.TOLERANCE);
+    }
+
+    @Test
+    public void testMemoryCatalog() {
+        assertEquals(0, MemoryMeaningCatalog.of().size());
+
+        MemoryMeaningCatalog catalog = MemoryMeaningCatalog.ofSemTexts(ImmutableList.of(semText()));
+        checkCatalog(catalog);
+
+        // first meaning with static data wins
+        MemoryMeaningCatalog cat2 = MemoryMeaningCatalog.of(ImmutableList.of(Meaning.of("a", MeaningKind.ENTITY, 0.1),
+                fullMeaning("a", 0.1), Meaning.of("", MeaningKind.ENTITY, 0.1)));
+        assertEquals(1, cat2.size());
+        assertEquals(Dict.of(Locale.ENGLISH, "description a"), cat2.find("a").get().getDescription());
+
+        assertEquals(2, cat2.with(catalog).size());
+    }
+
+    @Test
+    public void testCompactAndResolve() {
+        SemText st = semText();
+        MemoryMeaningCatalog catalog = MemoryMeaningCatalog.ofSemTexts(ImmutableList.of(st));
+
+        SemText compact = SemTexts.compactMeanings(st);
+        Term term = compact.getSentences().get(0).getTerms().get(0);
+        assertTrue(term.getSelectedMeaning().getName().isEmpty());
+        for (Meaning m : term.getMeanings()) {
+            assertTrue(m.getName().isEmpty());
+            assertTrue(m.getDescription().isEmpty());
+        }
+        // probabilities are not renormalized
+        assertEquals(st.getSentences().get(0).getTerms().get(0).getMeanings().get(0).getProbability(),
+                term.getMeanings().get(0).getProbability(), 0.0);
+
+        // terms without meanings are reused
+        assertSame(st.getSentences().get(0).getTerms().get(1), compact.getSentences().get(0).getTerms().get(1));
+        assertSame(compact, SemTexts.compactMeanings(compact));
+
+        SemText resolved = SemTexts.resolveMeanings(compact, catalog);
+        Term resolvedTerm = resolved.getSentences().get(0).getTerms().get(0);
+        Term origTerm = st.getSentences().get(0).getTerms().get(0);
+        assertEquals(origTerm.getSelectedMeaning().getName(), resolvedTerm.getSelectedMeaning().getName());
+        for (int i = 0; i < origTerm.getMeanings().size(); i++) {
+            assertEquals(origTerm.getMeanings().get(i).getName(), resolvedTerm.getMeanings().get(i).getName());
+            assertEquals(origTerm.getMeanings().get(i).getDescription(), resolvedTerm.getMeanings().get(i).getDescription());
+        }
+        assertSame(resolved, SemTexts.resolveMeanings(resolved, catalog));
+
+        // unknown ids are left as they are
+        Meaning unknown = Meaning.of("z", MeaningKind.CONCEPT, 0.2);
+        assertSame(unknown, SemTexts.resolveMeaning(unknown, catalog));
+    }
+
+    /**
+     * Counts lookups
+     */
+    private static class CountingCatalog implements MeaningCatalog {
+
+        private final MeaningCatalog catalog;
+        final AtomicInteger finds = new AtomicInteger();
+
+        CountingCatalog(MeaningCatalog catalog) {
+            this.catalog = catalog;
+        }
+
+        @Override
+        public Optional<Meaning> find(String id) {
+            finds.incrementAndGet();
+            return catalog.find(id);
+        }
+
+        @Override
+        public boolean contains(String id) {
+            return catalog.contains(id);
+        }
+
+        @Override
+        public Set<String> ids() {
+            return catalog.ids();
+        }
+
+        @Override
+        public int size() {
+            return catalog.size();
+        }
+    }
+
+    @Test
+    public void testResolveTerm() {
+        SemText st = semText();
+        CountingCatalog catalog = new CountingCatalog(MemoryMeaningCatalog.ofSemTexts(ImmutableList.of(st)));
+        SemText compact = SemTexts.compactMeanings(st);
+        assertEquals(0, catalog.finds.get());
+
+        Term term = compact.getSentences().get(0).getTerms().get(0);
+        Term resolved = term.resolveMeanings(catalog);
+        Term origTerm = st.getSentences().get(0).getTerms().get(0);
+        assertEquals(origTerm.getSelectedMeaning().getName(), resolved.getSelectedMeaning().getName());
+        assertEquals(origTerm.getMeanings().get(1).getDescription(), resolved.getMeanings().get(1).getDescription());
+        int finds = catalog.finds.get();
+        assertTrue(finds > 0);
+
+        // nothing to resolve
+        Term noMeanings = compact.getSentences().get(0).getTerms().get(1);
+        assertSame(noMeanings, noMeanings.resolveMeanings(catalog));
+        assertEquals(finds, catalog.finds.get());
+
+        // not cached in the term
+        assertEquals(resolved, term.resolveMeanings(catalog));
+        assertEquals(2 * finds, catalog.finds.get());
+    }
+
+    @Test
+    public void testFileCatalog() throws IOException {
+        File file = File.createTempFile("semtext-catalog", ".bin");
+        file.deleteOnExit();
+
+        FileMeaningCatalog.write(MemoryMeaningCatalog.ofSemTexts(ImmutableList.of(semText())), file);
+
+        FileMeaningCatalog catalog = FileMeaningCatalog.open(file, 1);
+        try {
+            checkCatalog(catalog);
+            // evicted entries are read again
+            assertEquals("b", catalog.find("b").get().getId());
+            assertEquals("a", catalog.find("a").get().getId());
+        }
+        finally {
+            catalog.close();
+        }
+
+        FileMeaningCatalog.write(MemoryMeaningCatalog.of(), file);
+        FileMeaningCatalog empty = FileMeaningCatalog.open(file);
+        assertEquals(0, empty.size());
+        empty.close();
+    }
+
+    @Test
+    public void testNotACatalog() throws IOException {
+        File file = File.createTempFile("semtext-catalog", ".bin");
+        file.deleteOnExit();
+        try {
+            FileMeaningCatalog.open(file);
+            Assert.fail("Shouldn't open an empty file!");
+        }
+        catch (IOException ex) {
+
+        }
+    }
+}
@@ -0,0 +1,211 @@
+/* 
+ * Copyright 2015 TrentoRISE  (trentorise.eu) .
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.trentorise.opendata.semtext.test;
+
+import com.google.common.collect.ImmutableList;
+import eu.trentorise.opendata.commons.TodConfig;
+import eu.trentorise.opendata.semtext.Meaning;
+import eu.trentorise.opendata.semtext.MeaningKind;
+import eu.trentorise.opendata.semtext.MeaningStatus;
+import eu.trentorise.opendata.semtext.SemText;
+import eu.trentorise.opendata.semtext.SemTexts;
+import eu.trentorise.opendata.semtext.Sentence;
+import eu.trentorise.opendata.semtext.Term;
+import eu.trentorise.opendata.semtext.metrics.Metrics;
+import eu.trentorise.opendata.semtext.metrics.SemTextMetrics;
+import eu.trentorise.opendata.semtext.metrics.SemTextOperation;
+import eu.trentorise.opendata.semtext.metrics.SemTextTracer;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+import org.junit.After;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ *
+ * @author David Leoni
+ */
+public class MetricsTest {
+
+    private static final Logger LOG = Logger.getLogger(MetricsTest.class.getName());
+
+    @BeforeClass
+    public static void beforeClass() {
+        TodConfig.init(MetricsTest.class);
+    }
+
+    @After
+    public void afterMethod() {
+        Metrics.flush();
+        Metrics.clear();
+        Metrics.registerTracer(null);
+    }
+
+    /**
+     * Collects calls, terms and meanings for each operation
+     */
+    private static class CountingMetrics implements SemTextMetrics {
+
+        final Map<SemTextOperation, long[]> counts = new EnumMap(SemTextOperation.class);
+
+        @Override
+        public synchronized void onFlush(SemTextOperation operation, long calls, long nanos, long terms, long meanings, long bytes) {
+            assertTrue(nanos >= 0);
+            long[] c = counts.get(operation);
+            if (c == null) {
+                c = new long[3];
+                counts.put(operation, c);
+            }
+            c[0] += calls;
+            c[1] += terms;
+            c[2] += meanings;
+        }
+
+        synchronized long calls(SemTextOperation operation) {
+            return counts.containsKey(operation) ? counts.get(operation)[0] : 0;
+        }
+
+        synchronized long terms(SemTextOperation operation) {
+            return counts.containsKey(operation) ? counts.get(operation)[1] : 0;
+        }
+
+        synchronized long meanings(SemTextOperation operation) {
+            return counts.containsKey(operation) ? counts.get(operation)[2] : 0;
+        }
+    }
+
+    @Test
+    public void testNoop() {
+        assertFalse(Metrics.isEnabled());
+        assertEquals(Metrics.NOOP, Metrics.getListener());
+        assertEquals(Metrics.DISABLED, Metrics.start(SemTextOperation.MERGE));
+        SemText.of(Locale.ITALIAN, "abc", Sentence.of(0, 3)).merge(Term.of(0, 1, MeaningStatus.NOT_SURE, null));
+        Metrics.flush();
+    }
+
+    @Test
+    public void testRecording() {
+        CountingMetrics metrics = new CountingMetrics();
+        Metrics.register(metrics);
+        assertTrue(Metrics.isEnabled());
+
+        Meaning ma = Meaning.of("a", MeaningKind.ENTITY, 0.3);
+        Meaning mb = Meaning.of("b", MeaningKind.ENTITY, 0.7);
+
+        SemText st = SemText.of(Locale.ITALIAN, "abcd", Sentence.of(0, 4))
+                .merge(Term.of(0, 1, MeaningStatus.NOT_SURE, null, ImmutableList.of(ma, mb)),
+                        Term.of(2, 3, MeaningStatus.NOT_SURE, null));
+
+        st.deleteTerms(Pattern.compile("c"));
+        st.withSentences(st.getSentences());
+        SemTexts.disambiguate(ImmutableList.of(ma, mb));
+        SemTexts.mergeMeanings(ImmutableList.of(ma), ImmutableList.of(mb));
+
+        // nothing is delivered until flush
+        assertEquals(0, metrics.calls(SemTextOperation.MERGE));
+        Metrics.flush();
+
+        assertEquals(1, metrics.calls(SemTextOperation.MERGE));
+        assertEquals(2, metrics.terms(SemTextOperation.MERGE));
+        assertEquals(2, metrics.meanings(SemTextOperation.MERGE));
+
+        assertEquals(1, metrics.calls(SemTextOperation.DELETE_TERMS));
+        assertEquals(2, metrics.terms(SemTextOperation.DELETE_TERMS));
+
+        assertEquals(1, metrics.calls(SemTextOperation.WITH_SENTENCES));
+        assertEquals(2, metrics.terms(SemTextOperation.WITH_SENTENCES));
+
+        assertEquals(1, metrics.calls(SemTextOperation.DISAMBIGUATE));
+        assertEquals(2, metrics.meanings(SemTextOperation.DISAMBIGUATE));
+
+        assertEquals(1, metrics.calls(SemTextOperation.MERGE_MEANINGS));
+        assertEquals(2, metrics.meanings(SemTextOperation.MERGE_MEANINGS));
+
+        // counters are reset after flush
+        Metrics.flush();
+        assertEquals(1, metrics.calls(SemTextOperation.MERGE));
+    }
+
+    @Test
+    public void testPeriodicFlush() {
+        CountingMetrics metrics = new CountingMetrics();
+        Metrics.register(metrics);
+        for (int i = 0; i < Metrics.FLUSH_EVENTS; i++) {
+            SemTexts.disambiguate(ImmutableList.<Meaning>of());
+        }
+        assertEquals(Metrics.FLUSH_EVENTS, metrics.calls(SemTextOperation.DISAMBIGUATE));
+    }
+
+    @Test
+    public void testTracer() {
+        final List<SemTextOperation> operations = new ArrayList();
+        final List<long[]> values = new ArrayList();
+        final List<Long> begun = new ArrayList();
+        Metrics.registerTracer(new SemTextTracer() {
+            @Override
+            public void begin(SemTextOperation operation, long startNanos) {
+                begun.add(startNanos);
+            }
+
+            @Override
+            public void trace(SemTextOperation operation, long startNanos, long nanos, long textLength,
+                    long sentences, long terms, long meanings, long bytes) {
+                assertTrue(nanos >= 0);
+                assertTrue(begun.contains(startNanos));
+                operations.add(operation);
+                values.add(new long[]{textLength, sentences, terms, meanings});
+            }
+        });
+        assertFalse(Metrics.isEnabled());
+        assertTrue(Metrics.start(SemTextOperation.MERGE) != Metrics.DISABLED);
+
+        Meaning ma = Meaning.of("a", MeaningKind.ENTITY, 0.3);
+        SemText.of(Locale.ITALIAN, "abcd", Sentence.of(0, 2), Sentence.of(2, 4))
+                .merge(Term.of(0, 1, MeaningStatus.NOT_SURE, null, ImmutableList.of(ma)));
+
+        // tracer gets every single operation, without flushing
+        int i = operations.indexOf(SemTextOperation.MERGE);
+        assertTrue(i >= 0);
+        assertEquals(4, values.get(i)[0]);
+        assertEquals(2, values.get(i)[1]);
+        assertEquals(1, values.get(i)[2]);
+        assertEquals(1, values.get(i)[3]);
+        assertTrue(operations.contains(SemTextOperation.NORMALIZE_MEANINGS));
+
+        Metrics.registerTracer(null);
+        assertEquals(Metrics.DISABLED, Metrics.start(SemTextOperation.MERGE));
+    }
+
+    @Test
+    public void testFailingListener() {
+        Metrics.register(new SemTextMetrics() {
+            @Override
+            public void onFlush(SemTextOperation operation, long calls, long nanos, long terms, long meanings, long bytes) {
+                throw new IllegalStateException("Just testing a failing listener");
+            }
+        });
+        SemTexts.disambiguate(ImmutableList.<Meaning>of());
+        Metrics.flush();
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2015 TrentoRISE  (trentorise.eu) .
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.trentorise.opendata.semtext.test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+import eu.trentorise.opendata.commons.TodConfig;
+import eu.trentorise.opendata.semtext.Meaning;
+import eu.trentorise.opendata.semtext.MeaningKind;
+import eu.trentorise.opendata.semtext.MeaningStatus;
+import eu.trentorise.opendata.semtext.SemText;
+import eu.trentorise.opendata.semtext.Sentence;
+import eu.trentorise.opendata.semtext.Term;
+import eu.trentorise.opendata.semtext.stats.ReviewItem;
+import eu.trentorise.opendata.semtext.stats.ReviewQueue;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.junit.Assert;
+import static org.junit.Assert.assertEquals;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ *
+ * @author David Leoni
+ */
+public class ReviewQueueTest {
+
+    @BeforeClass
+    public static void beforeClass() {
+        TodConfig.init(ReviewQueueTest.class);
+    }
+
+    private static Term term(int start, double p1, double p2) {
+        return Term.of(start, start + 1, MeaningStatus.TO_DISAMBIGUATE, null, ImmutableList.of(
+                Meaning.of("a", MeaningKind.ENTITY, p1),
+                Meaning.of("b", MeaningKind.ENTITY, p2)));
+    }
+
+    /**
+     * A document with terms of decreasing uncertainty, depending on i
+     */
+    private static SemText semText(int i) {
+        double margin = (i % 100) / 100.0;
+        Meaning m = Meaning.of("a", MeaningKind.ENTITY, 1.0);
+        return SemText.of(Locale.ITALIAN, "abcd",
+                Sentence.of(0, 4, ImmutableList.of(
+                                term(0, 0.5 + margin / 2, 0.5 - margin / 2),
+                                Term.of(1, 2, MeaningStatus.SELECTED, m, ImmutableList.of(m)),
+                                Term.of(2, 3, MeaningStatus.NOT_SURE, null))));
+    }
+
+    @Test
+    public void testScore() {
+        assertEquals(2.0, ReviewQueue.score(Term.of(0, 1, MeaningStatus.NOT_SURE, null)), 0);
+        assertEquals(2.0, ReviewQueue.score(term(0, 0.5, 0.5)), 0);
+        assertEquals(0.2, ReviewQueue.score(term(0, 0.9, 0.1)), 0.0001);
+    }
+
+    @Test
+    public void testBuilder() {
+        ReviewQueue queue = ReviewQueue.builder(2)
+                .add("x", SemText.of(Locale.ITALIAN, "abc", Sentence.of(0, 3, term(0, 0.9, 0.1), term(1, 0.6, 0.4),
+                                        term(2, 0.5, 0.5))))
+                .build();
+        assertEquals(2, queue.size());
+        assertEquals(ReviewItem.of("x", 2, 3, 2.0), queue.getItems().get(0));
+        assertEquals(1, queue.getItems().get(1).getStart());
+
+        try {
+            ReviewQueue.builder(0);
+            Assert.fail("Should have rejected zero capacity!");
+        }
+        catch (IllegalArgumentException ex) {
+
+        }
+    }
+
+    @Test
+    public void testCollectParallel() throws InterruptedException {
+        List<Map.Entry<String, SemText>> documents = new ArrayList();
+        for (int i = 0; i < 1000; i++) {
+            documents.add(Maps.immutableEntry(String.format("doc-%04d", i), semText(i)));
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            ReviewQueue queue = ReviewQueue.collect(documents, 50, executor, 4);
+            assertEquals(50, queue.size());
+            assertEquals(ReviewQueue.collect(documents, 50).getItems(), queue.getItems());
+            // terms which can't be disambiguated come first, ties by id and start
+            assertEquals(ReviewItem.of("doc-0000", 0, 1, 2.0), queue.getItems().get(0));
+            assertEquals(ReviewItem.of("doc-0000", 2, 3, 2.0), queue.getItems().get(1));
+            assertEquals(2, queue.getItems().get(49).getStart());
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+}
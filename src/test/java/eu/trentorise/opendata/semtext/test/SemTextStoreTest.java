@@ -0,0 +1,260 @@
+/*
+ * Copyright 2015 TrentoRISE  (trentorise.eu) .
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.trentorise.opendata.semtext.test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.Files;
+import eu.trentorise.opendata.commons.TodConfig;
+import eu.trentorise.opendata.semtext.MeaningStatus;
+import eu.trentorise.opendata.semtext.SemText;
+import eu.trentorise.opendata.semtext.Sentence;
+import eu.trentorise.opendata.semtext.Term;
+import eu.trentorise.opendata.semtext.store.SemTextCodec;
+import eu.trentorise.opendata.semtext.store.SemTextStore;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.logging.Logger;
+import org.junit.After;
+import org.junit.Assert;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ *
+ * @author David Leoni
+ */
+public class SemTextStoreTest {
+
+    private static final Logger LOG = Logger.getLogger(SemTextStoreTest.class.getName());
+
+    /**
+     * Java serialization, so the store can be tested without Jackson
+     */
+    private static final SemTextCodec CODEC = new SemTextCodec() {
+
+        @Override
+        public byte[] encode(SemText semText) throws IOException {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            ObjectOutputStream out = new ObjectOutputStream(bytes);
+            out.writeObject(semText);
+            out.close();
+            return bytes.toByteArray();
+        }
+
+        @Override
+        public SemText decode(byte[] bytes) throws IOException {
+            ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes));
+            try {
+                return (SemText) in.readObject();
+            }
+            catch (ClassNotFoundException ex) {
+                throw new IOException(ex);
+            }
+        }
+    };
+
+    private File dir;
+
+    @BeforeClass
+    public static void beforeClass() {
+        TodConfig.init(SemTextStoreTest.class);
+    }
+
+    @Before
+    public void beforeMethod() {
+        dir = Files.createTempDir();
+    }
+
+    @After
+    public void afterMethod() {
+        for (File file : dir.listFiles()) {
+            file.delete();
+        }
+        dir.delete();
+    }
+
+    private static SemText semText(int i) {
+        return SemText.of(Locale.ITALIAN, "doc " + i,
+                Sentence.of(0, 3, Term.of(0, 3, MeaningStatus.NOT_SURE, null)));
+    }
+
+    private List<File> segmentFiles() {
+        List<File> ret = new ArrayList();
+        for (File file : dir.listFiles()) {
+            if (file.getName().endsWith(".log")) {
+                ret.add(file);
+            }
+        }
+        return ret;
+    }
+
+    @Test
+    public void testPutGetDelete() throws IOException {
+        SemTextStore store = SemTextStore.open(dir, CODEC);
+        try {
+            assertFalse(store.get("a").isPresent());
+            store.put("a", semText(1));
+            store.put("a", semText(2));
+            store.put("b", semText(3));
+            assertEquals(semText(2), store.get("a").get());
+            assertEquals(2, store.size());
+
+            assertTrue(store.delete("a"));
+            assertFalse(store.delete("a"));
+            assertFalse(store.contains("a"));
+            assertFalse(store.get("a").isPresent());
+
+            try {
+                store.put("", semText(1));
+                Assert.fail("Should have rejected empty id!");
+            }
+            catch (IllegalArgumentException ex) {
+
+            }
+        }
+        finally {
+            store.close();
+        }
+
+        try {
+            store.get("b");
+            Assert.fail("Shouldn't use a closed store!");
+        }
+        catch (IllegalStateException ex) {
+
+        }
+    }
+
+    @Test
+    public void testRecovery() throws IOException {
+        SemTextStore store = SemTextStore.builder(dir, CODEC).segmentSize(300).open();
+        for (int i = 0; i < 10; i++) {
+            store.put("doc-" + i, semText(i));
+        }
+        store.delete("doc-3");
+        store.put("doc-5", semText(50));
+        store.close();
+        assertTrue(segmentFiles().size() > 1);
+
+        store = SemTextStore.builder(dir, CODEC).cacheWeight(0).open();
+        try {
+            assertEquals(9, store.size());
+            assertFalse(store.contains("doc-3"));
+            assertEquals(semText(50), store.get("doc-5").get());
+            List<String> ids = new ArrayList();
+            for (Map.Entry<String, SemText> entry : store.scan()) {
+                ids.add(entry.getKey());
+            }
+            assertEquals(ImmutableList.of("doc-0", "doc-1", "doc-2", "doc-4", "doc-5", "doc-6", "doc-7", "doc-8",
+                    "doc-9"), ids);
+
+            try {
+                SemTextStore.open(dir, CODEC);
+                Assert.fail("Shouldn't open the same store twice!");
+            }
+            catch (IOException ex) {
+                LOG.fine(ex.getMessage());
+            }
+        }
+        finally {
+            store.close();
+        }
+    }
+
+    @Test
+    public void testTornRecord() throws IOException {
+        SemTextStore store = SemTextStore.open(dir, CODEC);
+        store.put("a", semText(1));
+        store.close();
+
+        // simulates a crash in the middle of a write
+        File segment = segmentFiles().get(0);
+        long length = segment.length();
+        FileOutputStream out = new FileOutputStream(segment, true);
+        out.write(new byte[]{0, 0, 1, 0, 1, 2, 3});
+        out.close();
+
+        store = SemTextStore.open(dir, CODEC);
+        try {
+            assertEquals(length, segment.length());
+            assertEquals(semText(1), store.get("a").get());
+            store.put("b", semText(2));
+        }
+        finally {
+            store.close();
+        }
+
+        store = SemTextStore.open(dir, CODEC);
+        try {
+            assertEquals(semText(2), store.get("b").get());
+        }
+        finally {
+            store.close();
+        }
+    }
+
+    @Test
+    public void testCompaction() throws IOException {
+        SemTextStore store = SemTextStore.builder(dir, CODEC)
+                .segmentSize(1000)
+                .cacheWeight(0)
+                .backgroundCompaction(false)
+                .open();
+        try {
+            for (int round = 0; round < 5; round++) {
+                for (int i = 0; i < 10; i++) {
+                    store.put("doc-" + i, semText(round * 10 + i));
+                }
+            }
+            store.put("gone", semText(-1));
+            store.delete("gone");
+
+            int before = segmentFiles().size();
+            store.compact();
+            assertTrue(segmentFiles().size() < before);
+            assertFalse(store.contains("gone"));
+            for (int i = 0; i < 10; i++) {
+                assertEquals(semText(40 + i), store.get("doc-" + i).get());
+            }
+        }
+        finally {
+            store.close();
+        }
+
+        store = SemTextStore.open(dir, CODEC);
+        try {
+            assertEquals(10, store.size());
+            assertFalse(store.contains("gone"));
+            assertEquals(semText(47), store.get("doc-7").get());
+        }
+        finally {
+            store.close();
+        }
+    }
+}
@@ -15,6 +15,8 @@
  */
 package eu.trentorise.opendata.semtext.test;
 
+import com.google.common.base.Optional;
+import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Range;
 import eu.trentorise.opendata.commons.Dict;
@@ -23,12 +25,15 @@ import eu.trentorise.opendata.semtext.MeaningKind;
 import eu.trentorise.opendata.semtext.Meaning;
 import eu.trentorise.opendata.semtext.MeaningStatus;
 import eu.trentorise.opendata.semtext.SemText;
+import eu.trentorise.opendata.semtext.SemTextSlice;
 import eu.trentorise.opendata.semtext.SemTexts;
 import eu.trentorise.opendata.semtext.Sentence;
 import eu.trentorise.opendata.semtext.Term;
+import eu.trentorise.opendata.semtext.exceptions.MetadataNotFoundException;
 import eu.trentorise.opendata.semtext.exceptions.SemTextNotFoundException;
 
 import java.util.Iterator;
+import java.util.List;
 import java.util.Locale;
 import java.util.logging.Logger;
 import java.util.regex.Pattern;
@@ -36,6 +41,7 @@ import org.junit.Assert;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -288,6 +294,45 @@ public class SemTextTest {
         assertEquals(newTerm2, termsSen2.get(0));
     }
 
+    /**
+     * <pre>
+     * two sentences, existing terms in both. n1 overlaps e2 which is removed,
+     * n2 coincides with e3 and gets its meanings
+     *
+     * S1      S2
+     * E1  E2E2E3  E4E4
+     *   N1N1  N2N3
+     * ----------------
+     * 0 1 2 3 4 5 6 7
+     * </pre>
+     */
+    @Test
+    public void testMergeTwoSentencesWithTerms() {
+        Meaning ma = Meaning.of("a", MeaningKind.CONCEPT, 0.4);
+        Meaning mb = Meaning.of("b", MeaningKind.CONCEPT, 0.6);
+        Term e1 = Term.of(0, 1, MeaningStatus.NOT_SURE, null);
+        Term e2 = Term.of(2, 4, MeaningStatus.NOT_SURE, null);
+        Term e3 = Term.of(4, 5, MeaningStatus.NOT_SURE, null, ImmutableList.of(ma));
+        Term e4 = Term.of(6, 8, MeaningStatus.NOT_SURE, null);
+        Term n1 = Term.of(1, 3, MeaningStatus.SELECTED, mb);
+        Term n2 = Term.of(4, 5, MeaningStatus.SELECTED, mb, ImmutableList.of(mb));
+        Term n3 = Term.of(5, 6, MeaningStatus.NOT_SURE, null);
+
+        SemText semText = SemText.of(Locale.ITALIAN, "abcdefgh",
+                Sentence.of(0, 4, ImmutableList.of(e1, e2)),
+                Sentence.of(4, 8, ImmutableList.of(e3, e4)));
+        SemText merged = semText.merge(n1, n2, n3);
+
+        assertEquals(ImmutableList.of(e1, n1), merged.getSentences().get(0).getTerms());
+        ImmutableList<Term> terms2 = merged.getSentences().get(1).getTerms();
+        assertEquals(3, terms2.size());
+        assertEquals(4, terms2.get(0).getStart());
+        assertEquals(MeaningStatus.SELECTED, terms2.get(0).getMeaningStatus());
+        assertEquals(2, terms2.get(0).getMeanings().size());
+        assertEquals(n3, terms2.get(1));
+        assertEquals(e4, terms2.get(2));
+    }
+
     /**
      * <pre>
      * 012
@@ -457,6 +502,416 @@ public class SemTextTest {
         assertEquals(t3, newST.terms().get(0));
     }
 
+    @Test
+    public void testDeletePhrases() {
+        SemText st = SemText.ofSentences(Locale.ITALIAN, "aaa bc. ab c", ImmutableList.of(
+                Sentence.of(0, 7,
+                        Term.of(0, 1, MeaningStatus.NOT_SURE, null),
+                        Term.of(2, 3, MeaningStatus.NOT_SURE, null),
+                        Term.of(4, 6, MeaningStatus.NOT_SURE, null)),
+                Sentence.of(8, 12,
+                        Term.of(8, 10, MeaningStatus.NOT_SURE, null),
+                        Term.of(11, 12, MeaningStatus.NOT_SURE, null))));
+
+        // 'aa' occurrences don't overlap like with regexes, so term at 2 is kept
+        ImmutableList<String> phrases = ImmutableList.of("aa", "b c", "bc", "c");
+        SemText expected = st;
+        for (String phrase : phrases) {
+            expected = expected.deleteTerms(Pattern.compile(Pattern.quote(phrase)));
+        }
+        SemText deleted = st.deleteTermsByPhrases(phrases);
+        assertEquals(expected, deleted);
+        assertEquals(ImmutableList.of(Term.of(2, 3, MeaningStatus.NOT_SURE, null)), deleted.terms());
+
+        assertEquals(st, st.deleteTermsByPhrases(ImmutableList.of("z")));
+        assertEquals(st.getSentences().get(1),
+                st.deleteTermsByPhrases(ImmutableList.of("aaa")).getSentences().get(1));
+
+        try {
+            st.deleteTermsByPhrases(ImmutableList.of("a", ""));
+            Assert.fail("Should have rejected empty phrase!");
+        }
+        catch (IllegalArgumentException ex) {
+
+        }
+    }
+
+    @Test
+    public void testDeletePatterns() {
+        SemText st = SemText.of(Locale.ITALIAN, "ab. c+d xy",
+                Term.of(0, 2, MeaningStatus.NOT_SURE, null),
+                Term.of(4, 5, MeaningStatus.NOT_SURE, null),
+                Term.of(6, 7, MeaningStatus.NOT_SURE, null),
+                Term.of(8, 10, MeaningStatus.NOT_SURE, null));
+
+        ImmutableList<Pattern> patterns = ImmutableList.of(
+                Pattern.compile(Pattern.quote("c+")),
+                Pattern.compile("b\\."),
+                Pattern.compile("Y", Pattern.CASE_INSENSITIVE));
+
+        SemText expected = st;
+        for (Pattern pattern : patterns) {
+            expected = expected.deleteTerms(pattern);
+        }
+        SemText deleted = st.deleteTermsByPatterns(patterns);
+        assertEquals(expected, deleted);
+        assertEquals(ImmutableList.of(Term.of(6, 7, MeaningStatus.NOT_SURE, null)), deleted.terms());
+    }
+
+    @Test
+    public void testOfSpans() {
+        SemText st = SemText.ofSpans(Locale.ITALIAN, "ab cd. ef",
+                new int[]{0, 7}, new int[]{6, 9},
+                new int[]{0, 3, 5, 7}, new int[]{2, 5, 6, 9});
+
+        assertEquals(SemText.of(Locale.ITALIAN, "ab cd. ef",
+                Sentence.of(0, 6,
+                        Term.of(0, 2, MeaningStatus.TO_DISAMBIGUATE, null),
+                        Term.of(3, 5, MeaningStatus.TO_DISAMBIGUATE, null),
+                        Term.of(5, 6, MeaningStatus.TO_DISAMBIGUATE, null)),
+                Sentence.of(7, 9,
+                        Term.of(7, 9, MeaningStatus.TO_DISAMBIGUATE, null))), st);
+
+        // term between sentences
+        try {
+            SemText.ofSpans(Locale.ITALIAN, "ab cd. ef", new int[]{0, 7}, new int[]{5, 9}, new int[]{5}, new int[]{6});
+            Assert.fail("Should have rejected term outside sentences!");
+        }
+        catch (IllegalArgumentException ex) {
+
+        }
+
+        // term crossing sentences
+        try {
+            SemText.ofSpans(Locale.ITALIAN, "ab cd. ef", new int[]{0, 6}, new int[]{6, 9}, new int[]{5}, new int[]{7});
+            Assert.fail("Should have rejected term crossing sentences!");
+        }
+        catch (IllegalArgumentException ex) {
+
+        }
+
+        // term after last sentence
+        try {
+            SemText.ofSpans(Locale.ITALIAN, "ab cd. ef", new int[]{0}, new int[]{6}, new int[]{7}, new int[]{9});
+            Assert.fail("Should have rejected term after sentences!");
+        }
+        catch (IllegalArgumentException ex) {
+
+        }
+    }
+
+    @Test
+    public void testLayers() {
+        Meaning m1 = Meaning.of("a", MeaningKind.ENTITY, 0.1);
+        Meaning m2 = Meaning.of("b", MeaningKind.ENTITY, 0.2);
+        Term senTerm = Term.of(0, 2, MeaningStatus.TO_DISAMBIGUATE, null);
+        SemText st = SemText.of(Locale.ITALIAN, "ab cd ef", Sentence.of(0, 8, senTerm));
+
+        assertFalse(st.hasLayer("ner"));
+        assertTrue(st.terms("ner").isEmpty());
+
+        SemText st1 = st.merge("ner", ImmutableList.of(Term.of(3, 5, MeaningStatus.NOT_SURE, null, ImmutableList.of(m1))));
+        assertTrue(st1.hasLayer("ner"));
+        assertEquals(1, st1.terms("ner").size());
+        assertEquals(ImmutableList.of(senTerm), st1.terms());
+        assertNotEquals(st, st1);
+
+        SemText st2 = st1.merge("ner", ImmutableList.of(
+                Term.of(3, 5, MeaningStatus.NOT_SURE, null, ImmutableList.of(m2)),
+                Term.of(6, 8, MeaningStatus.TO_DISAMBIGUATE, null)));
+        assertEquals(2, st2.terms("ner").size());
+        assertEquals(2, st2.terms("ner").get(0).getMeanings().size());
+
+        SemText st3 = st2.deleteTerms("ner", ImmutableList.of(Range.closedOpen(6, 8)));
+        assertEquals(1, st3.terms("ner").size());
+        assertEquals(ImmutableList.of(senTerm), st3.terms());
+
+        assertEquals(st, st3.withoutLayer("ner"));
+        assertEquals(st3, SemText.ofSentences(Locale.ITALIAN, "ab cd ef", st3.getSentences(), st3.getMetadata(),
+                st3.getLayers()));
+
+        try {
+            st3.with("ab c");
+            Assert.fail("Should have rejected text shorter than layer terms!");
+        }
+        catch (IllegalArgumentException ex) {
+
+        }
+
+        try {
+            st.withLayer("ner", ImmutableList.of(Term.of(3, 10, MeaningStatus.TO_DISAMBIGUATE, null)));
+            Assert.fail("Should have rejected term outside text!");
+        }
+        catch (IllegalArgumentException ex) {
+            assertTrue(ex.getMessage().startsWith("Invalid terms for layer ner!"));
+        }
+    }
+
+    @Test
+    public void testFindMetadata() {
+        Term term = Term.of(0, 1, MeaningStatus.NOT_SURE, null).withMetadata("a", "x");
+        Sentence sentence = Sentence.of(0, 3, term).withMetadata("a", 2);
+        Meaning meaning = Meaning.of("m", MeaningKind.ENTITY, 0.2).withMetadata("a", "y");
+        SemText st = SemText.of(Locale.ITALIAN, "abc", sentence).withMetadata("a", 3);
+
+        assertEquals(Optional.of("x"), term.findMetadata("a"));
+        assertEquals(Optional.of(2), sentence.findMetadata("a"));
+        assertEquals(Optional.of("y"), meaning.findMetadata("a"));
+        assertEquals(Optional.of(3), st.findMetadata("a"));
+
+        assertFalse(term.findMetadata("b").isPresent());
+        assertFalse(sentence.findMetadata("b").isPresent());
+        assertFalse(meaning.findMetadata("b").isPresent());
+        assertFalse(st.findMetadata("b").isPresent());
+
+        assertEquals(Optional.of(3), st.findMetadata("a", Integer.class));
+        assertFalse(st.findMetadata("a", String.class).isPresent());
+        assertFalse(st.findMetadata("b", Integer.class).isPresent());
+
+        assertEquals("x", term.getMetadata("a", String.class));
+        assertEquals(Integer.valueOf(3), st.getMetadata("a", Integer.class));
+        try {
+            st.getMetadata("a", String.class);
+            Assert.fail("Shouldn't get metadata of wrong type!");
+        }
+        catch (MetadataNotFoundException ex) {
+            assertTrue(ex.getMessage().contains(Integer.class.getName()));
+        }
+    }
+
+    @Test
+    public void testMetadataNotFoundMessage() {
+        String longText = Strings.repeat("abcdefghij", 10000);
+        SemText st = SemText.of(Locale.ITALIAN, longText, Sentence.of(0, 10, Term.of(0, 1, MeaningStatus.NOT_SURE, null)));
+        try {
+            st.getMetadata("b");
+            Assert.fail("Shouldn't find metadata!");
+        }
+        catch (SemTextNotFoundException ex) {
+            assertTrue(ex instanceof MetadataNotFoundException);
+            assertEquals("b", ((MetadataNotFoundException) ex).getNamespace());
+            assertTrue(ex.getMessage().length() < MetadataNotFoundException.MAX_TEXT_CHARS + 200);
+        }
+        try {
+            st.getSentences().get(0).getTerms().get(0).getMetadata("b");
+            Assert.fail("Shouldn't find metadata!");
+        }
+        catch (MetadataNotFoundException ex) {
+            assertTrue(ex.getMessage().contains("[0,1)"));
+        }
+    }
+
+    @Test
+    public void testTextView() {
+        Term term = Term.of(6, 11, MeaningStatus.NOT_SURE, null);
+        SemText st = SemText.of(Locale.ENGLISH, "Hello World!", term);
+
+        CharSequence view = st.textView(term);
+        assertEquals(5, view.length());
+        assertEquals('W', view.charAt(0));
+        assertEquals("World", view.toString());
+        assertEquals("orl", view.subSequence(1, 4).toString());
+        assertEquals(st.textView(term), SemText.of("World").textView(Term.of(0, 5, MeaningStatus.NOT_SURE, null)));
+        assertEquals("World".hashCode(), view.hashCode());
+        assertEquals("World".hashCode(), st.textHashCode(term));
+        assertEquals("".hashCode(), st.textHashCode(Term.of(3, 3, MeaningStatus.NOT_SURE, null)));
+
+        assertTrue(st.regionMatches(term, "World"));
+        assertFalse(st.regionMatches(term, "world"));
+        assertFalse(st.regionMatches(term, "Worl"));
+        assertTrue(st.regionMatches(true, term, "wORLD"));
+        assertFalse(st.regionMatches(true, term, "words"));
+
+        try {
+            view.charAt(5);
+            Assert.fail();
+        }
+        catch (IndexOutOfBoundsException ex) {
+
+        }
+
+        try {
+            SemText.of("abc").textView(term);
+            Assert.fail();
+        }
+        catch (IndexOutOfBoundsException ex) {
+
+        }
+    }
+
+    @Test
+    public void testSplit() {
+        SemText st = SemText.of(Locale.ITALIAN, "Ab cd. Ef gh. Ij.",
+                Sentence.of(0, 6, Term.of(3, 5, MeaningStatus.NOT_SURE, null)),
+                Sentence.of(7, 13, Term.of(7, 9, MeaningStatus.NOT_SURE, null)),
+                Sentence.of(14, 17))
+                .withLayer("ner", ImmutableList.of(Term.of(3, 5, MeaningStatus.TO_DISAMBIGUATE, null),
+                                Term.of(10, 12, MeaningStatus.TO_DISAMBIGUATE, null)))
+                .withMetadata("a", "b");
+
+        assertEquals(ImmutableList.of(st), st.split(100));
+
+        List<SemText> pieces = st.split(10);
+        assertEquals(3, pieces.size());
+        assertEquals("Ab cd.", pieces.get(0).getText());
+        assertEquals(" Ef gh.", pieces.get(1).getText());
+        assertEquals(" Ij.", pieces.get(2).getText());
+        assertEquals(Sentence.of(1, 7, Term.of(1, 3, MeaningStatus.NOT_SURE, null)),
+                pieces.get(1).getSentences().get(0));
+        assertEquals(ImmutableList.of(Term.of(4, 6, MeaningStatus.TO_DISAMBIGUATE, null)), pieces.get(1).terms("ner"));
+        assertTrue(pieces.get(2).hasLayer("ner"));
+        assertTrue(pieces.get(2).terms("ner").isEmpty());
+        assertEquals("b", pieces.get(2).getMetadata("a"));
+
+        assertEquals(st, SemTexts.concat(pieces));
+        assertEquals(st, SemTexts.concat(st.split(1)));
+        assertEquals(SemText.of(), SemTexts.concat(ImmutableList.<SemText>of()));
+
+        // pieces are not cut within layer terms
+        SemText crossing = st.withLayer("ner", ImmutableList.of(Term.of(4, 8, MeaningStatus.TO_DISAMBIGUATE, null)));
+        pieces = crossing.split(10);
+        assertEquals(2, pieces.size());
+        assertEquals("Ab cd. Ef gh.", pieces.get(0).getText());
+        assertEquals(crossing, SemTexts.concat(pieces));
+
+        try {
+            st.split(0);
+            Assert.fail("Should have rejected non positive max chars!");
+        }
+        catch (IllegalArgumentException ex) {
+
+        }
+    }
+
+    @Test
+    public void testSlice() {
+        SemText st = SemText.of(Locale.ITALIAN, "Ab cd. Ef gh. Ij.",
+                Sentence.of(0, 6, Term.of(3, 5, MeaningStatus.NOT_SURE, null)),
+                Sentence.of(7, 13, Term.of(7, 9, MeaningStatus.NOT_SURE, null),
+                        Term.of(10, 12, MeaningStatus.NOT_SURE, null)),
+                Sentence.of(14, 17))
+                .withLayer("ner", ImmutableList.of(Term.of(3, 5, MeaningStatus.TO_DISAMBIGUATE, null),
+                                Term.of(10, 12, MeaningStatus.TO_DISAMBIGUATE, null)))
+                .withMetadata("a", "b");
+
+        SemTextSlice slice = st.slice(3, 11);
+        assertEquals("cd. Ef g", slice.getText().toString());
+        assertEquals(2, slice.getSentences().size());
+        assertSame(st.getSentences().get(0), slice.getSentences().get(0));
+        assertEquals(2, slice.terms().size());
+        assertSame(st.terms().get(1), slice.sentenceTerms(1).get(0));
+        assertEquals(0, slice.getStart(slice.getSentences().get(0)));
+        assertEquals(8, slice.getEnd(slice.getSentences().get(1)));
+        assertEquals(ImmutableList.of(st.terms("ner").get(0)), slice.terms("ner"));
+
+        SemText frozen = SemText.of(Locale.ITALIAN, "cd. Ef g",
+                Sentence.of(0, 3, Term.of(0, 2, MeaningStatus.NOT_SURE, null)),
+                Sentence.of(4, 8, Term.of(4, 6, MeaningStatus.NOT_SURE, null)))
+                .withLayer("ner", ImmutableList.of(Term.of(0, 2, MeaningStatus.TO_DISAMBIGUATE, null)))
+                .withMetadata("a", "b");
+        assertEquals(frozen, slice.freeze());
+
+        assertEquals(SemText.of(Locale.ITALIAN, "Ef gh.",
+                Sentence.of(0, 6, Term.of(0, 2, MeaningStatus.NOT_SURE, null),
+                        Term.of(3, 5, MeaningStatus.NOT_SURE, null)))
+                .withLayer("ner", ImmutableList.of(Term.of(3, 5, MeaningStatus.TO_DISAMBIGUATE, null)))
+                .withMetadata("a", "b"),
+                st.slice(st.getSentences().get(1)).freeze());
+
+        assertEquals(st, st.slice(0, 17).freeze());
+        assertTrue(st.slice(6, 6).getSentences().isEmpty());
+        assertTrue(st.slice(6, 7).terms().isEmpty());
+
+        try {
+            st.slice(5, 20);
+            Assert.fail("Should have rejected slice out of text!");
+        }
+        catch (IndexOutOfBoundsException ex) {
+
+        }
+    }
+
+    @Test
+    public void testWithTerm() {
+        SemText st = SemText.of(Locale.ITALIAN, "Ab cd. Ef gh.",
+                Sentence.of(0, 6, Term.of(0, 2, MeaningStatus.NOT_SURE, null),
+                        Term.of(3, 5, MeaningStatus.NOT_SURE, null)),
+                Sentence.of(7, 13, Term.of(7, 9, MeaningStatus.NOT_SURE, null),
+                        Term.of(10, 12, MeaningStatus.NOT_SURE, null)));
+
+        Term reviewed = Term.of(7, 9, MeaningStatus.TO_DISAMBIGUATE, null);
+        SemText updated = st.withTerm(2, reviewed);
+        assertEquals(reviewed, updated.terms().get(2));
+        assertSame(st.getSentences().get(0), updated.getSentences().get(0));
+        assertSame(st.terms().get(3), updated.terms().get(3));
+        assertEquals(st.getSentences().get(1).withTerms(reviewed, st.terms().get(3)), updated.getSentences().get(1));
+
+        Sentence sentence = Sentence.of(0, 5, Term.of(1, 2, MeaningStatus.NOT_SURE, null));
+        assertEquals(Sentence.of(0, 5, Term.of(0, 5, MeaningStatus.NOT_SURE, null)),
+                sentence.withTerm(0, Term.of(0, 5, MeaningStatus.NOT_SURE, null)));
+        assertEquals(sentence, st.withSentence(0, sentence).getSentences().get(0));
+
+        try {
+            st.withTerm(1, Term.of(1, 8, MeaningStatus.NOT_SURE, null));
+            Assert.fail("Should have rejected term exceeding its sentence!");
+        }
+        catch (IllegalArgumentException ex) {
+
+        }
+
+        try {
+            st.withTerm(0, Term.of(1, 4, MeaningStatus.NOT_SURE, null));
+            Assert.fail("Should have rejected overlapping term!");
+        }
+        catch (IllegalArgumentException ex) {
+
+        }
+
+        try {
+            st.withSentence(1, Sentence.of(5, 13));
+            Assert.fail("Should have rejected overlapping sentence!");
+        }
+        catch (IllegalArgumentException ex) {
+
+        }
+
+        try {
+            st.withTerm(4, reviewed);
+            Assert.fail("Should have rejected missing term!");
+        }
+        catch (IndexOutOfBoundsException ex) {
+
+        }
+    }
+
+    @Test
+    public void testWithTermEmptySentences() {
+        SemText st = SemText.of(Locale.ITALIAN, "abcdefghij",
+                Sentence.of(0, 2),
+                Sentence.of(2, 5, Term.of(2, 3, MeaningStatus.NOT_SURE, null), Term.of(3, 4, MeaningStatus.NOT_SURE, null)),
+                Sentence.of(5, 6),
+                Sentence.of(6, 7),
+                Sentence.of(7, 10, Term.of(8, 9, MeaningStatus.NOT_SURE, null)));
+
+        assertEquals(3, st.terms().size());
+        assertEquals(8, st.terms().get(2).getStart());
+
+        Term reviewed = Term.of(7, 8, MeaningStatus.NOT_SURE, null);
+        SemText updated = st.withTerm(2, reviewed).withTerm(0, Term.of(2, 3, MeaningStatus.TO_DISAMBIGUATE, null));
+        assertEquals(reviewed, updated.getSentences().get(4).getTerms().get(0));
+        assertEquals(MeaningStatus.TO_DISAMBIGUATE, updated.terms().get(0).getMeaningStatus());
+        assertEquals(3, updated.terms().get(1).getStart());
+        assertEquals(3, updated.terms().size());
+
+        try {
+            updated.terms().get(3);
+            Assert.fail("Should have rejected missing term!");
+        }
+        catch (IndexOutOfBoundsException ex) {
+
+        }
+    }
+
     /**
      * Usage example for the docs
      */
@@ -16,8 +16,13 @@
 package eu.trentorise.opendata.semtext.test;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Maps;
 import eu.trentorise.opendata.commons.Dict;
 import eu.trentorise.opendata.commons.TodConfig;
+import eu.trentorise.opendata.semtext.LazyMetadata;
 import eu.trentorise.opendata.semtext.Meaning;
 import eu.trentorise.opendata.semtext.MeaningKind;
 import eu.trentorise.opendata.semtext.MeaningStatus;
@@ -29,6 +34,7 @@ import eu.trentorise.opendata.semtext.exceptions.SemTextNotFoundException;
 
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.logging.Logger;
 import org.junit.Assert;
 import static org.junit.Assert.assertEquals;
@@ -50,6 +56,51 @@ public class SemTextsTest {
 		TodConfig.init(SemTextsTest.class);
 	}
 
+	private static Term t(int start, int end) {
+		return Term.of(start, end, MeaningStatus.TO_DISAMBIGUATE, null);
+	}
+
+	@Test
+	public void testSpanJoins() {
+		Term a1 = t(0, 5);
+		Term a2 = t(6, 10);
+		Term a3 = t(10, 10);
+		Term b1 = t(0, 2);
+		Term b4 = t(8, 10);
+
+		List<Term> as = ImmutableList.of(a1, a2, a3);
+		List<Term> bs = ImmutableList.of(b1, t(2, 3), b4);
+
+		assertEquals(ImmutableList.of(Maps.immutableEntry(a1, b1), Maps.immutableEntry(a1, t(2, 3)),
+				Maps.immutableEntry(a2, b4)), ImmutableList.copyOf(SemTexts.enclosing(as, bs)));
+
+		assertEquals(ImmutableList.of(Maps.immutableEntry(a3, b4)),
+				ImmutableList.copyOf(SemTexts.enclosedBy(as, bs)));
+
+		Term c1 = t(4, 7);
+		Term c2 = t(8, 12);
+		assertEquals(ImmutableList.of(Maps.immutableEntry(a1, c1), Maps.immutableEntry(a2, c1),
+				Maps.immutableEntry(a2, c2)),
+				ImmutableList.copyOf(SemTexts.overlapping(as, ImmutableList.of(c1, c2))));
+
+		assertEquals(ImmutableList.of(Maps.immutableEntry(a3, a3)),
+				ImmutableList.copyOf(SemTexts.exactMatch(as, ImmutableList.of(t(1, 2), a3))));
+
+		assertTrue(Iterables.isEmpty(SemTexts.overlapping(as, ImmutableList.<Term> of())));
+
+		// iterables can be traversed more than once
+		Iterable<Map.Entry<Term, Term>> join = SemTexts.enclosing(as, bs);
+		assertEquals(Iterables.size(join), Iterables.size(join));
+
+		try {
+			Iterables.size(SemTexts.overlapping(as, ImmutableList.of(c2, c1)));
+			Assert.fail("Should have rejected overlapping spans!");
+		}
+		catch (IllegalArgumentException ex) {
+
+		}
+	}
+
 	@Test
 	public void testSpans() {
 		assertFalse(SemTexts.spanEqual(null, Term.of(0, 1, MeaningStatus.NOT_SURE, null)));
@@ -175,6 +226,23 @@ public class SemTextsTest {
 
 		}
 
+		// spans in the middle must be contained too, even if first and last ones are fine
+		try {
+			SemTexts.checkSpans(ImmutableList.of(Sentence.of(1, 2), Sentence.of(3, 9), Sentence.of(2, 3)), 0, 6, this);
+			Assert.fail();
+		} catch (IllegalArgumentException ex) {
+
+		}
+
+		// non-list iterables
+		SemTexts.checkSpans(ImmutableSet.of(Sentence.of(0, 1), Sentence.of(2, 3)), 0, 6, this);
+		try {
+			SemTexts.checkSpans(ImmutableSet.of(Sentence.of(0, 1), Sentence.of(5, 7)), 0, 6, this);
+			Assert.fail();
+		} catch (IllegalArgumentException ex) {
+
+		}
+
 	}
 
 	@Test
@@ -223,6 +291,33 @@ public class SemTextsTest {
 		SemTexts.mergeMeanings(ImmutableList.<Meaning> of(), ImmutableList.<Meaning> of());
 	}
 
+	@Test
+	public void testResolveMetadata() {
+		LazyMetadata lazy = new LazyMetadata() {
+			private boolean resolved;
+
+			@Override
+			public Object resolve() {
+				resolved = true;
+				return "a";
+			}
+
+			@Override
+			public boolean isResolved() {
+				return resolved;
+			}
+		};
+		assertEquals("b", SemTexts.resolveMetadata("b"));
+
+		SemText st = SemText.of(Locale.ITALIAN, "abc").withMetadata("ns", lazy);
+		assertFalse(lazy.isResolved());
+		assertEquals(SemText.of(Locale.ITALIAN, "abc").withMetadata("ns", "a"), st);
+		assertTrue(lazy.isResolved());
+		assertEquals("a", st.getMetadata("ns"));
+		assertEquals(ImmutableMap.of("ns", "a"), st.getMetadata());
+		assertFalse(SemText.of(Locale.ITALIAN, "abc").withMetadata("ns", "b").equals(st));
+	}
+
 	@Test
 	public void testConversions() {
 		List<SemText> semtexts = ImmutableList.of(SemText.of(Locale.ITALIAN, "a"), SemText.of(Locale.ENGLISH, "b"));
@@ -71,6 +71,46 @@ public class SentenceTest {
 
     }
 
+    @Test
+    public void testOfSpans() {
+        Sentence sentence = Sentence.ofSpans(2, 10, new int[]{2, 5, 5}, new int[]{4, 5, 9});
+        assertEquals(Sentence.of(2, 10,
+                Term.of(2, 4, MeaningStatus.TO_DISAMBIGUATE, null),
+                Term.of(5, 5, MeaningStatus.TO_DISAMBIGUATE, null),
+                Term.of(5, 9, MeaningStatus.TO_DISAMBIGUATE, null)), sentence);
+
+        assertEquals(Sentence.of(0, 3), Sentence.ofSpans(0, 3, new int[]{}, new int[]{}));
+
+        int[][][] invalid = {
+            {{1}, {2, 3}}, // different lengths
+            {{1}, {11}}, // exceeding
+            {{0}, {1}}, // before start
+            {{3}, {2}}, // reversed
+            {{2, 3}, {4, 5}}, // overlapping
+            {{5, 2}, {6, 3}}, // out of order
+            {{Integer.MIN_VALUE}, {-1}}, // overflowing differences
+            {{3}, {Integer.MIN_VALUE}},
+            {{2, Integer.MIN_VALUE}, {4, 5}}
+        };
+        for (int[][] spans : invalid) {
+            try {
+                Sentence.ofSpans(2, 10, spans[0], spans[1]);
+                Assert.fail("Should have rejected invalid spans!");
+            }
+            catch (IllegalArgumentException ex) {
+
+            }
+        }
+
+        try {
+            Sentence.ofSpans(1, 5, new int[]{Integer.MIN_VALUE}, new int[]{-1});
+            Assert.fail("Should have rejected negative spans!");
+        }
+        catch (IllegalArgumentException ex) {
+
+        }
+    }
+
     @Test
     @SuppressWarnings({"IncompatibleEquals", "ObjectEqualsNull"})
     public void testEquality() {
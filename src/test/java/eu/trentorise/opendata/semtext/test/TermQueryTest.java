@@ -0,0 +1,134 @@
+/*
+ * Copyright 2015 TrentoRISE  (trentorise.eu) .
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.trentorise.opendata.semtext.test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+import eu.trentorise.opendata.commons.TodConfig;
+import eu.trentorise.opendata.semtext.Meaning;
+import eu.trentorise.opendata.semtext.MeaningKind;
+import eu.trentorise.opendata.semtext.MeaningStatus;
+import eu.trentorise.opendata.semtext.SemText;
+import eu.trentorise.opendata.semtext.Sentence;
+import eu.trentorise.opendata.semtext.Term;
+import eu.trentorise.opendata.semtext.store.BinarySemTextCodec;
+import eu.trentorise.opendata.semtext.store.CorpusDictionary;
+import eu.trentorise.opendata.semtext.store.TermMatch;
+import eu.trentorise.opendata.semtext.store.TermQuery;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ *
+ * @author David Leoni
+ */
+public class TermQueryTest {
+
+    @BeforeClass
+    public static void beforeClass() {
+        TodConfig.init(TermQueryTest.class);
+    }
+
+    private static SemText semText(Locale locale, int i) {
+        Meaning trento = Meaning.of("http://kb.org/entities/trento", MeaningKind.ENTITY, 0.3);
+        Meaning city = Meaning.of("http://kb.org/concepts/city", MeaningKind.CONCEPT, 0.6);
+        return SemText.of(locale, "Trento is a city " + i,
+                Sentence.of(0, 16, ImmutableList.of(
+                                Term.of(0, 6, MeaningStatus.NOT_SURE, null, ImmutableList.of(trento, city),
+                                        ImmutableMap.of("source", "gazetteer")),
+                                Term.of(12, 16, MeaningStatus.SELECTED, city, ImmutableList.of(trento, city)))),
+                Sentence.of(17, 17 + String.valueOf(i).length(),
+                        Term.of(17, 17 + String.valueOf(i).length(), MeaningStatus.SELECTED, trento)));
+    }
+
+    private static List<Map.Entry<String, byte[]>> encode(BinarySemTextCodec codec, int count) throws IOException {
+        List<Map.Entry<String, byte[]>> ret = new ArrayList();
+        for (int i = 0; i < count; i++) {
+            Locale locale = i % 2 == 0 ? Locale.ITALIAN : Locale.ENGLISH;
+            ret.add(Maps.immutableEntry("doc-" + i, codec.encode(semText(locale, i))));
+        }
+        return ret;
+    }
+
+    @Test
+    public void testRun() throws IOException {
+        BinarySemTextCodec codec = BinarySemTextCodec.of();
+        List<Map.Entry<String, byte[]>> documents = encode(codec, 4);
+
+        assertEquals(12, TermQuery.builder().build().run(documents, codec).size());
+
+        ImmutableList<TermMatch> matches = TermQuery.builder()
+                .locales(Locale.ITALIAN)
+                .statuses(MeaningStatus.SELECTED)
+                .kinds(MeaningKind.ENTITY)
+                .maxProbability(0.4)
+                .build()
+                .run(documents, codec);
+        assertEquals(2, matches.size());
+        assertEquals("doc-0", matches.get(0).getId());
+        assertEquals(1, matches.get(0).getSentenceIndex());
+        assertEquals("0", matches.get(0).getText());
+        assertEquals(Locale.ITALIAN, matches.get(0).getLocale());
+        assertEquals(semText(Locale.ITALIAN, 0).terms().get(2), matches.get(0).getTerm());
+
+        // top meaning of unselected terms is the most probable candidate
+        matches = TermQuery.builder().kinds(MeaningKind.CONCEPT).minProbability(0.5).build().run(documents, codec);
+        assertEquals(8, matches.size());
+        assertEquals("Trento", matches.get(0).getText());
+        assertEquals("city", matches.get(1).getText());
+
+        matches = TermQuery.builder().metadata("source").minLength(5).maxLength(6).build().run(documents, codec);
+        assertEquals(4, matches.size());
+        assertEquals(ImmutableMap.of("source", "gazetteer"), matches.get(3).getTerm().getMetadata());
+
+        assertTrue(TermQuery.builder().metadata("source", "other").build().run(documents, codec).isEmpty());
+        assertTrue(TermQuery.builder().locales(Locale.FRENCH).build().run(documents, codec).isEmpty());
+    }
+
+    @Test
+    public void testRunParallel() throws IOException, InterruptedException {
+        CorpusDictionary.Builder dictB = CorpusDictionary.builder();
+        for (int i = 0; i < 10; i++) {
+            dictB.add(semText(Locale.ITALIAN, i));
+        }
+        BinarySemTextCodec codec = BinarySemTextCodec.of(dictB.build());
+        List<Map.Entry<String, byte[]>> documents = encode(codec, 1000);
+
+        TermQuery query = TermQuery.builder()
+                .locales(Locale.ENGLISH)
+                .metadata("source")
+                .build();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            ImmutableList<TermMatch> matches = query.run(documents, codec, executor, 4);
+            assertEquals(500, matches.size());
+            assertEquals(query.run(documents, codec), matches);
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+}
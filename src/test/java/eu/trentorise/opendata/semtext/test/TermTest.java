@@ -24,12 +24,15 @@ import eu.trentorise.opendata.semtext.SemTexts;
 import eu.trentorise.opendata.semtext.Term;
 import eu.trentorise.opendata.semtext.exceptions.SemTextNotFoundException;
 
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
 import java.util.logging.Logger;
 import org.junit.Assert;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertTrue;
+import org.junit.Assume;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
@@ -116,4 +119,68 @@ public class TermTest {
         double prob = t.getMeanings().get(0).getProbability();
         assertTrue("prob should be near 1.0, found instead: " + prob, 1.0 - SemTexts.TOLERANCE <= prob && prob <= 1.0 + SemTexts.TOLERANCE);
     }
+
+    /**
+     * Same fields of a Term, two ints and five references, so its shallow size
+     * is the one a Term should have whatever the JVM object layout is.
+     */
+    private static final class TermLayout {
+
+        int start;
+        int end;
+        Object meanings;
+        Object meaningStatus;
+        Object selectedMeaning;
+        Object metadata;
+        Object resolvedMetadata;
+
+        TermLayout(int start, int end) {
+            this.start = start;
+            this.end = end;
+        }
+    }
+
+    /**
+     * Building a valid term must not allocate error messages or temporary
+     * collections, only the term itself.
+     */
+    @Test
+    public void testValidTermAllocation() {
+        ThreadMXBean mxBean = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(mxBean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean sunMxBean = (com.sun.management.ThreadMXBean) mxBean;
+        Assume.assumeTrue(sunMxBean.isThreadAllocatedMemorySupported() && sunMxBean.isThreadAllocatedMemoryEnabled());
+
+        long threadId = Thread.currentThread().getId();
+        Meaning meaning = Meaning.of("a", MeaningKind.ENTITY, 0.3);
+        int n = 100000;
+        Term[] terms = new Term[n];
+        TermLayout[] layouts = new TermLayout[n];
+
+        // warm up
+        for (int i = 0; i < n; i++) {
+            terms[i] = Term.of(i, i + 1, MeaningStatus.SELECTED, meaning);
+            layouts[i] = new TermLayout(i, i + 1);
+        }
+
+        long before = sunMxBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < n; i++) {
+            layouts[i] = new TermLayout(i, i + 1);
+        }
+        long baseline = sunMxBean.getThreadAllocatedBytes(threadId) - before;
+
+        before = sunMxBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < n; i++) {
+            terms[i] = Term.of(i, i + 1, MeaningStatus.SELECTED, meaning);
+        }
+        for (int i = 0; i < n; i++) {
+            terms[i] = Term.of(i, i + 1, MeaningStatus.NOT_SURE, null);
+        }
+        long allocated = sunMxBean.getThreadAllocatedBytes(threadId) - before;
+
+        assertTrue("Expected at most " + (baseline / n) + " bytes per term, found instead " + (allocated / (2 * n)),
+                allocated <= 2 * baseline);
+        assertEquals(n - 1, terms[n - 1].getStart());
+        assertEquals(n, layouts[n - 1].end);
+    }
 }
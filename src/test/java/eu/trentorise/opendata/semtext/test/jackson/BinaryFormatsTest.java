@@ -0,0 +1,232 @@
+/*
+ * Copyright 2015 TrentoRISE  (trentorise.eu) .
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.trentorise.opendata.semtext.test.jackson;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.logging.Logger;
+
+import org.junit.After;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+import eu.trentorise.opendata.commons.Dict;
+import eu.trentorise.opendata.commons.TodConfig;
+import eu.trentorise.opendata.semtext.Meaning;
+import eu.trentorise.opendata.semtext.MeaningKind;
+import eu.trentorise.opendata.semtext.MeaningStatus;
+import eu.trentorise.opendata.semtext.SemText;
+import eu.trentorise.opendata.semtext.Sentence;
+import eu.trentorise.opendata.semtext.Term;
+import eu.trentorise.opendata.semtext.jackson.BinaryFormats;
+import eu.trentorise.opendata.semtext.jackson.JsonSemTextCodec;
+import eu.trentorise.opendata.semtext.jackson.SemTextModule;
+import eu.trentorise.opendata.semtext.jackson.SemTextReader;
+import eu.trentorise.opendata.semtext.jackson.SemTextWriter;
+
+/**
+ *
+ * @author David Leoni
+ */
+public class BinaryFormatsTest {
+
+    private static final Logger LOG = Logger.getLogger(BinaryFormatsTest.class.getName());
+
+    private static final int ROUNDS = 20;
+
+    @BeforeClass
+    public static void beforeClass() {
+        TodConfig.init(BinaryFormatsTest.class);
+    }
+
+    @After
+    public void afterMethod() {
+        SemTextModule.clearMetadata();
+    }
+
+    private static void registerMetadata() {
+        SemTextModule.registerMetadata(SemText.class, "source", String.class);
+        SemTextModule.registerMetadata(Term.class, "scores", new TypeReference<List<Double>>() {
+        });
+        SemTextModule.registerMetadata(Meaning.class, "dbpedia", String.class);
+    }
+
+    /**
+     * A document of the size of a news article, where the same few meanings
+     * occur many times.
+     */
+    private static SemText realisticSemText() {
+        List<Meaning> meanings = new ArrayList();
+        for (int i = 0; i < 10; i++) {
+            meanings.add(Meaning.builder()
+                    .setId("http://opendata.trentorise.eu/entities/" + (1000 + i))
+                    .setKind(i % 2 == 0 ? MeaningKind.ENTITY : MeaningKind.CONCEPT)
+                    .setProbability(0.1 * (i + 1))
+                    .setName(Dict.of(Locale.ITALIAN, "nome " + i).with(Locale.ENGLISH, "name " + i))
+                    .setMetadata(ImmutableMap.of("dbpedia", "http://dbpedia.org/resource/R" + i))
+                    .build());
+        }
+
+        StringBuilder text = new StringBuilder();
+        List<Sentence> sentences = new ArrayList();
+        for (int s = 0; s < 40; s++) {
+            int sentenceStart = text.length();
+            List<Term> terms = new ArrayList();
+            for (int t = 0; t < 8; t++) {
+                int termStart = text.length();
+                text.append("parola").append(s).append('_').append(t);
+                Meaning selected = meanings.get((s + t) % meanings.size());
+                terms.add(Term.of(termStart, text.length(), MeaningStatus.SELECTED, selected,
+                        ImmutableList.of(selected, meanings.get((s + t + 1) % meanings.size())),
+                        ImmutableMap.of("scores", ImmutableList.of(0.25, 0.75))));
+                text.append(' ');
+            }
+            text.append("fine.");
+            sentences.add(Sentence.of(sentenceStart, text.length(), terms));
+            text.append(' ');
+        }
+        return SemText.ofSentences(Locale.ITALIAN, text.toString(), sentences,
+                ImmutableMap.of("source", "http://example.org/news/1"));
+    }
+
+    private static long encodeNanos(ObjectMapper om, SemText semText) throws IOException {
+        long start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            om.writeValueAsBytes(semText);
+        }
+        return (System.nanoTime() - start) / ROUNDS;
+    }
+
+    private static long decodeNanos(ObjectMapper om, byte[] bytes) throws IOException {
+        long start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            om.readValue(bytes, SemText.class);
+        }
+        return (System.nanoTime() - start) / ROUNDS;
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        registerMetadata();
+        SemText semText = realisticSemText();
+
+        for (ObjectMapper om : ImmutableList.of(BinaryFormats.smileMapper(), BinaryFormats.cborMapper())) {
+            SemText decoded = om.readValue(om.writeValueAsBytes(semText), SemText.class);
+            assertEquals(semText, decoded);
+            Meaning meaning = decoded.terms().get(0).getSelectedMeaning();
+            assertEquals(semText.terms().get(0).getSelectedMeaning().getName(), meaning.getName());
+            assertEquals("http://dbpedia.org/resource/R0", meaning.getMetadata("dbpedia"));
+            assertEquals(ImmutableList.of(0.25, 0.75), decoded.terms().get(5).getMetadata("scores"));
+
+            JsonSemTextCodec codec = JsonSemTextCodec.of(om);
+            assertEquals(semText, codec.decode(codec.encode(semText)));
+        }
+    }
+
+    @Test
+    public void testLazyMetadata() throws IOException {
+        registerMetadata();
+        SemText semText = realisticSemText();
+        ObjectMapper om = new ObjectMapper(BinaryFormats.smileFactory());
+        SemTextModule.registerModulesInto(om, false, true);
+
+        SemText decoded = om.readValue(om.writeValueAsBytes(semText), SemText.class);
+        // lazy metadata is written back as it was read
+        assertEquals(semText, om.readValue(om.writeValueAsBytes(decoded), SemText.class));
+        assertEquals(semText, decoded);
+    }
+
+    @Test
+    public void testStreaming() throws IOException {
+        registerMetadata();
+        SemText semText = realisticSemText();
+        ObjectMapper om = BinaryFormats.smileMapper();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        SemTextWriter writer = SemTextWriter.of(om, out, semText.withSentences(ImmutableList.<Sentence>of()));
+        for (Sentence sentence : semText.getSentences()) {
+            writer.write(sentence);
+        }
+        writer.close();
+
+        SemTextReader reader = SemTextReader.of(om, new ByteArrayInputStream(out.toByteArray()));
+        assertEquals(semText.getText(), reader.readHeader().getText());
+        List<Sentence> sentences = new ArrayList();
+        Sentence sentence;
+        while ((sentence = reader.readSentence()) != null) {
+            sentences.add(sentence);
+        }
+        assertEquals(semText.getMetadata(), reader.finish().getMetadata());
+        reader.close();
+        assertEquals(semText.getSentences(), sentences);
+    }
+
+    @Test
+    public void testSizeAndSpeed() throws IOException {
+        registerMetadata();
+        SemText semText = realisticSemText();
+
+        ObjectMapper json = new ObjectMapper();
+        SemTextModule.registerModulesInto(json);
+        ObjectMapper smile = BinaryFormats.smileMapper();
+        ObjectMapper cbor = BinaryFormats.cborMapper();
+
+        byte[] jsonBytes = json.writeValueAsBytes(semText);
+        byte[] smileBytes = smile.writeValueAsBytes(semText);
+        byte[] cborBytes = cbor.writeValueAsBytes(semText);
+
+        // with back references repeated ids and field names are written once
+        SmileFactory noRefsFactory = new SmileFactory();
+        noRefsFactory.configure(SmileGenerator.Feature.CHECK_SHARED_NAMES, false);
+        noRefsFactory.configure(SmileGenerator.Feature.CHECK_SHARED_STRING_VALUES, false);
+        ObjectMapper smileNoRefs = new ObjectMapper(noRefsFactory);
+        SemTextModule.registerModulesInto(smileNoRefs);
+        byte[] smileNoRefsBytes = smileNoRefs.writeValueAsBytes(semText);
+
+        ObjectMapper cborNoRefs = new ObjectMapper(new CBORFactory());
+        SemTextModule.registerModulesInto(cborNoRefs);
+        byte[] cborNoRefsBytes = cborNoRefs.writeValueAsBytes(semText);
+
+        LOG.info("JSON:  " + jsonBytes.length + " bytes, encode " + encodeNanos(json, semText) / 1000
+                + " us, decode " + decodeNanos(json, jsonBytes) / 1000 + " us");
+        LOG.info("Smile: " + smileBytes.length + " bytes, encode " + encodeNanos(smile, semText) / 1000
+                + " us, decode " + decodeNanos(smile, smileBytes) / 1000 + " us");
+        LOG.info("Smile without back references: " + smileNoRefsBytes.length + " bytes");
+        LOG.info("CBOR:  " + cborBytes.length + " bytes, encode " + encodeNanos(cbor, semText) / 1000
+                + " us, decode " + decodeNanos(cbor, cborBytes) / 1000 + " us");
+        LOG.info("CBOR without string references: " + cborNoRefsBytes.length + " bytes");
+
+        assertTrue(smileBytes.length < smileNoRefsBytes.length);
+        assertTrue(smileBytes.length < jsonBytes.length / 2);
+        assertTrue(cborBytes.length < cborNoRefsBytes.length);
+        assertTrue(cborBytes.length < jsonBytes.length / 2);
+    }
+}
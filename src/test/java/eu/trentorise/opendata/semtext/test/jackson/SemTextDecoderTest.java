@@ -0,0 +1,219 @@
+/*
+ * Copyright 2015 TrentoRISE  (trentorise.eu) .
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.trentorise.opendata.semtext.test.jackson;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.logging.Logger;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+
+import eu.trentorise.opendata.commons.TodConfig;
+import eu.trentorise.opendata.semtext.MeaningStatus;
+import eu.trentorise.opendata.semtext.SemText;
+import eu.trentorise.opendata.semtext.Sentence;
+import eu.trentorise.opendata.semtext.Term;
+import eu.trentorise.opendata.semtext.jackson.SemTextDecoder;
+import eu.trentorise.opendata.semtext.jackson.SemTextModule;
+
+/**
+ *
+ * @author David Leoni
+ */
+public class SemTextDecoderTest {
+
+    private static final Logger LOG = Logger.getLogger(SemTextDecoderTest.class.getName());
+
+    private ObjectMapper objectMapper;
+
+    @BeforeClass
+    public static void beforeClass() {
+        TodConfig.init(SemTextDecoderTest.class);
+    }
+
+    @Before
+    public void beforeMethod() {
+        objectMapper = new ObjectMapper();
+        SemTextModule.registerModulesInto(objectMapper);
+    }
+
+    @After
+    public void afterMethod() {
+        objectMapper = null;
+        SemTextModule.clearMetadata();
+    }
+
+    private static SemText semText() {
+        return SemText.of(Locale.ITALIAN, "a \"b\" {c}. d [e]",
+                Sentence.of(0, 10, Term.of(0, 1, MeaningStatus.NOT_SURE, null)),
+                Sentence.of(11, 16, Term.of(11, 12, MeaningStatus.NOT_SURE, null)))
+                .withLayer("ner", ImmutableList.of(Term.of(2, 5, MeaningStatus.TO_DISAMBIGUATE, null)));
+    }
+
+    /**
+     * Feeds the bytes in chunks of given size
+     */
+    private static void feed(SemTextDecoder decoder, byte[] bytes, int chunkSize) throws IOException {
+        for (int i = 0; i < bytes.length; i += chunkSize) {
+            decoder.feed(ByteBuffer.wrap(bytes, i, Math.min(chunkSize, bytes.length - i)));
+        }
+        decoder.endOfInput();
+    }
+
+    @Test
+    public void testChunks() throws IOException {
+        SemText st = semText();
+        byte[] json = objectMapper.writeValueAsBytes(st);
+        for (int chunkSize = 1; chunkSize <= json.length; chunkSize++) {
+            SemTextDecoder decoder = SemTextDecoder.of(objectMapper);
+            feed(decoder, json, chunkSize);
+            assertTrue(decoder.isDone());
+            assertEquals(st, decoder.getSemText().get());
+            assertNull(decoder.pollSentence());
+        }
+    }
+
+    @Test
+    public void testPollSentences() throws IOException {
+        SemText st = semText();
+        byte[] json = objectMapper.writeValueAsBytes(st);
+
+        SemTextDecoder decoder = SemTextDecoder.of(objectMapper, false);
+        List<Sentence> sentences = new ArrayList();
+        for (int i = 0; i < json.length; i++) {
+            decoder.feed(ByteBuffer.wrap(json, i, 1));
+            Sentence sentence = decoder.pollSentence();
+            if (sentence != null) {
+                // header is ready before any sentence
+                assertEquals(st.getText(), decoder.getHeader().get().getText());
+                sentences.add(sentence);
+            }
+        }
+        decoder.endOfInput();
+        assertTrue(decoder.getSemText().get().getSentences().isEmpty());
+        assertEquals(st, decoder.getSemText().get().withSentences(sentences));
+    }
+
+    @Test
+    public void testFieldOrder() throws IOException {
+        String json = "{\"sentences\":[{\"start\":0,\"end\":2,\"terms\":[],\"metadata\":{}}],"
+                + " \"locale\":\"it\", \"text\":\"ab\", \"metadata\":{}}";
+        SemTextDecoder decoder = SemTextDecoder.of(objectMapper);
+        feed(decoder, json.getBytes(Charsets.UTF_8), 3);
+        assertEquals(SemText.of(Locale.ITALIAN, "ab", Sentence.of(0, 2)), decoder.getSemText().get());
+
+        // metadata after sentences, like SemTextModule writes it
+        json = "{\"locale\":\"it\",\"text\":\"ab\",\"sentences\":[],\"metadata\":{}}";
+        decoder = SemTextDecoder.of(objectMapper);
+        feed(decoder, json.getBytes(Charsets.UTF_8), 5);
+        assertEquals("ab", decoder.getHeader().get().getText());
+        assertEquals(SemText.of(Locale.ITALIAN, "ab"), decoder.getSemText().get());
+    }
+
+    @Test
+    public void testEscapedKeys() throws IOException {
+        String json = "{\"loc\\u0061le\":\"it\",\"te\\u0078t\":\"ab\","
+                + "\"\\u0073entences\":[{\"start\":0,\"end\":2,\"terms\":[],\"metadata\":{}}],\"metadata\":{}}";
+        for (int chunkSize = 1; chunkSize <= json.length(); chunkSize++) {
+            SemTextDecoder decoder = SemTextDecoder.of(objectMapper);
+            feed(decoder, json.getBytes(Charsets.UTF_8), chunkSize);
+            assertEquals(SemText.of(Locale.ITALIAN, "ab", Sentence.of(0, 2)), decoder.getSemText().get());
+        }
+    }
+
+    @Test
+    public void testLateText() throws IOException {
+        String json = "{\"sentences\":[{\"start\":0,\"end\":5,\"terms\":[],\"metadata\":{}}],"
+                + "\"locale\":\"it\",\"text\":\"ab\",\"metadata\":{}}";
+        SemTextDecoder decoder = SemTextDecoder.of(objectMapper, false);
+        byte[] bytes = json.getBytes(Charsets.UTF_8);
+        decoder.feed(bytes, 0, json.indexOf("\"locale\""));
+        // sentences can't be validated before the text
+        assertNull(decoder.pollSentence());
+        assertFalse(decoder.getHeader().isPresent());
+        try {
+            decoder.feed(bytes, json.indexOf("\"locale\""), bytes.length - json.indexOf("\"locale\""));
+            decoder.endOfInput();
+            Assert.fail("Should have rejected sentence exceeding the text!");
+        }
+        catch (IOException ex) {
+            LOG.fine(ex.getMessage());
+        }
+        assertNull(decoder.pollSentence());
+    }
+
+    @Test
+    public void testMetadataAfterSentences() throws IOException {
+        SemTextModule.registerMetadata(SemText.class, "source", String.class);
+        String json = "{\"locale\":\"it\",\"text\":\"ab\","
+                + "\"sentences\":[{\"start\":0,\"end\":2,\"terms\":[],\"metadata\":{}}],"
+                + "\"metadata\":{\"source\":\"x\"}}";
+        SemText expected = objectMapper.readValue(json, SemText.class);
+        assertEquals("x", expected.getMetadata("source"));
+        assertEquals(json, objectMapper.writeValueAsString(expected));
+
+        for (int chunkSize = 1; chunkSize <= json.length(); chunkSize++) {
+            SemTextDecoder decoder = SemTextDecoder.of(objectMapper);
+            feed(decoder, json.getBytes(Charsets.UTF_8), chunkSize);
+            // header was built before metadata arrived
+            assertTrue(decoder.getHeader().get().getMetadata().isEmpty());
+            assertEquals(expected, decoder.getSemText().get());
+        }
+    }
+
+    @Test
+    public void testMalformed() throws IOException {
+        for (String json : ImmutableList.of("[1]",
+                "{\"text\":}",
+                "{\"locale\":\"it\",\"text\":\"a\",\"metadata\":{}} x",
+                "{\"locale\":\"it\",\"text\":\"ab\",\"metadata\":{},\"sentences\":[{\"start\":0,\"end\":5,\"terms\":[],\"metadata\":{}}]}")) {
+            try {
+                feed(SemTextDecoder.of(objectMapper), json.getBytes(Charsets.UTF_8), 2);
+                Assert.fail("Should have rejected " + json);
+            }
+            catch (IOException ex) {
+                LOG.fine(ex.getMessage());
+            }
+        }
+
+        SemTextDecoder decoder = SemTextDecoder.of(objectMapper);
+        decoder.feed(ByteBuffer.wrap("{\"locale\":".getBytes(Charsets.UTF_8)));
+        assertFalse(decoder.isDone());
+        try {
+            decoder.endOfInput();
+            Assert.fail("Should have complained about truncated input!");
+        }
+        catch (IOException ex) {
+
+        }
+    }
+}
@@ -18,10 +18,12 @@ package eu.trentorise.opendata.semtext.test.jackson;
 import static eu.trentorise.opendata.commons.test.jackson.TodJacksonTester.changeField;
 import static eu.trentorise.opendata.commons.test.jackson.TodJacksonTester.testJsonConv;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 import java.util.Locale;
@@ -51,11 +53,18 @@ import eu.trentorise.opendata.semtext.Meaning;
 import eu.trentorise.opendata.semtext.MeaningKind;
 import eu.trentorise.opendata.semtext.MeaningStatus;
 import eu.trentorise.opendata.semtext.SemText;
+import eu.trentorise.opendata.semtext.SemTextSlice;
+import eu.trentorise.opendata.semtext.SemTexts;
 import eu.trentorise.opendata.semtext.Sentence;
 import eu.trentorise.opendata.semtext.Term;
+import eu.trentorise.opendata.semtext.catalog.MemoryMeaningCatalog;
+import eu.trentorise.opendata.semtext.exceptions.SemTextException;
 import eu.trentorise.opendata.semtext.exceptions.SemTextNotFoundException;
 import eu.trentorise.opendata.semtext.jackson.SemTextMetadataException;
 import eu.trentorise.opendata.semtext.jackson.SemTextModule;
+import eu.trentorise.opendata.semtext.metrics.Metrics;
+import eu.trentorise.opendata.semtext.metrics.SemTextOperation;
+import eu.trentorise.opendata.semtext.metrics.SemTextTracer;
 
 /**
  *
@@ -82,6 +91,138 @@ public class SemTextModuleTest {
     public void afterMethod() {
         objectMapper = null;
         SemTextModule.clearMetadata();
+        Metrics.registerTracer(null);
+    }
+
+    private static ObjectMapper lazyMapper() {
+        ObjectMapper ret = new ObjectMapper();
+        SemTextModule.registerModulesInto(ret, false, true);
+        return ret;
+    }
+
+    @Test
+    public void testLazyMetadata() throws IOException {
+        SemTextModule.registerMetadata(SemText.class, "a", Integer.class);
+        SemTextModule.registerMetadata(Term.class, "b", new TypeReference<List<String>>() {
+        });
+        ObjectMapper lazyMapper = lazyMapper();
+
+        String json = "{\"locale\":\"it\",\"text\":\"ab\",\"sentences\":[{\"start\":0,\"end\":2,\"terms\":"
+                + "[{\"start\":0,\"end\":1,\"meaningStatus\":\"NOT_SURE\",\"selectedMeaning\":null,\"meanings\":[],"
+                + "\"metadata\":{\"b\":[\"x\",\"y\"]}}],\"metadata\":{}}],\"metadata\":{\"a\":3}}";
+
+        SemText st = lazyMapper.readValue(json, SemText.class);
+
+        // unread namespaces are written back as they were read
+        assertEquals(objectMapper.readTree(json), objectMapper.readTree(lazyMapper.writeValueAsString(st)));
+
+        assertEquals(3, st.getMetadata("a"));
+        // maps only expose decoded values
+        assertEquals(ImmutableMap.of("a", 3), st.getMetadata());
+        Term term = st.getSentences().get(0).getTerms().get(0);
+        assertEquals(ImmutableList.of("x", "y"), term.getMetadata("b"));
+        assertEquals(ImmutableList.of("x", "y"), term.getMetadata().get("b"));
+
+        // other mappers are not affected
+        assertFalse(new SemTextModule().isLazyMetadata());
+        SemText eager = objectMapper.readValue(json, SemText.class);
+        assertEquals(eager, st);
+        assertEquals(st, eager);
+        assertEquals(eager.hashCode(), st.hashCode());
+        assertEquals(eager.hashCode(), lazyMapper.readValue(json, SemText.class).hashCode());
+    }
+
+    @Test
+    public void testLazyWrongMetadata() throws IOException {
+        SemTextModule.registerMetadata(SemText.class, "a", Integer.class);
+        ObjectMapper lazyMapper = lazyMapper();
+
+        String json = "{\"locale\":\"it\",\"text\":\"ab\",\"sentences\":[],\"metadata\":{\"a\":\"z\"}}";
+        SemText st = lazyMapper.readValue(json, SemText.class);
+        // never decoded, so written back as it is
+        assertEquals(objectMapper.readTree(json), objectMapper.readTree(lazyMapper.writeValueAsString(st)));
+        try {
+            st.getMetadata("a");
+            Assert.fail("Shouldn't be able to decode wrong metadata!");
+        }
+        catch (SemTextException ex) {
+            assertTrue(ex.getCause() instanceof SemTextMetadataException);
+        }
+        try {
+            st.getMetadata();
+            Assert.fail("Shouldn't be able to decode wrong metadata!");
+        }
+        catch (SemTextException ex) {
+
+        }
+        try {
+            objectMapper.readValue(json, SemText.class);
+            Assert.fail("Shouldn't be able to decode wrong metadata!");
+        }
+        catch (JsonMappingException ex) {
+
+        }
+    }
+
+    @Test
+    public void testMeaningIdsOnly() throws IOException {
+        ObjectMapper om = new ObjectMapper();
+        SemTextModule.registerModulesInto(om, true);
+
+        Meaning m = Meaning.builder()
+                .setId("a")
+                .setKind(MeaningKind.ENTITY)
+                .setProbability(0.2)
+                .setName(Dict.of(Locale.ITALIAN, "a"))
+                .setDescription(Dict.of(Locale.FRENCH, "b"))
+                .build();
+
+        String json = om.writeValueAsString(m);
+        assertTrue(!json.contains("name"));
+        assertTrue(!json.contains("description"));
+
+        Meaning compact = om.readValue(json, Meaning.class);
+        assertEquals(SemTexts.compactMeaning(m).getName(), compact.getName());
+        assertEquals(m.getProbability(), compact.getProbability(), SemTexts.TOLERANCE);
+        assertEquals(m.getName(), SemTexts.resolveMeaning(compact, MemoryMeaningCatalog.of(ImmutableList.of(m))).getName());
+    }
+
+    @Test
+    public void testTracedSerialization() throws IOException {
+        final List<SemTextOperation> operations = new ArrayList();
+        final List<Long> deserializedBytes = new ArrayList();
+        Metrics.registerTracer(new SemTextTracer() {
+            @Override
+            public void begin(SemTextOperation operation, long startNanos) {
+            }
+
+            @Override
+            public void trace(SemTextOperation operation, long startNanos, long nanos, long textLength,
+                    long sentences, long terms, long meanings, long bytes) {
+                operations.add(operation);
+                if (operation == SemTextOperation.SERIALIZE || operation == SemTextOperation.DESERIALIZE) {
+                    assertEquals(4, textLength);
+                    assertEquals(1, sentences);
+                    assertEquals(1, terms);
+                }
+                if (operation == SemTextOperation.DESERIALIZE) {
+                    deserializedBytes.add(bytes);
+                }
+                if (operation == SemTextOperation.DESERIALIZE_METADATA) {
+                    // empty metadata, braces included
+                    assertEquals(2, bytes);
+                }
+            }
+        });
+
+        SemText st = SemText.of(Locale.ITALIAN, "abcd", Sentence.of(0, 4, Term.of(0, 1, MeaningStatus.NOT_SURE, null)));
+        String json = objectMapper.writeValueAsString(st);
+        assertEquals(st, objectMapper.readValue(json, SemText.class));
+        assertEquals(ImmutableList.of((long) json.length()), deserializedBytes);
+        assertTrue(operations.contains(SemTextOperation.DESERIALIZE_METADATA));
+
+        assertTrue(operations.contains(SemTextOperation.SERIALIZE));
+        assertTrue(operations.contains(SemTextOperation.DESERIALIZE));
     }
 
     @Test
@@ -207,6 +348,25 @@ public class SemTextModuleTest {
         testJsonConv(objectMapper, LOG, t1);
     }
 
+    @Test
+    public void testLayers() throws IOException {
+        SemText st = SemText.of(Locale.ITALIAN, "ab cd")
+                .withLayer("ner", ImmutableList.of(Term.of(3, 5, MeaningStatus.NOT_SURE, null)));
+        testJsonConv(objectMapper, LOG, st);
+
+        assertFalse(objectMapper.writeValueAsString(SemText.of(Locale.ITALIAN, "ab cd")).contains("layers"));
+    }
+
+    @Test
+    public void testSlice() throws IOException {
+        SemText st = SemText.of(Locale.ITALIAN, "ab cd. ef",
+                Sentence.of(0, 6, Term.of(3, 5, MeaningStatus.NOT_SURE, null)),
+                Sentence.of(7, 9));
+        SemTextSlice slice = st.slice(3, 9);
+        String json = objectMapper.writeValueAsString(slice);
+        assertEquals(slice.freeze(), objectMapper.readValue(json, SemText.class));
+    }
+
     @Test
     public void testSentence() throws IOException {
         SemTextModule.registerMetadata(Sentence.class, "a", MyMetadata.class);
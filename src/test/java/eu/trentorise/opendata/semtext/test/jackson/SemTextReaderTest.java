@@ -0,0 +1,168 @@
+/*
+ * Copyright 2015 TrentoRISE  (trentorise.eu) .
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.trentorise.opendata.semtext.test.jackson;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.logging.Logger;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableList;
+
+import eu.trentorise.opendata.commons.TodConfig;
+import eu.trentorise.opendata.semtext.MeaningStatus;
+import eu.trentorise.opendata.semtext.SemText;
+import eu.trentorise.opendata.semtext.Sentence;
+import eu.trentorise.opendata.semtext.Term;
+import eu.trentorise.opendata.semtext.jackson.SemTextModule;
+import eu.trentorise.opendata.semtext.jackson.SemTextReader;
+import eu.trentorise.opendata.semtext.jackson.SemTextWriter;
+
+/**
+ *
+ * @author David Leoni
+ */
+public class SemTextReaderTest {
+
+    private static final Logger LOG = Logger.getLogger(SemTextReaderTest.class.getName());
+
+    private ObjectMapper objectMapper;
+
+    @BeforeClass
+    public static void beforeClass() {
+        TodConfig.init(SemTextReaderTest.class);
+    }
+
+    @Before
+    public void beforeMethod() {
+        objectMapper = new ObjectMapper();
+        SemTextModule.registerModulesInto(objectMapper);
+    }
+
+    @After
+    public void afterMethod() {
+        objectMapper = null;
+        SemTextModule.clearMetadata();
+    }
+
+    private static SemText semText() {
+        return SemText.of(Locale.ITALIAN, "ab cd. ef",
+                Sentence.of(0, 6, Term.of(0, 2, MeaningStatus.NOT_SURE, null)),
+                Sentence.of(7, 9, Term.of(7, 9, MeaningStatus.NOT_SURE, null)))
+                .withLayer("ner", ImmutableList.of(Term.of(3, 5, MeaningStatus.TO_DISAMBIGUATE, null)))
+                .withMetadata("a", "b");
+    }
+
+    private static List<Sentence> readSentences(SemTextReader reader) throws IOException {
+        List<Sentence> ret = new ArrayList();
+        Sentence sentence;
+        while ((sentence = reader.readSentence()) != null) {
+            ret.add(sentence);
+        }
+        return ret;
+    }
+
+    @Test
+    public void testRead() throws IOException {
+        SemTextModule.registerMetadata(SemText.class, "a", String.class);
+        SemText st = semText();
+
+        SemText noSentences = st.withSentences(ImmutableList.<Sentence>of());
+
+        // SemTextWriter puts sentences last
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        SemTextWriter.of(objectMapper, out, st).close();
+        SemTextReader reader = SemTextReader.of(objectMapper, new ByteArrayInputStream(out.toByteArray()));
+        SemText header = reader.readHeader();
+        assertTrue(header.getSentences().isEmpty());
+        assertEquals(noSentences, header);
+        assertEquals(st.getSentences(), readSentences(reader));
+        assertNull(reader.readSentence());
+        assertEquals(header, reader.finish());
+        reader.close();
+
+        // SemTextModule writes metadata and layers after sentences
+        reader = SemTextReader.of(objectMapper, new ByteArrayInputStream(objectMapper.writeValueAsBytes(st)));
+        assertEquals(SemText.of(Locale.ITALIAN, st.getText()), reader.readHeader());
+        assertEquals(st.getSentences(), readSentences(reader));
+        assertEquals(noSentences, reader.finish());
+        reader.close();
+    }
+
+    @Test
+    public void testFieldOrder() throws IOException {
+        // metadata after sentences, like SemTextModule writes it
+        String json = "{\"locale\":\"it\",\"text\":\"ab\",\"sentences\":[{\"start\":0,\"end\":2,\"terms\":[],\"metadata\":{}}],"
+                + "\"metadata\":{}}";
+        SemTextReader reader = SemTextReader.of(objectMapper, new StringReader(json));
+        assertEquals("ab", reader.readHeader().getText());
+        assertEquals(ImmutableList.of(Sentence.of(0, 2)), readSentences(reader));
+        assertEquals(SemText.of(Locale.ITALIAN, "ab"), reader.finish());
+
+        // sentences before text
+        json = "{\"sentences\":[{\"start\":0,\"end\":2,\"terms\":[],\"metadata\":{}}],"
+                + "\"locale\":\"it\",\"text\":\"ab\",\"metadata\":{}}";
+        reader = SemTextReader.of(objectMapper, new StringReader(json));
+        assertEquals(SemText.of(Locale.ITALIAN, "ab"), reader.readHeader());
+        assertEquals(ImmutableList.of(Sentence.of(0, 2)), readSentences(reader));
+
+        json = "{\"locale\":\"it\",\"text\":\"ab\",\"metadata\":{},\"sentences\":[{\"start\":0,\"end\":5,\"terms\":[],\"metadata\":{}}]}";
+        reader = SemTextReader.of(objectMapper, new StringReader(json));
+        try {
+            reader.readSentence();
+            Assert.fail("Should have rejected sentence outside text!");
+        }
+        catch (IOException ex) {
+
+        }
+    }
+
+    @Test
+    public void testWrite() throws IOException {
+        SemTextModule.registerMetadata(SemText.class, "a", String.class);
+        SemText st = semText();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        SemTextWriter writer = SemTextWriter.of(objectMapper, out, st.withSentences(st.getSentences().subList(0, 1)));
+        writer.write(st.getSentences().get(1));
+        try {
+            writer.write(st.getSentences().get(0));
+            Assert.fail("Should have rejected sentence out of order!");
+        }
+        catch (IllegalArgumentException ex) {
+
+        }
+        writer.close();
+
+        assertEquals(objectMapper.readTree(objectMapper.writeValueAsString(st)), objectMapper.readTree(out.toString("UTF-8")));
+        assertEquals(st, objectMapper.readValue(out.toByteArray(), SemText.class));
+    }
+}